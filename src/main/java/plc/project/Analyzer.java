@@ -3,6 +3,8 @@ package plc.project;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.stream.Collectors;
 
 /**
@@ -13,10 +15,24 @@ public final class Analyzer implements Ast.Visitor<Void> {
 
     public Scope scope;
     private Ast.Method method;
+    private final Set<Object> resolved;
 
     public Analyzer(Scope parent) {
+        resolved = null;
         scope = new Scope(parent);
         scope.defineFunction("print", "System.out.println", Arrays.asList(Environment.Type.ANY), Environment.Type.NIL, args -> Environment.NIL);
+        scope.defineFunction("range", "range", Arrays.asList(Environment.Type.INTEGER, Environment.Type.INTEGER), Environment.Type.INTEGER_ITERABLE, args -> Environment.NIL);
+        scope.defineFunction("range", "range", Arrays.asList(Environment.Type.INTEGER, Environment.Type.INTEGER, Environment.Type.INTEGER), Environment.Type.INTEGER_ITERABLE, args -> Environment.NIL);
+    }
+
+    /**
+     * Creates an analyzer working directly in the given scope. If
+     * {@code resolved} is not null, every variable and function looked up by
+     * name is added to it.
+     */
+    Analyzer(Scope scope, Set<Object> resolved) {
+        this.scope = scope;
+        this.resolved = resolved;
     }
 
     public Scope getScope() {
@@ -37,26 +53,55 @@ public final class Analyzer implements Ast.Visitor<Void> {
                 if (!func.getReturnTypeName().isPresent()) throw new RuntimeException("Error: no return type for main. Should return Integer.");
                 requireAssignable( Environment.Type.INTEGER, Environment.getType(func.getReturnTypeName().get()) );
             }
-            visit(func);
+            define(func);
         }
 
+        // Every signature is in the scope now, so bodies only read from it and
+        // can be checked independently. invoke() joins all tasks, which makes
+        // their type annotations visible to this thread.
+        ForkJoinPool.commonPool().invoke(new MethodChecks(scope, ast.getMethods()));
+
         return null;
     }
 
     @Override
     public Void visit(Ast.Field ast) {
-        if (ast.getValue().isPresent()) {
-            requireAssignable( Environment.getType(ast.getTypeName()), ast.getValue().get().getType() );
-            visit(ast.getValue().get());
-        }
-
-        ast.setVariable(scope.defineVariable(ast.getName(), ast.getName(), Environment.getType(ast.getTypeName()), Environment.NIL));
+        check(ast);
+        define(ast);
 
         return null;
     }
 
     @Override
     public Void visit(Ast.Method ast) {
+        define(ast);
+        new Analyzer(scope, resolved).check(ast);
+
+        return null;
+    }
+
+    /**
+     * Defines the variable for a field in the current scope.
+     */
+    void define(Ast.Field ast) {
+        ast.setVariable(scope.defineVariable(ast.getName(), ast.getName(), Environment.getType(ast.getTypeName()), Environment.NIL));
+    }
+
+    /**
+     * Checks the value of a field, if present, against its declared type.
+     */
+    void check(Ast.Field ast) {
+        if (ast.getValue().isPresent()) {
+            visit(ast.getValue().get());
+            requireAssignable( Environment.getType(ast.getTypeName()), ast.getValue().get().getType() );
+        }
+    }
+
+    /**
+     * Defines the function for a method in the current scope without checking
+     * its body, so that calls to it can be resolved from any other method.
+     */
+    void define(Ast.Method ast) {
         List<Environment.Type> parameterTypes = new ArrayList<>();
         for (String typeName : ast.getParameterTypeNames()) {
             parameterTypes.add(Environment.getType(typeName));
@@ -68,25 +113,26 @@ public final class Analyzer implements Ast.Visitor<Void> {
         else
             returnType = Environment.Type.NIL;
 
-        for (Ast.Stmt stmt : ast.getStatements()) {
-            visit(stmt);
-        }
-
         java.util.function.Function<List<Environment.PlcObject>, Environment.PlcObject> function = arguments -> { return Environment.NIL; };
         ast.setFunction(scope.defineFunction( ast.getName(), ast.getName(), parameterTypes, returnType, function));
+    }
 
+    /**
+     * Checks the body of a method in its own child scope. The method must
+     * already be defined.
+     */
+    void check(Ast.Method ast) {
+        method = ast;
         scope = new Scope(scope);
-        scope.defineVariable("$RETURN_TYPE", Environment.create(ast.getReturnTypeName().get()));
+        scope.defineVariable("$RETURN_TYPE", "$RETURN_TYPE", method.getFunction().getReturnType(), Environment.NIL);
 
-        for (int i = 0; i < ast.getParameters().size(); ++i) {
-            scope.defineVariable(ast.getParameters().get(i), ast.getParameters().get(i), Environment.getType(ast.getParameterTypeNames().get(i)), Environment.NIL);
+        for (int i = 0; i < method.getParameters().size(); ++i) {
+            scope.defineVariable(method.getParameters().get(i), method.getParameters().get(i), Environment.getType(method.getParameterTypeNames().get(i)), Environment.NIL);
         }
-        for (Ast.Stmt stmt : ast.getStatements()) {
+        for (Ast.Stmt stmt : method.getStatements()) {
             visit(stmt);
         }
         scope = scope.getParent();
-
-        return null;
     }
 
     @Override
@@ -157,6 +203,7 @@ public final class Analyzer implements Ast.Visitor<Void> {
 
     @Override
     public Void visit(Ast.Stmt.For ast) {
+        visit(ast.getValue());
         requireAssignable(Environment.Type.INTEGER_ITERABLE, ast.getValue().getType());
         if (ast.getStatements().size() == 0) {
             throw new RuntimeException("Error: Statement List empty");
@@ -176,6 +223,7 @@ public final class Analyzer implements Ast.Visitor<Void> {
 
     @Override
     public Void visit(Ast.Stmt.While ast) {
+        visit(ast.getCondition());
         requireAssignable(Environment.Type.BOOLEAN, ast.getCondition().getType());
 
         for (Ast.Stmt stmt : ast.getStatements()) {
@@ -193,7 +241,7 @@ public final class Analyzer implements Ast.Visitor<Void> {
     public Void visit(Ast.Stmt.Return ast) {
         visit(ast.getValue());
 
-        requireAssignable(scope.lookupVariable("$Return_Type").getType(), ast.getValue().getType());
+        requireAssignable(scope.lookupVariable("$RETURN_TYPE").getType(), ast.getValue().getType());
 
         return null;
     }
@@ -285,6 +333,22 @@ public final class Analyzer implements Ast.Visitor<Void> {
                 requireAssignable(Environment.Type.DECIMAL, right.getType());
                 ast.setType(Environment.Type.DECIMAL);
             }
+            else {
+                throw new RuntimeException("Error: \"+\" requires String, Integer or Decimal operands. Got: " + left.getType().getName());
+            }
+        }
+        else if (opr.equals("-") || opr.equals("*") || opr.equals("/")) {
+            if (left.getType() == Environment.Type.INTEGER) {
+                requireAssignable(Environment.Type.INTEGER, right.getType());
+                ast.setType(Environment.Type.INTEGER);
+            }
+            else if (left.getType() == Environment.Type.DECIMAL) {
+                requireAssignable(Environment.Type.DECIMAL, right.getType());
+                ast.setType(Environment.Type.DECIMAL);
+            }
+            else {
+                throw new RuntimeException("Error: \"" + opr + "\" requires Integer or Decimal operands. Got: " + left.getType().getName());
+            }
         }
 
         return null;
@@ -296,7 +360,7 @@ public final class Analyzer implements Ast.Visitor<Void> {
             visit(ast.getReceiver().get());
             ast.setVariable(new Environment.Variable(ast.getName(), ast.getName(), ast.getReceiver().get().getType().getField(ast.getName()).getType(), Environment.NIL));
         } else {
-            ast.setVariable(new Environment.Variable(ast.getName(), ast.getName(), scope.lookupVariable(ast.getName()).getType(), Environment.NIL));
+            ast.setVariable(new Environment.Variable(ast.getName(), ast.getName(), resolve(scope.lookupVariable(ast.getName())).getType(), Environment.NIL));
         }
 
         return null;
@@ -315,7 +379,7 @@ public final class Analyzer implements Ast.Visitor<Void> {
                 requireAssignable(function.getParameterTypes().get(i-1), ast.getArguments().get(i).getType());
             }
         } else {
-            function = scope.lookupFunction(ast.getName(), ast.getArguments().size());
+            function = resolve(scope.lookupFunction(ast.getName(), ast.getArguments().size()));
 
             for (int i = 0; i < ast.getArguments().size(); ++i) {
                 visit(ast.getArguments().get(i));
@@ -328,6 +392,42 @@ public final class Analyzer implements Ast.Visitor<Void> {
         return null;
     }
 
+    private <T> T resolve(T symbol) {
+        if (resolved != null) {
+            resolved.add(symbol);
+        }
+        return symbol;
+    }
+
+    /**
+     * Checks a range of method bodies, splitting it in half until each task
+     * is a single method. Each method gets its own analyzer so no state other
+     * than the (read-only) enclosing scope is shared between threads.
+     */
+    private static final class MethodChecks extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Scope scope;
+        private final List<Ast.Method> methods;
+
+        private MethodChecks(Scope scope, List<Ast.Method> methods) {
+            this.scope = scope;
+            this.methods = methods;
+        }
+
+        @Override
+        protected void compute() {
+            if (methods.size() == 1) {
+                new Analyzer(scope, null).check(methods.get(0));
+            } else if (methods.size() > 1) {
+                int middle = methods.size() / 2;
+                invokeAll(new MethodChecks(scope, methods.subList(0, middle)), new MethodChecks(scope, methods.subList(middle, methods.size())));
+            }
+        }
+
+    }
+
     public static void requireAssignable(Environment.Type target, Environment.Type type) {
         String tempType = type.getName();
         String tempTarget = target.getName();
@@ -357,6 +457,7 @@ public final class Analyzer implements Ast.Visitor<Void> {
                 if (tempType.equals("Boolean")){ break; }
                 throw new RuntimeException("Target of Type 'Boolean' did not match Type: " + tempType);
             default:
+                if (tempType.equals(tempTarget)){ break; }
                 throw new RuntimeException("The target type could not be assigned to any type.");
         }
     }
@@ -556,6 +556,7 @@ public abstract class Ast {
             private final Expr left;
             private final Expr right;
             private Environment.Type type = null;
+            private boolean primitive = false;
 
             public Binary(String operator, Expr left, Expr right) {
                 this.operator = operator;
@@ -587,6 +588,19 @@ public abstract class Ast {
                 this.type = type;
             }
 
+            /**
+             * Returns true if this expression and every intermediate result in
+             * it fit in a {@code long}, provided every Integer operand fits in
+             * an {@code int}. Set by the {@link RangeAnalyzer}.
+             */
+            public boolean isPrimitive() {
+                return primitive;
+            }
+
+            public void setPrimitive(boolean primitive) {
+                this.primitive = primitive;
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Binary &&
@@ -0,0 +1,322 @@
+package plc.project;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs many sources concurrently, each with its own {@link Interpreter} whose
+ * print output is captured.
+ *
+ * Submitted jobs wait in a queue and at most {@code concurrency} of them run
+ * at once, so queued jobs hold no thread. Jobs run on virtual threads when the
+ * Java runtime has them, and otherwise on a pool of {@code concurrency}
+ * platform threads. Each job runs under a {@link Budget}, whose timeout starts
+ * when the job starts running; a job exceeding it fails with a
+ * {@link BudgetExceededException}.
+ */
+public final class BatchRunner implements AutoCloseable {
+
+    private final int concurrency;
+    private final Budget budget;
+    private final ExecutorService executor;
+    private final boolean virtual;
+    private final Queue<Job> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicLong started = new AtomicLong();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder latency = new LongAdder();
+    private final AtomicLong maxLatency = new AtomicLong();
+    private long pending = 0;
+    private boolean closed = false;
+
+    public BatchRunner(int concurrency) {
+        this(concurrency, Budget.UNLIMITED);
+    }
+
+    /**
+     * Creates a runner running at most {@code concurrency} jobs at once, each
+     * under the budget unless given its own.
+     */
+    public BatchRunner(int concurrency, Budget budget) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("The concurrency must be positive.");
+        }
+        this.concurrency = concurrency;
+        this.budget = budget;
+        ExecutorService executor;
+        try {
+            executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            executor = null;
+        }
+        this.virtual = executor != null;
+        this.executor = virtual ? executor : Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "plc-batch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns whether jobs run on virtual threads.
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    public CompletableFuture<Result> submit(Ast.Source source) {
+        return submit(source, budget);
+    }
+
+    /**
+     * Queues the source to run under the budget, returning the future of its
+     * result. The future fails with the exception thrown by the source.
+     */
+    public CompletableFuture<Result> submit(Ast.Source source, Budget budget) {
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("The runner is closed.");
+            }
+            pending++;
+        }
+        Job job = new Job(source, budget);
+        started.compareAndSet(0, job.submitted);
+        submitted.increment();
+        queue.add(job);
+        dispatch();
+        return job.future;
+    }
+
+    public Metrics getMetrics() {
+        long elapsed = started.get() == 0 ? 0 : System.nanoTime() - started.get();
+        return new Metrics(submitted.sum(), completed.sum(), failed.sum(), queue.size(), elapsed, latency.sum(), maxLatency.get());
+    }
+
+    /**
+     * Stops accepting jobs and waits for the queued ones to finish. An
+     * interrupt does not stop the wait, but is kept set on return.
+     */
+    @Override
+    public void close() {
+        boolean interrupted = false;
+        synchronized (this) {
+            closed = true;
+            while (pending > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        executor.shutdown();
+        while (!executor.isTerminated()) {
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Starts queued jobs while fewer than {@code concurrency} are running.
+     */
+    private void dispatch() {
+        while (!queue.isEmpty()) {
+            int count = running.get();
+            if (count >= concurrency) {
+                return;
+            }
+            if (!running.compareAndSet(count, count + 1)) {
+                continue;
+            }
+            Job job = queue.poll();
+            if (job == null) {
+                running.decrementAndGet();
+                continue;
+            }
+            executor.execute(job);
+        }
+    }
+
+    private final class Job implements Runnable {
+
+        private final Ast.Source source;
+        private final Budget budget;
+        private final long submitted = System.nanoTime();
+        private final CompletableFuture<Result> future = new CompletableFuture<>();
+
+        private Job(Ast.Source source, Budget budget) {
+            this.source = source;
+            this.budget = budget;
+        }
+
+        @Override
+        public void run() {
+            try {
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                Interpreter interpreter = new Interpreter(new Scope(null), new PrintStream(output, true));
+                interpreter.setBudget(budget);
+                Object value = interpreter.visit(source).getValue();
+                long elapsed = record(completed);
+                future.complete(new Result(value, output.toString(), interpreter.getSteps(), elapsed));
+            } catch (Throwable e) {
+                record(failed);
+                future.completeExceptionally(e);
+            } finally {
+                running.decrementAndGet();
+                dispatch();
+                synchronized (BatchRunner.this) {
+                    if (--pending == 0) {
+                        BatchRunner.this.notifyAll();
+                    }
+                }
+            }
+        }
+
+        private long record(LongAdder counter) {
+            long elapsed = System.nanoTime() - submitted;
+            counter.increment();
+            latency.add(elapsed);
+            maxLatency.accumulateAndGet(elapsed, Math::max);
+            return elapsed;
+        }
+
+    }
+
+    /**
+     * The value returned by a source's main method and its printed output.
+     */
+    public static final class Result {
+
+        private final Object value;
+        private final String output;
+        private final long steps;
+        private final long latency;
+
+        private Result(Object value, String output, long steps, long latency) {
+            this.value = value;
+            this.output = output;
+            this.steps = steps;
+            this.latency = latency;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+
+        public String getOutput() {
+            return output;
+        }
+
+        public long getSteps() {
+            return steps;
+        }
+
+        /**
+         * Returns the time from the submission of the job to its completion.
+         */
+        public Duration getLatency() {
+            return Duration.ofNanos(latency);
+        }
+
+        @Override
+        public String toString() {
+            return "Result{" +
+                    "value=" + value +
+                    ", output='" + output + '\'' +
+                    ", steps=" + steps +
+                    ", latency=" + getLatency() +
+                    '}';
+        }
+
+    }
+
+    /**
+     * A snapshot of the jobs of a runner. Latencies are measured from the
+     * submission of a job to its completion or failure, and the throughput
+     * over the time since the first submission.
+     */
+    public static final class Metrics {
+
+        private final long submitted;
+        private final long completed;
+        private final long failed;
+        private final long queued;
+        private final long elapsed;
+        private final long latency;
+        private final long maxLatency;
+
+        private Metrics(long submitted, long completed, long failed, long queued, long elapsed, long latency, long maxLatency) {
+            this.submitted = submitted;
+            this.completed = completed;
+            this.failed = failed;
+            this.queued = queued;
+            this.elapsed = elapsed;
+            this.latency = latency;
+            this.maxLatency = maxLatency;
+        }
+
+        public long getSubmitted() {
+            return submitted;
+        }
+
+        public long getCompleted() {
+            return completed;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public long getQueued() {
+            return queued;
+        }
+
+        /**
+         * Returns the finished jobs per second.
+         */
+        public double getThroughput() {
+            return elapsed == 0 ? 0 : (completed + failed) * 1e9 / elapsed;
+        }
+
+        public Duration getMeanLatency() {
+            return completed + failed == 0 ? Duration.ZERO : Duration.ofNanos(latency / (completed + failed));
+        }
+
+        public Duration getMaxLatency() {
+            return Duration.ofNanos(maxLatency);
+        }
+
+        @Override
+        public String toString() {
+            return "Metrics{" +
+                    "submitted=" + submitted +
+                    ", completed=" + completed +
+                    ", failed=" + failed +
+                    ", queued=" + queued +
+                    ", throughput=" + getThroughput() +
+                    ", meanLatency=" + getMeanLatency() +
+                    ", maxLatency=" + getMaxLatency() +
+                    '}';
+        }
+
+    }
+
+}
@@ -0,0 +1,58 @@
+package plc.project;
+
+import java.time.Duration;
+
+/**
+ * The limits on an execution of the {@link Interpreter}: the maximum number of
+ * steps, which are executed statements and loop iterations, the time after
+ * which the execution is stopped, and the maximum depth of method calls. A
+ * {@code null} timeout is unlimited, as are the maximum values.
+ */
+public final class Budget {
+
+    public static final Budget UNLIMITED = new Budget(Long.MAX_VALUE, null, Integer.MAX_VALUE);
+
+    private final long maxSteps;
+    private final Duration timeout;
+    private final int maxDepth;
+
+    public Budget(long maxSteps, Duration timeout, int maxDepth) {
+        this.maxSteps = maxSteps;
+        this.timeout = timeout;
+        this.maxDepth = maxDepth;
+    }
+
+    public long getMaxSteps() {
+        return maxSteps;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public Budget withMaxSteps(long maxSteps) {
+        return new Budget(maxSteps, timeout, maxDepth);
+    }
+
+    public Budget withTimeout(Duration timeout) {
+        return new Budget(maxSteps, timeout, maxDepth);
+    }
+
+    public Budget withMaxDepth(int maxDepth) {
+        return new Budget(maxSteps, timeout, maxDepth);
+    }
+
+    @Override
+    public String toString() {
+        return "Budget{" +
+                "maxSteps=" + maxSteps +
+                ", timeout=" + timeout +
+                ", maxDepth=" + maxDepth +
+                '}';
+    }
+
+}
@@ -0,0 +1,28 @@
+package plc.project;
+
+/**
+ * Thrown by the {@link Interpreter} when an execution exceeds a limit of its
+ * {@link Budget}.
+ */
+public final class BudgetExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Limit {
+        STEPS,
+        TIMEOUT,
+        DEPTH,
+    }
+
+    private final Limit limit;
+
+    public BudgetExceededException(String message, Limit limit) {
+        super(message);
+        this.limit = limit;
+    }
+
+    public Limit getLimit() {
+        return limit;
+    }
+
+}
@@ -0,0 +1,207 @@
+package plc.project;
+
+import java.util.List;
+
+/**
+ * A register-based bytecode compiled from a source by the
+ * {@link BytecodeCompiler} and executed by the {@link BytecodeVm}.
+ *
+ * The code of a function is a flat {@code int[]} of instructions, each an
+ * opcode followed by its operands, which are register numbers, indices into
+ * the function's constant pool or the program's global and native tables, and
+ * absolute jump targets. Registers hold the parameters first, followed by the
+ * locals and temporaries of the function.
+ */
+public final class Bytecode {
+
+    /** {@code CONST dst, constant} */
+    public static final int CONST = 0;
+    /** {@code MOVE dst, src} */
+    public static final int MOVE = 1;
+    /** {@code GET_GLOBAL dst, global} */
+    public static final int GET_GLOBAL = 2;
+    /** {@code SET_GLOBAL global, src} */
+    public static final int SET_GLOBAL = 3;
+    /** {@code GET_FIELD dst, object, name} */
+    public static final int GET_FIELD = 4;
+    /** {@code SET_FIELD object, name, src} */
+    public static final int SET_FIELD = 5;
+    /** {@code ADD dst, left, right}, also concatenating strings. */
+    public static final int ADD = 6;
+    public static final int SUB = 7;
+    public static final int MUL = 8;
+    public static final int DIV = 9;
+    /** {@code LT dst, left, right} */
+    public static final int LT = 10;
+    public static final int LE = 11;
+    public static final int GT = 12;
+    public static final int GE = 13;
+    public static final int EQ = 14;
+    public static final int NE = 15;
+    /** {@code JUMP target} */
+    public static final int JUMP = 16;
+    /** {@code JUMP_IF_FALSE condition, target}, requiring a Boolean. */
+    public static final int JUMP_IF_FALSE = 17;
+    /** {@code JUMP_IF_TRUE condition, target}, requiring a Boolean. */
+    public static final int JUMP_IF_TRUE = 18;
+    /** {@code ITERATE dst, iterable} stores an iterator over the iterable. */
+    public static final int ITERATE = 19;
+    /** {@code NEXT dst, iterator, target} jumps to the target when done. */
+    public static final int NEXT = 20;
+    /** {@code CALL dst, function, base, count} calls a function of the program. */
+    public static final int CALL = 21;
+    /** {@code CALL_NATIVE dst, native, base, count} calls a function of the scope. */
+    public static final int CALL_NATIVE = 22;
+    /** {@code CALL_METHOD dst, name, base, count} with the receiver in the base register. */
+    public static final int CALL_METHOD = 23;
+    /** {@code RETURN src} */
+    public static final int RETURN = 24;
+
+    private static final String[] NAMES = {
+            "const", "move", "get_global", "set_global", "get_field", "set_field",
+            "add", "sub", "mul", "div", "lt", "le", "gt", "ge", "eq", "ne",
+            "jump", "jump_if_false", "jump_if_true", "iterate", "next",
+            "call", "call_native", "call_method", "return"
+    };
+
+    private static final int[] OPERANDS = {
+            2, 2, 2, 2, 3, 3,
+            3, 3, 3, 3, 3, 3, 3, 3, 3, 3,
+            1, 2, 2, 2, 3,
+            4, 4, 4, 1
+    };
+
+    private Bytecode() {}
+
+    /**
+     * Returns the number of operands of an opcode.
+     */
+    public static int operands(int opcode) {
+        return OPERANDS[opcode];
+    }
+
+    public static final class Program {
+
+        private final int fields;
+        private final List<String> globals;
+        private final List<String> natives;
+        private final Function initializer;
+        private final List<Function> functions;
+
+        public Program(int fields, List<String> globals, List<String> natives, Function initializer, List<Function> functions) {
+            this.fields = fields;
+            this.globals = globals;
+            this.natives = natives;
+            this.initializer = initializer;
+            this.functions = functions;
+        }
+
+        /**
+         * Returns the number of fields of the source, which are the first
+         * globals.
+         */
+        public int getFields() {
+            return fields;
+        }
+
+        /**
+         * Returns the names of the variables accessed through the scope,
+         * starting with the fields of the source.
+         */
+        public List<String> getGlobals() {
+            return globals;
+        }
+
+        /**
+         * Returns the functions called through the scope, such as builtins,
+         * as {@code name/arity}.
+         */
+        public List<String> getNatives() {
+            return natives;
+        }
+
+        /**
+         * Returns the function storing the initial values of the fields.
+         */
+        public Function getInitializer() {
+            return initializer;
+        }
+
+        public List<Function> getFunctions() {
+            return functions;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(initializer.toString());
+            functions.forEach(builder::append);
+            return builder.toString();
+        }
+
+    }
+
+    public static final class Function {
+
+        private final String name;
+        private final int arity;
+        private final int registers;
+        private final int[] code;
+        private final Object[] constants;
+
+        public Function(String name, int arity, int registers, int[] code, Object[] constants) {
+            this.name = name;
+            this.arity = arity;
+            this.registers = registers;
+            this.code = code;
+            this.constants = constants;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getArity() {
+            return arity;
+        }
+
+        public int getRegisters() {
+            return registers;
+        }
+
+        public int[] getCode() {
+            return code;
+        }
+
+        /**
+         * Returns the constant pool, holding literal objects and names.
+         */
+        public Object[] getConstants() {
+            return constants;
+        }
+
+        /**
+         * Disassembles the function, one instruction per line.
+         */
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder("function " + name + "/" + arity + " (" + registers + " registers)\n");
+            for (int pc = 0; pc < code.length; pc += operands(code[pc]) + 1) {
+                builder.append(String.format("%4d  %-13s", pc, NAMES[code[pc]]));
+                for (int i = 1; i <= operands(code[pc]); i++) {
+                    builder.append(i == 1 ? " " : ", ").append(code[pc + i]);
+                }
+                if (code[pc] == CONST) {
+                    builder.append("  ; ").append(((Environment.PlcObject) constants[code[pc + 2]]).getValue());
+                } else if (code[pc] == GET_FIELD) {
+                    builder.append("  ; ").append(constants[code[pc + 3]]);
+                } else if (code[pc] == SET_FIELD || code[pc] == CALL_METHOD) {
+                    builder.append("  ; ").append(constants[code[pc + 2]]);
+                }
+                builder.append("\n");
+            }
+            return builder.toString();
+        }
+
+    }
+
+}
@@ -0,0 +1,388 @@
+package plc.project;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles a source into {@link Bytecode}.
+ *
+ * Registers are allocated as a stack: locals take the next register when
+ * declared and are freed at the end of their block, and temporaries are freed
+ * at the end of the statement computing them. Expression visits return the
+ * register holding the value, which is the register of the local itself for
+ * accesses of locals. Statement visits return {@code null}.
+ *
+ * Calls to methods of the source are bound to their index in the program;
+ * other functions and variables that are not locals are resolved by name in
+ * the scope of the VM.
+ */
+public final class BytecodeCompiler implements Ast.Visitor<Integer> {
+
+    private final List<String> globals = new ArrayList<>();
+    private final List<String> natives = new ArrayList<>();
+    private final Map<String, Integer> functions = new HashMap<>();
+    private final List<Bytecode.Function> compiled = new ArrayList<>();
+    private Bytecode.Program program;
+
+    private int[] code;
+    private int size;
+    private List<Object> constants;
+    private Map<Object, Integer> pool;
+    private final Deque<Map<String, Integer>> blocks = new ArrayDeque<>();
+    private int registers;
+    private int maxRegisters;
+
+    public Bytecode.Program compile(Ast.Source ast) {
+        visit(ast);
+        return program;
+    }
+
+    @Override
+    public Integer visit(Ast.Source ast) {
+        ast.getFields().forEach(field -> globals.add(field.getName()));
+        for (int i = 0; i < ast.getMethods().size(); i++) {
+            Ast.Method method = ast.getMethods().get(i);
+            functions.put(method.getName() + "/" + method.getParameters().size(), i);
+        }
+        begin();
+        ast.getFields().forEach(this::visit);
+        Bytecode.Function initializer = end("$fields", 0);
+        ast.getMethods().forEach(this::visit);
+        program = new Bytecode.Program(ast.getFields().size(), globals, natives, initializer, compiled);
+        return null;
+    }
+
+    @Override
+    public Integer visit(Ast.Field ast) {
+        int mark = registers;
+        int value = ast.getValue().isPresent() ? visit(ast.getValue().get()) : constant(Environment.NIL);
+        emit(Bytecode.SET_GLOBAL, globals.indexOf(ast.getName()), value);
+        registers = mark;
+        return null;
+    }
+
+    @Override
+    public Integer visit(Ast.Method ast) {
+        begin();
+        ast.getParameters().forEach(this::declare);
+        ast.getStatements().forEach(this::visit);
+        compiled.add(end(ast.getName(), ast.getParameters().size()));
+        return null;
+    }
+
+    @Override
+    public Integer visit(Ast.Stmt.Expression ast) {
+        int mark = registers;
+        visit(ast.getExpression());
+        registers = mark;
+        return null;
+    }
+
+    @Override
+    public Integer visit(Ast.Stmt.Declaration ast) {
+        int mark = registers;
+        int value = ast.getValue().isPresent() ? visit(ast.getValue().get()) : constant(Environment.NIL);
+        registers = mark;
+        int local = declare(ast.getName());
+        move(local, value);
+        return null;
+    }
+
+    @Override
+    public Integer visit(Ast.Stmt.Assignment ast) {
+        if (!(ast.getReceiver() instanceof Ast.Expr.Access)) {
+            throw new RuntimeException("Non-assignable type. Expected Ast.Expr.Access, Got " + ast.getReceiver().getClass());
+        }
+        Ast.Expr.Access access = (Ast.Expr.Access) ast.getReceiver();
+        int mark = registers;
+        if (access.getReceiver().isPresent()) {
+            int receiver = visit(access.getReceiver().get());
+            int value = visit(ast.getValue());
+            emit(Bytecode.SET_FIELD, receiver, name(access.getName()), value);
+        } else {
+            int value = visit(ast.getValue());
+            Integer local = resolve(access.getName());
+            if (local != null) {
+                move(local, value);
+            } else {
+                emit(Bytecode.SET_GLOBAL, global(access.getName()), value);
+            }
+        }
+        registers = mark;
+        return null;
+    }
+
+    @Override
+    public Integer visit(Ast.Stmt.If ast) {
+        int mark = registers;
+        int condition = visit(ast.getCondition());
+        registers = mark;
+        int elseJump = emit(Bytecode.JUMP_IF_FALSE, condition, -1) + 2;
+        block(ast.getThenStatements());
+        if (ast.getElseStatements().isEmpty()) {
+            code[elseJump] = size;
+        } else {
+            int endJump = emit(Bytecode.JUMP, -1) + 1;
+            code[elseJump] = size;
+            block(ast.getElseStatements());
+            code[endJump] = size;
+        }
+        return null;
+    }
+
+    @Override
+    public Integer visit(Ast.Stmt.For ast) {
+        int mark = registers;
+        int iterable = visit(ast.getValue());
+        registers = mark;
+        int iterator = allocate();
+        emit(Bytecode.ITERATE, iterator, iterable);
+        blocks.push(new HashMap<>());
+        int element = declare(ast.getName());
+        int loop = size;
+        int exit = emit(Bytecode.NEXT, element, iterator, -1) + 3;
+        ast.getStatements().forEach(this::visit);
+        emit(Bytecode.JUMP, loop);
+        code[exit] = size;
+        blocks.pop();
+        registers = mark;
+        return null;
+    }
+
+    @Override
+    public Integer visit(Ast.Stmt.While ast) {
+        int loop = size;
+        int mark = registers;
+        int condition = visit(ast.getCondition());
+        registers = mark;
+        int exit = emit(Bytecode.JUMP_IF_FALSE, condition, -1) + 2;
+        block(ast.getStatements());
+        emit(Bytecode.JUMP, loop);
+        code[exit] = size;
+        return null;
+    }
+
+    @Override
+    public Integer visit(Ast.Stmt.Return ast) {
+        int mark = registers;
+        emit(Bytecode.RETURN, visit(ast.getValue()));
+        registers = mark;
+        return null;
+    }
+
+    @Override
+    public Integer visit(Ast.Expr.Literal ast) {
+        return constant(ast.getLiteral() == null ? Environment.NIL : Environment.create(ast.getLiteral()));
+    }
+
+    @Override
+    public Integer visit(Ast.Expr.Group ast) {
+        return visit(ast.getExpression());
+    }
+
+    @Override
+    public Integer visit(Ast.Expr.Binary ast) {
+        switch (ast.getOperator()) {
+            case "AND": return logical(ast, Bytecode.JUMP_IF_FALSE);
+            case "OR": return logical(ast, Bytecode.JUMP_IF_TRUE);
+            case "+": return binary(ast, Bytecode.ADD);
+            case "-": return binary(ast, Bytecode.SUB);
+            case "*": return binary(ast, Bytecode.MUL);
+            case "/": return binary(ast, Bytecode.DIV);
+            case "<": return binary(ast, Bytecode.LT);
+            case "<=": return binary(ast, Bytecode.LE);
+            case ">": return binary(ast, Bytecode.GT);
+            case ">=": return binary(ast, Bytecode.GE);
+            case "==": return binary(ast, Bytecode.EQ);
+            case "!=": return binary(ast, Bytecode.NE);
+            default: return constant(Environment.NIL);
+        }
+    }
+
+    @Override
+    public Integer visit(Ast.Expr.Access ast) {
+        if (ast.getReceiver().isPresent()) {
+            int receiver = visit(ast.getReceiver().get());
+            int result = allocate();
+            emit(Bytecode.GET_FIELD, result, receiver, name(ast.getName()));
+            return result;
+        }
+        Integer local = resolve(ast.getName());
+        if (local != null) {
+            return local;
+        }
+        int result = allocate();
+        emit(Bytecode.GET_GLOBAL, result, global(ast.getName()));
+        return result;
+    }
+
+    @Override
+    public Integer visit(Ast.Expr.Function ast) {
+        boolean method = ast.getReceiver().isPresent();
+        int base = registers;
+        int count = ast.getArguments().size();
+        for (int i = 0; i < count + (method ? 1 : 0); i++) {
+            allocate();
+        }
+        int first = method ? base + 1 : base;
+        for (int i = 0; i < count; i++) {
+            move(first + i, visit(ast.getArguments().get(i)));
+            registers = first + count;
+        }
+        if (method) {
+            move(base, visit(ast.getReceiver().get()));
+            emit(Bytecode.CALL_METHOD, base, name(ast.getName()), base, count);
+        } else {
+            String key = ast.getName() + "/" + count;
+            if (functions.containsKey(key)) {
+                emit(Bytecode.CALL, base, functions.get(key), base, count);
+            } else {
+                if (!natives.contains(key)) {
+                    natives.add(key);
+                }
+                emit(Bytecode.CALL_NATIVE, base, natives.indexOf(key), base, count);
+            }
+        }
+        registers = base + 1;
+        return base;
+    }
+
+    /**
+     * Compiles AND or OR, jumping to the result of the left operand when it
+     * decides the result. Both operands are required to be Booleans.
+     */
+    private int logical(Ast.Expr.Binary ast, int jump) {
+        int result = allocate();
+        int left = visit(ast.getLeft());
+        int leftJump = emit(jump, left, -1) + 2;
+        int right = visit(ast.getRight());
+        int rightJump = emit(jump, right, -1) + 2;
+        emit(Bytecode.CONST, result, pool(Environment.create(jump != Bytecode.JUMP_IF_TRUE)));
+        int endJump = emit(Bytecode.JUMP, -1) + 1;
+        code[leftJump] = size;
+        code[rightJump] = size;
+        emit(Bytecode.CONST, result, pool(Environment.create(jump == Bytecode.JUMP_IF_TRUE)));
+        code[endJump] = size;
+        registers = result + 1;
+        return result;
+    }
+
+    private int binary(Ast.Expr.Binary ast, int opcode) {
+        int result = allocate();
+        int left = visit(ast.getLeft());
+        int right = visit(ast.getRight());
+        emit(opcode, result, left, right);
+        registers = result + 1;
+        return result;
+    }
+
+    /**
+     * Compiles the statements of an IF or WHILE in their own block, freeing
+     * their locals afterwards.
+     */
+    private void block(List<Ast.Stmt> statements) {
+        int mark = registers;
+        blocks.push(new HashMap<>());
+        statements.forEach(this::visit);
+        blocks.pop();
+        registers = mark;
+    }
+
+    private void begin() {
+        code = new int[64];
+        size = 0;
+        constants = new ArrayList<>();
+        pool = new HashMap<>();
+        blocks.clear();
+        blocks.push(new HashMap<>());
+        registers = 0;
+        maxRegisters = 0;
+    }
+
+    /**
+     * Ends the current function with an implicit return of NIL.
+     */
+    private Bytecode.Function end(String name, int arity) {
+        emit(Bytecode.RETURN, constant(Environment.NIL));
+        return new Bytecode.Function(name, arity, maxRegisters, Arrays.copyOf(code, size), constants.toArray());
+    }
+
+    private int emit(int opcode, int... operands) {
+        if (size + operands.length + 1 > code.length) {
+            code = Arrays.copyOf(code, code.length * 2);
+        }
+        int pc = size;
+        code[size++] = opcode;
+        for (int operand : operands) {
+            code[size++] = operand;
+        }
+        return pc;
+    }
+
+    private void move(int destination, int source) {
+        if (destination != source) {
+            emit(Bytecode.MOVE, destination, source);
+        }
+    }
+
+    private int constant(Environment.PlcObject value) {
+        int result = allocate();
+        emit(Bytecode.CONST, result, pool(value));
+        return result;
+    }
+
+    /**
+     * Returns the index of a value in the constant pool, adding it if
+     * needed. Literals are shared by value, and kept apart from names.
+     */
+    private int pool(Object value) {
+        Object key = value instanceof Environment.PlcObject && value != Environment.NIL
+                ? Arrays.asList(((Environment.PlcObject) value).getValue())
+                : value;
+        if (!pool.containsKey(key)) {
+            pool.put(key, constants.size());
+            constants.add(value);
+        }
+        return pool.get(key);
+    }
+
+    private int name(String name) {
+        return pool(name);
+    }
+
+    private int global(String name) {
+        if (!globals.contains(name)) {
+            globals.add(name);
+        }
+        return globals.indexOf(name);
+    }
+
+    private int allocate() {
+        maxRegisters = Math.max(maxRegisters, registers + 1);
+        return registers++;
+    }
+
+    private int declare(String name) {
+        if (blocks.peek().containsKey(name)) {
+            throw new RuntimeException("The variable " + name + " is already defined in this scope.");
+        }
+        int register = allocate();
+        blocks.peek().put(name, register);
+        return register;
+    }
+
+    private Integer resolve(String name) {
+        for (Map<String, Integer> block : blocks) {
+            if (block.containsKey(name)) {
+                return block.get(name);
+            }
+        }
+        return null;
+    }
+
+}
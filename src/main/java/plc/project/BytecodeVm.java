@@ -0,0 +1,352 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static plc.project.ClosureCompiler.add;
+import static plc.project.ClosureCompiler.arithmetic;
+import static plc.project.ClosureCompiler.bool;
+import static plc.project.ClosureCompiler.compare;
+import static plc.project.ClosureCompiler.divide;
+import static plc.project.Interpreter.requireType;
+
+/**
+ * Executes a {@link Bytecode.Program} with the semantics of the
+ * {@link Interpreter}. An execution runs a single dispatch loop over the code
+ * of its functions with the registers of each call in an array. Calls between
+ * functions of the program push an activation record on a stack kept on the
+ * heap rather than recursing in Java, so the depth of recursion is bounded by
+ * the maximum depth and the heap instead of the Java stack, and an execution
+ * can be paused and resumed. Globals and natives are looked up in the scope on
+ * first use and then cached. Arithmetic on two Integers is handled inline,
+ * other operands use the Interpreter's rules.
+ */
+public final class BytecodeVm {
+
+    private final Scope scope;
+    private final int maxDepth;
+    private Bytecode.Function[] functions;
+    private String[] globalNames;
+    private Environment.Variable[] globals;
+    private String[] nativeNames;
+    private Environment.Function[] natives;
+
+    public BytecodeVm(Scope parent) {
+        this(parent, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a VM whose executions throw a {@link BudgetExceededException}
+     * when more than {@code maxDepth} calls are active.
+     */
+    public BytecodeVm(Scope parent, int maxDepth) {
+        scope = new Scope(parent);
+        this.maxDepth = maxDepth;
+        Interpreter.defineBuiltins(scope);
+    }
+
+    public Scope getScope() {
+        return scope;
+    }
+
+    /**
+     * Runs the program to completion, returning the result of {@code main/0}.
+     */
+    public Environment.PlcObject execute(Bytecode.Program program) {
+        Execution execution = start(program);
+        execution.resume(Long.MAX_VALUE);
+        return execution.getResult();
+    }
+
+    /**
+     * Defines the fields and functions of the program in the scope,
+     * initializes the fields and starts an execution of {@code main/0}.
+     */
+    public Execution start(Bytecode.Program program) {
+        functions = program.getFunctions().toArray(new Bytecode.Function[0]);
+        globalNames = program.getGlobals().toArray(new String[0]);
+        globals = new Environment.Variable[globalNames.length];
+        nativeNames = program.getNatives().toArray(new String[0]);
+        natives = new Environment.Function[nativeNames.length];
+        for (int i = 0; i < program.getFields(); i++) {
+            scope.defineVariable(globalNames[i], Environment.NIL);
+        }
+        for (Bytecode.Function function : functions) {
+            scope.defineFunction(function.getName(), function.getArity(), arguments -> invoke(function, arguments));
+        }
+        invoke(program.getInitializer(), new ArrayList<>());
+        for (Bytecode.Function function : functions) {
+            if (function.getName().equals("main") && function.getArity() == 0) {
+                return start(function, new ArrayList<>());
+            }
+        }
+        throw new RuntimeException("The function main/0 is not defined in this scope.");
+    }
+
+    public Environment.PlcObject invoke(Bytecode.Function function, List<Environment.PlcObject> arguments) {
+        Execution execution = start(function, arguments);
+        execution.resume(Long.MAX_VALUE);
+        return execution.getResult();
+    }
+
+    /**
+     * Starts an execution of the function, which runs once resumed.
+     */
+    public Execution start(Bytecode.Function function, List<Environment.PlcObject> arguments) {
+        Environment.PlcObject[] registers = new Environment.PlcObject[function.getRegisters()];
+        for (int i = 0; i < arguments.size(); i++) {
+            registers[i] = arguments.get(i);
+        }
+        return new Execution(new Frame(null, function, registers, 0));
+    }
+
+    /**
+     * The state of a call of a function of a program: the stack of activation
+     * records of the calls in progress, innermost first.
+     */
+    public final class Execution {
+
+        private Frame frame;
+        private int depth = 1;
+        private Environment.PlcObject result = null;
+
+        private Execution(Frame frame) {
+            this.frame = frame;
+        }
+
+        public boolean isDone() {
+            return frame == null;
+        }
+
+        public Environment.PlcObject getResult() {
+            if (!isDone()) {
+                throw new RuntimeException("The execution is not done.");
+            }
+            return result;
+        }
+
+        /**
+         * Returns the number of calls in progress.
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * Executes at most the given number of instructions, returning whether
+         * the execution is done. If an instruction throws, the execution stops
+         * before it.
+         */
+        public boolean resume(long instructions) {
+            if (frame == null) {
+                return true;
+            }
+            Frame frame = this.frame;
+            int[] code = frame.function.getCode();
+            Object[] constants = frame.function.getConstants();
+            Environment.PlcObject[] r = frame.registers;
+            int pc = frame.pc;
+            try {
+                for (long remaining = instructions; remaining > 0; remaining--) {
+                    switch (code[pc]) {
+                        case Bytecode.CONST:
+                            r[code[pc + 1]] = (Environment.PlcObject) constants[code[pc + 2]];
+                            pc += 3;
+                            break;
+                        case Bytecode.MOVE:
+                            r[code[pc + 1]] = r[code[pc + 2]];
+                            pc += 3;
+                            break;
+                        case Bytecode.GET_GLOBAL:
+                            r[code[pc + 1]] = global(code[pc + 2]).getValue();
+                            pc += 3;
+                            break;
+                        case Bytecode.SET_GLOBAL:
+                            global(code[pc + 1]).setValue(r[code[pc + 2]]);
+                            pc += 3;
+                            break;
+                        case Bytecode.GET_FIELD:
+                            r[code[pc + 1]] = r[code[pc + 2]].getField((String) constants[code[pc + 3]]).getValue();
+                            pc += 4;
+                            break;
+                        case Bytecode.SET_FIELD:
+                            r[code[pc + 1]].setField((String) constants[code[pc + 2]], r[code[pc + 3]]);
+                            pc += 4;
+                            break;
+                        case Bytecode.ADD: {
+                            Object left = r[code[pc + 2]].getValue(), right = r[code[pc + 3]].getValue();
+                            r[code[pc + 1]] = left instanceof BigInteger && right instanceof BigInteger
+                                    ? Environment.create(((BigInteger) left).add((BigInteger) right))
+                                    : add(r[code[pc + 2]], r[code[pc + 3]]);
+                            pc += 4;
+                            break;
+                        }
+                        case Bytecode.SUB: {
+                            Object left = r[code[pc + 2]].getValue(), right = r[code[pc + 3]].getValue();
+                            r[code[pc + 1]] = left instanceof BigInteger && right instanceof BigInteger
+                                    ? Environment.create(((BigInteger) left).subtract((BigInteger) right))
+                                    : arithmetic(r[code[pc + 2]], r[code[pc + 3]], BigInteger::subtract, BigDecimal::subtract);
+                            pc += 4;
+                            break;
+                        }
+                        case Bytecode.MUL: {
+                            Object left = r[code[pc + 2]].getValue(), right = r[code[pc + 3]].getValue();
+                            r[code[pc + 1]] = left instanceof BigInteger && right instanceof BigInteger
+                                    ? Environment.create(((BigInteger) left).multiply((BigInteger) right))
+                                    : arithmetic(r[code[pc + 2]], r[code[pc + 3]], BigInteger::multiply, BigDecimal::multiply);
+                            pc += 4;
+                            break;
+                        }
+                        case Bytecode.DIV:
+                            r[code[pc + 1]] = divide(r[code[pc + 2]], r[code[pc + 3]]);
+                            pc += 4;
+                            break;
+                        case Bytecode.LT:
+                            r[code[pc + 1]] = bool(compare(r[code[pc + 2]], r[code[pc + 3]]) < 0);
+                            pc += 4;
+                            break;
+                        case Bytecode.LE:
+                            r[code[pc + 1]] = bool(compare(r[code[pc + 2]], r[code[pc + 3]]) <= 0);
+                            pc += 4;
+                            break;
+                        case Bytecode.GT:
+                            r[code[pc + 1]] = bool(compare(r[code[pc + 2]], r[code[pc + 3]]) > 0);
+                            pc += 4;
+                            break;
+                        case Bytecode.GE:
+                            r[code[pc + 1]] = bool(compare(r[code[pc + 2]], r[code[pc + 3]]) >= 0);
+                            pc += 4;
+                            break;
+                        case Bytecode.EQ:
+                            r[code[pc + 1]] = bool(compare(r[code[pc + 2]], r[code[pc + 3]]) == 0);
+                            pc += 4;
+                            break;
+                        case Bytecode.NE:
+                            r[code[pc + 1]] = bool(compare(r[code[pc + 2]], r[code[pc + 3]]) != 0);
+                            pc += 4;
+                            break;
+                        case Bytecode.JUMP:
+                            pc = code[pc + 1];
+                            break;
+                        case Bytecode.JUMP_IF_FALSE:
+                            pc = requireType(Boolean.class, r[code[pc + 1]]) ? pc + 3 : code[pc + 2];
+                            break;
+                        case Bytecode.JUMP_IF_TRUE:
+                            pc = requireType(Boolean.class, r[code[pc + 1]]) ? code[pc + 2] : pc + 3;
+                            break;
+                        case Bytecode.ITERATE:
+                            r[code[pc + 1]] = Environment.create(requireType(Iterable.class, r[code[pc + 2]]).iterator());
+                            pc += 3;
+                            break;
+                        case Bytecode.NEXT: {
+                            Iterator<?> iterator = (Iterator<?>) r[code[pc + 2]].getValue();
+                            if (iterator.hasNext()) {
+                                r[code[pc + 1]] = (Environment.PlcObject) iterator.next();
+                                pc += 4;
+                            } else {
+                                pc = code[pc + 3];
+                            }
+                            break;
+                        }
+                        case Bytecode.CALL: {
+                            Bytecode.Function callee = functions[code[pc + 2]];
+                            Environment.PlcObject[] registers = new Environment.PlcObject[callee.getRegisters()];
+                            System.arraycopy(r, code[pc + 3], registers, 0, code[pc + 4]);
+                            if (depth == maxDepth) {
+                                throw new BudgetExceededException("Exceeded the maximum call depth of " + maxDepth + ".", BudgetExceededException.Limit.DEPTH);
+                            }
+                            depth++;
+                            frame.pc = pc;
+                            frame = new Frame(frame, callee, registers, code[pc + 1]);
+                            code = callee.getCode();
+                            constants = callee.getConstants();
+                            r = registers;
+                            pc = 0;
+                            break;
+                        }
+                        case Bytecode.CALL_NATIVE:
+                            r[code[pc + 1]] = nativeFunction(code[pc + 2]).invoke(arguments(r, code[pc + 3], code[pc + 4]));
+                            pc += 5;
+                            break;
+                        case Bytecode.CALL_METHOD:
+                            r[code[pc + 1]] = r[code[pc + 3]].callMethod((String) constants[code[pc + 2]], arguments(r, code[pc + 3] + 1, code[pc + 4]));
+                            pc += 5;
+                            break;
+                        case Bytecode.RETURN: {
+                            Environment.PlcObject value = r[code[pc + 1]];
+                            Frame caller = frame.caller;
+                            if (caller == null) {
+                                result = value;
+                                frame = null;
+                                return true;
+                            }
+                            caller.registers[frame.destination] = value;
+                            depth--;
+                            frame = caller;
+                            code = frame.function.getCode();
+                            constants = frame.function.getConstants();
+                            r = frame.registers;
+                            pc = frame.pc + 5;
+                            break;
+                        }
+                        default:
+                            throw new AssertionError("Unexpected opcode " + code[pc] + " at " + pc + ".");
+                    }
+                }
+                return false;
+            } finally {
+                if (frame != null) {
+                    frame.pc = pc;
+                }
+                this.frame = frame;
+            }
+        }
+
+    }
+
+    /**
+     * The activation record of a call: the function, its registers, the
+     * instruction being executed and the caller's register for the result.
+     */
+    private static final class Frame {
+
+        private final Frame caller;
+        private final Bytecode.Function function;
+        private final Environment.PlcObject[] registers;
+        private final int destination;
+        private int pc = 0;
+
+        private Frame(Frame caller, Bytecode.Function function, Environment.PlcObject[] registers, int destination) {
+            this.caller = caller;
+            this.function = function;
+            this.registers = registers;
+            this.destination = destination;
+        }
+
+    }
+
+    private Environment.Variable global(int index) {
+        if (globals[index] == null) {
+            globals[index] = scope.lookupVariable(globalNames[index]);
+        }
+        return globals[index];
+    }
+
+    private Environment.Function nativeFunction(int index) {
+        if (natives[index] == null) {
+            String name = nativeNames[index];
+            int separator = name.lastIndexOf('/');
+            natives[index] = scope.lookupFunction(name.substring(0, separator), Integer.parseInt(name.substring(separator + 1)));
+        }
+        return natives[index];
+    }
+
+    private static List<Environment.PlcObject> arguments(Environment.PlcObject[] registers, int base, int count) {
+        return new ArrayList<>(Arrays.asList(registers).subList(base, base + count));
+    }
+
+}
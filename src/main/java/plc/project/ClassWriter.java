@@ -0,0 +1,399 @@
+package plc.project;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the class files generated by the {@link JvmCompiler}.
+ *
+ * Only what the compiler needs is supported: a class extending Object with
+ * static fields and static methods. Classes are written with version 49
+ * (Java 5), which is verified by type inference and therefore needs no
+ * StackMapTable attributes. The maximum stack size of a method is computed
+ * from the stack effect of each instruction, which over-approximates at
+ * joins and is therefore safe.
+ */
+public final class ClassWriter {
+
+    public static final int ACC_PUBLIC = 0x0001;
+    public static final int ACC_STATIC = 0x0008;
+    public static final int ACC_FINAL = 0x0010;
+    public static final int ACC_SUPER = 0x0020;
+
+    public static final int ACONST_NULL = 1, ICONST_0 = 3, DCONST_0 = 14, BIPUSH = 16, SIPUSH = 17, LDC_W = 19, LDC2_W = 20;
+    public static final int ILOAD = 21, DLOAD = 24, ALOAD = 25, ISTORE = 54, DSTORE = 57, ASTORE = 58;
+    public static final int POP = 87, POP2 = 88, DUP = 89;
+    public static final int IADD = 96, DADD = 99, ISUB = 100, DSUB = 103, IMUL = 104, DMUL = 107, IDIV = 108, LDIV = 109, DDIV = 111;
+    public static final int I2L = 133;
+    public static final int DCMPL = 151, DCMPG = 152;
+    public static final int IFEQ = 153, IFNE = 154, IFLT = 155, IFGE = 156, IFGT = 157, IFLE = 158;
+    public static final int IF_ICMPEQ = 159, IF_ICMPNE = 160, IF_ICMPLT = 161, IF_ICMPGE = 162, IF_ICMPGT = 163, IF_ICMPLE = 164;
+    public static final int GOTO = 167;
+    public static final int IRETURN = 172, DRETURN = 175, ARETURN = 176, RETURN = 177;
+    public static final int GETSTATIC = 178, PUTSTATIC = 179;
+    public static final int INVOKEVIRTUAL = 182, INVOKESTATIC = 184, INVOKEINTERFACE = 185;
+    public static final int CHECKCAST = 192;
+
+    private static final int WIDE = 196;
+
+    private final String name;
+    private final List<Object[]> constants = new ArrayList<>();
+    private final Map<String, Integer> pool = new HashMap<>();
+    private int poolSize = 1;
+    private final ByteArrayOutputStream fields = new ByteArrayOutputStream();
+    private int fieldCount = 0;
+    private final ByteArrayOutputStream methods = new ByteArrayOutputStream();
+    private int methodCount = 0;
+
+    /**
+     * Creates a writer for a class with the given internal name, such as
+     * {@code plc/project/Main}.
+     */
+    public ClassWriter(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void field(int access, String name, String descriptor) {
+        DataOutputStream out = new DataOutputStream(fields);
+        write(() -> {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(0);
+        });
+        fieldCount++;
+    }
+
+    /**
+     * Starts a method; its code is written by {@link Code#end()}.
+     */
+    public Code method(int access, String name, String descriptor) {
+        return new Code(access, name, descriptor);
+    }
+
+    public byte[] toByteArray() {
+        int thisClass = type(name);
+        int superClass = type("java/lang/Object");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        write(() -> {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(49);
+            out.writeShort(poolSize);
+            for (Object[] constant : constants) {
+                int tag = (Integer) constant[0];
+                out.writeByte(tag);
+                switch (tag) {
+                    case 1: out.writeUTF((String) constant[1]); break;
+                    case 3: out.writeInt((Integer) constant[1]); break;
+                    case 6: out.writeDouble((Double) constant[1]); break;
+                    case 7: case 8: out.writeShort((Integer) constant[1]); break;
+                    default:
+                        out.writeShort((Integer) constant[1]);
+                        out.writeShort((Integer) constant[2]);
+                }
+            }
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);
+            out.writeShort(fieldCount);
+            fields.writeTo(out);
+            out.writeShort(methodCount);
+            methods.writeTo(out);
+            out.writeShort(0);
+        });
+        return bytes.toByteArray();
+    }
+
+    private int constant(String key, int slots, Object... entry) {
+        Integer index = pool.get(key);
+        if (index == null) {
+            index = poolSize;
+            pool.put(key, index);
+            constants.add(entry);
+            poolSize += slots;
+        }
+        return index;
+    }
+
+    private int utf8(String value) {
+        return constant("U" + value, 1, 1, value);
+    }
+
+    private int type(String internalName) {
+        int utf8 = utf8(internalName);
+        return constant("C" + internalName, 1, 7, utf8);
+    }
+
+    private int string(String value) {
+        int utf8 = utf8(value);
+        return constant("S" + value, 1, 8, utf8);
+    }
+
+    private int integer(int value) {
+        return constant("I" + value, 1, 3, value);
+    }
+
+    private int decimal(double value) {
+        return constant("D" + Double.doubleToRawLongBits(value), 2, 6, value);
+    }
+
+    private int member(int tag, String owner, String name, String descriptor) {
+        int type = type(owner);
+        int nameAndType = constant("N" + name + ":" + descriptor, 1, 12, utf8(name), utf8(descriptor));
+        return constant(tag + owner + "." + name + ":" + descriptor, 1, tag, type, nameAndType);
+    }
+
+    /**
+     * Returns the number of stack slots of a value of the descriptor.
+     */
+    static int size(String descriptor) {
+        return descriptor.equals("V") ? 0 : descriptor.equals("D") || descriptor.equals("J") ? 2 : 1;
+    }
+
+    /**
+     * Returns the number of stack slots of the arguments of a method
+     * descriptor.
+     */
+    private static int arguments(String descriptor) {
+        int slots = 0;
+        for (int i = 1; descriptor.charAt(i) != ')'; i++) {
+            char c = descriptor.charAt(i);
+            while (c == '[') {
+                c = descriptor.charAt(++i);
+            }
+            if (c == 'L') {
+                i = descriptor.indexOf(';', i);
+            }
+            slots += c == 'D' || c == 'J' ? 2 : 1;
+        }
+        return slots;
+    }
+
+    private interface Writes {
+
+        void write() throws IOException;
+
+    }
+
+    private static void write(Writes writes) {
+        try {
+            writes.write();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static final class Label {
+
+        private int position = -1;
+        private final List<Integer> references = new ArrayList<>();
+
+    }
+
+    public final class Code {
+
+        private final int access;
+        private final String name;
+        private final String descriptor;
+        private byte[] code = new byte[256];
+        private int size = 0;
+        private int stack = 0;
+        private int maxStack = 0;
+        private int maxLocals;
+        private final List<Label> labels = new ArrayList<>();
+
+        private Code(int access, String name, String descriptor) {
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.maxLocals = arguments(descriptor);
+        }
+
+        /**
+         * Emits an instruction without operands with its stack effect.
+         */
+        public void op(int opcode, int effect) {
+            u1(opcode);
+            stack(effect);
+        }
+
+        public void op(int opcode) {
+            op(opcode, effect(opcode));
+        }
+
+        /**
+         * Emits a load or store of a local, widening the index if needed.
+         */
+        public void local(int opcode, int index) {
+            int slots = opcode == DLOAD || opcode == DSTORE ? 2 : 1;
+            maxLocals = Math.max(maxLocals, index + slots);
+            if (index > 255) {
+                u1(WIDE);
+                u1(opcode);
+                u2(index);
+            } else {
+                u1(opcode);
+                u1(index);
+            }
+            stack(opcode < ISTORE ? slots : -slots);
+        }
+
+        public void integer(int value) {
+            if (value >= -1 && value <= 5) {
+                op(ICONST_0 + value, 1);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                u1(BIPUSH);
+                u1(value);
+                stack(1);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                u1(SIPUSH);
+                u2(value);
+                stack(1);
+            } else {
+                u1(LDC_W);
+                u2(ClassWriter.this.integer(value));
+                stack(1);
+            }
+        }
+
+        public void decimal(double value) {
+            if (Double.doubleToRawLongBits(value) == 0L || value == 1.0) {
+                op(DCONST_0 + (int) value, 2);
+            } else {
+                u1(LDC2_W);
+                u2(ClassWriter.this.decimal(value));
+                stack(2);
+            }
+        }
+
+        public void string(String value) {
+            u1(LDC_W);
+            u2(ClassWriter.this.string(value));
+            stack(1);
+        }
+
+        public void field(int opcode, String owner, String name, String descriptor) {
+            u1(opcode);
+            u2(member(9, owner, name, descriptor));
+            stack(opcode == GETSTATIC ? size(descriptor) : -size(descriptor));
+        }
+
+        public void invoke(int opcode, String owner, String name, String descriptor) {
+            boolean isInterface = opcode == INVOKEINTERFACE;
+            u1(opcode);
+            u2(member(isInterface ? 11 : 10, owner, name, descriptor));
+            int arguments = arguments(descriptor) + (opcode == INVOKESTATIC ? 0 : 1);
+            if (isInterface) {
+                u1(arguments);
+                u1(0);
+            }
+            stack(size(descriptor.substring(descriptor.indexOf(')') + 1)) - arguments);
+        }
+
+        public void type(int opcode, String internalName) {
+            u1(opcode);
+            u2(ClassWriter.this.type(internalName));
+        }
+
+        public void jump(int opcode, Label label) {
+            label.references.add(size);
+            u1(opcode);
+            u2(0);
+            stack(opcode == GOTO ? 0 : opcode >= IF_ICMPEQ ? -2 : -1);
+            if (!labels.contains(label)) {
+                labels.add(label);
+            }
+        }
+
+        public void label(Label label) {
+            label.position = size;
+            if (!labels.contains(label)) {
+                labels.add(label);
+            }
+        }
+
+        /**
+         * Reserves a new local of the given number of slots.
+         */
+        public int allocate(int slots) {
+            maxLocals += slots;
+            return maxLocals - slots;
+        }
+
+        public void end() {
+            for (Label label : labels) {
+                if (label.position < 0) {
+                    throw new IllegalStateException("Unbound label in " + name + ".");
+                }
+                for (int reference : label.references) {
+                    int offset = label.position - reference;
+                    if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                        throw new IllegalStateException("Method " + name + " is too large.");
+                    }
+                    code[reference + 1] = (byte) (offset >> 8);
+                    code[reference + 2] = (byte) offset;
+                }
+            }
+            DataOutputStream out = new DataOutputStream(methods);
+            write(() -> {
+                out.writeShort(access);
+                out.writeShort(utf8(name));
+                out.writeShort(utf8(descriptor));
+                out.writeShort(1);
+                out.writeShort(utf8("Code"));
+                out.writeInt(12 + size);
+                out.writeShort(maxStack);
+                out.writeShort(maxLocals);
+                out.writeInt(size);
+                out.write(code, 0, size);
+                out.writeShort(0);
+                out.writeShort(0);
+            });
+            methodCount++;
+        }
+
+        private void stack(int effect) {
+            stack = Math.max(0, stack + effect);
+            maxStack = Math.max(maxStack, stack);
+        }
+
+        private void u1(int value) {
+            if (size + 1 > code.length) {
+                code = Arrays.copyOf(code, code.length * 2);
+            }
+            code[size++] = (byte) value;
+        }
+
+        private void u2(int value) {
+            u1(value >> 8);
+            u1(value);
+        }
+
+        private int effect(int opcode) {
+            switch (opcode) {
+                case ACONST_NULL: case DUP: case I2L: return 1;
+                case POP: case IADD: case ISUB: case IMUL: case IDIV: case IRETURN: case ARETURN: return -1;
+                case POP2: case DADD: case DSUB: case DMUL: case LDIV: case DDIV: case DRETURN: return -2;
+                case DCMPL: case DCMPG: return -3;
+                case RETURN: return 0;
+                default: throw new IllegalArgumentException("Unknown stack effect of opcode " + opcode + ".");
+            }
+        }
+
+    }
+
+}
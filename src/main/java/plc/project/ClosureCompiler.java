@@ -0,0 +1,676 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+
+import static plc.project.Interpreter.requireType;
+
+/**
+ * Executes an AST with the semantics of the {@link Interpreter} by first
+ * compiling it into a tree of closures. Compilation resolves everything that
+ * does not depend on runtime values once: operators are bound to the closure
+ * implementing them, literals are created up front, and locals of methods and
+ * loop bodies are assigned slots in an array frame instead of being looked up
+ * by name in a {@link Scope}. Names that are not locals (fields and variables
+ * of the parent scope) are looked up on first use and then cached.
+ *
+ * Statement nodes return {@code null} when they complete normally and the
+ * returned value when they execute a RETURN, so returns do not unwind with an
+ * exception. Like the Interpreter, the input does not have to be analyzed.
+ *
+ * When specializing, binary expressions and field accesses compile to nodes
+ * which rewrite themselves based on the values they observe, in the style of
+ * Truffle's self-specializing interpreters; see {@link BinaryNode} and
+ * {@link FieldNode}.
+ */
+public final class ClosureCompiler implements Ast.Visitor<ClosureCompiler.Node> {
+
+    private static final Environment.PlcObject TRUE = Environment.create(true);
+    private static final Environment.PlcObject FALSE = Environment.create(false);
+
+    private final Scope scope;
+    private final boolean specialize;
+
+    private Deque<Map<String, Integer>> blocks = new ArrayDeque<>();
+    private int slots = 0;
+    private int frameSize = 0;
+
+    public ClosureCompiler(Scope parent) {
+        this(parent, false);
+    }
+
+    public ClosureCompiler(Scope parent, boolean specialize) {
+        scope = new Scope(parent);
+        this.specialize = specialize;
+        Interpreter.defineBuiltins(scope);
+    }
+
+    public Scope getScope() {
+        return scope;
+    }
+
+    /**
+     * Compiles and executes an AST, returning the same value as visiting it
+     * with the Interpreter.
+     */
+    public Environment.PlcObject execute(Ast ast) {
+        blocks = new ArrayDeque<>();
+        slots = 0;
+        frameSize = 0;
+        Node node = visit(ast);
+        Environment.PlcObject result = node.execute(new Environment.PlcObject[frameSize]);
+        if (ast instanceof Ast.Stmt) {
+            if (result != null) {
+                throw new RuntimeException("Cannot return outside of a method.");
+            }
+            return Environment.NIL;
+        }
+        return result;
+    }
+
+    @Override
+    public Node visit(Ast.Source ast) {
+        Node[] fields = compile(ast.getFields());
+        Node[] methods = compile(ast.getMethods());
+        return frame -> {
+            for (Node field : fields) {
+                field.execute(frame);
+            }
+            for (Node method : methods) {
+                method.execute(frame);
+            }
+            return scope.lookupFunction("main", 0).invoke(Collections.emptyList());
+        };
+    }
+
+    @Override
+    public Node visit(Ast.Field ast) {
+        String name = ast.getName();
+        Node value = ast.getValue().isPresent() ? visit(ast.getValue().get()) : null;
+        return frame -> {
+            scope.defineVariable(name, value != null ? value.execute(frame) : Environment.NIL);
+            return Environment.NIL;
+        };
+    }
+
+    @Override
+    public Node visit(Ast.Method ast) {
+        Deque<Map<String, Integer>> enclosing = blocks;
+        int enclosingSlots = slots, enclosingFrameSize = frameSize;
+        blocks = new ArrayDeque<>();
+        slots = 0;
+        frameSize = 0;
+        blocks.push(new HashMap<>());
+        ast.getParameters().forEach(this::declare);
+        Node[] statements = compile(ast.getStatements());
+        int size = frameSize;
+        blocks = enclosing;
+        slots = enclosingSlots;
+        frameSize = enclosingFrameSize;
+
+        String name = ast.getName();
+        int arity = ast.getParameters().size();
+        return frame -> {
+            scope.defineFunction(name, arity, arguments -> {
+                Environment.PlcObject[] locals = new Environment.PlcObject[size];
+                for (int i = 0; i < arity; i++) {
+                    locals[i] = arguments.get(i);
+                }
+                Environment.PlcObject result = execute(statements, locals);
+                return result != null ? result : Environment.NIL;
+            });
+            return Environment.NIL;
+        };
+    }
+
+    @Override
+    public Node visit(Ast.Stmt.Expression ast) {
+        Node expression = visit(ast.getExpression());
+        return frame -> {
+            expression.execute(frame);
+            return null;
+        };
+    }
+
+    @Override
+    public Node visit(Ast.Stmt.Declaration ast) {
+        Node value = ast.getValue().isPresent() ? visit(ast.getValue().get()) : null;
+        if (blocks.isEmpty()) {
+            String name = ast.getName();
+            return frame -> {
+                scope.defineVariable(name, value != null ? value.execute(frame) : Environment.NIL);
+                return null;
+            };
+        }
+        int slot = declare(ast.getName());
+        if (value == null) {
+            return frame -> {
+                frame[slot] = Environment.NIL;
+                return null;
+            };
+        }
+        return frame -> {
+            frame[slot] = value.execute(frame);
+            return null;
+        };
+    }
+
+    @Override
+    public Node visit(Ast.Stmt.Assignment ast) {
+        if (!(ast.getReceiver() instanceof Ast.Expr.Access)) {
+            throw new RuntimeException("Non-assignable type. Expected Ast.Expr.Access, Got " + ast.getReceiver().getClass());
+        }
+        Ast.Expr.Access access = (Ast.Expr.Access) ast.getReceiver();
+        Node value = visit(ast.getValue());
+        if (access.getReceiver().isPresent()) {
+            Node receiver = visit(access.getReceiver().get());
+            String name = access.getName();
+            return frame -> {
+                receiver.execute(frame).setField(name, value.execute(frame));
+                return null;
+            };
+        }
+        Integer slot = resolve(access.getName());
+        if (slot != null) {
+            return frame -> {
+                frame[slot] = value.execute(frame);
+                return null;
+            };
+        }
+        Global global = new Global(access.getName());
+        return frame -> {
+            global.get().setValue(value.execute(frame));
+            return null;
+        };
+    }
+
+    @Override
+    public Node visit(Ast.Stmt.If ast) {
+        Node condition = visit(ast.getCondition());
+        Node[] thenStatements = compileBlock(ast.getThenStatements());
+        Node[] elseStatements = compileBlock(ast.getElseStatements());
+        return frame -> execute(requireType(Boolean.class, condition.execute(frame)) ? thenStatements : elseStatements, frame);
+    }
+
+    @Override
+    public Node visit(Ast.Stmt.For ast) {
+        Node value = visit(ast.getValue());
+        begin();
+        int slot = declare(ast.getName());
+        Node[] statements = compile(ast.getStatements());
+        end();
+        return frame -> {
+            for (Object element : requireType(Iterable.class, value.execute(frame))) {
+                frame[slot] = (Environment.PlcObject) element;
+                Environment.PlcObject result = execute(statements, frame);
+                if (result != null) {
+                    return result;
+                }
+            }
+            return null;
+        };
+    }
+
+    @Override
+    public Node visit(Ast.Stmt.While ast) {
+        Node condition = visit(ast.getCondition());
+        Node[] statements = compileBlock(ast.getStatements());
+        return frame -> {
+            while (requireType(Boolean.class, condition.execute(frame))) {
+                Environment.PlcObject result = execute(statements, frame);
+                if (result != null) {
+                    return result;
+                }
+            }
+            return null;
+        };
+    }
+
+    @Override
+    public Node visit(Ast.Stmt.Return ast) {
+        return visit(ast.getValue());
+    }
+
+    @Override
+    public Node visit(Ast.Expr.Literal ast) {
+        Environment.PlcObject value = ast.getLiteral() == null ? Environment.NIL : Environment.create(ast.getLiteral());
+        return frame -> value;
+    }
+
+    @Override
+    public Node visit(Ast.Expr.Group ast) {
+        return visit(ast.getExpression());
+    }
+
+    @Override
+    public Node visit(Ast.Expr.Binary ast) {
+        Node left = visit(ast.getLeft());
+        Node right = visit(ast.getRight());
+        switch (ast.getOperator()) {
+            case "AND":
+                return frame -> bool(requireType(Boolean.class, left.execute(frame)) && requireType(Boolean.class, right.execute(frame)));
+            case "OR":
+                return frame -> bool(requireType(Boolean.class, left.execute(frame)) || requireType(Boolean.class, right.execute(frame)));
+        }
+        if (specialize) {
+            return new BinaryNode(ast.getOperator(), left, right);
+        }
+        BinaryOperator<Environment.PlcObject> operation = generic(ast.getOperator());
+        return frame -> operation.apply(left.execute(frame), right.execute(frame));
+    }
+
+    @Override
+    public Node visit(Ast.Expr.Access ast) {
+        if (ast.getReceiver().isPresent()) {
+            Node receiver = visit(ast.getReceiver().get());
+            String name = ast.getName();
+            if (specialize) {
+                return new FieldNode(receiver, name);
+            }
+            return frame -> receiver.execute(frame).getField(name).getValue();
+        }
+        Integer slot = resolve(ast.getName());
+        if (slot != null) {
+            return frame -> frame[slot];
+        }
+        Global global = new Global(ast.getName());
+        return frame -> global.get().getValue();
+    }
+
+    @Override
+    public Node visit(Ast.Expr.Function ast) {
+        Node[] arguments = compile(ast.getArguments());
+        String name = ast.getName();
+        if (ast.getReceiver().isPresent()) {
+            Node receiver = visit(ast.getReceiver().get());
+            return frame -> {
+                List<Environment.PlcObject> values = evaluate(arguments, frame);
+                return receiver.execute(frame).callMethod(name, values);
+            };
+        }
+        Callee callee = new Callee(name, arguments.length);
+        return frame -> callee.get().invoke(evaluate(arguments, frame));
+    }
+
+    private Node[] compile(List<? extends Ast> asts) {
+        Node[] nodes = new Node[asts.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = visit(asts.get(i));
+        }
+        return nodes;
+    }
+
+    /**
+     * Compiles statements with their own locals, which only exist inside
+     * methods; outside of one they are defined in the scope as by the
+     * Interpreter.
+     */
+    private Node[] compileBlock(List<Ast.Stmt> statements) {
+        if (blocks.isEmpty()) {
+            return compile(statements);
+        }
+        begin();
+        Node[] nodes = compile(statements);
+        end();
+        return nodes;
+    }
+
+    private void begin() {
+        blocks.push(new HashMap<>());
+    }
+
+    /**
+     * Ends the innermost block, reusing the slots of its locals.
+     */
+    private void end() {
+        slots -= blocks.pop().size();
+    }
+
+    private int declare(String name) {
+        if (blocks.peek().containsKey(name)) {
+            throw new RuntimeException("The variable " + name + " is already defined in this scope.");
+        }
+        blocks.peek().put(name, slots);
+        frameSize = Math.max(frameSize, slots + 1);
+        return slots++;
+    }
+
+    private Integer resolve(String name) {
+        for (Map<String, Integer> block : blocks) {
+            if (block.containsKey(name)) {
+                return block.get(name);
+            }
+        }
+        return null;
+    }
+
+    private static Environment.PlcObject execute(Node[] statements, Environment.PlcObject[] frame) {
+        for (Node statement : statements) {
+            Environment.PlcObject result = statement.execute(frame);
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    private static List<Environment.PlcObject> evaluate(Node[] arguments, Environment.PlcObject[] frame) {
+        List<Environment.PlcObject> values = new ArrayList<>(arguments.length);
+        for (Node argument : arguments) {
+            values.add(argument.execute(frame));
+        }
+        return values;
+    }
+
+    /**
+     * Returns the operation of a binary operator other than AND and OR, which
+     * accepts operands of any type.
+     */
+    static BinaryOperator<Environment.PlcObject> generic(String operator) {
+        switch (operator) {
+            case "<":
+                return (left, right) -> bool(compare(left, right) < 0);
+            case "<=":
+                return (left, right) -> bool(compare(left, right) <= 0);
+            case ">":
+                return (left, right) -> bool(compare(left, right) > 0);
+            case ">=":
+                return (left, right) -> bool(compare(left, right) >= 0);
+            case "==":
+                return (left, right) -> bool(compare(left, right) == 0);
+            case "!=":
+                return (left, right) -> bool(compare(left, right) != 0);
+            case "+":
+                return ClosureCompiler::add;
+            case "-":
+                return (left, right) -> arithmetic(left, right, BigInteger::subtract, BigDecimal::subtract);
+            case "*":
+                return (left, right) -> arithmetic(left, right, BigInteger::multiply, BigDecimal::multiply);
+            case "/":
+                return ClosureCompiler::divide;
+            default:
+                return (left, right) -> Environment.NIL;
+        }
+    }
+
+    static Environment.PlcObject bool(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+
+    @SuppressWarnings("unchecked")
+    static int compare(Environment.PlcObject left, Environment.PlcObject right) {
+        return requireType(Comparable.class, left).compareTo(requireType(Comparable.class, right));
+    }
+
+    static Environment.PlcObject add(Environment.PlcObject left, Environment.PlcObject right) {
+        if (left.getValue() instanceof String) {
+            return Environment.create((String) left.getValue() + right.getValue());
+        } else if (right.getValue() instanceof String) {
+            return Environment.create(left.getValue() + (String) right.getValue());
+        }
+        return arithmetic(left, right, BigInteger::add, BigDecimal::add);
+    }
+
+    static Environment.PlcObject arithmetic(Environment.PlcObject left, Environment.PlcObject right,
+                                            BinaryOperator<BigInteger> integer, BinaryOperator<BigDecimal> decimal) {
+        if (left.getValue() instanceof BigInteger || right.getValue() instanceof BigInteger) {
+            return Environment.create(integer.apply(requireType(BigInteger.class, left), requireType(BigInteger.class, right)));
+        } else if (left.getValue() instanceof BigDecimal || right.getValue() instanceof BigDecimal) {
+            return Environment.create(decimal.apply(requireType(BigDecimal.class, left), requireType(BigDecimal.class, right)));
+        }
+        throw new RuntimeException("Expected BigInteger or BigDecimal. Got " + left.getValue().getClass() + " and " + right.getValue().getClass());
+    }
+
+    static Environment.PlcObject divide(Environment.PlcObject left, Environment.PlcObject right) {
+        if (left.getValue() instanceof BigInteger) {
+            return Environment.create(((BigInteger) left.getValue()).divide(requireType(BigInteger.class, right)));
+        } else if (left.getValue() instanceof BigDecimal) {
+            return Environment.create(((BigDecimal) left.getValue()).divide(requireType(BigDecimal.class, right), RoundingMode.HALF_UP));
+        }
+        return Environment.NIL;
+    }
+
+    /**
+     * An executable node. Expressions return their value; statements return
+     * {@code null}, or the value of a RETURN they executed.
+     */
+    @FunctionalInterface
+    public interface Node {
+
+        Environment.PlcObject execute(Environment.PlcObject[] frame);
+
+    }
+
+    /**
+     * A binary expression which specializes its operation on the classes of
+     * the operands of its first evaluation. The specialized operation only
+     * checks that later operands have the same classes; when they do not, the
+     * node rewrites itself to the generic operation and keeps it from then on.
+     */
+    static final class BinaryNode implements Node {
+
+        private final String operator;
+        private final Node left;
+        private final Node right;
+        private Specialization specialization = null;
+
+        private BinaryNode(String operator, Node left, Node right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        /**
+         * Returns the name of the current specialization, such as
+         * {@code Integer +}, {@code generic} or {@code uninitialized}.
+         */
+        String getSpecialization() {
+            return specialization == null ? "uninitialized" : specialization.name;
+        }
+
+        @Override
+        public Environment.PlcObject execute(Environment.PlcObject[] frame) {
+            Environment.PlcObject left = this.left.execute(frame), right = this.right.execute(frame);
+            Specialization specialization = this.specialization;
+            if (specialization == null) {
+                specialization = this.specialization = Specialization.of(operator, left.getValue(), right.getValue());
+            }
+            Environment.PlcObject result = specialization.apply(left, right);
+            if (result == null) {
+                specialization = this.specialization = Specialization.generic(operator);
+                result = specialization.apply(left, right);
+            }
+            return result;
+        }
+
+    }
+
+    private abstract static class Specialization {
+
+        private final String name;
+
+        private Specialization(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Applies the operation, or returns {@code null} if the operands are
+         * not of the specialized classes.
+         */
+        abstract Environment.PlcObject apply(Environment.PlcObject left, Environment.PlcObject right);
+
+        static Specialization of(String operator, Object left, Object right) {
+            if (operator.equals("+") && left instanceof String) {
+                return new Specialization("String +") {
+                    @Override
+                    Environment.PlcObject apply(Environment.PlcObject left, Environment.PlcObject right) {
+                        return left.getValue() instanceof String ? Environment.create((String) left.getValue() + right.getValue()) : null;
+                    }
+                };
+            } else if (operator.equals("+") && right instanceof String) {
+                return new Specialization("+ String") {
+                    @Override
+                    Environment.PlcObject apply(Environment.PlcObject left, Environment.PlcObject right) {
+                        return right.getValue() instanceof String ? Environment.create(left.getValue() + (String) right.getValue()) : null;
+                    }
+                };
+            }
+            Specialization specialization = null;
+            if (left instanceof BigInteger && right instanceof BigInteger) {
+                specialization = typed("Integer", operator, BigInteger.class, BigInteger::add, BigInteger::subtract, BigInteger::multiply, BigInteger::divide);
+            } else if (left instanceof BigDecimal && right instanceof BigDecimal) {
+                specialization = typed("Decimal", operator, BigDecimal.class, BigDecimal::add, BigDecimal::subtract, BigDecimal::multiply,
+                        (l, r) -> l.divide(r, RoundingMode.HALF_UP));
+            } else if (left instanceof Character && right instanceof Character) {
+                specialization = typed("Character", operator, Character.class, null, null, null, null);
+            } else if (left instanceof String && right instanceof String) {
+                specialization = typed("String", operator, String.class, null, null, null, null);
+            } else if (left instanceof Boolean && right instanceof Boolean) {
+                specialization = typed("Boolean", operator, Boolean.class, null, null, null, null);
+            }
+            return specialization != null ? specialization : generic(operator);
+        }
+
+        static Specialization generic(String operator) {
+            BinaryOperator<Environment.PlcObject> operation = ClosureCompiler.generic(operator);
+            return new Specialization("generic") {
+                @Override
+                Environment.PlcObject apply(Environment.PlcObject left, Environment.PlcObject right) {
+                    return operation.apply(left, right);
+                }
+            };
+        }
+
+        /**
+         * Returns the specialization of an operator for operands of the given
+         * class, or {@code null} if it has none (such as arithmetic on a
+         * class without arithmetic operations).
+         */
+        private static <T extends Comparable<T>> Specialization typed(String name, String operator, Class<T> type,
+                BinaryOperator<T> add, BinaryOperator<T> subtract, BinaryOperator<T> multiply, BinaryOperator<T> divide) {
+            BiFunction<T, T, Environment.PlcObject> operation;
+            switch (operator) {
+                case "<": operation = (l, r) -> bool(l.compareTo(r) < 0); break;
+                case "<=": operation = (l, r) -> bool(l.compareTo(r) <= 0); break;
+                case ">": operation = (l, r) -> bool(l.compareTo(r) > 0); break;
+                case ">=": operation = (l, r) -> bool(l.compareTo(r) >= 0); break;
+                case "==": operation = (l, r) -> bool(l.compareTo(r) == 0); break;
+                case "!=": operation = (l, r) -> bool(l.compareTo(r) != 0); break;
+                case "+": operation = add == null ? null : (l, r) -> Environment.create(add.apply(l, r)); break;
+                case "-": operation = subtract == null ? null : (l, r) -> Environment.create(subtract.apply(l, r)); break;
+                case "*": operation = multiply == null ? null : (l, r) -> Environment.create(multiply.apply(l, r)); break;
+                case "/": operation = divide == null ? null : (l, r) -> Environment.create(divide.apply(l, r)); break;
+                default: operation = null;
+            }
+            if (operation == null) {
+                return null;
+            }
+            return new Specialization(name + " " + operator) {
+                @Override
+                @SuppressWarnings("unchecked")
+                Environment.PlcObject apply(Environment.PlcObject left, Environment.PlcObject right) {
+                    Object l = left.getValue(), r = right.getValue();
+                    return l.getClass() == type && r.getClass() == type ? operation.apply((T) l, (T) r) : null;
+                }
+            };
+        }
+
+    }
+
+    /**
+     * An access of a field of an object which caches the variable of the
+     * first receiver it sees. A different receiver rewrites the node to look
+     * up the field every time.
+     */
+    static final class FieldNode implements Node {
+
+        private final Node receiver;
+        private final String name;
+        private Environment.PlcObject cachedReceiver = null;
+        private Environment.Variable cachedVariable = null;
+        private boolean generic = false;
+
+        private FieldNode(Node receiver, String name) {
+            this.receiver = receiver;
+            this.name = name;
+        }
+
+        String getSpecialization() {
+            return generic ? "generic" : cachedReceiver == null ? "uninitialized" : "monomorphic";
+        }
+
+        @Override
+        public Environment.PlcObject execute(Environment.PlcObject[] frame) {
+            Environment.PlcObject object = receiver.execute(frame);
+            if (object == cachedReceiver) {
+                return cachedVariable.getValue();
+            }
+            Environment.Variable variable = object.getField(name);
+            if (!generic && cachedReceiver == null) {
+                cachedReceiver = object;
+                cachedVariable = variable;
+            } else {
+                generic = true;
+                cachedReceiver = null;
+                cachedVariable = null;
+            }
+            return variable.getValue();
+        }
+
+    }
+
+    /**
+     * A variable of the scope, looked up on first use.
+     */
+    private final class Global {
+
+        private final String name;
+        private Environment.Variable variable;
+
+        private Global(String name) {
+            this.name = name;
+        }
+
+        private Environment.Variable get() {
+            if (variable == null) {
+                variable = scope.lookupVariable(name);
+            }
+            return variable;
+        }
+
+    }
+
+    /**
+     * A function of the scope, looked up on first call.
+     */
+    private final class Callee {
+
+        private final String name;
+        private final int arity;
+        private Environment.Function function;
+
+        private Callee(String name, int arity) {
+            this.name = name;
+            this.arity = arity;
+        }
+
+        private Environment.Function get() {
+            if (function == null) {
+                function = scope.lookupFunction(name, arity);
+            }
+            return function;
+        }
+
+    }
+
+}
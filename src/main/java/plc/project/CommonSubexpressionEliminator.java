@@ -0,0 +1,214 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Computes repeated pure expressions once per basic block, storing them in a
+ * temporary {@code $cseN} declared before the statement of their first
+ * occurrence.
+ *
+ * A basic block is a run of statements up to (and including the condition or
+ * value of) an IF, WHILE or FOR; WHILE conditions and nested statements form
+ * blocks of their own. Binary expressions and field accesses on an object are
+ * numbered by structure. A number is forgotten when a variable it reads is
+ * assigned or redeclared, when a field of the same name is assigned, or, if it
+ * reads a field or a global, when a function is called. Whether a variable
+ * is a local is decided at each read, so a field read before a local of the
+ * same name is declared is a global.
+ */
+public final class CommonSubexpressionEliminator extends Rewriter {
+
+    private final Map<Ast.Expr, Environment.Variable> temporaries = new IdentityHashMap<>();
+    private Set<Environment.Variable> locals = Collections.newSetFromMap(new IdentityHashMap<>());
+    private int count = 0;
+
+    @Override
+    public Ast visit(Ast.Method ast) {
+        locals = LoopInvariantMover.locals(ast);
+        count = 0;
+        return super.visit(ast);
+    }
+
+    @Override
+    protected List<Ast.Stmt> rewrite(List<Ast.Stmt> statements) {
+        List<Ast.Stmt> result = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < statements.size(); i++) {
+            Ast.Stmt statement = statements.get(i);
+            if (statement instanceof Ast.Stmt.If || statement instanceof Ast.Stmt.While || statement instanceof Ast.Stmt.For || i == statements.size() - 1) {
+                result.addAll(rewriteBlock(statements.subList(start, i + 1)));
+                start = i + 1;
+            }
+        }
+        for (int i = 0; i < statements.size(); i++) {
+            if (result.size() != statements.size() || result.get(i) != statements.get(i)) {
+                return result;
+            }
+        }
+        return statements;
+    }
+
+    @Override
+    protected Ast.Expr rewrite(Ast.Expr expression) {
+        if (temporaries.containsKey(expression)) {
+            Environment.Variable variable = temporaries.get(expression);
+            Ast.Expr.Access access = new Ast.Expr.Access(Optional.empty(), variable.getName());
+            access.setVariable(variable);
+            return access;
+        }
+        return super.rewrite(expression);
+    }
+
+    private List<Ast.Stmt> rewriteBlock(List<Ast.Stmt> block) {
+        Numbering numbering = new Numbering();
+        for (int i = 0; i < block.size(); i++) {
+            numbering.statement = i;
+            numbering.called = false;
+            numbering.visit(block.get(i));
+        }
+
+        List<List<Ast.Stmt.Declaration>> declarations = new ArrayList<>();
+        block.forEach(statement -> declarations.add(new ArrayList<>()));
+        for (Value value : numbering.values) {
+            if (value.occurrences.size() > 1 && value.hoistable) {
+                String name = "$cse" + count++;
+                Environment.Variable variable = new Environment.Variable(name, name, value.occurrences.get(0).getType(), Environment.NIL);
+                value.occurrences.forEach(occurrence -> temporaries.put(occurrence, variable));
+                Ast.Stmt.Declaration declaration = new Ast.Stmt.Declaration(name, Optional.empty(), Optional.of(value.occurrences.get(0)));
+                declaration.setVariable(variable);
+                declarations.get(value.statement).add(declaration);
+            }
+        }
+
+        List<Ast.Stmt> result = new ArrayList<>();
+        for (int i = 0; i < block.size(); i++) {
+            for (Ast.Stmt.Declaration declaration : declarations.get(i)) {
+                // Rewrites nested temporaries, but not the value itself.
+                Ast.Expr value = (Ast.Expr) visit(declaration.getValue().get());
+                Ast.Stmt.Declaration rewritten = new Ast.Stmt.Declaration(declaration.getName(), Optional.empty(), Optional.of(value));
+                rewritten.setVariable(declaration.getVariable());
+                result.add(rewritten);
+            }
+            result.add((Ast.Stmt) visit(block.get(i)));
+        }
+        return result;
+    }
+
+    /**
+     * A value number: the occurrences of a structurally equal expression
+     * while none of its inputs changed.
+     */
+    private static final class Value {
+
+        private final List<Ast.Expr> occurrences = new ArrayList<>();
+        private final Set<String> names = new HashSet<>();
+        private final Set<String> fields = new HashSet<>();
+        private final int statement;
+        private final boolean global;
+        private final boolean hoistable;
+
+        private Value(Ast.Expr expression, int statement, Set<Environment.Variable> locals, boolean called) {
+            occurrences.add(expression);
+            this.statement = statement;
+            List<Ast.Expr.Access> reads = new ArrayList<>();
+            new Rewriter() {
+                @Override
+                public Ast visit(Ast.Expr.Access ast) {
+                    if (ast.getReceiver().isPresent()) {
+                        fields.add(ast.getName());
+                    } else {
+                        names.add(ast.getName());
+                        reads.add(ast);
+                    }
+                    return super.visit(ast);
+                }
+            }.visit(expression);
+            this.global = !fields.isEmpty() || !reads.stream().allMatch(read -> locals.contains(read.getVariable()));
+            // Calls earlier in the statement may change it before this point.
+            this.hoistable = !(called && global);
+        }
+
+    }
+
+    /**
+     * Numbers the expressions of a block in evaluation order.
+     */
+    private final class Numbering extends Rewriter {
+
+        private final List<Value> values = new ArrayList<>();
+        private final List<Value> available = new ArrayList<>();
+        private int statement = 0;
+        private boolean called = false;
+
+        @Override
+        public Ast visit(Ast.Stmt.Declaration ast) {
+            super.visit(ast);
+            available.removeIf(value -> value.names.contains(ast.getName()));
+            return ast;
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.Assignment ast) {
+            Ast.Expr.Access receiver = (Ast.Expr.Access) ast.getReceiver();
+            receiver.getReceiver().ifPresent(this::rewrite);
+            rewrite(ast.getValue());
+            available.removeIf(value -> (receiver.getReceiver().isPresent() ? value.fields : value.names).contains(receiver.getName()));
+            return ast;
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.If ast) {
+            rewrite(ast.getCondition());
+            return ast;
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.For ast) {
+            rewrite(ast.getValue());
+            return ast;
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.While ast) {
+            return ast;
+        }
+
+        @Override
+        protected Ast.Expr rewrite(Ast.Expr expression) {
+            boolean candidate = (expression instanceof Ast.Expr.Binary || expression instanceof Ast.Expr.Access && ((Ast.Expr.Access) expression).getReceiver().isPresent())
+                    && DeadCodeEliminator.isPure(expression);
+            if (candidate) {
+                for (Value value : available) {
+                    if (value.occurrences.get(0).equals(expression)) {
+                        value.occurrences.add(expression);
+                        return expression;
+                    }
+                }
+            }
+            super.rewrite(expression);
+            if (candidate) {
+                Value value = new Value(expression, statement, locals, called);
+                values.add(value);
+                available.add(value);
+            }
+            return expression;
+        }
+
+        @Override
+        public Ast visit(Ast.Expr.Function ast) {
+            super.visit(ast);
+            called = true;
+            available.removeIf(value -> value.global);
+            return ast;
+        }
+
+    }
+
+}
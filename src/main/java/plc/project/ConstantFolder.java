@@ -0,0 +1,200 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Folds binary expressions over literals and propagates locals that are
+ * initialized with a literal and never reassigned. Values are computed the
+ * same way as in the {@link Interpreter}, and expressions that would fail at
+ * runtime (such as a division by zero) are left alone so they still do.
+ *
+ * Integer results outside of the range of an {@code int} are not folded,
+ * since the {@link Generator} emits Integer literals as Java ints.
+ */
+public final class ConstantFolder extends Rewriter {
+
+    private static final BigInteger INT_MIN = BigInteger.valueOf(Integer.MIN_VALUE);
+    private static final BigInteger INT_MAX = BigInteger.valueOf(Integer.MAX_VALUE);
+
+    private Set<String> immutable = new HashSet<>();
+    private Map<String, Ast.Expr.Literal> constants = new HashMap<>();
+
+    @Override
+    public Ast visit(Ast.Method ast) {
+        immutable = new ImmutableLocals(ast).getNames();
+        constants = new HashMap<>();
+        return super.visit(ast);
+    }
+
+    @Override
+    protected List<Ast.Stmt> rewrite(List<Ast.Stmt> statements) {
+        Map<String, Ast.Expr.Literal> enclosing = constants;
+        constants = new HashMap<>(enclosing);
+        try {
+            return super.rewrite(statements);
+        } finally {
+            constants = enclosing;
+        }
+    }
+
+    @Override
+    public Ast visit(Ast.Stmt.Declaration ast) {
+        Ast.Stmt.Declaration declaration = (Ast.Stmt.Declaration) super.visit(ast);
+        if (immutable.contains(ast.getName()) && declaration.getValue().isPresent() && declaration.getValue().get() instanceof Ast.Expr.Literal) {
+            constants.put(ast.getName(), (Ast.Expr.Literal) declaration.getValue().get());
+        }
+        return declaration;
+    }
+
+    @Override
+    public Ast visit(Ast.Expr.Binary ast) {
+        Ast.Expr.Binary binary = (Ast.Expr.Binary) super.visit(ast);
+        if (!(binary.getLeft() instanceof Ast.Expr.Literal)) {
+            return binary;
+        }
+        Object left = ((Ast.Expr.Literal) binary.getLeft()).getLiteral();
+
+        // AND/OR never evaluate the right operand once the left decides.
+        if (binary.getOperator().equals("AND") && left instanceof Boolean) {
+            return (Boolean) left ? binary.getRight() : binary.getLeft();
+        } else if (binary.getOperator().equals("OR") && left instanceof Boolean) {
+            return (Boolean) left ? binary.getLeft() : binary.getRight();
+        }
+
+        if (!(binary.getRight() instanceof Ast.Expr.Literal)) {
+            return binary;
+        }
+        Object value = evaluate(binary.getOperator(), left, ((Ast.Expr.Literal) binary.getRight()).getLiteral());
+        if (value == null || value instanceof BigInteger && (((BigInteger) value).compareTo(INT_MIN) < 0 || ((BigInteger) value).compareTo(INT_MAX) > 0)) {
+            return binary;
+        }
+        Ast.Expr.Literal literal = new Ast.Expr.Literal(value);
+        literal.setType(binary.getType());
+        return literal;
+    }
+
+    @Override
+    public Ast visit(Ast.Expr.Access ast) {
+        if (!ast.getReceiver().isPresent() && constants.containsKey(ast.getName())) {
+            Ast.Expr.Literal constant = constants.get(ast.getName());
+            Ast.Expr.Literal literal = new Ast.Expr.Literal(constant.getLiteral());
+            literal.setType(constant.getType());
+            return literal;
+        }
+        return super.visit(ast);
+    }
+
+    /**
+     * Evaluates a binary operator on two literal values, returning
+     * {@code null} if it cannot be folded.
+     */
+    @SuppressWarnings("unchecked")
+    static Object evaluate(String operator, Object left, Object right) {
+        if (left == null || right == null) {
+            return null;
+        }
+        if (operator.equals("+") && (left instanceof String || right instanceof String)) {
+            return left.toString() + right;
+        }
+        switch (operator) {
+            case "AND":
+                return left instanceof Boolean && right instanceof Boolean ? (Boolean) left && (Boolean) right : null;
+            case "OR":
+                return left instanceof Boolean && right instanceof Boolean ? (Boolean) left || (Boolean) right : null;
+            case "<":
+            case "<=":
+            case ">":
+            case ">=":
+            case "==":
+            case "!=":
+                if (left.getClass() != right.getClass() || !(left instanceof Comparable)) {
+                    return null;
+                }
+                int comparison = ((Comparable<Object>) left).compareTo(right);
+                switch (operator) {
+                    case "<": return comparison < 0;
+                    case "<=": return comparison <= 0;
+                    case ">": return comparison > 0;
+                    case ">=": return comparison >= 0;
+                    case "==": return comparison == 0;
+                    default: return comparison != 0;
+                }
+            case "+":
+            case "-":
+            case "*":
+            case "/":
+                if (left instanceof BigInteger && right instanceof BigInteger) {
+                    BigInteger l = (BigInteger) left, r = (BigInteger) right;
+                    switch (operator) {
+                        case "+": return l.add(r);
+                        case "-": return l.subtract(r);
+                        case "*": return l.multiply(r);
+                        default: return r.signum() == 0 ? null : l.divide(r);
+                    }
+                } else if (left instanceof BigDecimal && right instanceof BigDecimal) {
+                    BigDecimal l = (BigDecimal) left, r = (BigDecimal) right;
+                    switch (operator) {
+                        case "+": return l.add(r);
+                        case "-": return l.subtract(r);
+                        case "*": return l.multiply(r);
+                        default: return r.signum() == 0 ? null : l.divide(r, RoundingMode.HALF_UP);
+                    }
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Finds the locals of a method that are declared exactly once, with a
+     * value, and never assigned. Parameters and loop variables are excluded.
+     */
+    private static final class ImmutableLocals extends Rewriter {
+
+        private final Set<String> declared = new HashSet<>();
+        private final Set<String> excluded = new HashSet<>();
+
+        private ImmutableLocals(Ast.Method ast) {
+            excluded.addAll(ast.getParameters());
+            ast.getStatements().forEach(this::visit);
+        }
+
+        private Set<String> getNames() {
+            Set<String> names = new HashSet<>(declared);
+            names.removeAll(excluded);
+            return names;
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.Declaration ast) {
+            if (!ast.getValue().isPresent() || !declared.add(ast.getName())) {
+                excluded.add(ast.getName());
+            }
+            return super.visit(ast);
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.Assignment ast) {
+            if (ast.getReceiver() instanceof Ast.Expr.Access && !((Ast.Expr.Access) ast.getReceiver()).getReceiver().isPresent()) {
+                excluded.add(((Ast.Expr.Access) ast.getReceiver()).getName());
+            }
+            return super.visit(ast);
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.For ast) {
+            excluded.add(ast.getName());
+            return super.visit(ast);
+        }
+
+    }
+
+}
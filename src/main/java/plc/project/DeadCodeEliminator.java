@@ -0,0 +1,183 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Removes statements that can never execute or whose results are never used:
+ *
+ *  - statements following a RETURN (or an IF returning in both branches),
+ *  - IF statements with a literal condition, replaced by the taken branch,
+ *  - WHILE statements with a literal FALSE condition,
+ *  - declarations of locals that are never read, along with assignments to
+ *    them, if none of their values have effects.
+ *
+ * Effects are judged conservatively: any function call (including
+ * {@code print}) or division, which may fail, makes an expression effectful.
+ * Run after the {@link ConstantFolder} so folded conditions are eliminated.
+ */
+public final class DeadCodeEliminator extends Rewriter {
+
+    @Override
+    protected List<Ast.Stmt> rewrite(List<Ast.Stmt> statements) {
+        List<Ast.Stmt> result = new ArrayList<>();
+        boolean changed = false;
+        for (int i = 0; i < statements.size(); i++) {
+            Ast.Stmt rewritten = (Ast.Stmt) visit(statements.get(i));
+            if (rewritten instanceof Ast.Stmt.If && ((Ast.Stmt.If) rewritten).getCondition() instanceof Ast.Expr.Literal) {
+                Ast.Stmt.If branch = (Ast.Stmt.If) rewritten;
+                boolean condition = (Boolean) ((Ast.Expr.Literal) branch.getCondition()).getLiteral();
+                result.addAll(condition ? branch.getThenStatements() : branch.getElseStatements());
+                changed = true;
+            } else if (rewritten instanceof Ast.Stmt.While && Boolean.FALSE.equals(valueOf(((Ast.Stmt.While) rewritten).getCondition()))) {
+                changed = true;
+            } else {
+                result.add(rewritten);
+                changed |= rewritten != statements.get(i);
+            }
+            if (!result.isEmpty() && returns(result.get(result.size() - 1))) {
+                changed |= i + 1 < statements.size();
+                break;
+            }
+        }
+
+        for (int i = 0; i < result.size(); i++) {
+            if (result.get(i) instanceof Ast.Stmt.Declaration && isDeadStore((Ast.Stmt.Declaration) result.get(i), result.subList(i + 1, result.size()))) {
+                String name = ((Ast.Stmt.Declaration) result.get(i)).getName();
+                List<Ast.Stmt> following = new AssignmentRemover(name).rewrite(result.subList(i + 1, result.size()));
+                List<Ast.Stmt> remaining = new ArrayList<>(result.subList(0, i));
+                remaining.addAll(following);
+                result = remaining;
+                changed = true;
+                i--;
+            }
+        }
+        return changed ? result : statements;
+    }
+
+    private static Object valueOf(Ast.Expr expression) {
+        return expression instanceof Ast.Expr.Literal ? ((Ast.Expr.Literal) expression).getLiteral() : null;
+    }
+
+    private static boolean returns(Ast.Stmt statement) {
+        if (statement instanceof Ast.Stmt.Return) {
+            return true;
+        } else if (statement instanceof Ast.Stmt.If) {
+            Ast.Stmt.If branch = (Ast.Stmt.If) statement;
+            return !branch.getThenStatements().isEmpty() && returns(branch.getThenStatements().get(branch.getThenStatements().size() - 1))
+                    && !branch.getElseStatements().isEmpty() && returns(branch.getElseStatements().get(branch.getElseStatements().size() - 1));
+        }
+        return false;
+    }
+
+    private static boolean isDeadStore(Ast.Stmt.Declaration declaration, List<Ast.Stmt> following) {
+        if (declaration.getValue().isPresent() && !isPure(declaration.getValue().get())) {
+            return false;
+        }
+        LocalUses uses = new LocalUses(declaration.getName());
+        following.forEach(uses::visit);
+        return !uses.read && !uses.shadowed && !uses.storeEffects;
+    }
+
+    /**
+     * Returns true if evaluating the expression cannot have effects or fail.
+     */
+    static boolean isPure(Ast.Expr expression) {
+        LocalUses uses = new LocalUses(null);
+        uses.visit(expression);
+        return !uses.effects;
+    }
+
+    /**
+     * Scans statements following the declaration of a local for reads of it,
+     * declarations shadowing it, and assignments to it with effects. It also
+     * records whether anything it visited has effects.
+     */
+    private static final class LocalUses extends Rewriter {
+
+        private final String name;
+        private boolean read = false;
+        private boolean shadowed = false;
+        private boolean effects = false;
+        private boolean storeEffects = false;
+
+        private LocalUses(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.Declaration ast) {
+            shadowed |= ast.getName().equals(name);
+            return super.visit(ast);
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.Assignment ast) {
+            if (ast.getReceiver() instanceof Ast.Expr.Access && isLocal((Ast.Expr.Access) ast.getReceiver())) {
+                storeEffects |= !isPure(ast.getValue());
+                return ast;
+            }
+            return super.visit(ast);
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.For ast) {
+            shadowed |= ast.getName().equals(name);
+            return super.visit(ast);
+        }
+
+        @Override
+        public Ast visit(Ast.Expr.Binary ast) {
+            effects |= ast.getOperator().equals("/");
+            return super.visit(ast);
+        }
+
+        @Override
+        public Ast visit(Ast.Expr.Access ast) {
+            read |= isLocal(ast);
+            return super.visit(ast);
+        }
+
+        @Override
+        public Ast visit(Ast.Expr.Function ast) {
+            effects = true;
+            return super.visit(ast);
+        }
+
+        private boolean isLocal(Ast.Expr.Access ast) {
+            return !ast.getReceiver().isPresent() && ast.getName().equals(name);
+        }
+
+    }
+
+    /**
+     * Removes assignments to a local whose declaration was removed.
+     */
+    private static final class AssignmentRemover extends Rewriter {
+
+        private final String name;
+
+        private AssignmentRemover(String name) {
+            this.name = name;
+        }
+
+        @Override
+        protected List<Ast.Stmt> rewrite(List<Ast.Stmt> statements) {
+            List<Ast.Stmt> result = new ArrayList<>();
+            for (Ast.Stmt statement : statements) {
+                if (!(statement instanceof Ast.Stmt.Assignment && isLocal(((Ast.Stmt.Assignment) statement).getReceiver()))) {
+                    result.add((Ast.Stmt) visit(statement));
+                }
+            }
+            return result;
+        }
+
+        private boolean isLocal(Ast.Expr receiver) {
+            return receiver instanceof Ast.Expr.Access
+                    && !((Ast.Expr.Access) receiver).getReceiver().isPresent()
+                    && ((Ast.Expr.Access) receiver).getName().equals(name);
+        }
+
+    }
+
+}
@@ -3,14 +3,31 @@ package plc.project;
 import java.io.PrintWriter;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
 
 public final class Generator implements Ast.Visitor<Void> {
 
     private final PrintWriter writer;
+    private final boolean checked;
     private int indent = 0;
+    private Ast.Method method = null;
+    private boolean ranges = false;
+    private boolean steps = false;
 
     public Generator(PrintWriter writer) {
+        this(writer, false);
+    }
+
+    /**
+     * Creates a generator which, if checked, prints Integer arithmetic with
+     * the {@code Math.*Exact} methods, so an overflow of the {@code int}s
+     * throws an {@link ArithmeticException} instead of wrapping around, and
+     * compares Strings by their values like the {@link Interpreter}.
+     */
+    Generator(PrintWriter writer, boolean checked) {
         this.writer = writer;
+        this.checked = checked;
     }
 
     private void print(Object... objects) {
@@ -32,6 +49,8 @@ public final class Generator implements Ast.Visitor<Void> {
 
     @Override
     public Void visit(Ast.Source ast) {
+        ranges = false;
+        steps = false;
         print("public class Main {");
 
         newline(0);
@@ -56,6 +75,7 @@ public final class Generator implements Ast.Visitor<Void> {
             newline(indent);
             visit(method);
         }
+        printRangeHelpers();
 
         newline(0);
         newline(--indent);
@@ -92,11 +112,29 @@ public final class Generator implements Ast.Visitor<Void> {
 
         ++indent;
 
+        boolean tail = hasTailCall(ast, ast.getStatements());
+        if (tail) {
+            method = ast;
+            newline(indent);
+            print("tail: while (true) {");
+            ++indent;
+        }
+
         for( Ast.Expr.Stmt stmt : ast.getStatements() ) {
             newline(indent);
             visit(stmt);
         }
 
+        if (tail) {
+            if (completes(ast.getStatements())) {
+                newline(indent);
+                print("break;");
+            }
+            newline(--indent);
+            print("}");
+            method = null;
+        }
+
         --indent;
 
         if (ast.getStatements().size() != 0) {
@@ -123,7 +161,7 @@ public final class Generator implements Ast.Visitor<Void> {
                 ast.getVariable().getJvmName());
 
         if (ast.getValue().isPresent()) {
-            print( " = ", ((Ast.Expr.Literal)ast.getValue().get()).getLiteral() );
+            print(" = ", ast.getValue().get());
         }
 
         print(";");
@@ -170,9 +208,13 @@ public final class Generator implements Ast.Visitor<Void> {
 
     @Override
     public Void visit(Ast.Stmt.For ast) {
-        print("for (int ", ast.getName(), " : ");
-        visit(ast.getValue());
-        print(") {");
+        if (isRange(ast.getValue())) {
+            printRange(ast.getName(), ((Ast.Expr.Function) ast.getValue()).getArguments());
+        } else {
+            print("for (int ", ast.getName(), " : ");
+            visit(ast.getValue());
+            print(") {");
+        }
 
         ++indent;
         for (Ast.Stmt stmt : ast.getStatements()) {
@@ -185,6 +227,77 @@ public final class Generator implements Ast.Visitor<Void> {
         return null;
     }
 
+    private boolean isRange(Ast.Expr ast) {
+        return ast instanceof Ast.Expr.Function
+                && !((Ast.Expr.Function) ast).getReceiver().isPresent()
+                && ((Ast.Expr.Function) ast).getFunction().getJvmName().equals("range");
+    }
+
+    /**
+     * Prints the header of a counted loop over {@code range(start, end[, step])}.
+     * The end and a step which is not a literal are evaluated once into
+     * hidden locals, named with a {@code $} that identifiers cannot contain.
+     */
+    private void printRange(String name, List<Ast.Expr> arguments) {
+        String end = name + "$end";
+        print("for (int ", name, " = ", arguments.get(0), ", ", end, " = ", arguments.get(1));
+        if (arguments.size() == 2) {
+            print("; ", name, " < ", end, "; ", name, "++) {");
+        } else if (arguments.get(2) instanceof Ast.Expr.Literal) {
+            BigInteger step = (BigInteger) ((Ast.Expr.Literal) arguments.get(2)).getLiteral();
+            if (step.signum() == 0) {
+                throw new RuntimeException("The step of a range cannot be zero.");
+            }
+            print("; ", name, step.signum() > 0 ? " < " : " > ", end, "; ", name, " += ", arguments.get(2), ") {");
+        } else {
+            String step = name + "$step";
+            steps = true;
+            print(", ", step, " = range$step(", arguments.get(2), "); ", step, " > 0 ? ", name, " < ", end, " : ", name, " > ", end, "; ", name, " += ", step, ") {");
+        }
+    }
+
+    /**
+     * Prints the helpers used by the ranges which are not lowered to counted
+     * loops: the {@code range} functions, for a range used as a value, and the
+     * check of a step which is not a literal, which like {@link Range} rejects
+     * a zero step rather than looping forever.
+     */
+    private void printRangeHelpers() {
+        if (ranges) {
+            newline(0);
+            newline(indent);
+            print("private static Iterable<Integer> range(int start, int end) {");
+            newline(++indent);
+            print("return range(start, end, 1);");
+            newline(--indent);
+            print("}");
+            newline(0);
+            newline(indent);
+            print("private static Iterable<Integer> range(int start, int end, int step) {");
+            newline(++indent);
+            print("range$step(step);");
+            newline(indent);
+            print("return () -> java.util.stream.LongStream.iterate(start, i -> step > 0 ? i < end : i > end, i -> i + step).mapToInt(i -> (int) i).iterator();");
+            newline(--indent);
+            print("}");
+        }
+        if (ranges || steps) {
+            newline(0);
+            newline(indent);
+            print("private static int range$step(int step) {");
+            newline(++indent);
+            print("if (step == 0) {");
+            newline(++indent);
+            print("throw new RuntimeException(\"The step of a range cannot be zero.\");");
+            newline(--indent);
+            print("}");
+            newline(indent);
+            print("return step;");
+            newline(--indent);
+            print("}");
+        }
+    }
+
     @Override
     public Void visit(Ast.Stmt.While ast) {
         print("while (", ast.getCondition(), ") {");
@@ -207,6 +320,10 @@ public final class Generator implements Ast.Visitor<Void> {
 
     @Override
     public Void visit(Ast.Stmt.Return ast) {
+        if (method != null && isTailCall(method, ast)) {
+            printTailCall(((Ast.Expr.Function) ast.getValue()).getArguments());
+            return null;
+        }
         print("return ");
         visit(ast.getValue());
         print(";");
@@ -214,15 +331,102 @@ public final class Generator implements Ast.Visitor<Void> {
         return null;
     }
 
+    private boolean isTailCall(Ast.Method method, Ast.Stmt ast) {
+        if (!(ast instanceof Ast.Stmt.Return) || !(((Ast.Stmt.Return) ast).getValue() instanceof Ast.Expr.Function)) {
+            return false;
+        }
+        Ast.Expr.Function call = (Ast.Expr.Function) ((Ast.Stmt.Return) ast).getValue();
+        return !call.getReceiver().isPresent()
+                && call.getArguments().size() == method.getParameters().size()
+                && call.getFunction().getJvmName().equals(method.getFunction().getJvmName());
+    }
+
+    private boolean hasTailCall(Ast.Method method, List<Ast.Stmt> statements) {
+        for (Ast.Stmt statement : statements) {
+            if (isTailCall(method, statement)) {
+                return true;
+            } else if (statement instanceof Ast.Stmt.If) {
+                if (hasTailCall(method, ((Ast.Stmt.If) statement).getThenStatements())
+                        || hasTailCall(method, ((Ast.Stmt.If) statement).getElseStatements())) {
+                    return true;
+                }
+            } else if (statement instanceof Ast.Stmt.For) {
+                if (hasTailCall(method, ((Ast.Stmt.For) statement).getStatements())) {
+                    return true;
+                }
+            } else if (statement instanceof Ast.Stmt.While) {
+                if (hasTailCall(method, ((Ast.Stmt.While) statement).getStatements())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether Java considers the statements able to complete
+     * normally, in which case the loop of a tail recursive method needs a
+     * {@code break} after them and would otherwise reject it as unreachable.
+     */
+    private static boolean completes(List<Ast.Stmt> statements) {
+        if (statements.isEmpty()) {
+            return true;
+        }
+        Ast.Stmt last = statements.get(statements.size() - 1);
+        if (last instanceof Ast.Stmt.Return) {
+            return false;
+        } else if (last instanceof Ast.Stmt.If) {
+            return ((Ast.Stmt.If) last).getElseStatements().isEmpty()
+                    || completes(((Ast.Stmt.If) last).getThenStatements())
+                    || completes(((Ast.Stmt.If) last).getElseStatements());
+        } else if (last instanceof Ast.Stmt.While) {
+            Ast.Expr condition = ((Ast.Stmt.While) last).getCondition();
+            return !(condition instanceof Ast.Expr.Literal && Boolean.TRUE.equals(((Ast.Expr.Literal) condition).getLiteral()));
+        }
+        return true;
+    }
+
+    /**
+     * Prints a self recursive tail call as the assignment of the arguments to
+     * the parameters followed by the next iteration of the method's loop.
+     * Arguments are evaluated into hidden locals first when more than one
+     * parameter changes, as they may read the others.
+     */
+    private void printTailCall(List<Ast.Expr> arguments) {
+        List<Integer> changed = new ArrayList<>();
+        for (int i = 0; i < arguments.size(); i++) {
+            Ast.Expr argument = arguments.get(i);
+            if (!(argument instanceof Ast.Expr.Access)
+                    || ((Ast.Expr.Access) argument).getReceiver().isPresent()
+                    || !((Ast.Expr.Access) argument).getName().equals(method.getParameters().get(i))) {
+                changed.add(i);
+            }
+        }
+        if (changed.size() == 1) {
+            print(method.getParameters().get(changed.get(0)), " = ", arguments.get(changed.get(0)), ";");
+            newline(indent);
+        } else {
+            for (int i : changed) {
+                print(parseJVMType(method.getParameterTypeNames().get(i)), " ", method.getParameters().get(i), "$next = ", arguments.get(i), ";");
+                newline(indent);
+            }
+            for (int i : changed) {
+                print(method.getParameters().get(i), " = ", method.getParameters().get(i), "$next;");
+                newline(indent);
+            }
+        }
+        print("continue tail;");
+    }
+
     @Override
     public Void visit(Ast.Expr.Literal ast) {
-        System.out.println(ast);
         switch(ast.getType().getName()) {
             case "String":
                 print("\"", ast.getLiteral(), "\"");
                 break;
             case "Character":
                 print("\'", ast.getLiteral(), "\'");
+                break;
             case "Integer":
             case "Decimal":
             case "Boolean":
@@ -247,6 +451,40 @@ public final class Generator implements Ast.Visitor<Void> {
 
     @Override
     public Void visit(Ast.Expr.Binary ast) {
+        if (checked && Environment.Type.INTEGER.equals(ast.getType())) {
+            switch (ast.getOperator()) {
+                case "+":
+                    print("Math.addExact(", ast.getLeft(), ", ", ast.getRight(), ")");
+                    return null;
+                case "-":
+                    print("Math.subtractExact(", ast.getLeft(), ", ", ast.getRight(), ")");
+                    return null;
+                case "*":
+                    print("Math.multiplyExact(", ast.getLeft(), ", ", ast.getRight(), ")");
+                    return null;
+                case "/":
+                    // Only the quotient of Integer.MIN_VALUE / -1 overflows.
+                    print("Math.toIntExact((long) ", ast.getLeft(), " / ", ast.getRight(), ")");
+                    return null;
+            }
+        }
+        if (checked && Environment.Type.STRING.equals(ast.getLeft().getType())) {
+            // Strings compare by value, not by reference.
+            switch (ast.getOperator()) {
+                case "==":
+                    print("java.util.Objects.equals(", ast.getLeft(), ", ", ast.getRight(), ")");
+                    return null;
+                case "!=":
+                    print("!java.util.Objects.equals(", ast.getLeft(), ", ", ast.getRight(), ")");
+                    return null;
+                case "<":
+                case ">":
+                case "<=":
+                case ">=":
+                    print("(", ast.getLeft(), ").compareTo(", ast.getRight(), ") ", ast.getOperator(), " 0");
+                    return null;
+            }
+        }
         visit(ast.getLeft());
         print(" ");
         switch(ast.getOperator()) {
@@ -324,6 +562,7 @@ public final class Generator implements Ast.Visitor<Void> {
 
     @Override
     public Void visit(Ast.Expr.Function ast) {
+        ranges |= isRange(ast);
         if (ast.getReceiver().isPresent()) {
             visit(ast.getReceiver().get());
             print(".");
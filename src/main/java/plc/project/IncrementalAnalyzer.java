@@ -0,0 +1,233 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Keeps an analyzed program and re-checks only the declarations affected by
+ * an edit. Fields are keyed by name and methods by name/arity, the same way
+ * they are defined in a {@link Scope}.
+ *
+ * Each declaration records the fields and methods it resolved the last time
+ * it was checked. Editing a body or value only re-checks that declaration;
+ * changing a signature (or adding or removing a declaration) also re-checks
+ * everything that resolved it. Declarations that failed to check are retried
+ * on every call to {@link #analyze()}.
+ *
+ * Fields are numbered in the order they are first added, which is their
+ * order in the source, and methods come after every field, so a field value
+ * may only resolve the fields numbered before it.
+ */
+public final class IncrementalAnalyzer {
+
+    private final Scope scope;
+    private final Map<String, Ast> declarations = new LinkedHashMap<>();
+    private final Map<String, Object> defined = new HashMap<>();
+    private final Map<Object, String> symbols = new IdentityHashMap<>();
+    private final Map<String, Set<String>> dependencies = new HashMap<>();
+    private final Map<String, Set<String>> dependents = new HashMap<>();
+    private final Map<String, RuntimeException> errors = new LinkedHashMap<>();
+    private final Set<String> pending = new LinkedHashSet<>();
+    private final Map<String, Long> positions = new HashMap<>();
+    private long position = 0;
+
+    public IncrementalAnalyzer(Scope parent) {
+        scope = new Analyzer(parent).getScope();
+    }
+
+    public Scope getScope() {
+        return scope;
+    }
+
+    public void update(Ast.Source ast) {
+        ast.getFields().forEach(this::update);
+        ast.getMethods().forEach(this::update);
+    }
+
+    public void update(Ast.Field ast) {
+        declarations.put(ast.getName(), ast);
+        positions.putIfAbsent(ast.getName(), position++);
+        pending.add(ast.getName());
+    }
+
+    public void update(Ast.Method ast) {
+        declarations.put(key(ast), ast);
+        pending.add(key(ast));
+    }
+
+    public void removeField(String name) {
+        declarations.remove(name);
+        positions.remove(name);
+        pending.add(name);
+    }
+
+    public void removeMethod(String name, int arity) {
+        declarations.remove(name + "/" + arity);
+        pending.add(name + "/" + arity);
+    }
+
+    /**
+     * Re-checks every declaration affected by the updates since the last
+     * call and returns their keys. Errors are reported by {@link #getErrors()}
+     * instead of being thrown, so one broken declaration does not hide the
+     * state of the others.
+     */
+    public Set<String> analyze() {
+        Set<String> checks = new LinkedHashSet<>();
+        for (String key : pending) {
+            Object previous = undefine(key);
+            Object current = define(key);
+            if (current != null) {
+                checks.add(key);
+            } else if (!declarations.containsKey(key)) {
+                forget(key);
+            }
+            if (previous == null || !previous.equals(current)) {
+                checks.addAll(dependents.getOrDefault(key, Collections.emptySet()));
+            }
+        }
+        pending.clear();
+        checks.addAll(errors.keySet());
+
+        for (String key : new ArrayList<>(checks)) {
+            if (defined.containsKey(key)) {
+                check(key);
+            } else if (!errors.containsKey(key)) {
+                checks.remove(key);
+            }
+        }
+        return checks;
+    }
+
+    public Map<String, RuntimeException> getErrors() {
+        return Collections.unmodifiableMap(errors);
+    }
+
+    /**
+     * Returns the current program. Declarations that were not edited keep the
+     * annotations from when they were last checked.
+     */
+    public Ast.Source getSource() {
+        List<Ast.Field> fields = new ArrayList<>();
+        List<Ast.Method> methods = new ArrayList<>();
+        for (Ast ast : declarations.values()) {
+            if (ast instanceof Ast.Field) {
+                fields.add((Ast.Field) ast);
+            } else {
+                methods.add((Ast.Method) ast);
+            }
+        }
+        return new Ast.Source(fields, methods);
+    }
+
+    private Object undefine(String key) {
+        Object symbol = defined.remove(key);
+        errors.remove(key);
+        if (symbol instanceof Environment.Variable) {
+            scope.removeVariable(((Environment.Variable) symbol).getName());
+        } else if (symbol instanceof Environment.Function) {
+            scope.removeFunction(((Environment.Function) symbol).getName(), ((Environment.Function) symbol).getParameterTypes().size());
+        }
+        if (symbol != null) {
+            symbols.remove(symbol);
+        }
+        return symbol;
+    }
+
+    private Object define(String key) {
+        Ast ast = declarations.get(key);
+        Object symbol = null;
+        try {
+            Analyzer analyzer = new Analyzer(scope, null);
+            if (ast instanceof Ast.Field) {
+                analyzer.define((Ast.Field) ast);
+                symbol = ((Ast.Field) ast).getVariable();
+            } else if (ast instanceof Ast.Method) {
+                Ast.Method method = (Ast.Method) ast;
+                if (key.equals("main/0")) {
+                    if (!method.getReturnTypeName().isPresent()) throw new RuntimeException("Error: no return type for main. Should return Integer.");
+                    Analyzer.requireAssignable(Environment.Type.INTEGER, Environment.getType(method.getReturnTypeName().get()));
+                }
+                analyzer.define(method);
+                symbol = method.getFunction();
+            }
+        } catch (RuntimeException e) {
+            errors.put(key, e);
+            return null;
+        }
+        if (symbol != null) {
+            defined.put(key, symbol);
+            symbols.put(symbol, key);
+        }
+        return symbol;
+    }
+
+    private void check(String key) {
+        Set<Object> resolved = Collections.newSetFromMap(new IdentityHashMap<>());
+        Analyzer analyzer = new Analyzer(scope, resolved);
+        Ast ast = declarations.get(key);
+        errors.remove(key);
+        try {
+            if (ast instanceof Ast.Field) {
+                analyzer.check((Ast.Field) ast);
+                requireDeclaredBefore(key, resolved);
+            } else {
+                analyzer.check((Ast.Method) ast);
+            }
+        } catch (RuntimeException e) {
+            errors.put(key, e);
+        }
+
+        forget(key);
+        Set<String> keys = new HashSet<>();
+        for (Object symbol : resolved) {
+            String dependency = symbols.get(symbol);
+            if (dependency != null && !Objects.equals(dependency, key)) {
+                keys.add(dependency);
+                dependents.computeIfAbsent(dependency, k -> new HashSet<>()).add(key);
+            }
+        }
+        dependencies.put(key, keys);
+    }
+
+    /**
+     * Rejects a field value which resolved a method or a field that is not
+     * declared before the field, as the {@link Analyzer} checks fields in
+     * source order before defining any method.
+     */
+    private void requireDeclaredBefore(String key, Set<Object> resolved) {
+        long field = positions.get(key);
+        for (Object symbol : resolved) {
+            String dependency = symbols.get(symbol);
+            if (dependency == null || positions.containsKey(dependency) && positions.get(dependency) < field) {
+                continue;
+            }
+            if (symbol instanceof Environment.Variable) {
+                throw new RuntimeException("The variable " + ((Environment.Variable) symbol).getName() + " is not defined in this scope.");
+            }
+            Environment.Function function = (Environment.Function) symbol;
+            throw new RuntimeException("The function " + function.getName() + "/" + function.getParameterTypes().size() + " is not defined in this scope.");
+        }
+    }
+
+    private void forget(String key) {
+        for (String dependency : dependencies.getOrDefault(key, Collections.emptySet())) {
+            dependents.get(dependency).remove(key);
+        }
+        dependencies.remove(key);
+    }
+
+    private static String key(Ast.Method ast) {
+        return ast.getName() + "/" + ast.getParameters().size();
+    }
+
+}
@@ -0,0 +1,434 @@
+package plc.project;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Inlines calls to small, non-recursive methods of a source.
+ *
+ * Methods are visited callees first along the call graph, so a caller inlines
+ * the already inlined bodies of its callees. A method is small if its body
+ * has at most {@code budget} nodes, and recursive if it is part of a cycle.
+ *
+ * Calls to methods whose body is a single RETURN are replaced inside any
+ * expression when every argument is a literal or a local of the caller.
+ * Otherwise, a call making up an expression statement, a declaration value,
+ * an assignment to a variable, or a return value is replaced by the callee's
+ * body when its only RETURN is its last statement. Arguments are bound to
+ * temporaries and the callee's locals are renamed to {@code $inlineN_name},
+ * so neither can capture the caller's variables. Calls are left alone if a
+ * caller local would shadow a field the callee reads.
+ */
+public final class Inliner extends Rewriter {
+
+    public static final int DEFAULT_BUDGET = 32;
+
+    private final int budget;
+    private final Map<String, Ast.Method> methods = new LinkedHashMap<>();
+    private final Map<String, Summary> summaries = new HashMap<>();
+    private final Set<String> recursive = new HashSet<>();
+    private Summary caller;
+    private int inlined = 0;
+
+    public Inliner() {
+        this(DEFAULT_BUDGET);
+    }
+
+    public Inliner(int budget) {
+        this.budget = budget;
+    }
+
+    @Override
+    public Ast visit(Ast.Source ast) {
+        for (Ast.Method method : ast.getMethods()) {
+            String key = method.getName() + "/" + method.getParameters().size();
+            methods.put(key, method);
+            summaries.put(key, new Summary(method));
+        }
+        for (String key : methods.keySet()) {
+            if (reaches(key, key, new HashSet<>())) {
+                recursive.add(key);
+            }
+        }
+
+        List<String> order = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        methods.keySet().forEach(key -> postOrder(key, visited, order));
+        boolean changed = false;
+        for (String key : order) {
+            Ast.Method method = (Ast.Method) visit(methods.get(key));
+            if (method != methods.get(key)) {
+                methods.put(key, method);
+                summaries.put(key, new Summary(method));
+                changed = true;
+            }
+        }
+        return changed ? new Ast.Source(ast.getFields(), new ArrayList<>(methods.values())) : ast;
+    }
+
+    private boolean reaches(String from, String target, Set<String> visited) {
+        for (String callee : summaries.get(from).calls) {
+            if (callee.equals(target) || visited.add(callee) && methods.containsKey(callee) && reaches(callee, target, visited)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void postOrder(String key, Set<String> visited, List<String> order) {
+        if (methods.containsKey(key) && visited.add(key)) {
+            summaries.get(key).calls.forEach(callee -> postOrder(callee, visited, order));
+            order.add(key);
+        }
+    }
+
+    @Override
+    public Ast visit(Ast.Method ast) {
+        caller = new Summary(ast);
+        inlined = 0;
+        return super.visit(ast);
+    }
+
+    @Override
+    protected List<Ast.Stmt> rewrite(List<Ast.Stmt> statements) {
+        List<Ast.Stmt> result = new ArrayList<>();
+        boolean changed = false;
+        for (Ast.Stmt statement : statements) {
+            Ast.Stmt rewritten = (Ast.Stmt) visit(statement);
+            List<Ast.Stmt> body = inline(rewritten);
+            if (body != null) {
+                result.addAll(body);
+                changed = true;
+            } else {
+                result.add(rewritten);
+                changed |= rewritten != statement;
+            }
+        }
+        return changed ? result : statements;
+    }
+
+    @Override
+    public Ast visit(Ast.Stmt.Expression ast) {
+        if (!(ast.getExpression() instanceof Ast.Expr.Function)) {
+            return super.visit(ast);
+        }
+        // A call statement is inlined as a whole by rewrite, which keeps
+        // the statement valid if the result is not a call.
+        Ast.Expr expression = (Ast.Expr) super.visit((Ast.Expr.Function) ast.getExpression());
+        return expression == ast.getExpression() ? ast : new Ast.Stmt.Expression(expression);
+    }
+
+    @Override
+    public Ast visit(Ast.Expr.Function ast) {
+        Ast.Expr.Function function = (Ast.Expr.Function) super.visit(ast);
+        Ast.Method callee = callee(function);
+        if (callee == null || callee.getStatements().size() != 1 || !(callee.getStatements().get(0) instanceof Ast.Stmt.Return)
+                || !function.getArguments().stream().allMatch(this::isSubstitutable)) {
+            return function;
+        }
+        Map<String, Ast.Expr> substitutions = new HashMap<>();
+        for (int i = 0; i < callee.getParameters().size(); i++) {
+            substitutions.put(callee.getParameters().get(i), function.getArguments().get(i));
+        }
+        Ast.Expr value = new Renamer("", substitutions).rewrite(((Ast.Stmt.Return) callee.getStatements().get(0)).getValue());
+        if (!(value instanceof Ast.Expr.Binary)) {
+            return value;
+        }
+        // Keeps the precedence of the call for the Generator.
+        Ast.Expr.Group group = new Ast.Expr.Group(value);
+        group.setType(value.getType());
+        return group;
+    }
+
+    /**
+     * Returns the method called by a function expression if it may be
+     * inlined into the current caller, or {@code null} otherwise.
+     */
+    private Ast.Method callee(Ast.Expr.Function ast) {
+        String key = ast.getName() + "/" + ast.getArguments().size();
+        if (ast.getReceiver().isPresent() || !methods.containsKey(key) || recursive.contains(key)) {
+            return null;
+        }
+        Summary summary = summaries.get(key);
+        if (summary.size > budget || summary.free.stream().anyMatch(caller.declared::contains)) {
+            return null;
+        }
+        return methods.get(key);
+    }
+
+    private boolean isSubstitutable(Ast.Expr argument) {
+        return argument instanceof Ast.Expr.Literal
+                || argument instanceof Ast.Expr.Access
+                && !((Ast.Expr.Access) argument).getReceiver().isPresent()
+                && caller.declared.contains(((Ast.Expr.Access) argument).getName());
+    }
+
+    /**
+     * Replaces a statement whose value is a call by the body of the callee,
+     * returning {@code null} if it cannot be inlined.
+     */
+    private List<Ast.Stmt> inline(Ast.Stmt statement) {
+        Ast.Expr value;
+        if (statement instanceof Ast.Stmt.Expression) {
+            value = ((Ast.Stmt.Expression) statement).getExpression();
+        } else if (statement instanceof Ast.Stmt.Declaration && ((Ast.Stmt.Declaration) statement).getValue().isPresent()) {
+            value = ((Ast.Stmt.Declaration) statement).getValue().get();
+        } else if (statement instanceof Ast.Stmt.Assignment && ((Ast.Stmt.Assignment) statement).getReceiver() instanceof Ast.Expr.Access
+                && !((Ast.Expr.Access) ((Ast.Stmt.Assignment) statement).getReceiver()).getReceiver().isPresent()) {
+            value = ((Ast.Stmt.Assignment) statement).getValue();
+        } else if (statement instanceof Ast.Stmt.Return) {
+            value = ((Ast.Stmt.Return) statement).getValue();
+        } else {
+            return null;
+        }
+        if (!(value instanceof Ast.Expr.Function)) {
+            return null;
+        }
+        Ast.Expr.Function function = (Ast.Expr.Function) value;
+        Ast.Method callee = callee(function);
+        if (callee == null) {
+            return null;
+        }
+        List<Ast.Stmt> body = callee.getStatements();
+        boolean returns = !body.isEmpty() && body.get(body.size() - 1) instanceof Ast.Stmt.Return;
+        if (summaries.get(function.getName() + "/" + function.getArguments().size()).returns != (returns ? 1 : 0)
+                || !returns && !(statement instanceof Ast.Stmt.Expression)) {
+            return null;
+        }
+
+        String name = "$inline" + inlined++;
+        String prefix = name + "_";
+        List<Ast.Stmt> result = new ArrayList<>();
+        Map<String, Ast.Expr> substitutions = new HashMap<>();
+        Set<String> assigned = summaries.get(function.getName() + "/" + function.getArguments().size()).assigned;
+        for (int i = 0; i < callee.getParameters().size(); i++) {
+            String parameter = callee.getParameters().get(i);
+            Ast.Expr argument = function.getArguments().get(i);
+            if (isSubstitutable(argument) && !assigned.contains(parameter)) {
+                substitutions.put(parameter, argument);
+            } else {
+                Environment.Variable variable = new Environment.Variable(prefix + parameter, prefix + parameter, callee.getFunction().getParameterTypes().get(i), Environment.NIL);
+                Ast.Stmt.Declaration declaration = new Ast.Stmt.Declaration(variable.getName(), Optional.empty(), Optional.of(argument));
+                declaration.setVariable(variable);
+                result.add(declaration);
+                substitutions.put(parameter, access(variable));
+            }
+        }
+        Renamer renamer = new Renamer(prefix, substitutions);
+        for (Ast.Stmt stmt : returns ? body.subList(0, body.size() - 1) : body) {
+            result.add((Ast.Stmt) renamer.visit(stmt));
+        }
+        if (!returns) {
+            return result;
+        }
+
+        Ast.Expr returned = renamer.rewrite(((Ast.Stmt.Return) body.get(body.size() - 1)).getValue());
+        if (statement instanceof Ast.Stmt.Expression) {
+            if (returned instanceof Ast.Expr.Function) {
+                result.add(new Ast.Stmt.Expression(returned));
+            } else if (!DeadCodeEliminator.isPure(returned)) {
+                Environment.Variable variable = new Environment.Variable(name, name, returned.getType(), Environment.NIL);
+                Ast.Stmt.Declaration declaration = new Ast.Stmt.Declaration(name, Optional.empty(), Optional.of(returned));
+                declaration.setVariable(variable);
+                result.add(declaration);
+            }
+        } else if (statement instanceof Ast.Stmt.Declaration) {
+            Ast.Stmt.Declaration original = (Ast.Stmt.Declaration) statement;
+            Ast.Stmt.Declaration declaration = new Ast.Stmt.Declaration(original.getName(), original.getTypeName(), Optional.of(returned));
+            declaration.setVariable(original.getVariable());
+            result.add(declaration);
+        } else if (statement instanceof Ast.Stmt.Assignment) {
+            result.add(new Ast.Stmt.Assignment(((Ast.Stmt.Assignment) statement).getReceiver(), returned));
+        } else {
+            result.add(new Ast.Stmt.Return(returned));
+        }
+        return result;
+    }
+
+    private static Ast.Expr copy(Ast.Expr expression) {
+        if (expression instanceof Ast.Expr.Literal) {
+            Ast.Expr.Literal literal = new Ast.Expr.Literal(((Ast.Expr.Literal) expression).getLiteral());
+            literal.setType(expression.getType());
+            return literal;
+        }
+        Ast.Expr.Access access = new Ast.Expr.Access(Optional.empty(), ((Ast.Expr.Access) expression).getName());
+        access.setVariable(((Ast.Expr.Access) expression).getVariable());
+        return access;
+    }
+
+    private static Ast.Expr.Access access(Environment.Variable variable) {
+        Ast.Expr.Access access = new Ast.Expr.Access(Optional.empty(), variable.getName());
+        access.setVariable(variable);
+        return access;
+    }
+
+    /**
+     * Facts about a method used to decide whether calls to it are inlined.
+     * A read is free unless a declaration before it in an enclosing block
+     * binds the name, scoped the same way as the renames of the
+     * {@link Renamer}.
+     */
+    private static final class Summary extends Rewriter {
+
+        private final Set<String> calls = new HashSet<>();
+        private final Set<String> declared = new HashSet<>();
+        private final Set<String> assigned = new HashSet<>();
+        private final Set<String> free = new HashSet<>();
+        private final Deque<Set<String>> scopes = new ArrayDeque<>();
+        private int returns = 0;
+        private int size = 0;
+
+        private Summary(Ast.Method ast) {
+            declared.addAll(ast.getParameters());
+            scopes.push(new HashSet<>(ast.getParameters()));
+            ast.getStatements().forEach(this::visit);
+        }
+
+        @Override
+        protected List<Ast.Stmt> rewrite(List<Ast.Stmt> statements) {
+            size += statements.size();
+            scopes.push(new HashSet<>());
+            try {
+                return super.rewrite(statements);
+            } finally {
+                scopes.pop();
+            }
+        }
+
+        @Override
+        protected Ast.Expr rewrite(Ast.Expr expression) {
+            size++;
+            return super.rewrite(expression);
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.Declaration ast) {
+            Ast result = super.visit(ast);
+            declared.add(ast.getName());
+            scopes.peek().add(ast.getName());
+            return result;
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.Assignment ast) {
+            if (ast.getReceiver() instanceof Ast.Expr.Access && !((Ast.Expr.Access) ast.getReceiver()).getReceiver().isPresent()) {
+                assigned.add(((Ast.Expr.Access) ast.getReceiver()).getName());
+            }
+            return super.visit(ast);
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.For ast) {
+            declared.add(ast.getName());
+            rewrite(ast.getValue());
+            scopes.push(new HashSet<>(Collections.singleton(ast.getName())));
+            try {
+                rewrite(ast.getStatements());
+            } finally {
+                scopes.pop();
+            }
+            return ast;
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.Return ast) {
+            returns++;
+            return super.visit(ast);
+        }
+
+        @Override
+        public Ast visit(Ast.Expr.Access ast) {
+            if (!ast.getReceiver().isPresent() && scopes.stream().noneMatch(scope -> scope.contains(ast.getName()))) {
+                free.add(ast.getName());
+            }
+            return super.visit(ast);
+        }
+
+        @Override
+        public Ast visit(Ast.Expr.Function ast) {
+            if (!ast.getReceiver().isPresent()) {
+                calls.add(ast.getName() + "/" + ast.getArguments().size());
+            }
+            return super.visit(ast);
+        }
+
+    }
+
+    /**
+     * Copies a callee's statements into the caller, substituting parameters
+     * and renaming locals with the given prefix. Substitutions for locals are
+     * scoped to the block declaring them, so a later read of a field with the
+     * same name is left alone.
+     */
+    private static final class Renamer extends Rewriter {
+
+        private final String prefix;
+        private final Deque<Map<String, Ast.Expr>> substitutions = new ArrayDeque<>();
+
+        private Renamer(String prefix, Map<String, Ast.Expr> substitutions) {
+            this.prefix = prefix;
+            this.substitutions.push(new HashMap<>(substitutions));
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.Declaration ast) {
+            Ast.Stmt.Declaration declaration = (Ast.Stmt.Declaration) super.visit(ast);
+            Environment.Variable variable = new Environment.Variable(prefix + ast.getName(), prefix + ast.getName(), ast.getVariable().getType(), Environment.NIL);
+            Ast.Stmt.Declaration renamed = new Ast.Stmt.Declaration(variable.getName(), declaration.getTypeName(), declaration.getValue());
+            renamed.setVariable(variable);
+            substitutions.peek().put(ast.getName(), access(variable));
+            return renamed;
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.If ast) {
+            return new Ast.Stmt.If(rewrite(ast.getCondition()), rewriteBlock(ast.getThenStatements(), null), rewriteBlock(ast.getElseStatements(), null));
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.For ast) {
+            Ast.Expr value = rewrite(ast.getValue());
+            Environment.Variable variable = new Environment.Variable(prefix + ast.getName(), prefix + ast.getName(), Environment.Type.INTEGER, Environment.NIL);
+            Map<String, Ast.Expr> loop = new HashMap<>();
+            loop.put(ast.getName(), access(variable));
+            return new Ast.Stmt.For(variable.getName(), value, rewriteBlock(ast.getStatements(), loop));
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.While ast) {
+            return new Ast.Stmt.While(rewrite(ast.getCondition()), rewriteBlock(ast.getStatements(), null));
+        }
+
+        @Override
+        public Ast visit(Ast.Expr.Access ast) {
+            if (!ast.getReceiver().isPresent()) {
+                for (Map<String, Ast.Expr> scope : substitutions) {
+                    if (scope.containsKey(ast.getName())) {
+                        return copy(scope.get(ast.getName()));
+                    }
+                }
+            }
+            return super.visit(ast);
+        }
+
+        private List<Ast.Stmt> rewriteBlock(List<Ast.Stmt> statements, Map<String, Ast.Expr> scope) {
+            substitutions.push(scope != null ? scope : new HashMap<>());
+            try {
+                return rewrite(statements);
+            } finally {
+                substitutions.pop();
+            }
+        }
+
+    }
+
+}
@@ -1,5 +1,6 @@
 package plc.project;
 
+import java.io.PrintStream;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.math.RoundingMode;
@@ -9,13 +10,49 @@ import java.util.stream.Collectors;
 
 public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
 
+    /**
+     * The number of steps between reads of the clock when there is a timeout.
+     */
+    private static final int CLOCK_INTERVAL = 1024;
+
     private Scope scope = new Scope(null);
     //private Optional<Ast.Expr> ;
+    private boolean inexact = false;
+    private Environment.PlcObject returned = null;
+    private int depth = 0;
+    private Ast.Method tailMethod = null;
+    private List<Environment.PlcObject> tailArguments = null;
+    private final Map<Environment.Function, Ast.Method> methods = new IdentityHashMap<>();
+    private Budget budget = Budget.UNLIMITED;
+    private long steps = 0;
+    private long checkpoint = Long.MAX_VALUE;
+    private long deadline = 0;
 
     public Interpreter(Scope parent) {
+        this(parent, null);
+    }
+
+    /**
+     * Creates an interpreter whose print function writes to the output
+     * instead of {@link System#out}.
+     */
+    public Interpreter(Scope parent, PrintStream out) {
         scope = new Scope(parent);
+        defineBuiltins(scope, out);
+    }
+
+    static void defineBuiltins(Scope scope) {
+        defineBuiltins(scope, null);
+    }
+
+    /**
+     * Defines the builtin functions print, logarithm and range. Print writes
+     * to the output, or to {@link System#out} at the time of the call if the
+     * output is {@code null}.
+     */
+    static void defineBuiltins(Scope scope, PrintStream out) {
         scope.defineFunction("print", 1, args -> {
-            System.out.println(args.get(0).getValue());
+            (out != null ? out : System.out).println(args.get(0).getValue());
             return Environment.NIL;
         });
 
@@ -30,12 +67,46 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
 
           return Environment.create(res);
         });
+
+        scope.defineFunction("range", 2, Interpreter::range);
+        scope.defineFunction("range", 3, Interpreter::range);
+    }
+
+    private static Environment.PlcObject range(List<Environment.PlcObject> arguments) {
+        long start = requireType(BigInteger.class, arguments.get(0)).longValueExact();
+        long end = requireType(BigInteger.class, arguments.get(1)).longValueExact();
+        long step = arguments.size() > 2 ? requireType(BigInteger.class, arguments.get(2)).longValueExact() : 1;
+        return Environment.create(new Range(start, end, step));
     }
 
     public Scope getScope() {
         return scope;
     }
 
+    /**
+     * Returns the number of steps executed since the budget was last set.
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    public Budget getBudget() {
+        return budget;
+    }
+
+    /**
+     * Limits the execution from now on to the budget, resetting the steps and
+     * starting its timeout.
+     */
+    public void setBudget(Budget budget) {
+        this.budget = budget;
+        steps = 0;
+        if (budget.getTimeout() != null) {
+            deadline = System.nanoTime() + budget.getTimeout().toNanos();
+        }
+        checkpoint = checkpoint();
+    }
+
     @Override
     public Environment.PlcObject visit(Ast.Source ast) {
         ast.getFields().forEach(this::visit);
@@ -56,27 +127,48 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
 
     @Override
     public Environment.PlcObject visit(Ast.Method ast) {
-        java.util.function.Function<List<Environment.PlcObject>, Environment.PlcObject> function = arguments -> {
-            scope = new Scope(scope);
-
-            for (int i = 0; i < arguments.size(); ++i) {
-                scope.defineVariable(ast.getParameters().get(i), arguments.get(i));
-            }
-
-            try {
-                ast.getStatements().forEach(this::visit);
-            } catch (Return returnValue) {
-                scope = scope.getParent();
-                return returnValue.value;
-            }
+        scope.defineFunction(ast.getName(), ast.getParameters().size(), arguments -> invoke(ast, arguments));
+        methods.put(scope.lookupFunction(ast.getName(), ast.getParameters().size()), ast);
 
-            scope = scope.getParent();
-            return Environment.NIL;
-        };
+        return Environment.NIL;
+    }
 
-        scope.defineFunction(ast.getName(), ast.getParameters().size(), function);
+    /**
+     * Invokes a method, and then the methods it tail calls in the same Java
+     * frame. A tail called method replaces the calling one, so its scope is
+     * also a child of the original caller's.
+     */
+    private Environment.PlcObject invoke(Ast.Method ast, List<Environment.PlcObject> arguments) {
+        Scope caller = scope;
+        depth++;
 
-        return Environment.NIL;
+        try {
+            if (depth > budget.getMaxDepth()) {
+                throw new BudgetExceededException("Exceeded the maximum call depth of " + budget.getMaxDepth() + ".", BudgetExceededException.Limit.DEPTH);
+            }
+            while (true) {
+                scope = new Scope(caller);
+                for (int i = 0; i < arguments.size(); ++i) {
+                    scope.defineVariable(ast.getParameters().get(i), arguments.get(i));
+                }
+
+                execute(ast.getStatements());
+                if (tailMethod == null) {
+                    return returned != null ? returned : Environment.NIL;
+                }
+                ast = tailMethod;
+                arguments = tailArguments;
+                tailMethod = null;
+                tailArguments = null;
+                returned = null;
+            }
+        } finally {
+            returned = null;
+            tailMethod = null;
+            tailArguments = null;
+            depth--;
+            scope = caller;
+        }
     }
 
     @Override
@@ -114,44 +206,121 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
     public Environment.PlcObject visit(Ast.Stmt.If ast) {
         Boolean condition = requireType( Boolean.class, visit( ast.getCondition() ) );
 
-        if (condition) ast.getThenStatements().forEach(this::visit);
-        else ast.getElseStatements().forEach(this::visit);
+        if (condition) execute(ast.getThenStatements());
+        else execute(ast.getElseStatements());
 
         return Environment.NIL;
     }
 
     @Override
     public Environment.PlcObject visit(Ast.Stmt.For ast) {
+        Iterable<?> iterable = requireType(Iterable.class, visit(ast.getValue()));
+        boolean shared = !declares(ast.getStatements());
+        Scope body = null;
+
+        if (iterable instanceof Range) {
+            Range range = (Range) iterable;
+            for (long i = range.getStart(); range.includes(i) && returned == null; i = range.advance(i)) {
+                body = iterate(ast, body, shared, range.element(i));
+            }
+            return Environment.NIL;
+        }
 
-        for (Object element : requireType(Iterable.class, visit(ast.getValue())) ) {
-            scope = new Scope(scope);
+        for (Object element : iterable) {
+            body = iterate(ast, body, shared, (Environment.PlcObject) element);
+            if (returned != null) {
+                break;
+            }
+        }
 
-            scope.defineVariable( ast.getName(), (Environment.PlcObject) element );
-            ast.getStatements().forEach(this::visit);
+        return Environment.NIL;
+    }
 
+    /**
+     * Executes the body with the variable bound to the element, returning the
+     * scope of the body when the next iteration can rebind the variable in it.
+     * A body which declares variables needs a new scope every iteration.
+     */
+    private Scope iterate(Ast.Stmt.For ast, Scope body, boolean shared, Environment.PlcObject element) {
+        step();
+        backEdge();
+        if (body == null) {
+            body = new Scope(scope);
+            body.defineVariable( ast.getName(), element );
+        } else {
+            body.lookupVariable(ast.getName()).setValue(element);
+        }
+
+        scope = body;
+        try {
+            execute(ast.getStatements());
+        } finally {
             scope = scope.getParent();
         }
+        return shared ? body : null;
+    }
 
-        return Environment.NIL;
+    /**
+     * Returns whether the statements declare a variable in their own scope,
+     * including in the branches of an IF, which have no scope of their own.
+     */
+    private static boolean declares(List<Ast.Stmt> statements) {
+        for (Ast.Stmt statement : statements) {
+            if (statement instanceof Ast.Stmt.Declaration) {
+                return true;
+            } else if (statement instanceof Ast.Stmt.If
+                    && (declares(((Ast.Stmt.If) statement).getThenStatements()) || declares(((Ast.Stmt.If) statement).getElseStatements()))) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @Override
     public Environment.PlcObject visit(Ast.Stmt.While ast) {
         while ( requireType( Boolean.class, visit( ast.getCondition() ) ) ) {
+            step();
+            backEdge();
             try {
                 scope = new Scope(scope);
 
-                ast.getStatements().forEach(this::visit);
+                execute(ast.getStatements());
             } finally {
                 scope = scope.getParent();
             }
+            if (returned != null) {
+                break;
+            }
         }
         return Environment.NIL;
     }
 
+    /**
+     * Returns the value. A returned call of a method defined by this
+     * interpreter is a tail call, which is left in {@link #tailMethod} with
+     * its evaluated arguments for the enclosing {@link #invoke} to make.
+     */
     @Override
     public Environment.PlcObject visit(Ast.Stmt.Return ast) {
-        throw new Return( visit(ast.getValue()) );
+        if (depth == 0) {
+            throw new RuntimeException("Cannot return outside of a method.");
+        }
+        if (ast.getValue() instanceof Ast.Expr.Function && !((Ast.Expr.Function) ast.getValue()).getReceiver().isPresent()) {
+            Ast.Expr.Function call = (Ast.Expr.Function) ast.getValue();
+            Ast.Method method = methods.get(scope.lookupFunction(call.getName(), call.getArguments().size()));
+            if (method != null) {
+                List<Environment.PlcObject> arguments = new ArrayList<>(call.getArguments().size());
+                for (Ast.Expr argument : call.getArguments()) {
+                    arguments.add(visit(argument));
+                }
+                tailMethod = method;
+                tailArguments = arguments;
+                returned = Environment.NIL;
+                return Environment.NIL;
+            }
+        }
+        returned = visit(ast.getValue());
+        return Environment.NIL;
     }
 
     @Override
@@ -169,6 +338,13 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
 
     @Override
     public Environment.PlcObject visit(Ast.Expr.Binary ast) {
+        if (ast.isPrimitive()) {
+            Environment.PlcObject result = evaluatePrimitive(ast);
+            if (result != null) {
+                return result;
+            }
+        }
+
         if (ast.getOperator().equals("AND")) {
             if (requireType(Boolean.class, visit(ast.getLeft())).equals(false) || requireType(Boolean.class, visit(ast.getRight())).equals(false)) {
                 return Environment.create(false);
@@ -186,50 +362,35 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
             }
         }
 
-        if (ast.getOperator().equals("<")) {
-            if ( requireType(Comparable.class, visit(ast.getLeft())).compareTo(requireType(Comparable.class, visit(ast.getRight()))) <= -1 ) {
-                return Environment.create(true);
-            } else {
-                return Environment.create(false);
-            }
-        }
-        if (ast.getOperator().equals("<=")) {
-            if ( requireType(Comparable.class, visit(ast.getLeft())).compareTo(requireType(Comparable.class, visit(ast.getRight()))) <= 0 ) {
-                return Environment.create(true);
-            } else {
-                return Environment.create(false);
-            }
-        }
-        else if (ast.getOperator().equals(">")) {
-            if ( requireType(Comparable.class, visit(ast.getLeft())).compareTo(requireType(Comparable.class, visit(ast.getRight()))) >= 1 ) {
-                return Environment.create(true);
-            } else {
-                return Environment.create(false);
-            }
-        } else if (ast.getOperator().equals(">=")) {
-            if ( requireType(Comparable.class, visit(ast.getLeft())).compareTo(requireType(Comparable.class, visit(ast.getRight()))) >= 0 ) {
-                return Environment.create(true);
-            } else {
-                return Environment.create(false);
-            }
+        Environment.PlcObject left = visit(ast.getLeft()), right = visit(ast.getRight());
+        Operators.Operation operation = Operators.lookup(ast.getOperator(), left.getValue().getClass(), right.getValue().getClass());
+        if (operation != null) {
+            return operation.apply(left, right);
         }
+        return evaluate(ast.getOperator(), left, right);
+    }
 
-        if (ast.getOperator().equals("==")) {
-            if ( requireType(Comparable.class, visit(ast.getLeft())).compareTo(requireType(Comparable.class, visit(ast.getRight()))) == 0 ) {
-                return Environment.create(true);
-            } else {
-                return Environment.create(false);
-            }
-        } else if (ast.getOperator().equals("!=")) {
-            if ( requireType(Comparable.class, visit(ast.getLeft())).compareTo(requireType(Comparable.class, visit(ast.getRight()))) != 0 ) {
-                return Environment.create(true);
-            } else {
-                return Environment.create(false);
-            }
+    /**
+     * Evaluates a binary operation on operands without a registered
+     * {@link Operators.Operation}, which are mostly type errors.
+     */
+    private Environment.PlcObject evaluate(String operator, Environment.PlcObject left, Environment.PlcObject right) {
+        switch (operator) {
+            case "<":
+                return Environment.create(requireType(Comparable.class, left).compareTo(requireType(Comparable.class, right)) <= -1);
+            case "<=":
+                return Environment.create(requireType(Comparable.class, left).compareTo(requireType(Comparable.class, right)) <= 0);
+            case ">":
+                return Environment.create(requireType(Comparable.class, left).compareTo(requireType(Comparable.class, right)) >= 1);
+            case ">=":
+                return Environment.create(requireType(Comparable.class, left).compareTo(requireType(Comparable.class, right)) >= 0);
+            case "==":
+                return Environment.create(requireType(Comparable.class, left).compareTo(requireType(Comparable.class, right)) == 0);
+            case "!=":
+                return Environment.create(requireType(Comparable.class, left).compareTo(requireType(Comparable.class, right)) != 0);
         }
 
-        if (ast.getOperator().equals("+")) {
-            Environment.PlcObject left = visit(ast.getLeft()), right = visit(ast.getRight());
+        if (operator.equals("+")) {
             //Concatenate
             if (left.getValue().getClass() == String.class) {
                 return Environment.create(requireType(String.class, left) + right.getValue());
@@ -247,8 +408,7 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
             throw new RuntimeException("Expected String, BigInteger, or BigDecimal. Got " + left.getValue().getClass() + " and " + right.getValue().getClass());
         }
 
-        if (ast.getOperator().equals("-")) {
-            Environment.PlcObject left = visit(ast.getLeft()), right = visit(ast.getRight());
+        if (operator.equals("-")) {
             if (left.getValue().getClass() == BigInteger.class || right.getValue().getClass() == BigInteger.class) {
                 return Environment.create(requireType(BigInteger.class, left).subtract(requireType(BigInteger.class, right)));
             } else if (left.getValue().getClass() == BigDecimal.class || right.getValue().getClass() == BigDecimal.class) {
@@ -258,8 +418,7 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
             throw new RuntimeException("Expected BigInteger or BigDecimal. Got " + left.getValue().getClass() + " and " + right.getValue().getClass());
         }
 
-        if (ast.getOperator().equals("*")) {
-            Environment.PlcObject left = visit(ast.getLeft()), right = visit(ast.getRight());
+        if (operator.equals("*")) {
             if (left.getValue().getClass() == BigInteger.class || right.getValue().getClass() == BigInteger.class) {
                 return Environment.create(requireType(BigInteger.class, left).multiply(requireType(BigInteger.class, right)));
             } else if (left.getValue().getClass() == BigDecimal.class || right.getValue().getClass() == BigDecimal.class) {
@@ -269,8 +428,7 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
             throw new RuntimeException("Expected BigInteger or BigDecimal. Got " + left.getValue().getClass() + " and " + right.getValue().getClass());
         }
 
-        if (ast.getOperator().equals("/")) {
-            Environment.PlcObject left = visit(ast.getLeft()), right = visit(ast.getRight());
+        if (operator.equals("/")) {
             if (left.getValue().getClass() == BigInteger.class) {
                 return Environment.create(requireType(BigInteger.class, left).divide(requireType(BigInteger.class, right)));
             } else if (left.getValue().getClass() == BigDecimal.class) {
@@ -307,27 +465,117 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
     }
 
     /**
-     * Helper function to ensure an object is of the appropriate type.
+     * Evaluates a binary expression marked by the {@link RangeAnalyzer} using
+     * {@code long} arithmetic. Returns {@code null} if an operand was not an
+     * Integer in {@code int} range, in which case the expression must be
+     * evaluated exactly instead (operands are side-effect free).
      */
-    private static <T> T requireType(Class<T> type, Environment.PlcObject object) {
-        if (type.isInstance(object.getValue())) {
-            return type.cast(object.getValue());
-        } else {
-            throw new RuntimeException("Expected type " + type.getName() + ", received " + object.getValue().getClass().getName() + ".");
+    private Environment.PlcObject evaluatePrimitive(Ast.Expr.Binary ast) {
+        inexact = false;
+        if (ast.getType() == Environment.Type.BOOLEAN) {
+            long left = evaluateLong(ast.getLeft()), right = evaluateLong(ast.getRight());
+            if (inexact) {
+                return null;
+            }
+            switch (ast.getOperator()) {
+                case "<": return Environment.create(left < right);
+                case "<=": return Environment.create(left <= right);
+                case ">": return Environment.create(left > right);
+                case ">=": return Environment.create(left >= right);
+                case "==": return Environment.create(left == right);
+                case "!=": return Environment.create(left != right);
+                default: return null;
+            }
+        }
+        long value = evaluateLong(ast);
+        return inexact ? null : Environment.create(BigInteger.valueOf(value));
+    }
+
+    private long evaluateLong(Ast.Expr ast) {
+        if (ast instanceof Ast.Expr.Binary) {
+            Ast.Expr.Binary binary = (Ast.Expr.Binary) ast;
+            long left = evaluateLong(binary.getLeft()), right = evaluateLong(binary.getRight());
+            if (inexact) {
+                return 0;
+            }
+            switch (binary.getOperator()) {
+                case "+": return left + right;
+                case "-": return left - right;
+                case "*": return left * right;
+                case "/": return left / right;
+                default: throw new AssertionError("Unexpected primitive operator " + binary.getOperator() + ".");
+            }
+        } else if (ast instanceof Ast.Expr.Group) {
+            return evaluateLong(((Ast.Expr.Group) ast).getExpression());
+        } else if (ast instanceof Ast.Expr.Literal) {
+            return ((BigInteger) ((Ast.Expr.Literal) ast).getLiteral()).longValue();
+        }
+        Object value = visit(ast).getValue();
+        if (value instanceof BigInteger && ((BigInteger) value).bitLength() < 32) {
+            return ((BigInteger) value).longValue();
         }
+        inexact = true;
+        return 0;
     }
 
     /**
-     * Exception class for returning values.
+     * Executes statements until one of them returns, in which case the
+     * returned value is left in {@link #returned} for the enclosing method.
      */
-    private static class Return extends RuntimeException {
+    private void execute(List<Ast.Stmt> statements) {
+        for (Ast.Stmt statement : statements) {
+            step();
+            visit(statement);
+            if (returned != null) {
+                return;
+            }
+        }
+    }
 
-        private final Environment.PlcObject value;
+    /**
+     * Counts a statement or loop iteration against the budget. The limits are
+     * only checked at the checkpoint, which is never reached without them.
+     */
+    private void step() {
+        if (++steps >= checkpoint) {
+            if (steps > budget.getMaxSteps()) {
+                throw new BudgetExceededException("Exceeded the maximum of " + budget.getMaxSteps() + " steps.", BudgetExceededException.Limit.STEPS);
+            }
+            if (budget.getTimeout() != null && System.nanoTime() - deadline >= 0) {
+                throw new BudgetExceededException("Exceeded the timeout of " + budget.getTimeout().toMillis() + "ms.", BudgetExceededException.Limit.TIMEOUT);
+            }
+            checkpoint = checkpoint();
+        }
+    }
 
-        private Return(Environment.PlcObject value) {
-            this.value = value;
+    /**
+     * Returns the step at which the limits are next checked: after the
+     * maximum steps, and every {@link #CLOCK_INTERVAL} steps with a timeout.
+     */
+    private long checkpoint() {
+        long checkpoint = budget.getMaxSteps() == Long.MAX_VALUE ? Long.MAX_VALUE : budget.getMaxSteps() + 1;
+        if (budget.getTimeout() != null) {
+            checkpoint = Math.min(checkpoint, steps + CLOCK_INTERVAL);
         }
+        return checkpoint;
+    }
+
+    /**
+     * Called before each iteration of a loop. Does nothing by default, and is
+     * overridden to profile loops.
+     */
+    protected void backEdge() {
+    }
 
+    /**
+     * Helper function to ensure an object is of the appropriate type.
+     */
+    static <T> T requireType(Class<T> type, Environment.PlcObject object) {
+        if (type.isInstance(object.getValue())) {
+            return type.cast(object.getValue());
+        } else {
+            throw new RuntimeException("Expected type " + type.getName() + ", received " + object.getValue().getClass().getName() + ".");
+        }
     }
 
 }
@@ -0,0 +1,628 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * A typed SSA control-flow graph built from an analyzed source by the
+ * {@link IrBuilder}. Locals become values defined exactly once, merged by
+ * phis at the start of blocks; fields of the source are loaded and stored as
+ * globals. Every value is typed with an {@link Environment.Type}.
+ *
+ * Operands are kept in a mutable list on each instruction and terminator so
+ * passes can replace values uniformly, see {@link #replace}.
+ */
+public final class Ir {
+
+    private Ir() {}
+
+    /**
+     * Replaces the operands of every instruction and terminator of a function
+     * that appear in the given map, following chains of replacements.
+     */
+    public static void replace(Function function, Map<Value, Value> replacements) {
+        for (Block block : function.getBlocks()) {
+            block.getPhis().forEach(phi -> replace(phi.getOperands(), replacements));
+            block.getInstructions().forEach(instruction -> replace(instruction.getOperands(), replacements));
+            replace(block.getTerminator().getOperands(), replacements);
+        }
+    }
+
+    private static void replace(List<Value> operands, Map<Value, Value> replacements) {
+        for (int i = 0; i < operands.size(); i++) {
+            Value value = operands.get(i);
+            while (replacements.containsKey(value)) {
+                value = replacements.get(value);
+            }
+            operands.set(i, value);
+        }
+    }
+
+    public static final class Program {
+
+        private final List<Environment.Variable> globals;
+        private final Function initializer;
+        private final List<Function> functions;
+
+        public Program(List<Environment.Variable> globals, Function initializer, List<Function> functions) {
+            this.globals = globals;
+            this.initializer = initializer;
+            this.functions = functions;
+        }
+
+        public List<Environment.Variable> getGlobals() {
+            return globals;
+        }
+
+        /**
+         * Returns the function storing the initial values of the globals.
+         */
+        public Function getInitializer() {
+            return initializer;
+        }
+
+        public List<Function> getFunctions() {
+            return functions;
+        }
+
+        @Override
+        public String toString() {
+            return globals.stream().map(global -> "global " + global.getName() + ": " + global.getType().getName() + "\n").collect(Collectors.joining())
+                    + initializer + functions.stream().map(Function::toString).collect(Collectors.joining());
+        }
+
+    }
+
+    public static final class Function {
+
+        private final String name;
+        private final List<Parameter> parameters = new ArrayList<>();
+        private final Environment.Type returnType;
+        private final List<Block> blocks = new ArrayList<>();
+        private int values = 0;
+
+        public Function(String name, Environment.Type returnType) {
+            this.name = name;
+            this.returnType = returnType;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<Parameter> getParameters() {
+            return parameters;
+        }
+
+        public Environment.Type getReturnType() {
+            return returnType;
+        }
+
+        /**
+         * Returns the blocks of the function, starting with the entry block.
+         */
+        public List<Block> getBlocks() {
+            return blocks;
+        }
+
+        /**
+         * Returns an upper bound of the ids of the function's values.
+         */
+        public int getValueCount() {
+            return values;
+        }
+
+        <T extends Value> T number(T value) {
+            ((Value) value).id = values++;
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder("function " + name + "(");
+            builder.append(parameters.stream().map(parameter -> parameter + " " + parameter.getName() + ": " + parameter.getType().getName()).collect(Collectors.joining(", ")));
+            builder.append("): ").append(returnType.getName()).append("\n");
+            blocks.forEach(builder::append);
+            return builder.toString();
+        }
+
+    }
+
+    public static final class Block {
+
+        private final int id;
+        private final List<Block> predecessors = new ArrayList<>();
+        private final List<Phi> phis = new ArrayList<>();
+        private final List<Instruction> instructions = new ArrayList<>();
+        private Terminator terminator;
+
+        public Block(int id) {
+            this.id = id;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * Returns the predecessors of the block, in the order of the operands
+         * of its phis.
+         */
+        public List<Block> getPredecessors() {
+            return predecessors;
+        }
+
+        public List<Phi> getPhis() {
+            return phis;
+        }
+
+        public List<Instruction> getInstructions() {
+            return instructions;
+        }
+
+        public Terminator getTerminator() {
+            return terminator;
+        }
+
+        public void setTerminator(Terminator terminator) {
+            this.terminator = terminator;
+            terminator.getSuccessors().forEach(successor -> successor.predecessors.add(this));
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder("b" + id + ":\n");
+            phis.forEach(phi -> builder.append("    ").append(phi.describe()).append("\n"));
+            instructions.forEach(instruction -> builder.append("    ").append(instruction.describe()).append("\n"));
+            return builder.append("    ").append(terminator).append("\n").toString();
+        }
+
+    }
+
+    public abstract static class Value {
+
+        private int id;
+        private final Environment.Type type;
+
+        private Value(Environment.Type type) {
+            this.type = type;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public Environment.Type getType() {
+            return type;
+        }
+
+        @Override
+        public String toString() {
+            return "%" + id;
+        }
+
+    }
+
+    public static final class Parameter extends Value {
+
+        private final String name;
+
+        public Parameter(String name, Environment.Type type) {
+            super(type);
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+    }
+
+    public abstract static class Instruction extends Value {
+
+        private final List<Value> operands;
+
+        private Instruction(Environment.Type type, Value... operands) {
+            super(type);
+            this.operands = new ArrayList<>(Arrays.asList(operands));
+        }
+
+        public List<Value> getOperands() {
+            return operands;
+        }
+
+        /**
+         * Returns true if executing the instruction may be observed other
+         * than through its value, so it cannot be removed if unused.
+         */
+        public boolean hasEffects() {
+            return false;
+        }
+
+        String describe() {
+            return this + ": " + getType().getName() + " = " + operation();
+        }
+
+        abstract String operation();
+
+    }
+
+    public static final class Constant extends Instruction {
+
+        private final Object literal;
+
+        public Constant(Object literal, Environment.Type type) {
+            super(type);
+            this.literal = literal;
+        }
+
+        public Object getLiteral() {
+            return literal;
+        }
+
+        @Override
+        String operation() {
+            return "constant " + literal;
+        }
+
+    }
+
+    /**
+     * A binary operator other than AND and OR, which are lowered to branches.
+     */
+    public static final class Binary extends Instruction {
+
+        private final String operator;
+
+        public Binary(String operator, Value left, Value right, Environment.Type type) {
+            super(type, left, right);
+            this.operator = operator;
+        }
+
+        public String getOperator() {
+            return operator;
+        }
+
+        public Value getLeft() {
+            return getOperands().get(0);
+        }
+
+        public Value getRight() {
+            return getOperands().get(1);
+        }
+
+        @Override
+        public boolean hasEffects() {
+            return operator.equals("/");
+        }
+
+        @Override
+        String operation() {
+            return getLeft() + " " + operator + " " + getRight();
+        }
+
+    }
+
+    /**
+     * Calls a function, or a method of the receiver if present. The receiver
+     * is not part of the arguments.
+     */
+    public static final class Call extends Instruction {
+
+        private final boolean method;
+        private final String name;
+        private final Environment.Function function;
+
+        public Call(Optional<Value> receiver, String name, List<Value> arguments, Environment.Function function) {
+            super(function.getReturnType(), receiver.map(value -> new Value[] {value}).orElse(new Value[0]));
+            getOperands().addAll(arguments);
+            this.method = receiver.isPresent();
+            this.name = name;
+            this.function = function;
+        }
+
+        public Optional<Value> getReceiver() {
+            return method ? Optional.of(getOperands().get(0)) : Optional.empty();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<Value> getArguments() {
+            return getOperands().subList(method ? 1 : 0, getOperands().size());
+        }
+
+        public Environment.Function getFunction() {
+            return function;
+        }
+
+        @Override
+        public boolean hasEffects() {
+            return true;
+        }
+
+        @Override
+        String operation() {
+            return "call " + getReceiver().map(receiver -> receiver + ".").orElse("") + name
+                    + getArguments().stream().map(Value::toString).collect(Collectors.joining(", ", "(", ")"));
+        }
+
+    }
+
+    public static final class GetField extends Instruction {
+
+        private final String name;
+
+        public GetField(Value receiver, String name, Environment.Type type) {
+            super(type, receiver);
+            this.name = name;
+        }
+
+        public Value getReceiver() {
+            return getOperands().get(0);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        String operation() {
+            return "get " + getReceiver() + "." + name;
+        }
+
+    }
+
+    public static final class SetField extends Instruction {
+
+        private final String name;
+
+        public SetField(Value receiver, String name, Value value) {
+            super(Environment.Type.NIL, receiver, value);
+            this.name = name;
+        }
+
+        public Value getReceiver() {
+            return getOperands().get(0);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Value getValue() {
+            return getOperands().get(1);
+        }
+
+        @Override
+        public boolean hasEffects() {
+            return true;
+        }
+
+        @Override
+        String operation() {
+            return "set " + getReceiver() + "." + name + " " + getValue();
+        }
+
+    }
+
+    public static final class GetGlobal extends Instruction {
+
+        private final String name;
+
+        public GetGlobal(String name, Environment.Type type) {
+            super(type);
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        String operation() {
+            return "get " + name;
+        }
+
+    }
+
+    public static final class SetGlobal extends Instruction {
+
+        private final String name;
+
+        public SetGlobal(String name, Value value) {
+            super(Environment.Type.NIL, value);
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Value getValue() {
+            return getOperands().get(0);
+        }
+
+        @Override
+        public boolean hasEffects() {
+            return true;
+        }
+
+        @Override
+        String operation() {
+            return "set " + name + " " + getValue();
+        }
+
+    }
+
+    /**
+     * Starts iterating over an iterable for a FOR loop.
+     */
+    public static final class Iterate extends Instruction {
+
+        public Iterate(Value iterable) {
+            super(Environment.Type.ANY, iterable);
+        }
+
+        @Override
+        String operation() {
+            return "iterate " + getOperands().get(0);
+        }
+
+    }
+
+    public static final class HasNext extends Instruction {
+
+        public HasNext(Value iterator) {
+            super(Environment.Type.BOOLEAN, iterator);
+        }
+
+        @Override
+        public boolean hasEffects() {
+            return true;
+        }
+
+        @Override
+        String operation() {
+            return "hasNext " + getOperands().get(0);
+        }
+
+    }
+
+    public static final class Next extends Instruction {
+
+        public Next(Value iterator) {
+            super(Environment.Type.INTEGER, iterator);
+        }
+
+        @Override
+        public boolean hasEffects() {
+            return true;
+        }
+
+        @Override
+        String operation() {
+            return "next " + getOperands().get(0);
+        }
+
+    }
+
+    /**
+     * Selects the operand of the predecessor control came from.
+     */
+    public static final class Phi extends Instruction {
+
+        public Phi(Environment.Type type) {
+            super(type);
+        }
+
+        @Override
+        String operation() {
+            return "phi " + getOperands().stream().map(Value::toString).collect(Collectors.joining(", "));
+        }
+
+    }
+
+    public abstract static class Terminator {
+
+        private final List<Value> operands;
+
+        private Terminator(Value... operands) {
+            this.operands = new ArrayList<>(Arrays.asList(operands));
+        }
+
+        public List<Value> getOperands() {
+            return operands;
+        }
+
+        public abstract List<Block> getSuccessors();
+
+    }
+
+    public static final class Jump extends Terminator {
+
+        private final Block target;
+
+        public Jump(Block target) {
+            this.target = target;
+        }
+
+        public Block getTarget() {
+            return target;
+        }
+
+        @Override
+        public List<Block> getSuccessors() {
+            return Arrays.asList(target);
+        }
+
+        @Override
+        public String toString() {
+            return "jump b" + target.getId();
+        }
+
+    }
+
+    public static final class Branch extends Terminator {
+
+        private final Block thenBlock;
+        private final Block elseBlock;
+
+        public Branch(Value condition, Block thenBlock, Block elseBlock) {
+            super(condition);
+            this.thenBlock = thenBlock;
+            this.elseBlock = elseBlock;
+        }
+
+        public Value getCondition() {
+            return getOperands().get(0);
+        }
+
+        public Block getThenBlock() {
+            return thenBlock;
+        }
+
+        public Block getElseBlock() {
+            return elseBlock;
+        }
+
+        @Override
+        public List<Block> getSuccessors() {
+            return Arrays.asList(thenBlock, elseBlock);
+        }
+
+        @Override
+        public String toString() {
+            return "branch " + getCondition() + " b" + thenBlock.getId() + " b" + elseBlock.getId();
+        }
+
+    }
+
+    public static final class Return extends Terminator {
+
+        public Return(Value value) {
+            super(value);
+        }
+
+        public Value getValue() {
+            return getOperands().get(0);
+        }
+
+        @Override
+        public List<Block> getSuccessors() {
+            return Arrays.asList();
+        }
+
+        @Override
+        public String toString() {
+            return "return " + getValue();
+        }
+
+    }
+
+}
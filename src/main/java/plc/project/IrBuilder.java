@@ -0,0 +1,393 @@
+package plc.project;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Builds the {@link Ir} of an analyzed source.
+ *
+ * SSA form is constructed directly while walking the AST, following Braun et
+ * al., "Simple and Efficient Construction of Static Single Assignment Form":
+ * each block maps the locals it defines to their current value, reads in
+ * other blocks look through the predecessors, and blocks whose predecessors
+ * are not all known yet (loop headers) get incomplete phis that are filled in
+ * once the block is sealed. Afterwards, unreachable blocks (statements after
+ * a RETURN) and trivial phis are removed.
+ *
+ * Expression visits return the value of the expression, statement visits
+ * return {@code null}.
+ */
+public final class IrBuilder implements Ast.Visitor<Ir.Value> {
+
+    private final List<Environment.Variable> globals = new ArrayList<>();
+    private final List<Ir.Function> functions = new ArrayList<>();
+    private Ir.Program program;
+
+    private Ir.Function function;
+    private Ir.Block block;
+    private int variables = 0;
+    private final Deque<Map<String, String>> scopes = new ArrayDeque<>();
+    private final Map<String, Environment.Type> types = new HashMap<>();
+    private final Map<Ir.Block, Map<String, Ir.Value>> definitions = new HashMap<>();
+    private final Map<Ir.Block, Map<String, Ir.Phi>> incomplete = new HashMap<>();
+    private final Set<Ir.Block> sealed = new HashSet<>();
+
+    public Ir.Program build(Ast.Source ast) {
+        visit(ast);
+        return program;
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Source ast) {
+        ast.getFields().forEach(field -> globals.add(field.getVariable()));
+        begin("$fields", Environment.Type.NIL);
+        ast.getFields().forEach(this::visit);
+        Ir.Function initializer = end();
+        ast.getMethods().forEach(this::visit);
+        program = new Ir.Program(globals, initializer, functions);
+        return null;
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Field ast) {
+        Ir.Value value = ast.getValue().isPresent() ? visit(ast.getValue().get()) : nil();
+        emit(new Ir.SetGlobal(ast.getName(), value));
+        return null;
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Method ast) {
+        begin(ast.getName(), ast.getFunction().getReturnType());
+        for (int i = 0; i < ast.getParameters().size(); i++) {
+            Environment.Type type = ast.getFunction().getParameterTypes().get(i);
+            Ir.Parameter parameter = function.number(new Ir.Parameter(ast.getParameters().get(i), type));
+            function.getParameters().add(parameter);
+            write(declare(ast.getParameters().get(i), type), parameter);
+        }
+        ast.getStatements().forEach(this::visit);
+        functions.add(end());
+        return null;
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Stmt.Expression ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Stmt.Declaration ast) {
+        Ir.Value value = ast.getValue().isPresent() ? visit(ast.getValue().get()) : nil();
+        write(declare(ast.getName(), ast.getVariable().getType()), value);
+        return null;
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Stmt.Assignment ast) {
+        Ast.Expr.Access receiver = (Ast.Expr.Access) ast.getReceiver();
+        if (receiver.getReceiver().isPresent()) {
+            Ir.Value object = visit(receiver.getReceiver().get());
+            emit(new Ir.SetField(object, receiver.getName(), visit(ast.getValue())));
+        } else if (lookup(receiver.getName()) != null) {
+            write(lookup(receiver.getName()), visit(ast.getValue()));
+        } else {
+            emit(new Ir.SetGlobal(receiver.getName(), visit(ast.getValue())));
+        }
+        return null;
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Stmt.If ast) {
+        Ir.Value condition = visit(ast.getCondition());
+        Ir.Block thenBlock = newBlock(), elseBlock = newBlock(), join = newBlock();
+        block.setTerminator(new Ir.Branch(condition, thenBlock, elseBlock));
+        seal(thenBlock);
+        seal(elseBlock);
+
+        block = thenBlock;
+        statements(ast.getThenStatements());
+        block.setTerminator(new Ir.Jump(join));
+        block = elseBlock;
+        statements(ast.getElseStatements());
+        block.setTerminator(new Ir.Jump(join));
+
+        seal(join);
+        block = join;
+        return null;
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Stmt.For ast) {
+        Ir.Value iterator = emit(new Ir.Iterate(visit(ast.getValue())));
+        Ir.Block header = newBlock(), body = newBlock(), exit = newBlock();
+        block.setTerminator(new Ir.Jump(header));
+
+        block = header;
+        header.setTerminator(new Ir.Branch(emit(new Ir.HasNext(iterator)), body, exit));
+        seal(body);
+        block = body;
+        scopes.push(new HashMap<>());
+        write(declare(ast.getName(), Environment.Type.INTEGER), emit(new Ir.Next(iterator)));
+        ast.getStatements().forEach(this::visit);
+        scopes.pop();
+        block.setTerminator(new Ir.Jump(header));
+
+        seal(header);
+        seal(exit);
+        block = exit;
+        return null;
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Stmt.While ast) {
+        Ir.Block header = newBlock();
+        block.setTerminator(new Ir.Jump(header));
+
+        block = header;
+        Ir.Value condition = visit(ast.getCondition());
+        Ir.Block body = newBlock(), exit = newBlock();
+        block.setTerminator(new Ir.Branch(condition, body, exit));
+        seal(body);
+        block = body;
+        statements(ast.getStatements());
+        block.setTerminator(new Ir.Jump(header));
+
+        seal(header);
+        seal(exit);
+        block = exit;
+        return null;
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Stmt.Return ast) {
+        block.setTerminator(new Ir.Return(visit(ast.getValue())));
+        // Statements after a RETURN are unreachable and removed in end().
+        block = newBlock();
+        seal(block);
+        return null;
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Expr.Literal ast) {
+        return emit(new Ir.Constant(ast.getLiteral(), ast.getType()));
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Expr.Group ast) {
+        return visit(ast.getExpression());
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Expr.Binary ast) {
+        if (!ast.getOperator().equals("AND") && !ast.getOperator().equals("OR")) {
+            Ir.Value left = visit(ast.getLeft());
+            return emit(new Ir.Binary(ast.getOperator(), left, visit(ast.getRight()), ast.getType()));
+        }
+        // Short-circuits to a join block, where a phi merges the left value
+        // (when it decides) with the right value.
+        Ir.Value left = visit(ast.getLeft());
+        Ir.Block right = newBlock(), join = newBlock();
+        Ir.Block decided = block;
+        block.setTerminator(ast.getOperator().equals("AND") ? new Ir.Branch(left, right, join) : new Ir.Branch(left, join, right));
+        seal(right);
+        block = right;
+        Ir.Value value = visit(ast.getRight());
+        block.setTerminator(new Ir.Jump(join));
+        seal(join);
+
+        Ir.Phi phi = function.number(new Ir.Phi(Environment.Type.BOOLEAN));
+        for (Ir.Block predecessor : join.getPredecessors()) {
+            phi.getOperands().add(predecessor == decided ? left : value);
+        }
+        join.getPhis().add(phi);
+        block = join;
+        return phi;
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Expr.Access ast) {
+        if (ast.getReceiver().isPresent()) {
+            return emit(new Ir.GetField(visit(ast.getReceiver().get()), ast.getName(), ast.getType()));
+        } else if (lookup(ast.getName()) != null) {
+            return read(lookup(ast.getName()), block);
+        }
+        return emit(new Ir.GetGlobal(ast.getName(), ast.getType()));
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Expr.Function ast) {
+        Optional<Ir.Value> receiver = ast.getReceiver().map(this::visit);
+        List<Ir.Value> arguments = new ArrayList<>();
+        ast.getArguments().forEach(argument -> arguments.add(visit(argument)));
+        return emit(new Ir.Call(receiver, ast.getName(), arguments, ast.getFunction()));
+    }
+
+    private void begin(String name, Environment.Type returnType) {
+        function = new Ir.Function(name, returnType);
+        scopes.clear();
+        scopes.push(new HashMap<>());
+        block = newBlock();
+        seal(block);
+    }
+
+    private Ir.Function end() {
+        if (block.getTerminator() == null) {
+            block.setTerminator(new Ir.Return(nil()));
+        }
+        removeUnreachable();
+        removeTrivialPhis();
+        definitions.clear();
+        incomplete.clear();
+        sealed.clear();
+        return function;
+    }
+
+    private void statements(List<Ast.Stmt> statements) {
+        scopes.push(new HashMap<>());
+        statements.forEach(this::visit);
+        scopes.pop();
+    }
+
+    private Ir.Block newBlock() {
+        Ir.Block created = new Ir.Block(function.getBlocks().size());
+        function.getBlocks().add(created);
+        return created;
+    }
+
+    private <T extends Ir.Instruction> T emit(T instruction) {
+        block.getInstructions().add(function.number(instruction));
+        return instruction;
+    }
+
+    private Ir.Value nil() {
+        return emit(new Ir.Constant(null, Environment.Type.NIL));
+    }
+
+    /**
+     * Declares a local in the innermost scope, returning a key unique to the
+     * function so shadowed locals are kept apart.
+     */
+    private String declare(String name, Environment.Type type) {
+        String key = name + "#" + variables++;
+        scopes.peek().put(name, key);
+        types.put(key, type);
+        return key;
+    }
+
+    /**
+     * Returns the key of a local, or {@code null} for a global.
+     */
+    private String lookup(String name) {
+        for (Map<String, String> scope : scopes) {
+            if (scope.containsKey(name)) {
+                return scope.get(name);
+            }
+        }
+        return null;
+    }
+
+    private void write(String key, Ir.Value value) {
+        definitions.computeIfAbsent(block, b -> new HashMap<>()).put(key, value);
+    }
+
+    private Ir.Value read(String key, Ir.Block from) {
+        Map<String, Ir.Value> defined = definitions.get(from);
+        if (defined != null && defined.containsKey(key)) {
+            return defined.get(key);
+        }
+        Ir.Value value;
+        if (!sealed.contains(from)) {
+            Ir.Phi phi = phi(key, from);
+            incomplete.computeIfAbsent(from, b -> new HashMap<>()).put(key, phi);
+            value = phi;
+        } else if (from.getPredecessors().size() == 1) {
+            value = read(key, from.getPredecessors().get(0));
+        } else {
+            Ir.Phi phi = phi(key, from);
+            definitions.computeIfAbsent(from, b -> new HashMap<>()).put(key, phi);
+            fill(key, phi, from);
+            value = phi;
+        }
+        definitions.computeIfAbsent(from, b -> new HashMap<>()).put(key, value);
+        return value;
+    }
+
+    private Ir.Phi phi(String key, Ir.Block in) {
+        Ir.Phi phi = function.number(new Ir.Phi(types.get(key)));
+        in.getPhis().add(phi);
+        return phi;
+    }
+
+    private void fill(String key, Ir.Phi phi, Ir.Block in) {
+        for (Ir.Block predecessor : in.getPredecessors()) {
+            phi.getOperands().add(read(key, predecessor));
+        }
+    }
+
+    private void seal(Ir.Block target) {
+        incomplete.getOrDefault(target, new HashMap<>()).forEach((key, phi) -> fill(key, phi, target));
+        incomplete.remove(target);
+        sealed.add(target);
+    }
+
+    private void removeUnreachable() {
+        Set<Ir.Block> reachable = new HashSet<>();
+        Deque<Ir.Block> pending = new ArrayDeque<>();
+        pending.push(function.getBlocks().get(0));
+        while (!pending.isEmpty()) {
+            Ir.Block next = pending.pop();
+            if (reachable.add(next)) {
+                next.getTerminator().getSuccessors().forEach(pending::push);
+            }
+        }
+        function.getBlocks().retainAll(reachable);
+        for (Ir.Block reached : function.getBlocks()) {
+            for (int i = reached.getPredecessors().size() - 1; i >= 0; i--) {
+                if (!reachable.contains(reached.getPredecessors().get(i))) {
+                    reached.getPredecessors().remove(i);
+                    for (Ir.Phi phi : reached.getPhis()) {
+                        phi.getOperands().remove(i);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes phis whose operands are all the same value (or the phi
+     * itself), until none are left.
+     */
+    private void removeTrivialPhis() {
+        Map<Ir.Value, Ir.Value> replacements = new HashMap<>();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Ir.Block current : function.getBlocks()) {
+                for (Ir.Phi phi : new ArrayList<>(current.getPhis())) {
+                    Ir.Value same = null;
+                    boolean trivial = true;
+                    for (Ir.Value operand : phi.getOperands()) {
+                        if (operand != phi && operand != same) {
+                            trivial &= same == null;
+                            same = operand;
+                        }
+                    }
+                    if (trivial && same != null) {
+                        current.getPhis().remove(phi);
+                        replacements.put(phi, same);
+                        changed = true;
+                    }
+                }
+            }
+            Ir.replace(function, replacements);
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Executes an {@link Ir.Program} directly, with the same semantics as the
+ * {@link Interpreter}. Values of a call are kept in an array indexed by value
+ * id, and control moves between blocks by following terminators, evaluating
+ * the phis of a block for the predecessor control came from.
+ */
+public final class IrInterpreter {
+
+    private final Scope scope;
+
+    public IrInterpreter(Scope parent) {
+        scope = new Scope(parent);
+        Interpreter.defineBuiltins(scope);
+    }
+
+    public Scope getScope() {
+        return scope;
+    }
+
+    /**
+     * Defines the globals and functions of the program, initializes the
+     * globals and returns the result of {@code main/0}.
+     */
+    public Environment.PlcObject execute(Ir.Program program) {
+        program.getGlobals().forEach(global -> scope.defineVariable(global.getName(), Environment.NIL));
+        for (Ir.Function function : program.getFunctions()) {
+            scope.defineFunction(function.getName(), function.getParameters().size(), arguments -> invoke(function, arguments));
+        }
+        invoke(program.getInitializer(), new ArrayList<>());
+        return scope.lookupFunction("main", 0).invoke(new ArrayList<>());
+    }
+
+    public Environment.PlcObject invoke(Ir.Function function, List<Environment.PlcObject> arguments) {
+        Environment.PlcObject[] values = new Environment.PlcObject[function.getValueCount()];
+        for (int i = 0; i < arguments.size(); i++) {
+            values[function.getParameters().get(i).getId()] = arguments.get(i);
+        }
+        Ir.Block previous = null;
+        Ir.Block block = function.getBlocks().get(0);
+        while (true) {
+            if (!block.getPhis().isEmpty()) {
+                int predecessor = block.getPredecessors().indexOf(previous);
+                // Phis read their operands before any of them is assigned.
+                Environment.PlcObject[] selected = new Environment.PlcObject[block.getPhis().size()];
+                for (int i = 0; i < selected.length; i++) {
+                    selected[i] = values[block.getPhis().get(i).getOperands().get(predecessor).getId()];
+                }
+                for (int i = 0; i < selected.length; i++) {
+                    values[block.getPhis().get(i).getId()] = selected[i];
+                }
+            }
+            for (Ir.Instruction instruction : block.getInstructions()) {
+                values[instruction.getId()] = execute(instruction, values);
+            }
+
+            Ir.Terminator terminator = block.getTerminator();
+            previous = block;
+            if (terminator instanceof Ir.Jump) {
+                block = ((Ir.Jump) terminator).getTarget();
+            } else if (terminator instanceof Ir.Branch) {
+                Ir.Branch branch = (Ir.Branch) terminator;
+                block = (Boolean) values[branch.getCondition().getId()].getValue() ? branch.getThenBlock() : branch.getElseBlock();
+            } else {
+                return values[((Ir.Return) terminator).getValue().getId()];
+            }
+        }
+    }
+
+    private Environment.PlcObject execute(Ir.Instruction instruction, Environment.PlcObject[] values) {
+        if (instruction instanceof Ir.Constant) {
+            Object literal = ((Ir.Constant) instruction).getLiteral();
+            return literal == null ? Environment.NIL : Environment.create(literal);
+        } else if (instruction instanceof Ir.Binary) {
+            Ir.Binary binary = (Ir.Binary) instruction;
+            return ClosureCompiler.generic(binary.getOperator()).apply(values[binary.getLeft().getId()], values[binary.getRight().getId()]);
+        } else if (instruction instanceof Ir.Call) {
+            Ir.Call call = (Ir.Call) instruction;
+            List<Environment.PlcObject> arguments = new ArrayList<>();
+            call.getArguments().forEach(argument -> arguments.add(values[argument.getId()]));
+            if (call.getReceiver().isPresent()) {
+                return values[call.getReceiver().get().getId()].callMethod(call.getName(), arguments);
+            }
+            return scope.lookupFunction(call.getName(), arguments.size()).invoke(arguments);
+        } else if (instruction instanceof Ir.GetField) {
+            Ir.GetField get = (Ir.GetField) instruction;
+            return values[get.getReceiver().getId()].getField(get.getName()).getValue();
+        } else if (instruction instanceof Ir.SetField) {
+            Ir.SetField set = (Ir.SetField) instruction;
+            values[set.getReceiver().getId()].setField(set.getName(), values[set.getValue().getId()]);
+            return Environment.NIL;
+        } else if (instruction instanceof Ir.GetGlobal) {
+            return scope.lookupVariable(((Ir.GetGlobal) instruction).getName()).getValue();
+        } else if (instruction instanceof Ir.SetGlobal) {
+            Ir.SetGlobal set = (Ir.SetGlobal) instruction;
+            scope.lookupVariable(set.getName()).setValue(values[set.getValue().getId()]);
+            return Environment.NIL;
+        } else if (instruction instanceof Ir.Iterate) {
+            return Environment.create(((Iterable<?>) values[instruction.getOperands().get(0).getId()].getValue()).iterator());
+        } else if (instruction instanceof Ir.HasNext) {
+            return Environment.create(((Iterator<?>) values[instruction.getOperands().get(0).getId()].getValue()).hasNext());
+        } else if (instruction instanceof Ir.Next) {
+            return (Environment.PlcObject) ((Iterator<?>) values[instruction.getOperands().get(0).getId()].getValue()).next();
+        }
+        throw new AssertionError("Unexpected instruction " + instruction.getClass().getSimpleName() + ".");
+    }
+
+}
@@ -0,0 +1,584 @@
+package plc.project;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static plc.project.ClassWriter.*;
+
+/**
+ * Compiles an analyzed source directly to a JVM class, without going through
+ * Java source and {@code javac}. The class is defined as a hidden class in
+ * this package, so it is never written to disk and can be unloaded with its
+ * lookup.
+ *
+ * Values are represented as in the {@link Generator}'s output: Integer,
+ * Decimal, Boolean and Character as {@code int}, {@code double},
+ * {@code boolean} and {@code char}, String as {@code String}, IntegerIterable
+ * as {@code Iterable<Integer>}, and any other type as {@code Object}. Fields
+ * become static fields, initialized in the static initializer, and methods
+ * become static methods, with Nil methods returning {@code void}. Integer
+ * arithmetic uses the {@code Math.*Exact} methods, so a result which does not
+ * fit in an {@code int} throws an {@link ArithmeticException} where the
+ * Interpreter would compute it exactly. Decimal arithmetic is {@code double}
+ * arithmetic and rounds differently than the Interpreter's BigDecimals, so
+ * {@code 0.1 + 0.2 == 0.3} is false once compiled.
+ *
+ * Receivers, field assignments and functions other than print and methods of
+ * the source are not supported. The source is checked for them before any
+ * code is generated, failing with an {@link UnsupportedOperationException}
+ * naming the construct.
+ *
+ * Expression visits push the value of the expression, statement visits leave
+ * the operand stack empty.
+ */
+public final class JvmCompiler implements Ast.Visitor<Void> {
+
+    private static final String CLASS = "plc/project/Main";
+
+    private final ClassWriter writer = new ClassWriter(CLASS);
+    private final Map<String, String> methods = new HashMap<>();
+    private ClassWriter.Code code;
+    private Environment.Type returnType;
+    private final Deque<Map<String, Local>> blocks = new ArrayDeque<>();
+
+    public byte[] compile(Ast.Source ast) {
+        new Support(ast).visit(ast);
+        visit(ast);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Compiles the source, defines it as a hidden class and returns the
+     * result of {@code main/0}.
+     */
+    public static Environment.PlcObject execute(Ast.Source ast) {
+        MethodHandles.Lookup lookup = define(new JvmCompiler().compile(ast));
+        try {
+            MethodHandle main = lookup.findStatic(lookup.lookupClass(), "main", MethodType.methodType(int.class));
+            return Environment.create(BigInteger.valueOf((int) main.invokeExact()));
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Defines a class compiled by this compiler as a hidden class, returning
+     * a lookup with full access to it.
+     */
+    public static MethodHandles.Lookup define(byte[] bytes) {
+        try {
+            return MethodHandles.lookup().defineHiddenClass(bytes, true);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public Void visit(Ast.Source ast) {
+        for (Ast.Method method : ast.getMethods()) {
+            methods.put(method.getName() + "/" + method.getParameters().size(), descriptor(method.getFunction()));
+        }
+        for (Ast.Field field : ast.getFields()) {
+            writer.field(ACC_STATIC, field.getVariable().getJvmName(), descriptor(field.getVariable().getType()));
+        }
+        code = writer.method(ACC_STATIC, "<clinit>", "()V");
+        ast.getFields().forEach(this::visit);
+        code.op(RETURN);
+        code.end();
+        ast.getMethods().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Field ast) {
+        if (ast.getValue().isPresent()) {
+            value(ast.getValue().get(), ast.getVariable().getType());
+            code.field(PUTSTATIC, CLASS, ast.getVariable().getJvmName(), descriptor(ast.getVariable().getType()));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Method ast) {
+        Environment.Function function = ast.getFunction();
+        code = writer.method(ACC_PUBLIC | ACC_STATIC, function.getJvmName(), descriptor(function));
+        returnType = function.getReturnType();
+        blocks.clear();
+        blocks.push(new HashMap<>());
+        int index = 0;
+        for (int i = 0; i < ast.getParameters().size(); i++) {
+            Environment.Type type = function.getParameterTypes().get(i);
+            blocks.peek().put(ast.getParameters().get(i), new Local(index, type));
+            index += ClassWriter.size(descriptor(type));
+        }
+        ast.getStatements().forEach(this::visit);
+        if (returnType == Environment.Type.NIL) {
+            code.op(RETURN);
+        } else {
+            initial(returnType);
+            code.op(returnOpcode(returnType));
+        }
+        code.end();
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Expression ast) {
+        visit(ast.getExpression());
+        pop(ast.getExpression().getType());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Declaration ast) {
+        Environment.Type type = ast.getVariable().getType();
+        if (ast.getValue().isPresent()) {
+            value(ast.getValue().get(), type);
+        } else {
+            initial(type);
+        }
+        Local local = new Local(code.allocate(ClassWriter.size(descriptor(type))), type);
+        code.local(storeOpcode(type), local.index);
+        blocks.peek().put(ast.getName(), local);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Assignment ast) {
+        Ast.Expr.Access access = (Ast.Expr.Access) ast.getReceiver();
+        Environment.Type type = access.getVariable().getType();
+        value(ast.getValue(), type);
+        Local local = resolve(access.getName());
+        if (local != null) {
+            code.local(storeOpcode(type), local.index);
+        } else {
+            code.field(PUTSTATIC, CLASS, access.getVariable().getJvmName(), descriptor(type));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.If ast) {
+        ClassWriter.Label elseLabel = new ClassWriter.Label();
+        ClassWriter.Label end = new ClassWriter.Label();
+        visit(ast.getCondition());
+        code.jump(IFEQ, elseLabel);
+        block(ast.getThenStatements());
+        code.jump(GOTO, end);
+        code.label(elseLabel);
+        block(ast.getElseStatements());
+        code.label(end);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.For ast) {
+        ClassWriter.Label loop = new ClassWriter.Label();
+        ClassWriter.Label end = new ClassWriter.Label();
+        visit(ast.getValue());
+        code.invoke(INVOKEINTERFACE, "java/lang/Iterable", "iterator", "()Ljava/util/Iterator;");
+        int iterator = code.allocate(1);
+        code.local(ASTORE, iterator);
+        blocks.push(new HashMap<>());
+        Local element = new Local(code.allocate(1), Environment.Type.INTEGER);
+        blocks.peek().put(ast.getName(), element);
+        code.label(loop);
+        code.local(ALOAD, iterator);
+        code.invoke(INVOKEINTERFACE, "java/util/Iterator", "hasNext", "()Z");
+        code.jump(IFEQ, end);
+        code.local(ALOAD, iterator);
+        code.invoke(INVOKEINTERFACE, "java/util/Iterator", "next", "()Ljava/lang/Object;");
+        unbox(Environment.Type.INTEGER);
+        code.local(ISTORE, element.index);
+        ast.getStatements().forEach(this::visit);
+        code.jump(GOTO, loop);
+        code.label(end);
+        blocks.pop();
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.While ast) {
+        ClassWriter.Label loop = new ClassWriter.Label();
+        ClassWriter.Label end = new ClassWriter.Label();
+        code.label(loop);
+        visit(ast.getCondition());
+        code.jump(IFEQ, end);
+        block(ast.getStatements());
+        code.jump(GOTO, loop);
+        code.label(end);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Return ast) {
+        if (returnType == Environment.Type.NIL) {
+            visit(ast.getValue());
+            pop(ast.getValue().getType());
+            code.op(RETURN);
+        } else {
+            value(ast.getValue(), returnType);
+            code.op(returnOpcode(returnType));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Literal ast) {
+        Object literal = ast.getLiteral();
+        if (literal instanceof BigInteger) {
+            code.integer(((BigInteger) literal).intValue());
+        } else if (literal instanceof BigDecimal) {
+            code.decimal(((BigDecimal) literal).doubleValue());
+        } else if (literal instanceof Boolean) {
+            code.integer((Boolean) literal ? 1 : 0);
+        } else if (literal instanceof Character) {
+            code.integer((Character) literal);
+        } else if (literal instanceof String) {
+            code.string((String) literal);
+        } else {
+            code.op(ACONST_NULL);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Group ast) {
+        return visit(ast.getExpression());
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Binary ast) {
+        Environment.Type operands = ast.getLeft().getType();
+        switch (ast.getOperator()) {
+            case "AND":
+            case "OR": {
+                ClassWriter.Label shortCircuit = new ClassWriter.Label();
+                int jump = ast.getOperator().equals("AND") ? IFEQ : IFNE;
+                visit(ast.getLeft());
+                code.jump(jump, shortCircuit);
+                visit(ast.getRight());
+                code.jump(jump, shortCircuit);
+                bool(ast.getOperator().equals("OR"), shortCircuit);
+                return null;
+            }
+            case "<": return compare(ast, IF_ICMPLT, IFLT);
+            case "<=": return compare(ast, IF_ICMPLE, IFLE);
+            case ">": return compare(ast, IF_ICMPGT, IFGT);
+            case ">=": return compare(ast, IF_ICMPGE, IFGE);
+            case "==": return compare(ast, IF_ICMPEQ, IFEQ);
+            case "!=": return compare(ast, IF_ICMPNE, IFNE);
+            case "+":
+                if (ast.getType() == Environment.Type.STRING) {
+                    string(ast.getLeft());
+                    string(ast.getRight());
+                    code.invoke(INVOKEVIRTUAL, "java/lang/String", "concat", "(Ljava/lang/String;)Ljava/lang/String;");
+                    return null;
+                }
+                return arithmetic(ast, "addExact", DADD);
+            case "-": return arithmetic(ast, "subtractExact", DSUB);
+            case "*": return arithmetic(ast, "multiplyExact", DMUL);
+            case "/": return arithmetic(ast, null, DDIV);
+            default: throw new UnsupportedOperationException("The operator " + ast.getOperator() + " on " + operands.getName() + " is not supported.");
+        }
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Access ast) {
+        Environment.Type type = ast.getVariable().getType();
+        Local local = resolve(ast.getName());
+        if (local != null) {
+            code.local(loadOpcode(local.type), local.index);
+            convert(local.type, type);
+        } else {
+            code.field(GETSTATIC, CLASS, ast.getVariable().getJvmName(), descriptor(type));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Function ast) {
+        Environment.Function function = ast.getFunction();
+        if (function.getJvmName().equals("System.out.println")) {
+            Ast.Expr argument = ast.getArguments().get(0);
+            code.field(GETSTATIC, "java/lang/System", "out", "Ljava/io/PrintStream;");
+            visit(argument);
+            String descriptor = descriptor(argument.getType());
+            code.invoke(INVOKEVIRTUAL, "java/io/PrintStream", "println", "(" + (descriptor.startsWith("L") && !descriptor.equals("Ljava/lang/String;") ? "Ljava/lang/Object;" : descriptor) + ")V");
+        } else {
+            String key = ast.getName() + "/" + ast.getArguments().size();
+            for (int i = 0; i < ast.getArguments().size(); i++) {
+                value(ast.getArguments().get(i), function.getParameterTypes().get(i));
+            }
+            code.invoke(INVOKESTATIC, CLASS, function.getJvmName(), methods.get(key));
+        }
+        if (function.getReturnType() == Environment.Type.NIL) {
+            code.op(ACONST_NULL);
+        }
+        return null;
+    }
+
+    /**
+     * Pushes a value converted to the representation of the given type.
+     */
+    private void value(Ast.Expr ast, Environment.Type type) {
+        visit(ast);
+        convert(ast.getType(), type);
+    }
+
+    private void convert(Environment.Type from, Environment.Type to) {
+        String source = descriptor(from), target = descriptor(to);
+        if (source.equals(target)) {
+            return;
+        }
+        if (!source.startsWith("L") && target.startsWith("L")) {
+            String box = box(source);
+            code.invoke(INVOKESTATIC, box, "valueOf", "(" + source + ")L" + box + ";");
+        } else if (source.startsWith("L") && !target.startsWith("L")) {
+            unbox(to);
+        } else if (!target.equals("Ljava/lang/Object;")) {
+            code.type(CHECKCAST, target.substring(1, target.length() - 1));
+        }
+    }
+
+    private void unbox(Environment.Type type) {
+        String descriptor = descriptor(type);
+        String box = box(descriptor);
+        code.type(CHECKCAST, box);
+        String primitive = descriptor.equals("I") ? "int" : descriptor.equals("D") ? "double" : descriptor.equals("Z") ? "boolean" : "char";
+        code.invoke(INVOKEVIRTUAL, box, primitive + "Value", "()" + descriptor);
+    }
+
+    /**
+     * Pushes a value converted to a string for concatenation.
+     */
+    private void string(Ast.Expr ast) {
+        visit(ast);
+        String descriptor = descriptor(ast.getType());
+        if (!descriptor.equals("Ljava/lang/String;")) {
+            code.invoke(INVOKESTATIC, "java/lang/String", "valueOf", "(" + (descriptor.startsWith("L") ? "Ljava/lang/Object;" : descriptor) + ")Ljava/lang/String;");
+        }
+    }
+
+    /**
+     * Compiles Integer arithmetic with the {@code Math} method of the given
+     * name, or a division in {@code long}s, where only
+     * {@code Integer.MIN_VALUE / -1} overflows, narrowed with
+     * {@code Math.toIntExact}.
+     */
+    private Void arithmetic(Ast.Expr.Binary ast, String exact, int decimal) {
+        if (ast.getType() == Environment.Type.DECIMAL) {
+            visit(ast.getLeft());
+            visit(ast.getRight());
+            code.op(decimal);
+        } else if (exact != null) {
+            visit(ast.getLeft());
+            visit(ast.getRight());
+            code.invoke(INVOKESTATIC, "java/lang/Math", exact, "(II)I");
+        } else {
+            visit(ast.getLeft());
+            code.op(I2L);
+            visit(ast.getRight());
+            code.op(I2L);
+            code.op(LDIV);
+            code.invoke(INVOKESTATIC, "java/lang/Math", "toIntExact", "(J)I");
+        }
+        return null;
+    }
+
+    /**
+     * Compiles a comparison: integers, characters and booleans with
+     * {@code if_icmp}, decimals with {@code dcmp}, equality of other values
+     * with {@link java.util.Objects#equals} and their order with
+     * {@link Comparable#compareTo}.
+     */
+    private Void compare(Ast.Expr.Binary ast, int integer, int zero) {
+        String descriptor = descriptor(ast.getLeft().getType());
+        ClassWriter.Label isTrue = new ClassWriter.Label();
+        visit(ast.getLeft());
+        visit(ast.getRight());
+        if (descriptor.equals("I") || descriptor.equals("Z") || descriptor.equals("C")) {
+            code.jump(integer, isTrue);
+        } else if (descriptor.equals("D")) {
+            code.op(zero == IFLT || zero == IFLE ? DCMPG : DCMPL);
+            code.jump(zero, isTrue);
+        } else if (zero == IFEQ || zero == IFNE) {
+            code.invoke(INVOKESTATIC, "java/util/Objects", "equals", "(Ljava/lang/Object;Ljava/lang/Object;)Z");
+            code.jump(zero == IFEQ ? IFNE : IFEQ, isTrue);
+        } else {
+            code.invoke(INVOKEINTERFACE, "java/lang/Comparable", "compareTo", "(Ljava/lang/Object;)I");
+            code.jump(zero, isTrue);
+        }
+        bool(true, isTrue);
+        return null;
+    }
+
+    /**
+     * Pushes a boolean after a condition that may have jumped to the label:
+     * the given value if it did, the opposite otherwise. The value at the
+     * label is pushed with no stack effect, since the stack there is the one
+     * before the fall-through value.
+     */
+    private void bool(boolean jumped, ClassWriter.Label label) {
+        ClassWriter.Label end = new ClassWriter.Label();
+        code.op(jumped ? ICONST_0 : ICONST_0 + 1, 1);
+        code.jump(GOTO, end);
+        code.label(label);
+        code.op(jumped ? ICONST_0 + 1 : ICONST_0, 0);
+        code.label(end);
+    }
+
+    private void block(java.util.List<Ast.Stmt> statements) {
+        blocks.push(new HashMap<>());
+        statements.forEach(this::visit);
+        blocks.pop();
+    }
+
+    private void pop(Environment.Type type) {
+        code.op(ClassWriter.size(descriptor(type)) == 2 ? POP2 : POP);
+    }
+
+    /**
+     * Pushes the default value of a type.
+     */
+    private void initial(Environment.Type type) {
+        String descriptor = descriptor(type);
+        if (descriptor.equals("D")) {
+            code.decimal(0);
+        } else if (descriptor.startsWith("L")) {
+            code.op(ACONST_NULL);
+        } else {
+            code.integer(0);
+        }
+    }
+
+    private Local resolve(String name) {
+        for (Map<String, Local> block : blocks) {
+            if (block.containsKey(name)) {
+                return block.get(name);
+            }
+        }
+        return null;
+    }
+
+    private static void unsupported(boolean condition, String construct) {
+        if (condition) {
+            throw new UnsupportedOperationException("The JVM backend does not support " + construct + ".");
+        }
+    }
+
+    /**
+     * Rejects the constructs the compiler does not support, so a source is
+     * rejected before any of it is generated.
+     */
+    private static final class Support extends Rewriter {
+
+        private final Set<String> methods = new HashSet<>();
+
+        private Support(Ast.Source ast) {
+            ast.getMethods().forEach(method -> methods.add(method.getName() + "/" + method.getParameters().size()));
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.Assignment ast) {
+            unsupported(((Ast.Expr.Access) ast.getReceiver()).getReceiver().isPresent(), "field assignments");
+            return super.visit(ast);
+        }
+
+        @Override
+        public Ast visit(Ast.Expr.Binary ast) {
+            boolean arithmetic = ast.getOperator().equals("+") || ast.getOperator().equals("-")
+                    || ast.getOperator().equals("*") || ast.getOperator().equals("/");
+            unsupported(arithmetic && ast.getType() != Environment.Type.INTEGER && ast.getType() != Environment.Type.DECIMAL
+                    && !(ast.getOperator().equals("+") && ast.getType() == Environment.Type.STRING),
+                    "the operator " + ast.getOperator() + " on " + ast.getType().getName());
+            return super.visit(ast);
+        }
+
+        @Override
+        public Ast visit(Ast.Expr.Access ast) {
+            unsupported(ast.getReceiver().isPresent(), "field accesses");
+            return super.visit(ast);
+        }
+
+        @Override
+        public Ast visit(Ast.Expr.Function ast) {
+            String key = ast.getName() + "/" + ast.getArguments().size();
+            unsupported(ast.getReceiver().isPresent(), "method calls");
+            unsupported(!ast.getFunction().getJvmName().equals("System.out.println") && !methods.contains(key), "the function " + key);
+            return super.visit(ast);
+        }
+
+    }
+
+    private static String descriptor(Environment.Function function) {
+        StringBuilder builder = new StringBuilder("(");
+        function.getParameterTypes().forEach(type -> builder.append(descriptor(type)));
+        builder.append(")");
+        return builder.append(function.getReturnType() == Environment.Type.NIL ? "V" : descriptor(function.getReturnType())).toString();
+    }
+
+    static String descriptor(Environment.Type type) {
+        if (type == Environment.Type.INTEGER) {
+            return "I";
+        } else if (type == Environment.Type.DECIMAL) {
+            return "D";
+        } else if (type == Environment.Type.BOOLEAN) {
+            return "Z";
+        } else if (type == Environment.Type.CHARACTER) {
+            return "C";
+        } else if (type == Environment.Type.STRING) {
+            return "Ljava/lang/String;";
+        } else if (type == Environment.Type.INTEGER_ITERABLE) {
+            return "Ljava/lang/Iterable;";
+        }
+        return "Ljava/lang/Object;";
+    }
+
+    private static String box(String descriptor) {
+        switch (descriptor) {
+            case "I": return "java/lang/Integer";
+            case "D": return "java/lang/Double";
+            case "Z": return "java/lang/Boolean";
+            default: return "java/lang/Character";
+        }
+    }
+
+    private static int loadOpcode(Environment.Type type) {
+        String descriptor = descriptor(type);
+        return descriptor.equals("D") ? DLOAD : descriptor.startsWith("L") ? ALOAD : ILOAD;
+    }
+
+    private static int storeOpcode(Environment.Type type) {
+        return loadOpcode(type) + (ISTORE - ILOAD);
+    }
+
+    private static int returnOpcode(Environment.Type type) {
+        String descriptor = descriptor(type);
+        return descriptor.equals("D") ? DRETURN : descriptor.startsWith("L") ? ARETURN : IRETURN;
+    }
+
+    private static final class Local {
+
+        private final int index;
+        private final Environment.Type type;
+
+        private Local(int index, Environment.Type type) {
+            this.index = index;
+            this.type = type;
+        }
+
+    }
+
+}
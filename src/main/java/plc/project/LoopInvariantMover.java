@@ -0,0 +1,233 @@
+package plc.project;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Hoists invariant expressions out of WHILE and FOR loops into temporaries
+ * declared right before the loop, so they are evaluated once instead of on
+ * every iteration.
+ *
+ * An expression is invariant if it has no calls or divisions (which may
+ * fail) and reads only variables the loop never assigns or declares. If the
+ * loop, including its condition, calls a function, which may assign fields,
+ * only reads of variables which are locals of the method at the point of the
+ * read are considered invariant. Only binary expressions are hoisted,
+ * and equal expressions share a temporary.
+ */
+public final class LoopInvariantMover extends Rewriter {
+
+    private Set<Environment.Variable> locals = Collections.newSetFromMap(new IdentityHashMap<>());
+    private int temporaries = 0;
+
+    @Override
+    public Ast visit(Ast.Method ast) {
+        locals = locals(ast);
+        temporaries = 0;
+        return super.visit(ast);
+    }
+
+    @Override
+    protected List<Ast.Stmt> rewrite(List<Ast.Stmt> statements) {
+        List<Ast.Stmt> result = new ArrayList<>();
+        boolean changed = false;
+        for (Ast.Stmt statement : statements) {
+            Ast.Stmt rewritten = (Ast.Stmt) visit(statement);
+            if (rewritten instanceof Ast.Stmt.While || rewritten instanceof Ast.Stmt.For) {
+                Hoister hoister = new Hoister(rewritten);
+                rewritten = hoister.hoist(rewritten);
+                result.addAll(hoister.declarations);
+            }
+            changed |= rewritten != statement;
+            result.add(rewritten);
+        }
+        return changed ? result : statements;
+    }
+
+    /**
+     * Returns the variables of the accesses of an analyzed method which read
+     * locals, by identity. Scopes are tracked like the Analyzer, so a read of
+     * a field before a local of the same name is declared is not local.
+     */
+    static Set<Environment.Variable> locals(Ast.Method ast) {
+        return new Locals(ast).variables;
+    }
+
+    private static final class Locals extends Rewriter {
+
+        private final Set<Environment.Variable> variables = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final Deque<Set<String>> scopes = new ArrayDeque<>();
+
+        private Locals(Ast.Method method) {
+            scopes.push(new HashSet<>(method.getParameters()));
+            method.getStatements().forEach(this::visit);
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.Declaration ast) {
+            super.visit(ast);
+            scopes.peek().add(ast.getName());
+            return ast;
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.If ast) {
+            visit(ast.getCondition());
+            visitBlock(ast.getThenStatements(), null);
+            visitBlock(ast.getElseStatements(), null);
+            return ast;
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.For ast) {
+            visit(ast.getValue());
+            visitBlock(ast.getStatements(), ast.getName());
+            return ast;
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.While ast) {
+            visit(ast.getCondition());
+            visitBlock(ast.getStatements(), null);
+            return ast;
+        }
+
+        @Override
+        public Ast visit(Ast.Expr.Access ast) {
+            if (!ast.getReceiver().isPresent() && scopes.stream().anyMatch(scope -> scope.contains(ast.getName()))) {
+                variables.add(ast.getVariable());
+            }
+            return super.visit(ast);
+        }
+
+        private void visitBlock(List<Ast.Stmt> statements, String variable) {
+            scopes.push(new HashSet<>());
+            if (variable != null) {
+                scopes.peek().add(variable);
+            }
+            statements.forEach(this::visit);
+            scopes.pop();
+        }
+
+    }
+
+    /**
+     * Collects the names a loop assigns or declares, and whether it calls any
+     * function, including in the condition of a WHILE.
+     */
+    private static final class Assignments extends Rewriter {
+
+        private final Set<String> assigned = new HashSet<>();
+        private final Set<String> declared = new HashSet<>();
+        private boolean calls = false;
+
+        private Assignments(Ast.Stmt loop) {
+            visit(loop);
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.Declaration ast) {
+            declared.add(ast.getName());
+            return super.visit(ast);
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.Assignment ast) {
+            if (ast.getReceiver() instanceof Ast.Expr.Access && !((Ast.Expr.Access) ast.getReceiver()).getReceiver().isPresent()) {
+                assigned.add(((Ast.Expr.Access) ast.getReceiver()).getName());
+            }
+            return super.visit(ast);
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.For ast) {
+            declared.add(ast.getName());
+            return super.visit(ast);
+        }
+
+        @Override
+        public Ast visit(Ast.Expr.Function ast) {
+            calls = true;
+            return super.visit(ast);
+        }
+
+    }
+
+    /**
+     * Replaces the invariant expressions of a single loop with temporaries,
+     * collecting their declarations. The value of a FOR is evaluated once
+     * already and is left alone.
+     */
+    private final class Hoister extends Rewriter {
+
+        private final Set<String> variant = new HashSet<>();
+        private final boolean calls;
+        private final List<Ast.Stmt.Declaration> declarations = new ArrayList<>();
+
+        private Hoister(Ast.Stmt loop) {
+            Assignments assignments = new Assignments(loop);
+            variant.addAll(assignments.assigned);
+            variant.addAll(assignments.declared);
+            calls = assignments.calls;
+        }
+
+        private Ast.Stmt hoist(Ast.Stmt loop) {
+            if (loop instanceof Ast.Stmt.While) {
+                return (Ast.Stmt) visit(loop);
+            }
+            Ast.Stmt.For ast = (Ast.Stmt.For) loop;
+            List<Ast.Stmt> statements = rewrite(ast.getStatements());
+            return statements == ast.getStatements() ? ast : new Ast.Stmt.For(ast.getName(), ast.getValue(), statements);
+        }
+
+        @Override
+        protected Ast.Expr rewrite(Ast.Expr expression) {
+            if (!(expression instanceof Ast.Expr.Binary) || !isInvariant(expression)) {
+                return super.rewrite(expression);
+            }
+            for (Ast.Stmt.Declaration declaration : declarations) {
+                if (declaration.getValue().get().equals(expression)) {
+                    return access(declaration.getVariable());
+                }
+            }
+            String name = "$invariant" + temporaries++;
+            Ast.Stmt.Declaration declaration = new Ast.Stmt.Declaration(name, Optional.empty(), Optional.of(expression));
+            declaration.setVariable(new Environment.Variable(name, name, expression.getType(), Environment.NIL));
+            declarations.add(declaration);
+            locals.add(declaration.getVariable());
+            return access(declaration.getVariable());
+        }
+
+        private boolean isInvariant(Ast.Expr expression) {
+            if (expression instanceof Ast.Expr.Literal) {
+                return true;
+            } else if (expression instanceof Ast.Expr.Group) {
+                return isInvariant(((Ast.Expr.Group) expression).getExpression());
+            } else if (expression instanceof Ast.Expr.Binary) {
+                Ast.Expr.Binary binary = (Ast.Expr.Binary) expression;
+                return !binary.getOperator().equals("/") && isInvariant(binary.getLeft()) && isInvariant(binary.getRight());
+            } else if (expression instanceof Ast.Expr.Access) {
+                Ast.Expr.Access access = (Ast.Expr.Access) expression;
+                return !access.getReceiver().isPresent()
+                        && !variant.contains(access.getName())
+                        && (!calls || locals.contains(access.getVariable()));
+            }
+            return false;
+        }
+
+        private Ast.Expr.Access access(Environment.Variable variable) {
+            Ast.Expr.Access access = new Ast.Expr.Access(Optional.empty(), variable.getName());
+            access.setVariable(variable);
+            return access;
+        }
+
+    }
+
+}
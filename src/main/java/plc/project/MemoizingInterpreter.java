@@ -0,0 +1,123 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An interpreter which caches the results of the pure methods of a source,
+ * as determined by the {@link PurityAnalyzer}.
+ *
+ * Each pure method has its own cache of at most {@code capacity} results,
+ * keyed by the values of the arguments and evicting the least recently used
+ * result when full. Calls with arguments which are not Integers, Decimals,
+ * Booleans, Characters, Strings or NIL are not cached.
+ */
+public final class MemoizingInterpreter extends Interpreter {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final int capacity;
+    private final Map<String, Cache> caches = new HashMap<>();
+    private Set<String> pure = Collections.emptySet();
+
+    public MemoizingInterpreter(Scope parent) {
+        this(parent, DEFAULT_CAPACITY);
+    }
+
+    public MemoizingInterpreter(Scope parent, int capacity) {
+        super(parent);
+        this.capacity = capacity;
+    }
+
+    public Cache getCache(String name, int arity) {
+        Cache cache = caches.get(name + "/" + arity);
+        if (cache == null) {
+            throw new RuntimeException("The method " + name + "/" + arity + " is not memoized.");
+        }
+        return cache;
+    }
+
+    @Override
+    public Environment.PlcObject visit(Ast.Source ast) {
+        pure = new PurityAnalyzer().analyze(ast);
+        return super.visit(ast);
+    }
+
+    @Override
+    public Environment.PlcObject visit(Ast.Method ast) {
+        super.visit(ast);
+        String name = ast.getName();
+        int arity = ast.getParameters().size();
+        if (pure.contains(name + "/" + arity)) {
+            Cache cache = new Cache(getScope().lookupFunction(name, arity));
+            caches.put(name + "/" + arity, cache);
+            getScope().removeFunction(name, arity);
+            getScope().defineFunction(name, arity, cache::invoke);
+        }
+        return Environment.NIL;
+    }
+
+    /**
+     * The results of a pure method with hit and miss counters.
+     */
+    public final class Cache {
+
+        private final Environment.Function function;
+        private final Map<List<Object>, Environment.PlcObject> results = new LinkedHashMap<List<Object>, Environment.PlcObject>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, Environment.PlcObject> eldest) {
+                return size() > capacity;
+            }
+
+        };
+        private int hits = 0;
+        private int misses = 0;
+
+        private Cache(Environment.Function function) {
+            this.function = function;
+        }
+
+        public int getHits() {
+            return hits;
+        }
+
+        public int getMisses() {
+            return misses;
+        }
+
+        public int getSize() {
+            return results.size();
+        }
+
+        private Environment.PlcObject invoke(List<Environment.PlcObject> arguments) {
+            List<Object> key = new ArrayList<>(arguments.size());
+            for (Environment.PlcObject argument : arguments) {
+                Object value = argument.getValue();
+                if (!(value instanceof BigInteger || value instanceof BigDecimal || value instanceof Boolean
+                        || value instanceof Character || value instanceof String || argument == Environment.NIL)) {
+                    return function.invoke(arguments);
+                }
+                key.add(value);
+            }
+            Environment.PlcObject result = results.get(key);
+            if (result != null) {
+                hits++;
+                return result;
+            }
+            misses++;
+            result = function.invoke(arguments);
+            results.put(key, result);
+            return result;
+        }
+
+    }
+
+}
@@ -0,0 +1,109 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * The binary operations of the {@link Interpreter}, indexed by the operator
+ * and the runtime classes of both operands.
+ *
+ * The arithmetic, concatenation and comparison operations of the builtin
+ * types are registered when the class is initialized. Operations for the
+ * values of new types are registered by their Java class with
+ * {@link #register}, from within the package; the table is concurrent, since
+ * the interpreters of a {@link BatchRunner} look operations up from many
+ * threads. Logical operators are not dispatched here since they do
+ * not always evaluate their right operand.
+ */
+public final class Operators {
+
+    @FunctionalInterface
+    public interface Operation {
+
+        Environment.PlcObject apply(Environment.PlcObject left, Environment.PlcObject right);
+
+    }
+
+    private static final Map<Key, Operation> OPERATIONS = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the operation for operands of exactly the given classes, or
+     * {@code null} if none is registered.
+     */
+    public static Operation lookup(String operator, Class<?> left, Class<?> right) {
+        return OPERATIONS.get(new Key(operator, left, right));
+    }
+
+    @SuppressWarnings("unchecked")
+    static <L, R> void register(String operator, Class<L> left, Class<R> right, BiFunction<? super L, ? super R, ?> operation) {
+        Operation registered = (l, r) -> Environment.create(operation.apply((L) l.getValue(), (R) r.getValue()));
+        if (OPERATIONS.putIfAbsent(new Key(operator, left, right), registered) != null) {
+            throw new IllegalArgumentException("Duplicate registration of operator " + operator + " for " + left.getName() + " and " + right.getName() + ".");
+        }
+    }
+
+    private static <T> void arithmetic(Class<T> type, BiFunction<T, T, T> add, BiFunction<T, T, T> subtract, BiFunction<T, T, T> multiply, BiFunction<T, T, T> divide) {
+        register("+", type, type, add);
+        register("-", type, type, subtract);
+        register("*", type, type, multiply);
+        register("/", type, type, divide);
+    }
+
+    private static <T extends Comparable<T>> void comparisons(Class<T> type) {
+        register("<", type, type, (l, r) -> l.compareTo(r) < 0);
+        register("<=", type, type, (l, r) -> l.compareTo(r) <= 0);
+        register(">", type, type, (l, r) -> l.compareTo(r) > 0);
+        register(">=", type, type, (l, r) -> l.compareTo(r) >= 0);
+        register("==", type, type, (l, r) -> l.compareTo(r) == 0);
+        register("!=", type, type, (l, r) -> l.compareTo(r) != 0);
+    }
+
+    private static final class Key {
+
+        private final String operator;
+        private final Class<?> left;
+        private final Class<?> right;
+
+        private Key(String operator, Class<?> left, Class<?> right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key &&
+                    operator.equals(((Key) obj).operator) &&
+                    left == ((Key) obj).left &&
+                    right == ((Key) obj).right;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * operator.hashCode() + left.hashCode()) + right.hashCode();
+        }
+
+    }
+
+    static {
+        arithmetic(BigInteger.class, BigInteger::add, BigInteger::subtract, BigInteger::multiply, BigInteger::divide);
+        arithmetic(BigDecimal.class, BigDecimal::add, BigDecimal::subtract, BigDecimal::multiply, (l, r) -> l.divide(r, RoundingMode.HALF_UP));
+        for (Class<?> type : Arrays.asList(String.class, BigInteger.class, BigDecimal.class, Character.class, Boolean.class)) {
+            register("+", String.class, type, (l, r) -> l + r);
+            if (type != String.class) {
+                register("+", type, String.class, (l, r) -> l + r);
+            }
+        }
+        comparisons(BigInteger.class);
+        comparisons(BigDecimal.class);
+        comparisons(Character.class);
+        comparisons(String.class);
+        comparisons(Boolean.class);
+    }
+
+}
@@ -0,0 +1,255 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * Runs the passes between the {@link Parser} and a backend at an optimization
+ * level, timing each of them.
+ *
+ * Passes declare the properties of the AST they require, provide and
+ * invalidate, such as {@link #ANALYZED}. Before a pass runs, every required
+ * property that is not currently valid is provided by running the registered
+ * pass providing it, so analyses are only repeated when a transformation
+ * invalidated them. Each run of a pass (including those run for requirements)
+ * is recorded with its wall time and the node counts before and after.
+ */
+public final class PassManager {
+
+    /**
+     * The AST is annotated with types, variables and functions.
+     */
+    public static final String ANALYZED = "analyzed";
+
+    /**
+     * Binary expressions safe for primitive arithmetic are marked.
+     */
+    public static final String RANGES = "ranges";
+
+    private final int level;
+    private final List<Pass> passes = new ArrayList<>();
+    private final Map<Pass, Integer> levels = new HashMap<>();
+    private final Map<String, Pass> providers = new HashMap<>();
+    private final Set<String> valid = new HashSet<>();
+    private final List<Record> records = new ArrayList<>();
+
+    public PassManager(int level) {
+        this.level = level;
+    }
+
+    /**
+     * Returns a manager with the standard pipeline:
+     *
+     *  - -O0: analysis only,
+     *  - -O1: constant folding, dead code elimination and tree shaking,
+     *  - -O2: additionally inlining, loop-invariant code motion, common
+     *    subexpression elimination and range analysis.
+     */
+    public static PassManager standard(int level) {
+        PassManager manager = new PassManager(level);
+        manager.register(0, Pass.of("analyze", set(), set(ANALYZED), set(), ast -> {
+            new Analyzer(new Scope(null)).visit(ast);
+            return ast;
+        }));
+        manager.register(2, Pass.of("inline", set(ANALYZED), set(), set(RANGES), ast -> (Ast.Source) new Inliner().visit(ast)));
+        manager.register(1, Pass.of("fold-constants", set(ANALYZED), set(), set(RANGES), ast -> (Ast.Source) new ConstantFolder().visit(ast)));
+        manager.register(1, Pass.of("eliminate-dead-code", set(ANALYZED), set(), set(RANGES), ast -> (Ast.Source) new DeadCodeEliminator().visit(ast)));
+        manager.register(1, Pass.of("shake-tree", set(), set(), set(), ast -> new TreeShaker().shake(ast)));
+        manager.register(2, Pass.of("move-loop-invariants", set(ANALYZED), set(), set(RANGES), ast -> (Ast.Source) new LoopInvariantMover().visit(ast)));
+        manager.register(2, Pass.of("eliminate-common-subexpressions", set(ANALYZED), set(), set(RANGES), ast -> (Ast.Source) new CommonSubexpressionEliminator().visit(ast)));
+        manager.register(2, Pass.of("analyze-ranges", set(ANALYZED), set(RANGES), set(), ast -> {
+            new RangeAnalyzer().visit(ast);
+            return ast;
+        }));
+        return manager;
+    }
+
+    /**
+     * Parses an optimization level flag, {@code -O0} to {@code -O2}.
+     */
+    public static int parseLevel(String flag) {
+        if (!flag.matches("-O[0-2]")) {
+            throw new IllegalArgumentException("Expected an optimization level -O0, -O1 or -O2, received " + flag + ".");
+        }
+        return flag.charAt(2) - '0';
+    }
+
+    /**
+     * Registers a pass to run at the given level and above. Passes run in
+     * the order they were registered. A pass providing a property is also
+     * used to satisfy requirements on it, regardless of its level.
+     */
+    public void register(int level, Pass pass) {
+        passes.add(pass);
+        levels.put(pass, level);
+        pass.getProvides().forEach(property -> providers.put(property, pass));
+    }
+
+    public Ast.Source run(Ast.Source ast) {
+        for (Pass pass : passes) {
+            if (levels.get(pass) <= level) {
+                ast = run(pass, ast);
+            }
+        }
+        return ast;
+    }
+
+    /**
+     * Provides a property if it is not currently valid, for backends that
+     * need one the pipeline did not leave valid.
+     */
+    public Ast.Source require(String property, Ast.Source ast) {
+        if (!valid.contains(property)) {
+            if (!providers.containsKey(property)) {
+                throw new IllegalStateException("No pass provides " + property + ".");
+            }
+            ast = run(providers.get(property), ast);
+        }
+        return ast;
+    }
+
+    private Ast.Source run(Pass pass, Ast.Source ast) {
+        for (String property : pass.getRequires()) {
+            ast = require(property, ast);
+        }
+        int before = size(ast);
+        long start = System.nanoTime();
+        Ast.Source result = pass.run(ast);
+        long nanos = System.nanoTime() - start;
+        records.add(new Record(pass.getName(), nanos, before, size(result)));
+        valid.removeAll(pass.getInvalidates());
+        valid.addAll(pass.getProvides());
+        return result;
+    }
+
+    public Set<String> getValid() {
+        return Collections.unmodifiableSet(valid);
+    }
+
+    public List<Record> getRecords() {
+        return Collections.unmodifiableList(records);
+    }
+
+    /**
+     * Returns one line per pass run with its time and node counts.
+     */
+    public String report() {
+        StringBuilder builder = new StringBuilder();
+        records.forEach(record -> builder.append(record).append("\n"));
+        return builder.toString();
+    }
+
+    /**
+     * Returns the number of fields, methods, statements and expressions of a
+     * source.
+     */
+    static int size(Ast.Source ast) {
+        int[] size = {ast.getFields().size() + ast.getMethods().size()};
+        new Rewriter() {
+            @Override
+            protected List<Ast.Stmt> rewrite(List<Ast.Stmt> statements) {
+                size[0] += statements.size();
+                return super.rewrite(statements);
+            }
+
+            @Override
+            protected Ast.Expr rewrite(Ast.Expr expression) {
+                size[0]++;
+                return super.rewrite(expression);
+            }
+        }.visit(ast);
+        return size[0];
+    }
+
+    private static Set<String> set(String... properties) {
+        return new HashSet<>(Arrays.asList(properties));
+    }
+
+    public interface Pass {
+
+        String getName();
+
+        Set<String> getRequires();
+
+        Set<String> getProvides();
+
+        Set<String> getInvalidates();
+
+        Ast.Source run(Ast.Source ast);
+
+        static Pass of(String name, Set<String> requires, Set<String> provides, Set<String> invalidates, UnaryOperator<Ast.Source> transform) {
+            return new Pass() {
+                @Override
+                public String getName() {
+                    return name;
+                }
+
+                @Override
+                public Set<String> getRequires() {
+                    return requires;
+                }
+
+                @Override
+                public Set<String> getProvides() {
+                    return provides;
+                }
+
+                @Override
+                public Set<String> getInvalidates() {
+                    return invalidates;
+                }
+
+                @Override
+                public Ast.Source run(Ast.Source ast) {
+                    return transform.apply(ast);
+                }
+            };
+        }
+
+    }
+
+    public static final class Record {
+
+        private final String name;
+        private final long nanos;
+        private final int nodesBefore;
+        private final int nodesAfter;
+
+        private Record(String name, long nanos, int nodesBefore, int nodesAfter) {
+            this.name = name;
+            this.nanos = nanos;
+            this.nodesBefore = nodesBefore;
+            this.nodesAfter = nodesAfter;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public int getNodesBefore() {
+            return nodesBefore;
+        }
+
+        public int getNodesAfter() {
+            return nodesAfter;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-32s %10.3f ms %6d -> %6d nodes (%+d)", name, nanos / 1e6, nodesBefore, nodesAfter, nodesAfter - nodesBefore);
+        }
+
+    }
+
+}
@@ -0,0 +1,170 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An interpreter which samples the call stack of the running program.
+ *
+ * The interpreter tracks a stack of frames for the methods and statements
+ * being executed, and a background thread records it every interval while
+ * the profiler is started. The samples are written in the collapsed stack
+ * format read by flame graph tools: one line per distinct stack, with the
+ * frames from the outermost method separated by semicolons, followed by the
+ * number of samples. Methods are named {@code name/arity} and statements
+ * {@code Kind#n}, where {@code n} numbers the statements of their method in
+ * source order.
+ *
+ * The plain {@link Interpreter} does none of this, so profiling costs nothing
+ * unless this interpreter is used.
+ */
+public final class ProfilingInterpreter extends Interpreter {
+
+    private final Map<Ast.Stmt, String> labels = new IdentityHashMap<>();
+    private final Map<String, Integer> samples = new HashMap<>();
+    private volatile Frame top = null;
+    private ScheduledExecutorService sampler = null;
+
+    public ProfilingInterpreter(Scope parent) {
+        super(parent);
+    }
+
+    /**
+     * Starts sampling the call stack every interval, in milliseconds.
+     */
+    public synchronized void start(long interval) {
+        if (sampler != null) {
+            throw new RuntimeException("The profiler is already started.");
+        }
+        sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "plc-profiler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(this::sample, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops sampling, keeping the samples recorded so far.
+     */
+    public synchronized void stop() {
+        if (sampler != null) {
+            sampler.shutdownNow();
+            sampler = null;
+        }
+    }
+
+    /**
+     * Records the current call stack, if the program is running.
+     */
+    public void sample() {
+        Frame frame = top;
+        if (frame == null) {
+            return;
+        }
+        List<String> frames = new ArrayList<>();
+        for (; frame != null; frame = frame.parent) {
+            frames.add(frame.label);
+        }
+        StringBuilder stack = new StringBuilder();
+        for (int i = frames.size() - 1; i >= 0; i--) {
+            stack.append(frames.get(i));
+            if (i > 0) {
+                stack.append(';');
+            }
+        }
+        synchronized (samples) {
+            samples.merge(stack.toString(), 1, Integer::sum);
+        }
+    }
+
+    public Map<String, Integer> getSamples() {
+        synchronized (samples) {
+            return new TreeMap<>(samples);
+        }
+    }
+
+    /**
+     * Returns the samples in the collapsed stack format, sorted by stack.
+     */
+    public String toCollapsed() {
+        StringBuilder builder = new StringBuilder();
+        getSamples().forEach((stack, count) -> builder.append(stack).append(' ').append(count).append(System.lineSeparator()));
+        return builder.toString();
+    }
+
+    @Override
+    public Environment.PlcObject visit(Ast.Method ast) {
+        super.visit(ast);
+        String name = ast.getName();
+        int arity = ast.getParameters().size();
+        String label = name + "/" + arity;
+        label(ast.getStatements(), new int[] {0});
+        Environment.Function function = getScope().lookupFunction(name, arity);
+        getScope().removeFunction(name, arity);
+        getScope().defineFunction(name, arity, arguments -> {
+            top = new Frame(top, label);
+            try {
+                return function.invoke(arguments);
+            } finally {
+                top = top.parent;
+            }
+        });
+        return Environment.NIL;
+    }
+
+    @Override
+    public Environment.PlcObject visit(Ast ast) {
+        if (!(ast instanceof Ast.Stmt)) {
+            return super.visit(ast);
+        }
+        String label = labels.get(ast);
+        if (label == null) {
+            return super.visit(ast);
+        }
+        top = new Frame(top, label);
+        try {
+            return super.visit(ast);
+        } finally {
+            top = top.parent;
+        }
+    }
+
+    private void label(List<Ast.Stmt> statements, int[] count) {
+        for (Ast.Stmt statement : statements) {
+            labels.put(statement, statement.getClass().getSimpleName() + "#" + ++count[0]);
+            if (statement instanceof Ast.Stmt.If) {
+                label(((Ast.Stmt.If) statement).getThenStatements(), count);
+                label(((Ast.Stmt.If) statement).getElseStatements(), count);
+            } else if (statement instanceof Ast.Stmt.For) {
+                label(((Ast.Stmt.For) statement).getStatements(), count);
+            } else if (statement instanceof Ast.Stmt.While) {
+                label(((Ast.Stmt.While) statement).getStatements(), count);
+            }
+        }
+    }
+
+    /**
+     * An immutable frame of the call stack, so the sampler never sees a stack
+     * which is being modified.
+     */
+    private static final class Frame {
+
+        private final Frame parent;
+        private final String label;
+
+        private Frame(Frame parent, String label) {
+            this.parent = parent;
+            this.label = label;
+        }
+
+    }
+
+}
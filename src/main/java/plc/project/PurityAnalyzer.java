@@ -0,0 +1,205 @@
+package plc.project;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Determines which methods of a source are pure, meaning that their result
+ * only depends on their arguments and calling them has no effects.
+ *
+ * A method is pure if it assigns no field, reads no field which any method
+ * assigns, and only calls pure methods of the source. Calls of functions which
+ * are not methods of the source, such as print, and accesses or calls with a
+ * receiver make a method impure. Like the Interpreter, names are resolved by
+ * scope, so the source does not have to be analyzed.
+ */
+public final class PurityAnalyzer implements Ast.Visitor<Void> {
+
+    private final Map<String, Ast.Method> methods = new HashMap<>();
+    private final Map<String, Effects> effects = new HashMap<>();
+    private final Set<String> assigned = new HashSet<>();
+    private Deque<Set<String>> scopes = new ArrayDeque<>();
+    private Effects current;
+
+    /**
+     * Returns the pure methods of the source by {@code name/arity}.
+     */
+    public Set<String> analyze(Ast.Source ast) {
+        visit(ast);
+        Set<String> pure = new HashSet<>();
+        effects.forEach((key, method) -> {
+            if (!method.impure && Collections.disjoint(method.reads, assigned)) {
+                pure.add(key);
+            }
+        });
+        boolean changed = true;
+        while (changed) {
+            changed = pure.removeIf(key -> !pure.containsAll(effects.get(key).calls));
+        }
+        return pure;
+    }
+
+    /**
+     * Collects the effects of each method of the source, forgetting those of
+     * any source visited before.
+     */
+    @Override
+    public Void visit(Ast.Source ast) {
+        methods.clear();
+        effects.clear();
+        assigned.clear();
+        ast.getMethods().forEach(method -> methods.put(method.getName() + "/" + method.getParameters().size(), method));
+        methods.forEach((key, method) -> {
+            current = new Effects();
+            effects.put(key, current);
+            visit(method);
+        });
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Field ast) {
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Method ast) {
+        scopes = new ArrayDeque<>();
+        scopes.push(new HashSet<>(ast.getParameters()));
+        ast.getStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Expression ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Declaration ast) {
+        ast.getValue().ifPresent(this::visit);
+        scopes.peek().add(ast.getName());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Assignment ast) {
+        if (!(ast.getReceiver() instanceof Ast.Expr.Access)) {
+            visit(ast.getReceiver());
+            current.impure = true;
+            visit(ast.getValue());
+            return null;
+        }
+        Ast.Expr.Access receiver = (Ast.Expr.Access) ast.getReceiver();
+        if (receiver.getReceiver().isPresent()) {
+            visit(receiver.getReceiver().get());
+            current.impure = true;
+        } else if (!isLocal(receiver.getName())) {
+            assigned.add(receiver.getName());
+            current.impure = true;
+        }
+        visit(ast.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.If ast) {
+        visit(ast.getCondition());
+        visitBlock(ast.getThenStatements(), null);
+        visitBlock(ast.getElseStatements(), null);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.For ast) {
+        visit(ast.getValue());
+        visitBlock(ast.getStatements(), ast.getName());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.While ast) {
+        visit(ast.getCondition());
+        visitBlock(ast.getStatements(), null);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Return ast) {
+        visit(ast.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Literal ast) {
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Group ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Binary ast) {
+        visit(ast.getLeft());
+        visit(ast.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Access ast) {
+        if (ast.getReceiver().isPresent()) {
+            visit(ast.getReceiver().get());
+            current.impure = true;
+        } else if (!isLocal(ast.getName())) {
+            current.reads.add(ast.getName());
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Function ast) {
+        String key = ast.getName() + "/" + ast.getArguments().size();
+        if (ast.getReceiver().isPresent()) {
+            visit(ast.getReceiver().get());
+            current.impure = true;
+        } else if (methods.containsKey(key)) {
+            current.calls.add(key);
+        } else {
+            current.impure = true;
+        }
+        ast.getArguments().forEach(this::visit);
+        return null;
+    }
+
+    private void visitBlock(List<Ast.Stmt> statements, String variable) {
+        scopes.push(new HashSet<>());
+        if (variable != null) {
+            scopes.peek().add(variable);
+        }
+        statements.forEach(this::visit);
+        scopes.pop();
+    }
+
+    private boolean isLocal(String name) {
+        return scopes.stream().anyMatch(scope -> scope.contains(name));
+    }
+
+    private static final class Effects {
+
+        private boolean impure = false;
+        private final Set<String> reads = new HashSet<>();
+        private final Set<String> calls = new HashSet<>();
+
+    }
+
+}
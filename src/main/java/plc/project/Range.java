@@ -0,0 +1,100 @@
+package plc.project;
+
+import java.math.BigInteger;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The value of the builtin {@code range(start, end[, step])}: the integers
+ * from the start up to, but excluding, the end in steps, descending if the
+ * step is negative. Elements are created while iterating, and the
+ * {@link Interpreter} iterates a range with a primitive counter instead. The
+ * elements of a range share one type and one scope, as the scope of an
+ * integer is never defined into.
+ */
+public final class Range implements Iterable<Environment.PlcObject> {
+
+    private final long start;
+    private final long end;
+    private final long step;
+    private final Scope scope = new Scope(null);
+    private final Environment.Type type = new Environment.Type("Unknown", "Unknown", scope);
+
+    public Range(long start, long end, long step) {
+        if (step == 0) {
+            throw new RuntimeException("The step of a range cannot be zero.");
+        }
+        this.start = start;
+        this.end = end;
+        this.step = step;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public long getStep() {
+        return step;
+    }
+
+    /**
+     * Returns whether a counter starting at the start has not yet passed the
+     * end.
+     */
+    public boolean includes(long counter) {
+        return step > 0 ? counter < end : counter > end;
+    }
+
+    /**
+     * Returns the counter after the given one, or the end if it overflows.
+     */
+    public long advance(long counter) {
+        long next = counter + step;
+        return step > 0 ? (next < counter ? end : next) : (next > counter ? end : next);
+    }
+
+    /**
+     * Returns the element for the counter.
+     */
+    public Environment.PlcObject element(long counter) {
+        return new Environment.PlcObject(type, scope, BigInteger.valueOf(counter));
+    }
+
+    @Override
+    public Iterator<Environment.PlcObject> iterator() {
+        return new Iterator<Environment.PlcObject>() {
+
+            private long counter = start;
+
+            @Override
+            public boolean hasNext() {
+                return includes(counter);
+            }
+
+            @Override
+            public Environment.PlcObject next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                long value = counter;
+                counter = advance(counter);
+                return element(value);
+            }
+
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "Range{" +
+                "start=" + start +
+                ", end=" + end +
+                ", step=" + step +
+                '}';
+    }
+
+}
@@ -0,0 +1,219 @@
+package plc.project;
+
+import java.math.BigInteger;
+
+/**
+ * Computes the range of every Integer expression in an analyzed AST and marks
+ * the {@link Ast.Expr.Binary} nodes that can be evaluated with {@code long}
+ * arithmetic instead of {@link BigInteger}.
+ *
+ * Integer variables, parameters and function results are assumed to fit in
+ * an {@code int}, which is what the {@link Analyzer} allows for literals. The
+ * interpreter checks that assumption on every operand it reads and falls back
+ * to exact arithmetic when it does not hold, so marking a node never changes
+ * its result. Only literals and variable accesses without a receiver are
+ * allowed as operands of a primitive expression, since they can be evaluated
+ * again without effects.
+ */
+public final class RangeAnalyzer implements Ast.Visitor<RangeAnalyzer.Range> {
+
+    private static final BigInteger INT_MIN = BigInteger.valueOf(Integer.MIN_VALUE);
+    private static final BigInteger INT_MAX = BigInteger.valueOf(Integer.MAX_VALUE);
+    private static final BigInteger LONG_MIN = BigInteger.valueOf(Long.MIN_VALUE);
+    private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+
+    @Override
+    public Range visit(Ast.Source ast) {
+        ast.getFields().forEach(this::visit);
+        ast.getMethods().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Range visit(Ast.Field ast) {
+        ast.getValue().ifPresent(this::visit);
+        return null;
+    }
+
+    @Override
+    public Range visit(Ast.Method ast) {
+        ast.getStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Range visit(Ast.Stmt.Expression ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Range visit(Ast.Stmt.Declaration ast) {
+        ast.getValue().ifPresent(this::visit);
+        return null;
+    }
+
+    @Override
+    public Range visit(Ast.Stmt.Assignment ast) {
+        visit(ast.getReceiver());
+        visit(ast.getValue());
+        return null;
+    }
+
+    @Override
+    public Range visit(Ast.Stmt.If ast) {
+        visit(ast.getCondition());
+        ast.getThenStatements().forEach(this::visit);
+        ast.getElseStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Range visit(Ast.Stmt.For ast) {
+        visit(ast.getValue());
+        ast.getStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Range visit(Ast.Stmt.While ast) {
+        visit(ast.getCondition());
+        ast.getStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Range visit(Ast.Stmt.Return ast) {
+        visit(ast.getValue());
+        return null;
+    }
+
+    @Override
+    public Range visit(Ast.Expr.Literal ast) {
+        if (ast.getLiteral() instanceof BigInteger) {
+            BigInteger value = (BigInteger) ast.getLiteral();
+            return new Range(value, value, value.bitLength() < 64);
+        }
+        return null;
+    }
+
+    @Override
+    public Range visit(Ast.Expr.Group ast) {
+        return visit(ast.getExpression());
+    }
+
+    @Override
+    public Range visit(Ast.Expr.Binary ast) {
+        Range left = visit(ast.getLeft());
+        Range right = visit(ast.getRight());
+        if (left == null || right == null) {
+            return null;
+        }
+
+        Range range;
+        switch (ast.getOperator()) {
+            case "+":
+                range = new Range(left.minimum.add(right.minimum), left.maximum.add(right.maximum), true);
+                break;
+            case "-":
+                range = new Range(left.minimum.subtract(right.maximum), left.maximum.subtract(right.minimum), true);
+                break;
+            case "*":
+                BigInteger[] products = {
+                        left.minimum.multiply(right.minimum), left.minimum.multiply(right.maximum),
+                        left.maximum.multiply(right.minimum), left.maximum.multiply(right.maximum)
+                };
+                BigInteger minimum = products[0], maximum = products[0];
+                for (BigInteger product : products) {
+                    minimum = minimum.min(product);
+                    maximum = maximum.max(product);
+                }
+                range = new Range(minimum, maximum, true);
+                break;
+            case "/":
+                // The divisor is never 0 when a result exists, so the quotient
+                // is never larger in magnitude than the dividend.
+                BigInteger magnitude = left.minimum.abs().max(left.maximum.abs());
+                range = new Range(magnitude.negate(), magnitude, true);
+                break;
+            case "<":
+            case "<=":
+            case ">":
+            case ">=":
+            case "==":
+            case "!=":
+                ast.setPrimitive(left.primitive && right.primitive);
+                return null;
+            default:
+                return null;
+        }
+
+        boolean primitive = left.primitive && right.primitive && range.fits(LONG_MIN, LONG_MAX);
+        ast.setPrimitive(primitive);
+        return new Range(range.minimum, range.maximum, primitive);
+    }
+
+    @Override
+    public Range visit(Ast.Expr.Access ast) {
+        ast.getReceiver().ifPresent(this::visit);
+        if (ast.getType() == Environment.Type.INTEGER) {
+            // A receiver may call a function, which must not run again.
+            return new Range(INT_MIN, INT_MAX, !ast.getReceiver().isPresent());
+        }
+        return null;
+    }
+
+    @Override
+    public Range visit(Ast.Expr.Function ast) {
+        ast.getReceiver().ifPresent(this::visit);
+        ast.getArguments().forEach(this::visit);
+        if (ast.getType() == Environment.Type.INTEGER) {
+            return new Range(INT_MIN, INT_MAX, false);
+        }
+        return null;
+    }
+
+    /**
+     * The inclusive bounds of an Integer expression, and whether it can be
+     * evaluated as part of a primitive expression.
+     */
+    public static final class Range {
+
+        private final BigInteger minimum;
+        private final BigInteger maximum;
+        private final boolean primitive;
+
+        private Range(BigInteger minimum, BigInteger maximum, boolean primitive) {
+            this.minimum = minimum;
+            this.maximum = maximum;
+            this.primitive = primitive;
+        }
+
+        public BigInteger getMinimum() {
+            return minimum;
+        }
+
+        public BigInteger getMaximum() {
+            return maximum;
+        }
+
+        public boolean isPrimitive() {
+            return primitive;
+        }
+
+        public boolean fits(BigInteger minimum, BigInteger maximum) {
+            return this.minimum.compareTo(minimum) >= 0 && this.maximum.compareTo(maximum) <= 0;
+        }
+
+        @Override
+        public String toString() {
+            return "Range{" +
+                    "minimum=" + minimum +
+                    ", maximum=" + maximum +
+                    ", primitive=" + primitive +
+                    '}';
+        }
+
+    }
+
+}
@@ -0,0 +1,229 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Base class for passes that transform an analyzed AST. By default every
+ * visit method rewrites the children of a node and returns the node itself if
+ * none of them changed, or a copy with the same annotations otherwise, so
+ * passes only override the nodes they care about.
+ */
+public abstract class Rewriter implements Ast.Visitor<Ast> {
+
+    @Override
+    public Ast visit(Ast.Source ast) {
+        List<Ast.Field> fields = new ArrayList<>();
+        boolean changed = false;
+        for (Ast.Field field : ast.getFields()) {
+            Ast.Field rewritten = (Ast.Field) visit(field);
+            changed |= rewritten != field;
+            fields.add(rewritten);
+        }
+        List<Ast.Method> methods = new ArrayList<>();
+        for (Ast.Method method : ast.getMethods()) {
+            Ast.Method rewritten = (Ast.Method) visit(method);
+            changed |= rewritten != method;
+            methods.add(rewritten);
+        }
+        return changed ? new Ast.Source(fields, methods) : ast;
+    }
+
+    @Override
+    public Ast visit(Ast.Field ast) {
+        Optional<Ast.Expr> value = rewrite(ast.getValue());
+        if (value == ast.getValue()) {
+            return ast;
+        }
+        Ast.Field field = new Ast.Field(ast.getName(), ast.getTypeName(), value);
+        field.setVariable(ast.getVariable());
+        return field;
+    }
+
+    @Override
+    public Ast visit(Ast.Method ast) {
+        List<Ast.Stmt> statements = rewrite(ast.getStatements());
+        if (statements == ast.getStatements()) {
+            return ast;
+        }
+        Ast.Method method = new Ast.Method(ast.getName(), ast.getParameters(), ast.getParameterTypeNames(), ast.getReturnTypeName(), statements);
+        method.setFunction(ast.getFunction());
+        return method;
+    }
+
+    @Override
+    public Ast visit(Ast.Stmt.Expression ast) {
+        Ast.Expr expression = rewrite(ast.getExpression());
+        return expression == ast.getExpression() ? ast : new Ast.Stmt.Expression(expression);
+    }
+
+    @Override
+    public Ast visit(Ast.Stmt.Declaration ast) {
+        Optional<Ast.Expr> value = rewrite(ast.getValue());
+        if (value == ast.getValue()) {
+            return ast;
+        }
+        Ast.Stmt.Declaration declaration = new Ast.Stmt.Declaration(ast.getName(), ast.getTypeName(), value);
+        declaration.setVariable(ast.getVariable());
+        return declaration;
+    }
+
+    @Override
+    public Ast visit(Ast.Stmt.Assignment ast) {
+        Ast.Expr receiver = rewrite(ast.getReceiver());
+        Ast.Expr value = rewrite(ast.getValue());
+        if (receiver == ast.getReceiver() && value == ast.getValue()) {
+            return ast;
+        }
+        return new Ast.Stmt.Assignment(receiver, value);
+    }
+
+    @Override
+    public Ast visit(Ast.Stmt.If ast) {
+        Ast.Expr condition = rewrite(ast.getCondition());
+        List<Ast.Stmt> thenStatements = rewrite(ast.getThenStatements());
+        List<Ast.Stmt> elseStatements = rewrite(ast.getElseStatements());
+        if (condition == ast.getCondition() && thenStatements == ast.getThenStatements() && elseStatements == ast.getElseStatements()) {
+            return ast;
+        }
+        return new Ast.Stmt.If(condition, thenStatements, elseStatements);
+    }
+
+    @Override
+    public Ast visit(Ast.Stmt.For ast) {
+        Ast.Expr value = rewrite(ast.getValue());
+        List<Ast.Stmt> statements = rewrite(ast.getStatements());
+        if (value == ast.getValue() && statements == ast.getStatements()) {
+            return ast;
+        }
+        return new Ast.Stmt.For(ast.getName(), value, statements);
+    }
+
+    @Override
+    public Ast visit(Ast.Stmt.While ast) {
+        Ast.Expr condition = rewrite(ast.getCondition());
+        List<Ast.Stmt> statements = rewrite(ast.getStatements());
+        if (condition == ast.getCondition() && statements == ast.getStatements()) {
+            return ast;
+        }
+        return new Ast.Stmt.While(condition, statements);
+    }
+
+    @Override
+    public Ast visit(Ast.Stmt.Return ast) {
+        Ast.Expr value = rewrite(ast.getValue());
+        return value == ast.getValue() ? ast : new Ast.Stmt.Return(value);
+    }
+
+    @Override
+    public Ast visit(Ast.Expr.Literal ast) {
+        return ast;
+    }
+
+    @Override
+    public Ast visit(Ast.Expr.Group ast) {
+        Ast.Expr expression = rewrite(ast.getExpression());
+        if (expression == ast.getExpression()) {
+            return ast;
+        } else if (!(expression instanceof Ast.Expr.Binary)) {
+            // The Analyzer only allows groups of binary expressions.
+            return expression;
+        }
+        Ast.Expr.Group group = new Ast.Expr.Group(expression);
+        group.setType(ast.getType());
+        return group;
+    }
+
+    @Override
+    public Ast visit(Ast.Expr.Binary ast) {
+        Ast.Expr left = rewrite(ast.getLeft());
+        Ast.Expr right = rewrite(ast.getRight());
+        if (left == ast.getLeft() && right == ast.getRight()) {
+            return ast;
+        }
+        Ast.Expr.Binary binary = new Ast.Expr.Binary(ast.getOperator(), left, right);
+        binary.setType(ast.getType());
+        return binary;
+    }
+
+    @Override
+    public Ast visit(Ast.Expr.Access ast) {
+        Optional<Ast.Expr> receiver = rewrite(ast.getReceiver());
+        if (receiver == ast.getReceiver()) {
+            return ast;
+        }
+        Ast.Expr.Access access = new Ast.Expr.Access(receiver, ast.getName());
+        access.setVariable(ast.getVariable());
+        return access;
+    }
+
+    @Override
+    public Ast visit(Ast.Expr.Function ast) {
+        Optional<Ast.Expr> receiver = rewrite(ast.getReceiver());
+        List<Ast.Expr> arguments = new ArrayList<>();
+        boolean changed = receiver != ast.getReceiver();
+        for (Ast.Expr argument : ast.getArguments()) {
+            Ast.Expr rewritten = rewrite(argument);
+            changed |= rewritten != argument;
+            arguments.add(rewritten);
+        }
+        if (!changed) {
+            return ast;
+        }
+        Ast.Expr.Function function = new Ast.Expr.Function(receiver, ast.getName(), arguments);
+        function.setFunction(ast.getFunction());
+        return function;
+    }
+
+    /**
+     * Rewrites a list of statements, returning the same list if no statement
+     * changed. Passes that remove or splice statements override this.
+     */
+    protected List<Ast.Stmt> rewrite(List<Ast.Stmt> statements) {
+        List<Ast.Stmt> rewritten = new ArrayList<>();
+        boolean changed = false;
+        for (Ast.Stmt statement : statements) {
+            Ast.Stmt result = (Ast.Stmt) visit(statement);
+            changed |= result != statement;
+            rewritten.add(result);
+        }
+        return changed ? rewritten : statements;
+    }
+
+    protected Ast.Expr rewrite(Ast.Expr expression) {
+        return (Ast.Expr) visit(expression);
+    }
+
+    private Optional<Ast.Expr> rewrite(Optional<Ast.Expr> expression) {
+        if (!expression.isPresent()) {
+            return expression;
+        }
+        Ast.Expr rewritten = rewrite(expression.get());
+        return rewritten == expression.get() ? expression : Optional.of(rewritten);
+    }
+
+    /**
+     * Creates a literal typed from its value, for passes that compute values.
+     */
+    protected static Ast.Expr.Literal literal(Object value) {
+        Ast.Expr.Literal literal = new Ast.Expr.Literal(value);
+        if (value instanceof Boolean) {
+            literal.setType(Environment.Type.BOOLEAN);
+        } else if (value instanceof BigInteger) {
+            literal.setType(Environment.Type.INTEGER);
+        } else if (value instanceof BigDecimal) {
+            literal.setType(Environment.Type.DECIMAL);
+        } else if (value instanceof Character) {
+            literal.setType(Environment.Type.CHARACTER);
+        } else if (value instanceof String) {
+            literal.setType(Environment.Type.STRING);
+        } else {
+            literal.setType(Environment.Type.NIL);
+        }
+        return literal;
+    }
+
+}
@@ -44,6 +44,12 @@ public final class Scope {
         }
     }
 
+    public void removeVariable(String name) {
+        if (variables.remove(name) == null) {
+            throw new RuntimeException("The variable " + name + " is not defined in this scope.");
+        }
+    }
+
     public void defineFunction(String name, int arity, Function<List<Environment.PlcObject>, Environment.PlcObject> function) {
         List<Environment.Type> parameterTypes = new ArrayList<>();
         for (int i = 0; i < arity; i++) {
@@ -72,6 +78,12 @@ public final class Scope {
         }
     }
 
+    public void removeFunction(String name, int arity) {
+        if (functions.remove(name + "/" + arity) == null) {
+            throw new RuntimeException("The function " + name + "/" + arity + " is not defined in this scope.");
+        }
+    }
+
     @Override
     public String toString() {
         return "Scope{" +
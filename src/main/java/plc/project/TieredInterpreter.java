@@ -0,0 +1,461 @@
+package plc.project;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigInteger;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * An interpreter which compiles hot methods to Java in the background.
+ *
+ * Every method starts interpreted and counts its invocations and loop back
+ * edges. Once their sum reaches the threshold, the method and the source
+ * methods it calls are printed by the {@link Generator} and compiled in memory
+ * with the system Java compiler. From its next invocation on, the method's
+ * function calls the compiled code; loops which are already running finish
+ * interpreted.
+ *
+ * Only methods of analyzed sources which do not depend on the state of the
+ * interpreter are compiled: they may only access their parameters and locals
+ * and only call other such methods, and their parameter and return types must
+ * be Integer, Boolean, Character or String. Integers are compiled to
+ * {@code int}s with checked arithmetic, and an invocation whose arithmetic
+ * overflows is run again interpreted, which has no effects since the method
+ * has none. Methods using Decimals anywhere are not compiled since
+ * {@code double}s would round differently, and Strings are compared by their
+ * values. Methods which are not eligible or fail to compile stay
+ * interpreted, as do calls whose Integer arguments do not fit in an
+ * {@code int}.
+ */
+public final class TieredInterpreter extends Interpreter {
+
+    public static final int DEFAULT_THRESHOLD = 1000;
+
+    private static final Executor BACKGROUND = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "plc-compiler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final Map<String, Class<?>> TYPES = new HashMap<>();
+
+    static {
+        TYPES.put("Integer", int.class);
+        TYPES.put("Boolean", boolean.class);
+        TYPES.put("Character", char.class);
+        TYPES.put("String", String.class);
+    }
+
+    private final int threshold;
+    private final Executor executor;
+    private final Map<String, Ast.Method> methods = new HashMap<>();
+    private final Map<String, Profile> profiles = new HashMap<>();
+    private Profile current = null;
+
+    public TieredInterpreter(Scope parent) {
+        this(parent, DEFAULT_THRESHOLD, BACKGROUND);
+    }
+
+    /**
+     * Creates an interpreter which compiles methods on the executor once their
+     * invocations and back edges reach the threshold. A direct executor such
+     * as {@code Runnable::run} compiles synchronously.
+     */
+    public TieredInterpreter(Scope parent, int threshold, Executor executor) {
+        super(parent);
+        this.threshold = threshold;
+        this.executor = executor;
+    }
+
+    public Profile getProfile(String name, int arity) {
+        Profile profile = profiles.get(name + "/" + arity);
+        if (profile == null) {
+            throw new RuntimeException("The method " + name + "/" + arity + " is not defined.");
+        }
+        return profile;
+    }
+
+    @Override
+    public Environment.PlcObject visit(Ast.Method ast) {
+        super.visit(ast);
+        String name = ast.getName();
+        int arity = ast.getParameters().size();
+        Profile profile = new Profile(ast, getScope().lookupFunction(name, arity));
+        methods.put(name + "/" + arity, ast);
+        profiles.put(name + "/" + arity, profile);
+        getScope().removeFunction(name, arity);
+        getScope().defineFunction(name, arity, profile::invoke);
+        return Environment.NIL;
+    }
+
+    @Override
+    protected void backEdge() {
+        if (current != null) {
+            current.backEdges++;
+            current.count();
+        }
+    }
+
+    private void compile(Profile profile) {
+        try {
+            Eligibility eligibility = new Eligibility(methods);
+            if (!eligibility.visit(profile.method)) {
+                profile.state = State.INELIGIBLE;
+                return;
+            }
+            StringWriter source = new StringWriter();
+            PrintWriter writer = new PrintWriter(source);
+            writer.print("public final class Main {");
+            for (Ast.Method method : eligibility.required) {
+                writer.println();
+                writer.println();
+                new Generator(writer, true).visit(method);
+            }
+            writer.println();
+            writer.println();
+            writer.println("}");
+            writer.flush();
+
+            Class<?> type = load("Main", source.toString());
+            Class<?>[] parameters = profile.method.getParameterTypeNames().stream().map(TYPES::get).toArray(Class<?>[]::new);
+            Method method = type.getDeclaredMethod(profile.method.getFunction().getJvmName(), parameters);
+            method.setAccessible(true);
+            profile.compiled = new Compiled(method, type.getDeclaredConstructor().newInstance());
+            profile.state = State.COMPILED;
+        } catch (RuntimeException | ReflectiveOperationException e) {
+            profile.state = State.FAILED;
+        }
+    }
+
+    /**
+     * Compiles a Java source declaring a single top-level class in memory and
+     * loads the class in a new class loader.
+     */
+    private static Class<?> load(String name, String source) throws ClassNotFoundException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("No Java compiler is available.");
+        }
+        JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///" + name + ".java"), JavaFileObject.Kind.SOURCE) {
+
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+
+        };
+        Map<String, ByteArrayOutputStream> classes = new HashMap<>();
+        StringWriter diagnostics = new StringWriter();
+        try (JavaFileManager manager = new ForwardingJavaFileManager<StandardJavaFileManager>(compiler.getStandardFileManager(null, null, null)) {
+
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+                return new SimpleJavaFileObject(URI.create("bytes:///" + className.replace('.', '/') + kind.extension), kind) {
+
+                    @Override
+                    public OutputStream openOutputStream() {
+                        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                        classes.put(className, bytes);
+                        return bytes;
+                    }
+
+                };
+            }
+
+        }) {
+            if (!compiler.getTask(diagnostics, manager, null, Arrays.asList("-nowarn"), null, Collections.singletonList(file)).call()) {
+                throw new IllegalStateException("Compilation failed: " + diagnostics);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        ClassLoader loader = new ClassLoader(TieredInterpreter.class.getClassLoader()) {
+
+            @Override
+            protected Class<?> findClass(String className) throws ClassNotFoundException {
+                ByteArrayOutputStream bytes = classes.get(className);
+                if (bytes == null) {
+                    throw new ClassNotFoundException(className);
+                }
+                return defineClass(className, bytes.toByteArray(), 0, bytes.size());
+            }
+
+        };
+        return loader.loadClass(name);
+    }
+
+    public enum State {
+        INTERPRETED, QUEUED, COMPILED, INELIGIBLE, FAILED
+    }
+
+    /**
+     * The counters and compiled code of a method.
+     */
+    public final class Profile {
+
+        private final Ast.Method method;
+        private final Environment.Function interpreted;
+        private int invocations = 0;
+        private int backEdges = 0;
+        private volatile State state = State.INTERPRETED;
+        private volatile Compiled compiled = null;
+
+        private Profile(Ast.Method method, Environment.Function interpreted) {
+            this.method = method;
+            this.interpreted = interpreted;
+        }
+
+        public int getInvocations() {
+            return invocations;
+        }
+
+        public int getBackEdges() {
+            return backEdges;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        private Environment.PlcObject invoke(List<Environment.PlcObject> arguments) {
+            Compiled code = compiled;
+            if (code != null) {
+                Object[] values = code.convert(arguments);
+                if (values != null) {
+                    try {
+                        return code.invoke(values);
+                    } catch (ArithmeticException e) {
+                        // Overflowed an int, or divided by zero, which the
+                        // interpreter reports the same way.
+                    }
+                }
+            }
+            invocations++;
+            count();
+            Profile caller = current;
+            current = this;
+            try {
+                return interpreted.invoke(arguments);
+            } finally {
+                current = caller;
+            }
+        }
+
+        private void count() {
+            if (state == State.INTERPRETED && invocations + backEdges >= threshold) {
+                state = State.QUEUED;
+                executor.execute(() -> compile(this));
+            }
+        }
+
+    }
+
+    private static final class Compiled {
+
+        private final Method method;
+        private final Object instance;
+
+        private Compiled(Method method, Object instance) {
+            this.method = method;
+            this.instance = instance;
+        }
+
+        /**
+         * Converts the arguments to the parameter types of the method, or
+         * returns {@code null} if one cannot be represented.
+         */
+        private Object[] convert(List<Environment.PlcObject> arguments) {
+            Class<?>[] types = method.getParameterTypes();
+            Object[] values = new Object[types.length];
+            for (int i = 0; i < types.length; i++) {
+                Object value = arguments.get(i).getValue();
+                if (types[i] == int.class && value instanceof BigInteger && ((BigInteger) value).bitLength() < 32) {
+                    values[i] = ((BigInteger) value).intValue();
+                } else if (types[i] == boolean.class && value instanceof Boolean
+                        || types[i] == char.class && value instanceof Character
+                        || types[i] == String.class && value instanceof String) {
+                    values[i] = value;
+                } else {
+                    return null;
+                }
+            }
+            return values;
+        }
+
+        private Environment.PlcObject invoke(Object[] values) {
+            Object result;
+            try {
+                result = method.invoke(instance, values);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                } else if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw new RuntimeException(e.getCause());
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+            if (result instanceof Integer) {
+                return Environment.create(BigInteger.valueOf((Integer) result));
+            }
+            return Environment.create(result);
+        }
+
+    }
+
+    /**
+     * Determines whether a method may be compiled, collecting it and the
+     * methods it calls in {@link #required}.
+     */
+    private static final class Eligibility implements Ast.Visitor<Boolean> {
+
+        private final Map<String, Ast.Method> methods;
+        private final Set<Ast.Method> required = new LinkedHashSet<>();
+        private Deque<Set<String>> scopes = new ArrayDeque<>();
+
+        private Eligibility(Map<String, Ast.Method> methods) {
+            this.methods = methods;
+        }
+
+        private boolean visit(List<? extends Ast> asts) {
+            scopes.push(new HashSet<>());
+            try {
+                return asts.stream().allMatch(this::visit);
+            } finally {
+                scopes.pop();
+            }
+        }
+
+        @Override
+        public Boolean visit(Ast.Source ast) {
+            return false;
+        }
+
+        @Override
+        public Boolean visit(Ast.Field ast) {
+            return false;
+        }
+
+        @Override
+        public Boolean visit(Ast.Method ast) {
+            if (!required.add(ast)) {
+                return true;
+            }
+            if (!ast.getReturnTypeName().isPresent() || !TYPES.containsKey(ast.getReturnTypeName().get())
+                    || !ast.getParameterTypeNames().stream().allMatch(TYPES::containsKey)) {
+                return false;
+            }
+            Deque<Set<String>> outer = scopes;
+            scopes = new ArrayDeque<>();
+            scopes.push(new HashSet<>(ast.getParameters()));
+            try {
+                return visit(ast.getStatements());
+            } finally {
+                scopes = outer;
+            }
+        }
+
+        @Override
+        public Boolean visit(Ast.Stmt.Expression ast) {
+            return visit(ast.getExpression());
+        }
+
+        @Override
+        public Boolean visit(Ast.Stmt.Declaration ast) {
+            boolean eligible = !isDecimal(ast.getVariable().getType())
+                    && (!ast.getValue().isPresent() || visit(ast.getValue().get()));
+            scopes.peek().add(ast.getName());
+            return eligible;
+        }
+
+        @Override
+        public Boolean visit(Ast.Stmt.Assignment ast) {
+            return visit(ast.getReceiver()) && visit(ast.getValue());
+        }
+
+        @Override
+        public Boolean visit(Ast.Stmt.If ast) {
+            return visit(ast.getCondition()) && visit(ast.getThenStatements()) && visit(ast.getElseStatements());
+        }
+
+        @Override
+        public Boolean visit(Ast.Stmt.For ast) {
+            return false;
+        }
+
+        @Override
+        public Boolean visit(Ast.Stmt.While ast) {
+            return visit(ast.getCondition()) && visit(ast.getStatements());
+        }
+
+        @Override
+        public Boolean visit(Ast.Stmt.Return ast) {
+            return visit(ast.getValue());
+        }
+
+        @Override
+        public Boolean visit(Ast.Expr.Literal ast) {
+            return ast.getLiteral() != null && !isDecimal(ast.getType());
+        }
+
+        @Override
+        public Boolean visit(Ast.Expr.Group ast) {
+            return visit(ast.getExpression());
+        }
+
+        @Override
+        public Boolean visit(Ast.Expr.Binary ast) {
+            return visit(ast.getLeft()) && visit(ast.getRight());
+        }
+
+        @Override
+        public Boolean visit(Ast.Expr.Access ast) {
+            return !ast.getReceiver().isPresent() && !isDecimal(ast.getType())
+                    && scopes.stream().anyMatch(scope -> scope.contains(ast.getName()));
+        }
+
+        @Override
+        public Boolean visit(Ast.Expr.Function ast) {
+            Ast.Method method = methods.get(ast.getName() + "/" + ast.getArguments().size());
+            return !ast.getReceiver().isPresent() && method != null
+                    && ast.getArguments().stream().allMatch(this::visit) && visit(method);
+        }
+
+        /**
+         * Returns whether the type is Decimal, which compiles to a
+         * {@code double} rounding differently than a BigDecimal.
+         */
+        private static boolean isDecimal(Environment.Type type) {
+            return Environment.Type.DECIMAL.equals(type);
+        }
+
+    }
+
+}
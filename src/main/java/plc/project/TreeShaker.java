@@ -0,0 +1,179 @@
+package plc.project;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Removes the fields and methods that cannot be reached from {@code main/0}.
+ *
+ * Reachability follows calls and variable accesses without a receiver by
+ * name, so a local that shadows a field keeps that field alive. Fields whose
+ * value calls a function are always kept since evaluating them may have
+ * effects. Sources without a {@code main/0} method are returned unchanged.
+ */
+public final class TreeShaker implements Ast.Visitor<Void> {
+
+    private final Map<String, Ast.Field> fields = new HashMap<>();
+    private final Map<String, Ast.Method> methods = new HashMap<>();
+    private final Set<Ast> reachable = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Deque<Ast> pending = new ArrayDeque<>();
+    private boolean scanning = false;
+    private boolean effects = false;
+
+    public Ast.Source shake(Ast.Source ast) {
+        visit(ast);
+        if (!methods.containsKey("main/0")) {
+            return ast;
+        }
+        List<Ast.Field> keptFields = ast.getFields().stream().filter(reachable::contains).collect(Collectors.toList());
+        List<Ast.Method> keptMethods = ast.getMethods().stream().filter(reachable::contains).collect(Collectors.toList());
+        return new Ast.Source(keptFields, keptMethods);
+    }
+
+    private void reach(Ast ast) {
+        if (!scanning && ast != null && reachable.add(ast)) {
+            pending.push(ast);
+        }
+    }
+
+    /**
+     * Finds the fields and methods of the source reachable from main/0,
+     * forgetting those of any source visited before.
+     */
+    @Override
+    public Void visit(Ast.Source ast) {
+        fields.clear();
+        methods.clear();
+        reachable.clear();
+        pending.clear();
+        ast.getFields().forEach(field -> fields.put(field.getName(), field));
+        ast.getMethods().forEach(method -> methods.put(method.getName() + "/" + method.getParameters().size(), method));
+        if (!methods.containsKey("main/0")) {
+            return null;
+        }
+
+        scanning = true;
+        for (Ast.Field field : ast.getFields()) {
+            effects = false;
+            field.getValue().ifPresent(this::visit);
+            if (effects) {
+                reachable.add(field);
+                pending.add(field);
+            }
+        }
+        scanning = false;
+
+        reach(methods.get("main/0"));
+        while (!pending.isEmpty()) {
+            visit(pending.pop());
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Field ast) {
+        ast.getValue().ifPresent(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Method ast) {
+        ast.getStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Expression ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Declaration ast) {
+        ast.getValue().ifPresent(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Assignment ast) {
+        visit(ast.getReceiver());
+        visit(ast.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.If ast) {
+        visit(ast.getCondition());
+        ast.getThenStatements().forEach(this::visit);
+        ast.getElseStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.For ast) {
+        visit(ast.getValue());
+        ast.getStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.While ast) {
+        visit(ast.getCondition());
+        ast.getStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Return ast) {
+        visit(ast.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Literal ast) {
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Group ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Binary ast) {
+        visit(ast.getLeft());
+        visit(ast.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Access ast) {
+        if (ast.getReceiver().isPresent()) {
+            visit(ast.getReceiver().get());
+        } else {
+            reach(fields.get(ast.getName()));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Function ast) {
+        effects = true;
+        if (ast.getReceiver().isPresent()) {
+            visit(ast.getReceiver().get());
+        } else {
+            reach(methods.get(ast.getName() + "/" + ast.getArguments().size()));
+        }
+        ast.getArguments().forEach(this::visit);
+        return null;
+    }
+
+}
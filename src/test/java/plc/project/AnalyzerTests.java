@@ -10,6 +10,8 @@ import java.math.BigInteger;
 import java.util.Arrays;
 import java.util.Optional;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 /**
@@ -25,6 +27,96 @@ public final class AnalyzerTests {
         scope.defineFunction("method", "method", Arrays.asList(Environment.Type.ANY), Environment.Type.INTEGER, args -> Environment.NIL);
     }));
 
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    public void testSource(String test, Ast.Source ast, boolean success) {
+        Analyzer analyzer = new Analyzer(new Scope(null));
+        if (success) {
+            analyzer.visit(ast);
+            for (Ast.Method method : ast.getMethods()) {
+                Assertions.assertEquals(method.getFunction(), analyzer.scope.lookupFunction(method.getName(), method.getParameters().size()));
+            }
+        } else {
+            Assertions.assertThrows(RuntimeException.class, () -> analyzer.visit(ast));
+        }
+    }
+
+    private static Stream<Arguments> testSource() {
+        return Stream.of(
+                Arguments.of("Forward Call",
+                        // DEF main(): Integer DO RETURN helper(); END
+                        // DEF helper(): Integer DO RETURN 1; END
+                        new Ast.Source(Arrays.asList(), Arrays.asList(
+                                new Ast.Method("main", Arrays.asList(), Arrays.asList(), Optional.of("Integer"), Arrays.asList(
+                                        new Ast.Stmt.Return(new Ast.Expr.Function(Optional.empty(), "helper", Arrays.asList()))
+                                )),
+                                new Ast.Method("helper", Arrays.asList(), Arrays.asList(), Optional.of("Integer"), Arrays.asList(
+                                        new Ast.Stmt.Return(new Ast.Expr.Literal(BigInteger.ONE))
+                                ))
+                        )),
+                        true
+                ),
+                Arguments.of("Range",
+                        // DEF main(): Integer DO LET sum = 0; FOR i IN range(0, 10, 2) DO sum = sum + i; END RETURN sum; END
+                        new Ast.Source(Arrays.asList(), Arrays.asList(
+                                new Ast.Method("main", Arrays.asList(), Arrays.asList(), Optional.of("Integer"), Arrays.asList(
+                                        new Ast.Stmt.Declaration("sum", Optional.of(new Ast.Expr.Literal(BigInteger.ZERO))),
+                                        new Ast.Stmt.For("i", new Ast.Expr.Function(Optional.empty(), "range", Arrays.asList(
+                                                new Ast.Expr.Literal(BigInteger.ZERO), new Ast.Expr.Literal(BigInteger.TEN), new Ast.Expr.Literal(BigInteger.valueOf(2))
+                                        )), Arrays.asList(
+                                                new Ast.Stmt.Assignment(new Ast.Expr.Access(Optional.empty(), "sum"), new Ast.Expr.Binary("+",
+                                                        new Ast.Expr.Access(Optional.empty(), "sum"), new Ast.Expr.Access(Optional.empty(), "i")))
+                                        )),
+                                        new Ast.Stmt.Return(new Ast.Expr.Access(Optional.empty(), "sum"))
+                                ))
+                        )),
+                        true
+                ),
+                Arguments.of("Range Of Decimals",
+                        // DEF main(): Integer DO FOR i IN range(0.0, 1.0) DO print(i); END RETURN 0; END
+                        new Ast.Source(Arrays.asList(), Arrays.asList(
+                                new Ast.Method("main", Arrays.asList(), Arrays.asList(), Optional.of("Integer"), Arrays.asList(
+                                        new Ast.Stmt.For("i", new Ast.Expr.Function(Optional.empty(), "range", Arrays.asList(
+                                                new Ast.Expr.Literal(new BigDecimal("0.0")), new Ast.Expr.Literal(new BigDecimal("1.0"))
+                                        )), Arrays.asList(
+                                                new Ast.Stmt.Expression(new Ast.Expr.Function(Optional.empty(), "print", Arrays.asList(new Ast.Expr.Access(Optional.empty(), "i"))))
+                                        )),
+                                        new Ast.Stmt.Return(new Ast.Expr.Literal(BigInteger.ZERO))
+                                ))
+                        )),
+                        false
+                ),
+                Arguments.of("Many Methods",
+                        // LET offset: Integer = 1;
+                        // DEF f<i>(x: Integer): Integer DO LET y: Integer = x + offset; RETURN y; END
+                        new Ast.Source(
+                                Arrays.asList(new Ast.Field("offset", "Integer", Optional.of(new Ast.Expr.Literal(BigInteger.ONE)))),
+                                IntStream.range(0, 64).mapToObj(i -> new Ast.Method("f" + i, Arrays.asList("x"), Arrays.asList("Integer"), Optional.of("Integer"), Arrays.asList(
+                                        new Ast.Stmt.Declaration("y", Optional.of("Integer"), Optional.of(new Ast.Expr.Binary("+",
+                                                new Ast.Expr.Access(Optional.empty(), "x"),
+                                                new Ast.Expr.Access(Optional.empty(), "offset")
+                                        ))),
+                                        new Ast.Stmt.Return(new Ast.Expr.Access(Optional.empty(), "y"))
+                                ))).collect(Collectors.toList())
+                        ),
+                        true
+                ),
+                Arguments.of("Invalid Body",
+                        // DEF main(): Integer DO RETURN 0; END
+                        // DEF name(): Integer DO RETURN "string"; END
+                        new Ast.Source(Arrays.asList(), Arrays.asList(
+                                new Ast.Method("main", Arrays.asList(), Arrays.asList(), Optional.of("Integer"), Arrays.asList(
+                                        new Ast.Stmt.Return(new Ast.Expr.Literal(BigInteger.ZERO))
+                                )),
+                                new Ast.Method("name", Arrays.asList(), Arrays.asList(), Optional.of("Integer"), Arrays.asList(
+                                        new Ast.Stmt.Return(new Ast.Expr.Literal("string"))
+                                ))
+                        )),
+                        false
+                )
+        );
+    }
+
     @ParameterizedTest(name = "{0}")
     @MethodSource
     public void testMethod(String test, Ast.Method ast, Ast.Method expected) {
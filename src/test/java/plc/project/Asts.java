@@ -0,0 +1,53 @@
+package plc.project;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Factories for the ASTs built by the tests, for the nodes which would
+ * otherwise be spelled out in full at every use.
+ */
+final class Asts {
+
+    private Asts() {}
+
+    static Ast.Source source(List<Ast.Field> fields, List<Ast.Method> methods) {
+        return new Ast.Source(fields, methods);
+    }
+
+    static Ast.Method method(String name, List<String> parameters, List<Ast.Stmt> statements) {
+        return new Ast.Method(name, parameters, statements);
+    }
+
+    /**
+     * Returns a method whose parameters are all Integers.
+     */
+    static Ast.Method method(String name, List<String> parameters, String returnType, List<Ast.Stmt> statements) {
+        List<String> types = Arrays.asList(new String[parameters.size()]);
+        types.replaceAll(type -> "Integer");
+        return new Ast.Method(name, parameters, types, Optional.of(returnType), statements);
+    }
+
+    static Ast.Stmt print(Ast.Expr argument) {
+        return new Ast.Stmt.Expression(call("print", argument));
+    }
+
+    static Ast.Expr.Function call(String name, Ast.Expr... arguments) {
+        return new Ast.Expr.Function(Optional.empty(), name, Arrays.asList(arguments));
+    }
+
+    static Ast.Expr.Binary binary(String operator, Ast.Expr left, Ast.Expr right) {
+        return new Ast.Expr.Binary(operator, left, right);
+    }
+
+    static Ast.Expr.Access access(String name) {
+        return new Ast.Expr.Access(Optional.empty(), name);
+    }
+
+    static Ast.Expr.Literal integer(long value) {
+        return new Ast.Expr.Literal(BigInteger.valueOf(value));
+    }
+
+}
@@ -0,0 +1,107 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+public final class BatchRunnerTests {
+
+    @Test
+    public void testOutput() throws Exception {
+        List<CompletableFuture<BatchRunner.Result>> results = new ArrayList<>();
+        BatchRunner runner = new BatchRunner(4);
+        try {
+            for (int i = 0; i < 1000; i++) {
+                results.add(runner.submit(printing(i)));
+            }
+        } finally {
+            runner.close();
+        }
+        for (int i = 0; i < 1000; i++) {
+            BatchRunner.Result result = results.get(i).get();
+            Assertions.assertEquals(BigInteger.valueOf(2 * i), result.getValue());
+            Assertions.assertEquals(i + System.lineSeparator(), result.getOutput());
+        }
+        BatchRunner.Metrics metrics = runner.getMetrics();
+        Assertions.assertEquals(1000, metrics.getSubmitted());
+        Assertions.assertEquals(1000, metrics.getCompleted());
+        Assertions.assertEquals(0, metrics.getFailed());
+        Assertions.assertEquals(0, metrics.getQueued());
+        Assertions.assertTrue(metrics.getThroughput() > 0);
+        Assertions.assertTrue(metrics.getMaxLatency().compareTo(metrics.getMeanLatency()) >= 0);
+        Assertions.assertThrows(IllegalStateException.class, () -> runner.submit(printing(0)));
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        // DEF main() DO WHILE TRUE DO END RETURN 0; END
+        Ast.Source loop = new Ast.Source(Arrays.asList(), Arrays.asList(
+                new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                        new Ast.Stmt.While(new Ast.Expr.Literal(true), Arrays.asList()),
+                        new Ast.Stmt.Return(new Ast.Expr.Literal(BigInteger.ZERO))
+                ))
+        ));
+        BatchRunner runner = new BatchRunner(1, Budget.UNLIMITED.withTimeout(Duration.ofMillis(50)));
+        CompletableFuture<BatchRunner.Result> timeout;
+        CompletableFuture<BatchRunner.Result> result;
+        try {
+            timeout = runner.submit(loop);
+            result = runner.submit(printing(1));
+        } finally {
+            runner.close();
+        }
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class, timeout::get);
+        Assertions.assertEquals(BudgetExceededException.Limit.TIMEOUT, ((BudgetExceededException) exception.getCause()).getLimit());
+        Assertions.assertEquals(BigInteger.valueOf(2), result.get().getValue());
+        Assertions.assertEquals(1, runner.getMetrics().getFailed());
+        Assertions.assertEquals(1, runner.getMetrics().getCompleted());
+    }
+
+    @Test
+    public void testError() throws Exception {
+        // A source whose methods fail with an Error rather than an exception.
+        Ast.Source broken = new Ast.Source(Arrays.asList(), new AbstractList<Ast.Method>() {
+            @Override
+            public Ast.Method get(int index) {
+                throw new AssertionError("Broken source.");
+            }
+
+            @Override
+            public int size() {
+                return 1;
+            }
+        });
+        BatchRunner runner = new BatchRunner(1);
+        CompletableFuture<BatchRunner.Result> error;
+        try {
+            error = runner.submit(broken);
+        } finally {
+            runner.close();
+        }
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class, error::get);
+        Assertions.assertTrue(exception.getCause() instanceof AssertionError);
+        Assertions.assertEquals(1, runner.getMetrics().getFailed());
+    }
+
+    /**
+     * DEF main() DO print(i); RETURN i * 2; END
+     */
+    private static Ast.Source printing(int i) {
+        return new Ast.Source(Arrays.asList(), Arrays.asList(
+                new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                        new Ast.Stmt.Expression(new Ast.Expr.Function(Optional.empty(), "print", Arrays.asList(new Ast.Expr.Literal(BigInteger.valueOf(i))))),
+                        new Ast.Stmt.Return(new Ast.Expr.Binary("*", new Ast.Expr.Literal(BigInteger.valueOf(i)), new Ast.Expr.Literal(BigInteger.valueOf(2))))
+                ))
+        ));
+    }
+
+}
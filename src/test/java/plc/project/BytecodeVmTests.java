@@ -0,0 +1,209 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static plc.project.Asts.source;
+import static plc.project.Asts.method;
+import static plc.project.Asts.call;
+import static plc.project.Asts.binary;
+import static plc.project.Asts.access;
+import static plc.project.Asts.integer;
+
+public final class BytecodeVmTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    public void testSource(String test, Ast.Source ast, Object expected) {
+        Bytecode.Program program = new BytecodeCompiler().compile(ast);
+        Assertions.assertEquals(expected, new BytecodeVm(new Scope(null)).execute(program).getValue(), program.toString());
+        Assertions.assertEquals(expected, new Interpreter(new Scope(null)).visit(ast).getValue());
+    }
+
+    private static Stream<Arguments> testSource() {
+        return Stream.of(
+                Arguments.of("Straight Line",
+                        // DEF main(): Integer DO LET x = 1; x = x + 2; RETURN x * 3; END
+                        source(Arrays.asList(), Arrays.asList(method("main", Arrays.asList(), "Integer", Arrays.asList(
+                                new Ast.Stmt.Declaration("x", Optional.of(integer(1))),
+                                new Ast.Stmt.Assignment(access("x"), binary("+", access("x"), integer(2))),
+                                new Ast.Stmt.Return(binary("*", access("x"), integer(3)))
+                        )))),
+                        BigInteger.valueOf(9)
+                ),
+                Arguments.of("Loop",
+                        // DEF main(): Integer DO LET i = 0; LET sum = 0; WHILE i < 5 DO LET square = i * i; sum = sum + square; i = i + 1; END RETURN sum; END
+                        source(Arrays.asList(), Arrays.asList(method("main", Arrays.asList(), "Integer", Arrays.asList(
+                                new Ast.Stmt.Declaration("i", Optional.of(integer(0))),
+                                new Ast.Stmt.Declaration("sum", Optional.of(integer(0))),
+                                new Ast.Stmt.While(binary("<", access("i"), integer(5)), Arrays.asList(
+                                        new Ast.Stmt.Declaration("square", Optional.of(binary("*", access("i"), access("i")))),
+                                        new Ast.Stmt.Assignment(access("sum"), binary("+", access("sum"), access("square"))),
+                                        new Ast.Stmt.Assignment(access("i"), binary("+", access("i"), integer(1)))
+                                )),
+                                new Ast.Stmt.Return(access("sum"))
+                        )))),
+                        BigInteger.valueOf(30)
+                ),
+                Arguments.of("Logical",
+                        // DEF main(): Boolean DO LET x = 3; RETURN x > 2 AND x < 5 OR x == 0; END
+                        source(Arrays.asList(), Arrays.asList(method("main", Arrays.asList(), "Boolean", Arrays.asList(
+                                new Ast.Stmt.Declaration("x", Optional.of(integer(3))),
+                                new Ast.Stmt.Return(binary("OR",
+                                        binary("AND", binary(">", access("x"), integer(2)), binary("<", access("x"), integer(5))),
+                                        binary("==", access("x"), integer(0))
+                                ))
+                        )))),
+                        true
+                ),
+                Arguments.of("Globals",
+                        // VAR total: Integer = 1;
+                        // DEF add(n: Integer): Integer DO total = total + n; RETURN total; END
+                        // DEF main(): Integer DO add(2); RETURN add(3); END
+                        source(
+                                Arrays.asList(new Ast.Field("total", "Integer", Optional.of(integer(1)))),
+                                Arrays.asList(
+                                        method("add", Arrays.asList("n"), "Integer", Arrays.asList(
+                                                new Ast.Stmt.Assignment(access("total"), binary("+", access("total"), access("n"))),
+                                                new Ast.Stmt.Return(access("total"))
+                                        )),
+                                        method("main", Arrays.asList(), "Integer", Arrays.asList(
+                                                new Ast.Stmt.Expression(call("add", integer(2))),
+                                                new Ast.Stmt.Return(call("add", integer(3)))
+                                        ))
+                                )
+                        ),
+                        BigInteger.valueOf(6)
+                ),
+                Arguments.of("Recursion",
+                        // DEF fib(n: Integer): Integer DO IF n < 2 DO RETURN n; ELSE RETURN fib(n - 1) + fib(n - 2); END END
+                        // DEF main(): Integer DO RETURN fib(15); END
+                        source(Arrays.asList(), Arrays.asList(
+                                method("fib", Arrays.asList("n"), "Integer", Arrays.asList(
+                                        new Ast.Stmt.If(binary("<", access("n"), integer(2)),
+                                                Arrays.asList(new Ast.Stmt.Return(access("n"))),
+                                                Arrays.asList(new Ast.Stmt.Return(binary("+",
+                                                        call("fib", binary("-", access("n"), integer(1))),
+                                                        call("fib", binary("-", access("n"), integer(2)))
+                                                )))
+                                        )
+                                )),
+                                method("main", Arrays.asList(), "Integer", Arrays.asList(
+                                        new Ast.Stmt.Return(call("fib", integer(15)))
+                                ))
+                        )),
+                        BigInteger.valueOf(610)
+                ),
+                Arguments.of("Concatenation",
+                        // DEF main(): String DO RETURN "x" + 1 + 'c'; END
+                        source(Arrays.asList(), Arrays.asList(method("main", Arrays.asList(), "String", Arrays.asList(
+                                new Ast.Stmt.Return(binary("+", binary("+", new Ast.Expr.Literal("x"), integer(1)), new Ast.Expr.Literal('c')))
+                        )))),
+                        "x1c"
+                )
+        );
+    }
+
+    @Test
+    public void testFor() {
+        Scope scope = new Scope(null);
+        scope.defineVariable("list", Environment.create(IntStream.range(0, 5)
+                .mapToObj(i -> Environment.create(BigInteger.valueOf(i)))
+                .collect(Collectors.toList())));
+        // DEF main() DO LET sum = 0; FOR num IN list DO sum = sum + num; END RETURN sum; END
+        Ast.Source ast = source(Arrays.asList(), Arrays.asList(new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                new Ast.Stmt.Declaration("sum", Optional.of(integer(0))),
+                new Ast.Stmt.For("num", access("list"), Arrays.asList(
+                        new Ast.Stmt.Assignment(access("sum"), binary("+", access("sum"), access("num")))
+                )),
+                new Ast.Stmt.Return(access("sum"))
+        ))));
+        Assertions.assertEquals(BigInteger.TEN, new BytecodeVm(scope).execute(new BytecodeCompiler().compile(ast)).getValue());
+    }
+
+    @Test
+    public void testBuiltins() {
+        PrintStream sysout = System.out;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(out));
+        try {
+            // DEF main() DO print("Hello, World!"); RETURN logarithm(1.0); END
+            Ast.Source ast = source(Arrays.asList(), Arrays.asList(new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                    new Ast.Stmt.Expression(call("print", new Ast.Expr.Literal("Hello, World!"))),
+                    new Ast.Stmt.Return(call("logarithm", new Ast.Expr.Literal(new BigDecimal("1.0"))))
+            ))));
+            Bytecode.Program program = new BytecodeCompiler().compile(ast);
+            Assertions.assertEquals(Arrays.asList("print/1", "logarithm/1"), program.getNatives());
+            Assertions.assertEquals(0, BigDecimal.ZERO.compareTo((BigDecimal) new BytecodeVm(new Scope(null)).execute(program).getValue()));
+            Assertions.assertEquals("Hello, World!" + System.lineSeparator(), out.toString());
+        } finally {
+            System.setOut(sysout);
+        }
+    }
+
+    @Test
+    public void testRegisters() {
+        // DEF main() DO LET a = 1; LET b = a + 2 * a; RETURN b; END
+        Ast.Source ast = source(Arrays.asList(), Arrays.asList(new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                new Ast.Stmt.Declaration("a", Optional.of(integer(1))),
+                new Ast.Stmt.Declaration("b", Optional.of(binary("+", access("a"), binary("*", integer(2), access("a"))))),
+                new Ast.Stmt.Return(access("b"))
+        ))));
+        Bytecode.Function main = new BytecodeCompiler().compile(ast).getFunctions().get(0);
+        Assertions.assertEquals(4, main.getRegisters(), main.toString());
+        Assertions.assertEquals(BigInteger.valueOf(3), new BytecodeVm(new Scope(null)).execute(new BytecodeCompiler().compile(ast)).getValue());
+    }
+
+    @Test
+    public void testDeepRecursion() {
+        Ast.Source ast = sum(100000);
+        Assertions.assertEquals(BigInteger.valueOf(5000050000L), new BytecodeVm(new Scope(null)).execute(new BytecodeCompiler().compile(ast)).getValue());
+        BudgetExceededException exception = Assertions.assertThrows(BudgetExceededException.class,
+                () -> new BytecodeVm(new Scope(null), 1000).execute(new BytecodeCompiler().compile(ast)));
+        Assertions.assertEquals(BudgetExceededException.Limit.DEPTH, exception.getLimit());
+    }
+
+    @Test
+    public void testResume() {
+        BytecodeVm.Execution execution = new BytecodeVm(new Scope(null)).start(new BytecodeCompiler().compile(sum(100)));
+        int resumes = 0;
+        while (!execution.resume(7)) {
+            Assertions.assertThrows(RuntimeException.class, execution::getResult);
+            Assertions.assertTrue(execution.getDepth() >= 1 && execution.getDepth() <= 102, String.valueOf(execution.getDepth()));
+            resumes++;
+        }
+        Assertions.assertTrue(resumes > 100, String.valueOf(resumes));
+        Assertions.assertEquals(BigInteger.valueOf(5050), execution.getResult().getValue());
+        Assertions.assertTrue(execution.resume(1));
+    }
+
+    /**
+     * DEF sum(n: Integer): Integer DO IF n == 0 DO RETURN 0; END RETURN n + sum(n - 1); END
+     * DEF main(): Integer DO RETURN sum(n); END
+     */
+    private static Ast.Source sum(long n) {
+        return source(Arrays.asList(), Arrays.asList(
+                method("sum", Arrays.asList("n"), "Integer", Arrays.asList(
+                        new Ast.Stmt.If(binary("==", access("n"), integer(0)), Arrays.asList(new Ast.Stmt.Return(integer(0))), Arrays.asList()),
+                        new Ast.Stmt.Return(binary("+", access("n"), call("sum", binary("-", access("n"), integer(1)))))
+                )),
+                method("main", Arrays.asList(), "Integer", Arrays.asList(
+                        new Ast.Stmt.Return(call("sum", integer(n)))
+                ))
+        ));
+    }
+
+}
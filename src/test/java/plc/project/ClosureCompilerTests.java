@@ -0,0 +1,277 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static plc.project.Asts.call;
+import static plc.project.Asts.binary;
+import static plc.project.Asts.access;
+import static plc.project.Asts.integer;
+
+/**
+ * Runs the cases of the {@link InterpreterTests} against the compiled engine,
+ * and compares both on sources using locals in methods and loops.
+ */
+public final class ClosureCompilerTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("plc.project.InterpreterTests#testSource")
+    public void testSource(String test, Ast.Source ast, Object expected) {
+        test(ast, expected, new Scope(null));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("plc.project.InterpreterTests#testField")
+    public void testField(String test, Ast.Field ast, Object expected) {
+        Scope scope = test(ast, Environment.NIL.getValue(), new Scope(null));
+        Assertions.assertEquals(expected, scope.lookupVariable(ast.getName()).getValue().getValue());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("plc.project.InterpreterTests#testMethod")
+    public void testMethod(String test, Ast.Method ast, List<Environment.PlcObject> args, Object expected) {
+        Scope scope = test(ast, Environment.NIL.getValue(), new Scope(null));
+        Assertions.assertEquals(expected, scope.lookupFunction(ast.getName(), args.size()).invoke(args).getValue());
+    }
+
+    @Test
+    public void testExpressionStatement() {
+        PrintStream sysout = System.out;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(out));
+        try {
+            test(new Ast.Stmt.Expression(
+                    new Ast.Expr.Function(Optional.empty(), "print", Arrays.asList(new Ast.Expr.Literal("Hello, World!")))
+            ), Environment.NIL.getValue(), new Scope(null));
+            Assertions.assertEquals("Hello, World!" + System.lineSeparator(), out.toString());
+        } finally {
+            System.setOut(sysout);
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("plc.project.InterpreterTests#testDeclarationStatement")
+    public void testDeclarationStatement(String test, Ast.Stmt.Declaration ast, Object expected) {
+        Scope scope = test(ast, Environment.NIL.getValue(), new Scope(null));
+        Assertions.assertEquals(expected, scope.lookupVariable(ast.getName()).getValue().getValue());
+    }
+
+    @Test
+    public void testVariableAssignmentStatement() {
+        Scope scope = new Scope(null);
+        scope.defineVariable("variable", Environment.create("variable"));
+        test(new Ast.Stmt.Assignment(access("variable"), integer(1)), Environment.NIL.getValue(), scope);
+        Assertions.assertEquals(BigInteger.ONE, scope.lookupVariable("variable").getValue().getValue());
+    }
+
+    @Test
+    public void testFieldAssignmentStatement() {
+        Scope scope = new Scope(null);
+        Scope object = new Scope(null);
+        object.defineVariable("field", Environment.create("object.field"));
+        scope.defineVariable("object", new Environment.PlcObject(object, "object"));
+        test(new Ast.Stmt.Assignment(
+                new Ast.Expr.Access(Optional.of(access("object")), "field"),
+                integer(1)
+        ), Environment.NIL.getValue(), scope);
+        Assertions.assertEquals(BigInteger.ONE, object.lookupVariable("field").getValue().getValue());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("plc.project.InterpreterTests#testIfStatement")
+    public void testIfStatement(String test, Ast.Stmt.If ast, Object expected) {
+        Scope scope = new Scope(null);
+        scope.defineVariable("num", Environment.NIL);
+        test(ast, Environment.NIL.getValue(), scope);
+        Assertions.assertEquals(expected, scope.lookupVariable("num").getValue().getValue());
+    }
+
+    @Test
+    public void testForStatement() {
+        Scope scope = new Scope(null);
+        scope.defineVariable("sum", Environment.create(BigInteger.ZERO));
+        scope.defineVariable("list", Environment.create(IntStream.range(0, 5)
+                .mapToObj(i -> Environment.create(BigInteger.valueOf(i)))
+                .collect(Collectors.toList())));
+        test(new Ast.Stmt.For("num", access("list"), Arrays.asList(
+                new Ast.Stmt.Assignment(access("sum"), binary("+", access("sum"), access("num")))
+        )), Environment.NIL.getValue(), scope);
+        Assertions.assertEquals(BigInteger.TEN, scope.lookupVariable("sum").getValue().getValue());
+    }
+
+    @Test
+    public void testWhileStatement() {
+        Scope scope = new Scope(null);
+        scope.defineVariable("num", Environment.create(BigInteger.ZERO));
+        test(new Ast.Stmt.While(binary("<", access("num"), integer(10)), Arrays.asList(
+                new Ast.Stmt.Assignment(access("num"), binary("+", access("num"), integer(1)))
+        )), Environment.NIL.getValue(), scope);
+        Assertions.assertEquals(BigInteger.TEN, scope.lookupVariable("num").getValue().getValue());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("plc.project.InterpreterTests#testLiteralExpression")
+    public void testLiteralExpression(String test, Ast ast, Object expected) {
+        test(ast, expected, new Scope(null));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("plc.project.InterpreterTests#testGroupExpression")
+    public void testGroupExpression(String test, Ast ast, Object expected) {
+        test(ast, expected, new Scope(null));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("plc.project.InterpreterTests#testBinaryExpression")
+    public void testBinaryExpression(String test, Ast ast, Object expected) {
+        test(ast, expected, new Scope(null));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("plc.project.InterpreterTests#testAccessExpression")
+    public void testAccessExpression(String test, Ast ast, Object expected) {
+        Scope scope = new Scope(null);
+        scope.defineVariable("variable", Environment.create("variable"));
+        Scope object = new Scope(null);
+        object.defineVariable("field", Environment.create("object.field"));
+        scope.defineVariable("object", new Environment.PlcObject(object, "object"));
+        test(ast, expected, scope);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("plc.project.InterpreterTests#testFunctionExpression")
+    public void testFunctionExpression(String test, Ast ast, Object expected) {
+        Scope scope = new Scope(null);
+        scope.defineFunction("function", 0, args -> Environment.create("function"));
+        Scope object = new Scope(null);
+        object.defineFunction("method", 1, args -> Environment.create("object.method"));
+        scope.defineVariable("object", new Environment.PlcObject(object, "object"));
+        test(ast, expected, scope);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    public void testLocals(String test, Ast.Source ast, Object expected) {
+        Assertions.assertEquals(expected, new Interpreter(new Scope(null)).visit(ast).getValue());
+        test(ast, expected, new Scope(null));
+    }
+
+    private static Stream<Arguments> testLocals() {
+        return Stream.of(
+                Arguments.of("Recursion",
+                        // DEF fact(n) DO IF n <= 1 DO RETURN 1; END RETURN n * fact(n - 1); END
+                        // DEF main() DO RETURN fact(10); END
+                        new Ast.Source(Arrays.asList(), Arrays.asList(
+                                new Ast.Method("fact", Arrays.asList("n"), Arrays.asList(
+                                        new Ast.Stmt.If(binary("<=", access("n"), integer(1)), Arrays.asList(new Ast.Stmt.Return(integer(1))), Arrays.asList()),
+                                        new Ast.Stmt.Return(binary("*", access("n"), call("fact", binary("-", access("n"), integer(1)))))
+                                )),
+                                new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                                        new Ast.Stmt.Return(call("fact", integer(10)))
+                                ))
+                        )),
+                        BigInteger.valueOf(3628800)
+                ),
+                Arguments.of("Shadowing",
+                        // VAR x = 1;
+                        // DEF main() DO LET total = x; LET i = 0; WHILE i < 3 DO LET x = i * 10; total = total + x; i = i + 1; END RETURN total + x; END
+                        new Ast.Source(Arrays.asList(new Ast.Field("x", Optional.of(integer(1)))), Arrays.asList(
+                                new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                                        new Ast.Stmt.Declaration("total", Optional.of(access("x"))),
+                                        new Ast.Stmt.Declaration("i", Optional.of(integer(0))),
+                                        new Ast.Stmt.While(binary("<", access("i"), integer(3)), Arrays.asList(
+                                                new Ast.Stmt.Declaration("x", Optional.of(binary("*", access("i"), integer(10)))),
+                                                new Ast.Stmt.Assignment(access("total"), binary("+", access("total"), access("x"))),
+                                                new Ast.Stmt.Assignment(access("i"), binary("+", access("i"), integer(1)))
+                                        )),
+                                        new Ast.Stmt.Return(binary("+", access("total"), access("x")))
+                                ))
+                        )),
+                        BigInteger.valueOf(32)
+                ),
+                Arguments.of("Return From Loop",
+                        // VAR count = 0;
+                        // DEF main() DO WHILE TRUE DO count = count + 1; IF count == 4 DO RETURN count; END END RETURN 0; END
+                        new Ast.Source(Arrays.asList(new Ast.Field("count", Optional.of(integer(0)))), Arrays.asList(
+                                new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                                        new Ast.Stmt.While(new Ast.Expr.Literal(true), Arrays.asList(
+                                                new Ast.Stmt.Assignment(access("count"), binary("+", access("count"), integer(1))),
+                                                new Ast.Stmt.If(binary("==", access("count"), integer(4)), Arrays.asList(new Ast.Stmt.Return(access("count"))), Arrays.asList())
+                                        )),
+                                        new Ast.Stmt.Return(integer(0))
+                                ))
+                        )),
+                        BigInteger.valueOf(4)
+                )
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource({"plc.project.InterpreterTests#testSource", "testLocals"})
+    public void testSpecializing(String test, Ast.Source ast, Object expected) {
+        Assertions.assertEquals(expected, new ClosureCompiler(new Scope(null), true).execute(ast).getValue());
+    }
+
+    @Test
+    public void testBinarySpecialization() {
+        Scope scope = new Scope(null);
+        scope.defineVariable("x", Environment.create(BigInteger.ONE));
+        ClosureCompiler.BinaryNode node = (ClosureCompiler.BinaryNode) new ClosureCompiler(scope, true).visit(binary("+", access("x"), integer(2)));
+        Assertions.assertEquals("uninitialized", node.getSpecialization());
+        Assertions.assertEquals(BigInteger.valueOf(3), node.execute(new Environment.PlcObject[0]).getValue());
+        Assertions.assertEquals("Integer +", node.getSpecialization());
+
+        scope.lookupVariable("x").setValue(Environment.create("x"));
+        Assertions.assertEquals("x2", node.execute(new Environment.PlcObject[0]).getValue());
+        Assertions.assertEquals("generic", node.getSpecialization());
+
+        scope.lookupVariable("x").setValue(Environment.create(BigInteger.TEN));
+        Assertions.assertEquals(BigInteger.valueOf(12), node.execute(new Environment.PlcObject[0]).getValue());
+        Assertions.assertEquals("generic", node.getSpecialization());
+    }
+
+    @Test
+    public void testFieldSpecialization() {
+        Scope scope = new Scope(null);
+        Scope first = new Scope(null);
+        first.defineVariable("field", Environment.create("first"));
+        Scope second = new Scope(null);
+        second.defineVariable("field", Environment.create("second"));
+        scope.defineVariable("object", new Environment.PlcObject(first, "first"));
+        ClosureCompiler.FieldNode node = (ClosureCompiler.FieldNode) new ClosureCompiler(scope, true).visit(
+                new Ast.Expr.Access(Optional.of(access("object")), "field"));
+        Assertions.assertEquals("first", node.execute(new Environment.PlcObject[0]).getValue());
+        Assertions.assertEquals("monomorphic", node.getSpecialization());
+
+        first.lookupVariable("field").setValue(Environment.create("changed"));
+        Assertions.assertEquals("changed", node.execute(new Environment.PlcObject[0]).getValue());
+
+        scope.lookupVariable("object").setValue(new Environment.PlcObject(second, "second"));
+        Assertions.assertEquals("second", node.execute(new Environment.PlcObject[0]).getValue());
+        Assertions.assertEquals("generic", node.getSpecialization());
+    }
+
+    private static Scope test(Ast ast, Object expected, Scope scope) {
+        ClosureCompiler compiler = new ClosureCompiler(scope);
+        if (expected != null) {
+            Assertions.assertEquals(expected, compiler.execute(ast).getValue());
+        } else {
+            Assertions.assertThrows(RuntimeException.class, () -> compiler.execute(ast));
+        }
+        return compiler.getScope();
+    }
+
+}
@@ -0,0 +1,159 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static plc.project.Asts.source;
+import static plc.project.Asts.method;
+import static plc.project.Asts.print;
+import static plc.project.Asts.call;
+import static plc.project.Asts.binary;
+import static plc.project.Asts.access;
+import static plc.project.Asts.integer;
+
+public final class CommonSubexpressionEliminatorTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    public void testStatements(String test, List<Ast.Stmt> statements, List<Ast.Stmt> expected) {
+        Ast.Method ast = analyze(new Ast.Method("name", Arrays.asList("a", "b"), Arrays.asList("Integer", "Integer"), Optional.empty(), statements));
+        Ast.Method eliminated = (Ast.Method) new CommonSubexpressionEliminator().visit(ast);
+        Assertions.assertEquals(analyze(new Ast.Method("name", Arrays.asList("a", "b"), Arrays.asList("Integer", "Integer"), Optional.empty(), expected)).getStatements(), eliminated.getStatements());
+    }
+
+    private static Ast.Method analyze(Ast.Method ast) {
+        Scope scope = new Scope(null);
+        scope.defineVariable("field", "field", Environment.Type.INTEGER, Environment.NIL);
+        new Analyzer(scope).visit(ast);
+        return ast;
+    }
+
+    private static Stream<Arguments> testStatements() {
+        return Stream.of(
+                Arguments.of("Repeated",
+                        // LET x = a * b + 1; LET y = a * b + 2;
+                        Arrays.asList(
+                                new Ast.Stmt.Declaration("x", Optional.of(binary("+", binary("*", access("a"), access("b")), integer(1)))),
+                                new Ast.Stmt.Declaration("y", Optional.of(binary("+", binary("*", access("a"), access("b")), integer(2))))
+                        ),
+                        // LET $cse0 = a * b; LET x = $cse0 + 1; LET y = $cse0 + 2;
+                        Arrays.asList(
+                                new Ast.Stmt.Declaration("$cse0", Optional.of(binary("*", access("a"), access("b")))),
+                                new Ast.Stmt.Declaration("x", Optional.of(binary("+", access("$cse0"), integer(1)))),
+                                new Ast.Stmt.Declaration("y", Optional.of(binary("+", access("$cse0"), integer(2))))
+                        )
+                ),
+                Arguments.of("Same Statement",
+                        // print((a + b) * (a + b));
+                        Arrays.asList(
+                                print(binary("*", new Ast.Expr.Group(binary("+", access("a"), access("b"))), new Ast.Expr.Group(binary("+", access("a"), access("b")))))
+                        ),
+                        // LET $cse0 = a + b; print($cse0 * $cse0);
+                        Arrays.asList(
+                                new Ast.Stmt.Declaration("$cse0", Optional.of(binary("+", access("a"), access("b")))),
+                                print(binary("*", access("$cse0"), access("$cse0")))
+                        )
+                ),
+                Arguments.of("Assigned",
+                        // LET x = a * b; a = 1; LET y = a * b;
+                        Arrays.asList(
+                                new Ast.Stmt.Declaration("x", Optional.of(binary("*", access("a"), access("b")))),
+                                new Ast.Stmt.Assignment(access("a"), integer(1)),
+                                new Ast.Stmt.Declaration("y", Optional.of(binary("*", access("a"), access("b"))))
+                        ),
+                        Arrays.asList(
+                                new Ast.Stmt.Declaration("x", Optional.of(binary("*", access("a"), access("b")))),
+                                new Ast.Stmt.Assignment(access("a"), integer(1)),
+                                new Ast.Stmt.Declaration("y", Optional.of(binary("*", access("a"), access("b"))))
+                        )
+                ),
+                Arguments.of("Local Across Call",
+                        // LET x = a * 2; print(x); LET y = a * 2;
+                        Arrays.asList(
+                                new Ast.Stmt.Declaration("x", Optional.of(binary("*", access("a"), integer(2)))),
+                                print(access("x")),
+                                new Ast.Stmt.Declaration("y", Optional.of(binary("*", access("a"), integer(2))))
+                        ),
+                        // LET $cse0 = a * 2; LET x = $cse0; print(x); LET y = $cse0;
+                        Arrays.asList(
+                                new Ast.Stmt.Declaration("$cse0", Optional.of(binary("*", access("a"), integer(2)))),
+                                new Ast.Stmt.Declaration("x", Optional.of(access("$cse0"))),
+                                print(access("x")),
+                                new Ast.Stmt.Declaration("y", Optional.of(access("$cse0")))
+                        )
+                ),
+                Arguments.of("Field Across Call",
+                        // LET x = field * 2; print(x); LET y = field * 2;
+                        Arrays.asList(
+                                new Ast.Stmt.Declaration("x", Optional.of(binary("*", access("field"), integer(2)))),
+                                print(access("x")),
+                                new Ast.Stmt.Declaration("y", Optional.of(binary("*", access("field"), integer(2))))
+                        ),
+                        Arrays.asList(
+                                new Ast.Stmt.Declaration("x", Optional.of(binary("*", access("field"), integer(2)))),
+                                print(access("x")),
+                                new Ast.Stmt.Declaration("y", Optional.of(binary("*", access("field"), integer(2))))
+                        )
+                ),
+                Arguments.of("Field Before Local",
+                        // LET x = field * 2; print(x); LET y = field * 2; LET field = 1;
+                        Arrays.asList(
+                                new Ast.Stmt.Declaration("x", Optional.of(binary("*", access("field"), integer(2)))),
+                                print(access("x")),
+                                new Ast.Stmt.Declaration("y", Optional.of(binary("*", access("field"), integer(2)))),
+                                new Ast.Stmt.Declaration("field", Optional.of(integer(1)))
+                        ),
+                        Arrays.asList(
+                                new Ast.Stmt.Declaration("x", Optional.of(binary("*", access("field"), integer(2)))),
+                                print(access("x")),
+                                new Ast.Stmt.Declaration("y", Optional.of(binary("*", access("field"), integer(2)))),
+                                new Ast.Stmt.Declaration("field", Optional.of(integer(1)))
+                        )
+                ),
+                Arguments.of("Separate Blocks",
+                        // LET x = a * b; IF x > 0 DO print(a * b); END
+                        Arrays.asList(
+                                new Ast.Stmt.Declaration("x", Optional.of(binary("*", access("a"), access("b")))),
+                                new Ast.Stmt.If(binary(">", access("x"), integer(0)), Arrays.asList(print(binary("*", access("a"), access("b")))), Arrays.asList())
+                        ),
+                        Arrays.asList(
+                                new Ast.Stmt.Declaration("x", Optional.of(binary("*", access("a"), access("b")))),
+                                new Ast.Stmt.If(binary(">", access("x"), integer(0)), Arrays.asList(print(binary("*", access("a"), access("b")))), Arrays.asList())
+                        )
+                )
+        );
+    }
+
+    @Test
+    public void testSource() {
+        // VAR x: Integer = 1;
+        // DEF bump(): Integer DO x = x + 1; RETURN x; END
+        // DEF main(): Integer DO LET a = x * 2; bump(); LET b = x * 2; LET x = 5; RETURN a + b; END
+        Ast.Source ast = source(Arrays.asList(new Ast.Field("x", "Integer", Optional.of(integer(1)))), Arrays.asList(
+                method("bump", Arrays.asList(), "Integer", Arrays.asList(
+                        new Ast.Stmt.Assignment(access("x"), binary("+", access("x"), integer(1))),
+                        new Ast.Stmt.Return(access("x"))
+                )),
+                method("main", Arrays.asList(), "Integer", Arrays.asList(
+                        new Ast.Stmt.Declaration("a", Optional.of(binary("*", access("x"), integer(2)))),
+                        new Ast.Stmt.Expression(call("bump")),
+                        new Ast.Stmt.Declaration("b", Optional.of(binary("*", access("x"), integer(2)))),
+                        new Ast.Stmt.Declaration("x", Optional.of(integer(5))),
+                        new Ast.Stmt.Return(binary("+", access("a"), access("b")))
+                ))
+        ));
+        new Analyzer(new Scope(null)).visit(ast);
+        Ast.Source eliminated = (Ast.Source) new CommonSubexpressionEliminator().visit(ast);
+        Assertions.assertEquals(BigInteger.valueOf(6), new Interpreter(new Scope(null)).visit(eliminated).getValue());
+    }
+
+}
@@ -0,0 +1,111 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static plc.project.Asts.integer;
+
+public final class ConstantFolderTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    public void testReturnValue(String test, String returnTypeName, List<Ast.Stmt> statements, Ast.Expr expected) {
+        Ast.Method ast = new Ast.Method("name", Arrays.asList("param"), Arrays.asList("Integer"), Optional.of(returnTypeName), statements);
+        new Analyzer(new Scope(null)).visit(ast);
+        Ast.Method folded = (Ast.Method) new ConstantFolder().visit(ast);
+        Ast.Stmt.Return result = (Ast.Stmt.Return) folded.getStatements().get(folded.getStatements().size() - 1);
+        if (expected instanceof Ast.Expr.Literal) {
+            Assertions.assertEquals(expected, result.getValue());
+        } else {
+            Assertions.assertSame(((Ast.Stmt.Return) statements.get(statements.size() - 1)).getValue(), result.getValue());
+        }
+    }
+
+    private static Stream<Arguments> testReturnValue() {
+        return Stream.of(
+                Arguments.of("Arithmetic",
+                        // RETURN 1 + (2 * 3);
+                        "Integer",
+                        Arrays.asList(new Ast.Stmt.Return(new Ast.Expr.Binary("+",
+                                integer(1),
+                                new Ast.Expr.Group(new Ast.Expr.Binary("*", integer(2), integer(3)))
+                        ))),
+                        init(new Ast.Expr.Literal(BigInteger.valueOf(7)), ast -> ast.setType(Environment.Type.INTEGER))
+                ),
+                Arguments.of("Decimal Division",
+                        // RETURN 1.2 / 3.4;
+                        "Decimal",
+                        Arrays.asList(new Ast.Stmt.Return(new Ast.Expr.Binary("/",
+                                new Ast.Expr.Literal(new BigDecimal("1.2")),
+                                new Ast.Expr.Literal(new BigDecimal("3.4"))
+                        ))),
+                        init(new Ast.Expr.Literal(new BigDecimal("0.4")), ast -> ast.setType(Environment.Type.DECIMAL))
+                ),
+                Arguments.of("Concatenation",
+                        // RETURN "a" + 1;
+                        "String",
+                        Arrays.asList(new Ast.Stmt.Return(new Ast.Expr.Binary("+", new Ast.Expr.Literal("a"), integer(1)))),
+                        init(new Ast.Expr.Literal("a1"), ast -> ast.setType(Environment.Type.STRING))
+                ),
+                Arguments.of("Comparison",
+                        // RETURN 1 < 2 AND TRUE;
+                        "Boolean",
+                        Arrays.asList(new Ast.Stmt.Return(new Ast.Expr.Binary("AND",
+                                new Ast.Expr.Binary("<", integer(1), integer(2)),
+                                new Ast.Expr.Literal(true)
+                        ))),
+                        init(new Ast.Expr.Literal(true), ast -> ast.setType(Environment.Type.BOOLEAN))
+                ),
+                Arguments.of("Propagation",
+                        // LET x = 2; RETURN x * 3;
+                        "Integer",
+                        Arrays.asList(
+                                new Ast.Stmt.Declaration("x", Optional.empty(), Optional.of(integer(2))),
+                                new Ast.Stmt.Return(new Ast.Expr.Binary("*", new Ast.Expr.Access(Optional.empty(), "x"), integer(3)))
+                        ),
+                        init(new Ast.Expr.Literal(BigInteger.valueOf(6)), ast -> ast.setType(Environment.Type.INTEGER))
+                ),
+                Arguments.of("Reassigned",
+                        // LET x = 2; x = param; RETURN x * 3;
+                        "Integer",
+                        Arrays.asList(
+                                new Ast.Stmt.Declaration("x", Optional.empty(), Optional.of(integer(2))),
+                                new Ast.Stmt.Assignment(new Ast.Expr.Access(Optional.empty(), "x"), new Ast.Expr.Access(Optional.empty(), "param")),
+                                new Ast.Stmt.Return(new Ast.Expr.Binary("*", new Ast.Expr.Access(Optional.empty(), "x"), integer(3)))
+                        ),
+                        null
+                ),
+                Arguments.of("Division By Zero",
+                        // RETURN 1 / 0;
+                        "Integer",
+                        Arrays.asList(new Ast.Stmt.Return(new Ast.Expr.Binary("/", integer(1), integer(0)))),
+                        null
+                ),
+                Arguments.of("Integer Overflow",
+                        // RETURN 2147483647 + 1;
+                        "Integer",
+                        Arrays.asList(new Ast.Stmt.Return(new Ast.Expr.Binary("+", integer(Integer.MAX_VALUE), integer(1)))),
+                        null
+                )
+        );
+    }
+
+    /**
+     * Runs a callback on the given value, used for inline initialization.
+     */
+    private static <T> T init(T value, Consumer<T> initializer) {
+        initializer.accept(value);
+        return value;
+    }
+
+}
@@ -0,0 +1,93 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static plc.project.Asts.print;
+import static plc.project.Asts.access;
+import static plc.project.Asts.integer;
+
+public final class DeadCodeEliminatorTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    public void testStatements(String test, List<Ast.Stmt> statements, List<Ast.Stmt> expected) {
+        Ast.Method ast = analyze(new Ast.Method("name", Arrays.asList(), statements));
+        Ast.Method eliminated = (Ast.Method) new DeadCodeEliminator().visit(ast);
+        Assertions.assertEquals(analyze(new Ast.Method("name", Arrays.asList(), expected)).getStatements(), eliminated.getStatements());
+    }
+
+    private static Ast.Method analyze(Ast.Method ast) {
+        Scope scope = new Scope(null);
+        scope.defineVariable("cond", "cond", Environment.Type.BOOLEAN, Environment.NIL);
+        scope.defineFunction("read", "read", Arrays.asList(), Environment.Type.INTEGER, args -> Environment.NIL);
+        new Analyzer(scope).visit(ast);
+        return ast;
+    }
+
+    private static Stream<Arguments> testStatements() {
+        return Stream.of(
+                Arguments.of("After Return",
+                        // RETURN 1; print(2);
+                        Arrays.asList(new Ast.Stmt.Return(integer(1)), print(integer(2))),
+                        Arrays.asList(new Ast.Stmt.Return(integer(1)))
+                ),
+                Arguments.of("After Returning If",
+                        // IF cond DO RETURN 1; ELSE RETURN 2; END print(3);
+                        Arrays.asList(
+                                new Ast.Stmt.If(access("cond"), Arrays.asList(new Ast.Stmt.Return(integer(1))), Arrays.asList(new Ast.Stmt.Return(integer(2)))),
+                                print(integer(3))
+                        ),
+                        Arrays.asList(
+                                new Ast.Stmt.If(access("cond"), Arrays.asList(new Ast.Stmt.Return(integer(1))), Arrays.asList(new Ast.Stmt.Return(integer(2))))
+                        )
+                ),
+                Arguments.of("Constant If",
+                        // IF FALSE DO print(1); ELSE print(2); RETURN 3; END print(4);
+                        Arrays.asList(
+                                new Ast.Stmt.If(new Ast.Expr.Literal(false), Arrays.asList(print(integer(1))), Arrays.asList(print(integer(2)), new Ast.Stmt.Return(integer(3)))),
+                                print(integer(4))
+                        ),
+                        Arrays.asList(print(integer(2)), new Ast.Stmt.Return(integer(3)))
+                ),
+                Arguments.of("Constant While",
+                        // WHILE FALSE DO print(1); END
+                        Arrays.asList(new Ast.Stmt.While(new Ast.Expr.Literal(false), Arrays.asList(print(integer(1))))),
+                        Arrays.asList()
+                ),
+                Arguments.of("Dead Store",
+                        // LET x = 1; x = x + 1; print(2);
+                        Arrays.asList(
+                                new Ast.Stmt.Declaration("x", Optional.of(integer(1))),
+                                new Ast.Stmt.Assignment(access("x"), new Ast.Expr.Binary("+", access("x"), integer(1))),
+                                print(integer(2))
+                        ),
+                        Arrays.asList(print(integer(2)))
+                ),
+                Arguments.of("Read Local",
+                        // LET x = 1; print(x);
+                        Arrays.asList(new Ast.Stmt.Declaration("x", Optional.of(integer(1))), print(access("x"))),
+                        Arrays.asList(new Ast.Stmt.Declaration("x", Optional.of(integer(1))), print(access("x")))
+                ),
+                Arguments.of("Effectful Store",
+                        // LET x = 1; x = read();
+                        Arrays.asList(
+                                new Ast.Stmt.Declaration("x", Optional.of(integer(1))),
+                                new Ast.Stmt.Assignment(access("x"), new Ast.Expr.Function(Optional.empty(), "read", Arrays.asList()))
+                        ),
+                        Arrays.asList(
+                                new Ast.Stmt.Declaration("x", Optional.of(integer(1))),
+                                new Ast.Stmt.Assignment(access("x"), new Ast.Expr.Function(Optional.empty(), "read", Arrays.asList()))
+                        )
+                )
+        );
+    }
+
+}
@@ -0,0 +1,103 @@
+package plc.project;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+import static plc.project.Asts.call;
+import static plc.project.Asts.binary;
+import static plc.project.Asts.access;
+import static plc.project.Asts.integer;
+
+/**
+ * Compares the execution engines on small workloads. This is not a test; run
+ * it with {@code java plc.project.ExecutionBenchmark [iterations]} from the
+ * test classpath. Each engine is warmed up before timing, and compilation is
+ * included in the time of an iteration.
+ */
+public final class ExecutionBenchmark {
+
+    private static final int WARMUP = 5;
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        Map<String, Function<Ast.Source, Object>> engines = new LinkedHashMap<>();
+        engines.put("interpreter", ast -> new Interpreter(new Scope(null)).visit(ast).getValue());
+        engines.put("closures", ast -> new ClosureCompiler(new Scope(null)).execute(ast).getValue());
+        engines.put("specializing", ast -> new ClosureCompiler(new Scope(null), true).execute(ast).getValue());
+        engines.put("bytecode", ast -> new BytecodeVm(new Scope(null)).execute(new BytecodeCompiler().compile(ast)).getValue());
+        engines.put("jvm", ast -> {
+            new Analyzer(new Scope(null)).visit(ast);
+            return JvmCompiler.execute(ast).getValue();
+        });
+
+        Map<String, Ast.Source> workloads = new LinkedHashMap<>();
+        workloads.put("fib(20)", fibonacci(20));
+        workloads.put("loop(30000)", loop(30000));
+
+        System.out.printf("%-16s %-12s %12s %10s%n", "workload", "engine", "ms/op", "speedup");
+        for (Map.Entry<String, Ast.Source> workload : workloads.entrySet()) {
+            double baseline = 0;
+            for (Map.Entry<String, Function<Ast.Source, Object>> engine : engines.entrySet()) {
+                double millis = measure(engine.getValue(), workload.getValue(), iterations);
+                if (baseline == 0) {
+                    baseline = millis;
+                }
+                System.out.printf("%-16s %-12s %12.3f %9.2fx%n", workload.getKey(), engine.getKey(), millis, baseline / millis);
+            }
+        }
+    }
+
+    static double measure(Function<Ast.Source, Object> engine, Ast.Source ast, int iterations) {
+        Object expected = engine.apply(ast);
+        for (int i = 1; i < WARMUP; i++) {
+            engine.apply(ast);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            if (!expected.equals(engine.apply(ast))) {
+                throw new AssertionError("Inconsistent result.");
+            }
+        }
+        return (System.nanoTime() - start) / 1e6 / iterations;
+    }
+
+    /**
+     * DEF fib(n: Integer): Integer DO IF n < 2 DO RETURN n; END RETURN fib(n - 1) + fib(n - 2); END
+     * DEF main(): Integer DO RETURN fib(n); END
+     */
+    static Ast.Source fibonacci(int n) {
+        return new Ast.Source(Arrays.asList(), Arrays.asList(
+                new Ast.Method("fib", Arrays.asList("n"), Arrays.asList("Integer"), Optional.of("Integer"), Arrays.asList(
+                        new Ast.Stmt.If(binary("<", access("n"), integer(2)), Arrays.asList(new Ast.Stmt.Return(access("n"))), Arrays.asList()),
+                        new Ast.Stmt.Return(binary("+",
+                                call("fib", binary("-", access("n"), integer(1))),
+                                call("fib", binary("-", access("n"), integer(2)))
+                        ))
+                )),
+                new Ast.Method("main", Arrays.asList(), Arrays.asList(), Optional.of("Integer"), Arrays.asList(
+                        new Ast.Stmt.Return(call("fib", integer(n)))
+                ))
+        ));
+    }
+
+    /**
+     * VAR total: Integer = 0;
+     * DEF main(): Integer DO LET i = 0; WHILE i < n DO total = total + i * 2; i = i + 1; END RETURN total; END
+     */
+    static Ast.Source loop(int n) {
+        return new Ast.Source(Arrays.asList(new Ast.Field("total", "Integer", Optional.of(integer(0)))), Arrays.asList(
+                new Ast.Method("main", Arrays.asList(), Arrays.asList(), Optional.of("Integer"), Arrays.asList(
+                        new Ast.Stmt.Declaration("i", Optional.of(integer(0))),
+                        new Ast.Stmt.While(binary("<", access("i"), integer(n)), Arrays.asList(
+                                new Ast.Stmt.Assignment(access("total"), binary("+", access("total"), binary("*", access("i"), integer(2)))),
+                                new Ast.Stmt.Assignment(access("i"), binary("+", access("i"), integer(1)))
+                        )),
+                        new Ast.Stmt.Return(access("total"))
+                ))
+        ));
+    }
+
+}
@@ -1,6 +1,7 @@
 package plc.project;
 
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -10,7 +11,9 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
@@ -53,10 +56,154 @@ public class GeneratorTests {
                                 "",
                                 "}"
                         )
+                ),
+                Arguments.of("Range Value",
+                        // DEF main(): Integer DO
+                        //     LET r = range(0, 10);
+                        //     FOR i IN r DO
+                        //         print(i);
+                        //     END
+                        //     RETURN 0;
+                        // END
+                        new Ast.Source(
+                                Arrays.asList(),
+                                Arrays.asList(init(new Ast.Method("main", Arrays.asList(), Arrays.asList(), Optional.of("Integer"), Arrays.asList(
+                                        init(new Ast.Stmt.Declaration("r", Optional.empty(), Optional.of(range(
+                                                init(new Ast.Expr.Literal(BigInteger.ZERO), ast -> ast.setType(Environment.Type.INTEGER)),
+                                                init(new Ast.Expr.Literal(BigInteger.TEN), ast -> ast.setType(Environment.Type.INTEGER))
+                                        ))), ast -> ast.setVariable(new Environment.Variable("r", "r", Environment.Type.INTEGER_ITERABLE, Environment.NIL))),
+                                        new Ast.Stmt.For("i", init(new Ast.Expr.Access(Optional.empty(), "r"), ast -> ast.setVariable(new Environment.Variable("r", "r", Environment.Type.INTEGER_ITERABLE, Environment.NIL))), Arrays.asList(
+                                                new Ast.Stmt.Expression(init(new Ast.Expr.Function(Optional.empty(), "print", Arrays.asList(
+                                                        init(new Ast.Expr.Access(Optional.empty(), "i"), ast -> ast.setVariable(new Environment.Variable("i", "i", Environment.Type.INTEGER, Environment.NIL)))
+                                                )), ast -> ast.setFunction(new Environment.Function("print", "System.out.println", Arrays.asList(Environment.Type.ANY), Environment.Type.NIL, args -> Environment.NIL))))
+                                        )),
+                                        new Ast.Stmt.Return(init(new Ast.Expr.Literal(BigInteger.ZERO), ast -> ast.setType(Environment.Type.INTEGER)))
+                                )), ast -> ast.setFunction(new Environment.Function("main", "main", Arrays.asList(), Environment.Type.INTEGER, args -> Environment.NIL))))
+                        ),
+                        String.join(System.lineSeparator(),
+                                "public class Main {",
+                                "",
+                                "    public static void main(String[] args) {",
+                                "        System.exit(new Main().main());",
+                                "    }",
+                                "",
+                                "    int main() {",
+                                "        Iterable<Integer> r = range(0, 10);",
+                                "        for (int i : r) {",
+                                "            System.out.println(i);",
+                                "        }",
+                                "        return 0;",
+                                "    }",
+                                "",
+                                "    private static Iterable<Integer> range(int start, int end) {",
+                                "        return range(start, end, 1);",
+                                "    }",
+                                "",
+                                "    private static Iterable<Integer> range(int start, int end, int step) {",
+                                "        range$step(step);",
+                                "        return () -> java.util.stream.LongStream.iterate(start, i -> step > 0 ? i < end : i > end, i -> i + step).mapToInt(i -> (int) i).iterator();",
+                                "    }",
+                                "",
+                                "    private static int range$step(int step) {",
+                                "        if (step == 0) {",
+                                "            throw new RuntimeException(\"The step of a range cannot be zero.\");",
+                                "        }",
+                                "        return step;",
+                                "    }",
+                                "",
+                                "}"
+                        )
+                )
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testMethod(String test, Ast.Method ast, String expected) {
+        test(ast, expected);
+    }
+
+    private static Stream<Arguments> testMethod() {
+        Environment.Function sum = new Environment.Function("sum", "sum", Arrays.asList(Environment.Type.INTEGER, Environment.Type.INTEGER), Environment.Type.INTEGER, args -> Environment.NIL);
+        Environment.Function count = new Environment.Function("count", "count", Arrays.asList(Environment.Type.INTEGER), Environment.Type.NIL, args -> Environment.NIL);
+        return Stream.of(
+                Arguments.of("Tail Recursion",
+                        // DEF sum(n: Integer, total: Integer): Integer DO
+                        //     IF n == 0 DO
+                        //         RETURN total;
+                        //     END
+                        //     RETURN sum(n - 1, total + n);
+                        // END
+                        init(new Ast.Method("sum", Arrays.asList("n", "total"), Arrays.asList("Integer", "Integer"), Optional.of("Integer"), Arrays.asList(
+                                new Ast.Stmt.If(
+                                        init(new Ast.Expr.Binary("==", variable("n"), integer(0)), ast -> ast.setType(Environment.Type.BOOLEAN)),
+                                        Arrays.asList(new Ast.Stmt.Return(variable("total"))),
+                                        Arrays.asList()
+                                ),
+                                new Ast.Stmt.Return(init(new Ast.Expr.Function(Optional.empty(), "sum", Arrays.asList(
+                                        init(new Ast.Expr.Binary("-", variable("n"), integer(1)), ast -> ast.setType(Environment.Type.INTEGER)),
+                                        init(new Ast.Expr.Binary("+", variable("total"), variable("n")), ast -> ast.setType(Environment.Type.INTEGER))
+                                )), ast -> ast.setFunction(sum)))
+                        )), ast -> ast.setFunction(sum)),
+                        String.join(System.lineSeparator(),
+                                "int sum(int n, int total) {",
+                                "    tail: while (true) {",
+                                "        if (n == 0) {",
+                                "            return total;",
+                                "        }",
+                                "        int n$next = n - 1;",
+                                "        int total$next = total + n;",
+                                "        n = n$next;",
+                                "        total = total$next;",
+                                "        continue tail;",
+                                "    }",
+                                "}"
+                        )
+                ),
+                Arguments.of("Tail Recursion Completing Normally",
+                        // DEF count(n: Integer) DO
+                        //     IF n > 0 DO
+                        //         print(n);
+                        //         RETURN count(n - 1);
+                        //     END
+                        // END
+                        init(new Ast.Method("count", Arrays.asList("n"), Arrays.asList("Integer"), Optional.empty(), Arrays.asList(
+                                new Ast.Stmt.If(
+                                        init(new Ast.Expr.Binary(">", variable("n"), integer(0)), ast -> ast.setType(Environment.Type.BOOLEAN)),
+                                        Arrays.asList(
+                                                new Ast.Stmt.Expression(init(new Ast.Expr.Function(Optional.empty(), "print", Arrays.asList(variable("n"))),
+                                                        ast -> ast.setFunction(new Environment.Function("print", "System.out.println", Arrays.asList(Environment.Type.ANY), Environment.Type.NIL, args -> Environment.NIL)))),
+                                                new Ast.Stmt.Return(init(new Ast.Expr.Function(Optional.empty(), "count", Arrays.asList(
+                                                        init(new Ast.Expr.Binary("-", variable("n"), integer(1)), ast -> ast.setType(Environment.Type.INTEGER))
+                                                )), ast -> ast.setFunction(count)))
+                                        ),
+                                        Arrays.asList()
+                                )
+                        )), ast -> ast.setFunction(count)),
+                        String.join(System.lineSeparator(),
+                                "Void count(int n) {",
+                                "    tail: while (true) {",
+                                "        if (n > 0) {",
+                                "            System.out.println(n);",
+                                "            n = n - 1;",
+                                "            continue tail;",
+                                "        }",
+                                "        break;",
+                                "    }",
+                                "}"
+                        )
                 )
         );
     }
 
+    private static Ast.Expr.Access variable(String name) {
+        return init(new Ast.Expr.Access(Optional.empty(), name), ast -> ast.setVariable(new Environment.Variable(name, name, Environment.Type.INTEGER, Environment.NIL)));
+    }
+
+    private static Ast.Expr.Literal integer(long value) {
+        return init(new Ast.Expr.Literal(BigInteger.valueOf(value)), ast -> ast.setType(Environment.Type.INTEGER));
+    }
+
     @ParameterizedTest(name = "{0}")
     @MethodSource
     void testDeclarationStatement(String test, Ast.Stmt.Declaration ast, String expected) {
@@ -76,6 +223,16 @@ public class GeneratorTests {
                                 init(new Ast.Expr.Literal(new BigDecimal("1.0")),ast -> ast.setType(Environment.Type.DECIMAL))
                         )), ast -> ast.setVariable(new Environment.Variable("name", "name", Environment.Type.DECIMAL, Environment.NIL))),
                         "double name = 1.0;"
+                ),
+                Arguments.of("Expression",
+                        // LET name = x * 2;
+                        init(new Ast.Stmt.Declaration("name", Optional.empty(), Optional.of(
+                                init(new Ast.Expr.Binary("*",
+                                        init(new Ast.Expr.Access(Optional.empty(), "x"), ast -> ast.setVariable(new Environment.Variable("x", "x", Environment.Type.INTEGER, Environment.NIL))),
+                                        init(new Ast.Expr.Literal(BigInteger.valueOf(2)), ast -> ast.setType(Environment.Type.INTEGER))
+                                ), ast -> ast.setType(Environment.Type.INTEGER))
+                        )), ast -> ast.setVariable(new Environment.Variable("name", "name", Environment.Type.INTEGER, Environment.NIL))),
+                        "int name = x * 2;"
                 )
         );
     }
@@ -181,6 +338,93 @@ public class GeneratorTests {
     }
 
 
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testForStatement(String test, Ast.Stmt.For ast, String expected) {
+        test(ast, expected);
+    }
+
+    private static Stream<Arguments> testForStatement() {
+        return Stream.of(
+                Arguments.of("Range",
+                        // FOR i IN range(0, n) DO
+                        //     print(i);
+                        // END
+                        new Ast.Stmt.For("i", range(
+                                init(new Ast.Expr.Literal(BigInteger.ZERO), ast -> ast.setType(Environment.Type.INTEGER)),
+                                init(new Ast.Expr.Access(Optional.empty(), "n"), ast -> ast.setVariable(new Environment.Variable("n", "n", Environment.Type.INTEGER, Environment.NIL)))
+                        ), Arrays.asList(
+                                new Ast.Stmt.Expression(init(new Ast.Expr.Function(Optional.empty(), "print", Arrays.asList(
+                                        init(new Ast.Expr.Access(Optional.empty(), "i"), ast -> ast.setVariable(new Environment.Variable("i", "i", Environment.Type.INTEGER, Environment.NIL)))
+                                )), ast -> ast.setFunction(new Environment.Function("print", "System.out.println", Arrays.asList(Environment.Type.ANY), Environment.Type.NIL, args -> Environment.NIL))))
+                        )),
+                        String.join(System.lineSeparator(),
+                                "for (int i = 0, i$end = n; i < i$end; i++) {",
+                                "    System.out.println(i);",
+                                "}"
+                        )
+                ),
+                Arguments.of("Descending Range",
+                        // FOR i IN range(10, 0, -2) DO
+                        //     print(i);
+                        // END
+                        new Ast.Stmt.For("i", range(
+                                init(new Ast.Expr.Literal(BigInteger.TEN), ast -> ast.setType(Environment.Type.INTEGER)),
+                                init(new Ast.Expr.Literal(BigInteger.ZERO), ast -> ast.setType(Environment.Type.INTEGER)),
+                                init(new Ast.Expr.Literal(BigInteger.valueOf(-2)), ast -> ast.setType(Environment.Type.INTEGER))
+                        ), Arrays.asList(
+                                new Ast.Stmt.Expression(init(new Ast.Expr.Function(Optional.empty(), "print", Arrays.asList(
+                                        init(new Ast.Expr.Access(Optional.empty(), "i"), ast -> ast.setVariable(new Environment.Variable("i", "i", Environment.Type.INTEGER, Environment.NIL)))
+                                )), ast -> ast.setFunction(new Environment.Function("print", "System.out.println", Arrays.asList(Environment.Type.ANY), Environment.Type.NIL, args -> Environment.NIL))))
+                        )),
+                        String.join(System.lineSeparator(),
+                                "for (int i = 10, i$end = 0; i > i$end; i += -2) {",
+                                "    System.out.println(i);",
+                                "}"
+                        )
+                ),
+                Arguments.of("Variable Step",
+                        // FOR i IN range(0, 10, step) DO
+                        //     print(i);
+                        // END
+                        new Ast.Stmt.For("i", range(
+                                init(new Ast.Expr.Literal(BigInteger.ZERO), ast -> ast.setType(Environment.Type.INTEGER)),
+                                init(new Ast.Expr.Literal(BigInteger.TEN), ast -> ast.setType(Environment.Type.INTEGER)),
+                                init(new Ast.Expr.Access(Optional.empty(), "step"), ast -> ast.setVariable(new Environment.Variable("step", "step", Environment.Type.INTEGER, Environment.NIL)))
+                        ), Arrays.asList(
+                                new Ast.Stmt.Expression(init(new Ast.Expr.Function(Optional.empty(), "print", Arrays.asList(
+                                        init(new Ast.Expr.Access(Optional.empty(), "i"), ast -> ast.setVariable(new Environment.Variable("i", "i", Environment.Type.INTEGER, Environment.NIL)))
+                                )), ast -> ast.setFunction(new Environment.Function("print", "System.out.println", Arrays.asList(Environment.Type.ANY), Environment.Type.NIL, args -> Environment.NIL))))
+                        )),
+                        String.join(System.lineSeparator(),
+                                "for (int i = 0, i$end = 10, i$step = range$step(step); i$step > 0 ? i < i$end : i > i$end; i += i$step) {",
+                                "    System.out.println(i);",
+                                "}"
+                        )
+                )
+        );
+    }
+
+    @Test
+    void testZeroStep() {
+        // FOR i IN range(0, 10, 0) DO END
+        Ast.Stmt.For loop = new Ast.Stmt.For("i", range(
+                init(new Ast.Expr.Literal(BigInteger.ZERO), ast -> ast.setType(Environment.Type.INTEGER)),
+                init(new Ast.Expr.Literal(BigInteger.TEN), ast -> ast.setType(Environment.Type.INTEGER)),
+                init(new Ast.Expr.Literal(BigInteger.ZERO), ast -> ast.setType(Environment.Type.INTEGER))
+        ), Arrays.asList());
+        Assertions.assertThrows(RuntimeException.class, () -> new Generator(new PrintWriter(new StringWriter())).visit(loop));
+    }
+
+    private static Ast.Expr.Function range(Ast.Expr... arguments) {
+        List<Environment.Type> types = new ArrayList<>();
+        for (Ast.Expr argument : arguments) {
+            types.add(Environment.Type.INTEGER);
+        }
+        return init(new Ast.Expr.Function(Optional.empty(), "range", Arrays.asList(arguments)),
+                ast -> ast.setFunction(new Environment.Function("range", "range", types, Environment.Type.INTEGER_ITERABLE, args -> Environment.NIL)));
+    }
+
     @ParameterizedTest(name = "{0}")
     @MethodSource
     void testWhileStatement(String test, Ast.Stmt.While ast, String expected) {
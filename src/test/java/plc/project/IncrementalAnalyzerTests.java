@@ -0,0 +1,138 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+public final class IncrementalAnalyzerTests {
+
+    @Test
+    void testInitialAnalysis() {
+        IncrementalAnalyzer analyzer = new IncrementalAnalyzer(new Scope(null));
+        analyzer.update(source());
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("offset", "main/0", "helper/1")), analyzer.analyze());
+        Assertions.assertTrue(analyzer.getErrors().isEmpty());
+        Assertions.assertEquals(Environment.Type.INTEGER, analyzer.getSource().getMethods().get(0).getFunction().getReturnType());
+    }
+
+    @Test
+    void testBodyEdit() {
+        IncrementalAnalyzer analyzer = new IncrementalAnalyzer(new Scope(null));
+        analyzer.update(source());
+        analyzer.analyze();
+        Ast.Method main = analyzer.getSource().getMethods().get(0);
+
+        // DEF helper(x: Integer): Integer DO RETURN x; END
+        analyzer.update(helper("Integer", new Ast.Expr.Access(Optional.empty(), "x")));
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("helper/1")), analyzer.analyze());
+        Assertions.assertSame(main, analyzer.getSource().getMethods().get(0));
+    }
+
+    @Test
+    void testSignatureEdit() {
+        IncrementalAnalyzer analyzer = new IncrementalAnalyzer(new Scope(null));
+        analyzer.update(source());
+        analyzer.analyze();
+
+        // DEF helper(x: Integer): String DO RETURN "string"; END
+        analyzer.update(helper("String", new Ast.Expr.Literal("string")));
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("helper/1", "main/0")), analyzer.analyze());
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("main/0")), analyzer.getErrors().keySet());
+
+        analyzer.update(helper("Integer", new Ast.Expr.Literal(BigInteger.ONE)));
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("helper/1", "main/0")), analyzer.analyze());
+        Assertions.assertTrue(analyzer.getErrors().isEmpty());
+    }
+
+    @Test
+    void testFieldRemoval() {
+        IncrementalAnalyzer analyzer = new IncrementalAnalyzer(new Scope(null));
+        analyzer.update(source());
+        analyzer.analyze();
+
+        analyzer.removeField("offset");
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("helper/1")), analyzer.analyze());
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("helper/1")), analyzer.getErrors().keySet());
+        Assertions.assertTrue(analyzer.getSource().getFields().isEmpty());
+    }
+
+    @Test
+    void testForwardReference() {
+        // LET first: Integer = second; LET second: Integer = 1;
+        // DEF main(): Integer DO RETURN first; END
+        Ast.Source forward = new Ast.Source(
+                Arrays.asList(
+                        new Ast.Field("first", "Integer", Optional.of(new Ast.Expr.Access(Optional.empty(), "second"))),
+                        new Ast.Field("second", "Integer", Optional.of(new Ast.Expr.Literal(BigInteger.ONE)))
+                ),
+                Arrays.asList(new Ast.Method("main", Arrays.asList(), Arrays.asList(), Optional.of("Integer"), Arrays.asList(
+                        new Ast.Stmt.Return(new Ast.Expr.Access(Optional.empty(), "first"))
+                )))
+        );
+        Assertions.assertThrows(RuntimeException.class, () -> new Analyzer(new Scope(null)).visit(forward));
+        IncrementalAnalyzer analyzer = new IncrementalAnalyzer(new Scope(null));
+        analyzer.update(forward);
+        analyzer.analyze();
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("first")), analyzer.getErrors().keySet());
+
+        // LET offset: Integer = helper(1); with helper declared after it
+        Ast.Source method = source();
+        Ast.Field offset = new Ast.Field("offset", "Integer", Optional.of(new Ast.Expr.Function(Optional.empty(), "helper", Arrays.asList(new Ast.Expr.Literal(BigInteger.ONE)))));
+        Ast.Source call = new Ast.Source(Arrays.asList(offset), method.getMethods());
+        Assertions.assertThrows(RuntimeException.class, () -> new Analyzer(new Scope(null)).visit(call));
+        analyzer = new IncrementalAnalyzer(new Scope(null));
+        analyzer.update(call);
+        analyzer.analyze();
+        Assertions.assertTrue(analyzer.getErrors().containsKey("offset"));
+    }
+
+    @Test
+    void testFieldAddition() {
+        IncrementalAnalyzer analyzer = new IncrementalAnalyzer(new Scope(null));
+        analyzer.update(source());
+        analyzer.analyze();
+
+        // LET scaled: Integer = offset * 2;
+        analyzer.update(new Ast.Field("scaled", "Integer", Optional.of(new Ast.Expr.Binary("*",
+                new Ast.Expr.Access(Optional.empty(), "offset"),
+                new Ast.Expr.Literal(BigInteger.valueOf(2))
+        ))));
+        // LET late: Integer = helper(1);
+        analyzer.update(new Ast.Field("late", "Integer", Optional.of(new Ast.Expr.Function(Optional.empty(), "helper", Arrays.asList(new Ast.Expr.Literal(BigInteger.ONE))))));
+        analyzer.analyze();
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("late")), analyzer.getErrors().keySet());
+        Assertions.assertEquals(Arrays.asList("offset", "scaled", "late"), analyzer.getSource().getFields().stream().map(Ast.Field::getName).collect(Collectors.toList()));
+    }
+
+    /**
+     * LET offset: Integer = 1;
+     * DEF main(): Integer DO RETURN helper(1); END
+     * DEF helper(x: Integer): Integer DO RETURN x + offset; END
+     */
+    private static Ast.Source source() {
+        return new Ast.Source(
+                Arrays.asList(new Ast.Field("offset", "Integer", Optional.of(new Ast.Expr.Literal(BigInteger.ONE)))),
+                Arrays.asList(
+                        new Ast.Method("main", Arrays.asList(), Arrays.asList(), Optional.of("Integer"), Arrays.asList(
+                                new Ast.Stmt.Return(new Ast.Expr.Function(Optional.empty(), "helper", Arrays.asList(new Ast.Expr.Literal(BigInteger.ONE))))
+                        )),
+                        helper("Integer", new Ast.Expr.Binary("+",
+                                new Ast.Expr.Access(Optional.empty(), "x"),
+                                new Ast.Expr.Access(Optional.empty(), "offset")
+                        ))
+                )
+        );
+    }
+
+    private static Ast.Method helper(String returnTypeName, Ast.Expr value) {
+        return new Ast.Method("helper", Arrays.asList("x"), Arrays.asList("Integer"), Optional.of(returnTypeName), Arrays.asList(
+                new Ast.Stmt.Return(value)
+        ));
+    }
+
+}
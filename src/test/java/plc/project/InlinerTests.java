@@ -0,0 +1,185 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static plc.project.Asts.call;
+import static plc.project.Asts.binary;
+import static plc.project.Asts.access;
+import static plc.project.Asts.integer;
+
+public final class InlinerTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    public void testSource(String test, int budget, Ast.Source ast, List<Ast.Stmt> expected) {
+        Object result = new Interpreter(new Scope(null)).visit(ast).getValue();
+        new Analyzer(new Scope(null)).visit(ast);
+        Ast.Source inlined = (Ast.Source) new Inliner(budget).visit(ast);
+        Ast.Method main = inlined.getMethods().get(inlined.getMethods().size() - 1);
+        List<Ast.Method> methods = new ArrayList<>(ast.getMethods().subList(0, ast.getMethods().size() - 1));
+        methods.add(main("main", expected));
+        Ast.Source reference = new Ast.Source(ast.getFields(), methods);
+        new Analyzer(new Scope(null)).visit(reference);
+        Assertions.assertEquals(methods.get(methods.size() - 1).getStatements(), main.getStatements());
+        Assertions.assertEquals(result, new Interpreter(new Scope(null)).visit(inlined).getValue());
+    }
+
+    private static Stream<Arguments> testSource() {
+        return Stream.of(
+                Arguments.of("Expression", Inliner.DEFAULT_BUDGET,
+                        // DEF square(x: Integer): Integer DO RETURN x * x; END
+                        // DEF main(): Integer DO LET y = 3; RETURN square(y) + 1; END
+                        new Ast.Source(Arrays.asList(), Arrays.asList(
+                                square(),
+                                main("main", Arrays.asList(
+                                        new Ast.Stmt.Declaration("y", Optional.of(integer(3))),
+                                        new Ast.Stmt.Return(binary("+", call("square", access("y")), integer(1)))
+                                ))
+                        )),
+                        // LET y = 3; RETURN (y * y) + 1;
+                        Arrays.asList(
+                                new Ast.Stmt.Declaration("y", Optional.of(integer(3))),
+                                new Ast.Stmt.Return(binary("+", new Ast.Expr.Group(binary("*", access("y"), access("y"))), integer(1)))
+                        )
+                ),
+                Arguments.of("Statements", Inliner.DEFAULT_BUDGET,
+                        // DEF next(x: Integer): Integer DO LET y = x + 1; RETURN y * 2; END
+                        // DEF main(): Integer DO LET y = next(2 + 3); RETURN y; END
+                        new Ast.Source(Arrays.asList(), Arrays.asList(
+                                new Ast.Method("next", Arrays.asList("x"), Arrays.asList("Integer"), Optional.of("Integer"), Arrays.asList(
+                                        new Ast.Stmt.Declaration("y", Optional.of(binary("+", access("x"), integer(1)))),
+                                        new Ast.Stmt.Return(binary("*", access("y"), integer(2)))
+                                )),
+                                main("main", Arrays.asList(
+                                        new Ast.Stmt.Declaration("y", Optional.of(call("next", binary("+", integer(2), integer(3))))),
+                                        new Ast.Stmt.Return(access("y"))
+                                ))
+                        )),
+                        // LET $inline0_x = 2 + 3; LET $inline0_y = $inline0_x + 1; LET y = $inline0_y * 2; RETURN y;
+                        Arrays.asList(
+                                new Ast.Stmt.Declaration("$inline0_x", Optional.of(binary("+", integer(2), integer(3)))),
+                                new Ast.Stmt.Declaration("$inline0_y", Optional.of(binary("+", access("$inline0_x"), integer(1)))),
+                                new Ast.Stmt.Declaration("y", Optional.of(binary("*", access("$inline0_y"), integer(2)))),
+                                new Ast.Stmt.Return(access("y"))
+                        )
+                ),
+                Arguments.of("Recursive", Inliner.DEFAULT_BUDGET,
+                        // DEF loop(x: Integer): Integer DO IF x > 0 DO RETURN loop(x - 1); END RETURN x; END
+                        // DEF main(): Integer DO RETURN loop(3); END
+                        new Ast.Source(Arrays.asList(), Arrays.asList(
+                                new Ast.Method("loop", Arrays.asList("x"), Arrays.asList("Integer"), Optional.of("Integer"), Arrays.asList(
+                                        new Ast.Stmt.If(binary(">", access("x"), integer(0)), Arrays.asList(
+                                                new Ast.Stmt.Return(call("loop", binary("-", access("x"), integer(1))))
+                                        ), Arrays.asList()),
+                                        new Ast.Stmt.Return(access("x"))
+                                )),
+                                main("main", Arrays.asList(new Ast.Stmt.Return(call("loop", integer(3)))))
+                        )),
+                        Arrays.asList(new Ast.Stmt.Return(call("loop", integer(3))))
+                ),
+                Arguments.of("Over Budget", 2,
+                        // DEF square(x: Integer): Integer DO RETURN x * x; END
+                        // DEF main(): Integer DO RETURN square(3); END
+                        new Ast.Source(Arrays.asList(), Arrays.asList(
+                                square(),
+                                main("main", Arrays.asList(new Ast.Stmt.Return(call("square", integer(3)))))
+                        )),
+                        Arrays.asList(new Ast.Stmt.Return(call("square", integer(3))))
+                ),
+                Arguments.of("Shadowed Field", Inliner.DEFAULT_BUDGET,
+                        // VAR z: Integer = 1;
+                        // DEF get(): Integer DO RETURN z; END
+                        // DEF main(): Integer DO LET z = 2; RETURN get(); END
+                        new Ast.Source(
+                                Arrays.asList(new Ast.Field("z", "Integer", Optional.of(integer(1)))),
+                                Arrays.asList(
+                                        main("get", Arrays.asList(new Ast.Stmt.Return(access("z")))),
+                                        main("main", Arrays.asList(
+                                                new Ast.Stmt.Declaration("z", Optional.of(integer(2))),
+                                                new Ast.Stmt.Return(call("get"))
+                                        ))
+                                )
+                        ),
+                        Arrays.asList(
+                                new Ast.Stmt.Declaration("z", Optional.of(integer(2))),
+                                new Ast.Stmt.Return(call("get"))
+                        )
+                ),
+                Arguments.of("Field Read Before Local", Inliner.DEFAULT_BUDGET,
+                        // VAR x: Integer = 5;
+                        // DEF f(): Integer DO LET y = x; LET x = 1; RETURN y + x; END
+                        // DEF main(): Integer DO LET x = 100; RETURN f(); END
+                        new Ast.Source(
+                                Arrays.asList(new Ast.Field("x", "Integer", Optional.of(integer(5)))),
+                                Arrays.asList(
+                                        main("f", Arrays.asList(
+                                                new Ast.Stmt.Declaration("y", Optional.of(access("x"))),
+                                                new Ast.Stmt.Declaration("x", Optional.of(integer(1))),
+                                                new Ast.Stmt.Return(binary("+", access("y"), access("x")))
+                                        )),
+                                        main("main", Arrays.asList(
+                                                new Ast.Stmt.Declaration("x", Optional.of(integer(100))),
+                                                new Ast.Stmt.Return(call("f"))
+                                        ))
+                                )
+                        ),
+                        Arrays.asList(
+                                new Ast.Stmt.Declaration("x", Optional.of(integer(100))),
+                                new Ast.Stmt.Return(call("f"))
+                        )
+                ),
+                Arguments.of("Block Local", Inliner.DEFAULT_BUDGET,
+                        // VAR x: Integer = 7;
+                        // DEF f(): Integer DO LET s = 0; WHILE s < 1 DO LET x = 1; s = s + 1; END RETURN s + x; END
+                        // DEF main(): Integer DO LET r = f(); RETURN r; END
+                        new Ast.Source(
+                                Arrays.asList(new Ast.Field("x", "Integer", Optional.of(integer(7)))),
+                                Arrays.asList(
+                                        main("f", Arrays.asList(
+                                                new Ast.Stmt.Declaration("s", Optional.of(integer(0))),
+                                                new Ast.Stmt.While(binary("<", access("s"), integer(1)), Arrays.asList(
+                                                        new Ast.Stmt.Declaration("x", Optional.of(integer(1))),
+                                                        new Ast.Stmt.Assignment(access("s"), binary("+", access("s"), integer(1)))
+                                                )),
+                                                new Ast.Stmt.Return(binary("+", access("s"), access("x")))
+                                        )),
+                                        main("main", Arrays.asList(
+                                                new Ast.Stmt.Declaration("r", Optional.of(call("f"))),
+                                                new Ast.Stmt.Return(access("r"))
+                                        ))
+                                )
+                        ),
+                        // LET $inline0_s = 0; WHILE $inline0_s < 1 DO LET $inline0_x = 1; $inline0_s = $inline0_s + 1; END LET r = $inline0_s + x; RETURN r;
+                        Arrays.asList(
+                                new Ast.Stmt.Declaration("$inline0_s", Optional.of(integer(0))),
+                                new Ast.Stmt.While(binary("<", access("$inline0_s"), integer(1)), Arrays.asList(
+                                        new Ast.Stmt.Declaration("$inline0_x", Optional.of(integer(1))),
+                                        new Ast.Stmt.Assignment(access("$inline0_s"), binary("+", access("$inline0_s"), integer(1)))
+                                )),
+                                new Ast.Stmt.Declaration("r", Optional.of(binary("+", access("$inline0_s"), access("x")))),
+                                new Ast.Stmt.Return(access("r"))
+                        )
+                )
+        );
+    }
+
+    private static Ast.Method square() {
+        return new Ast.Method("square", Arrays.asList("x"), Arrays.asList("Integer"), Optional.of("Integer"), Arrays.asList(
+                new Ast.Stmt.Return(binary("*", access("x"), access("x")))
+        ));
+    }
+
+    private static Ast.Method main(String name, List<Ast.Stmt> statements) {
+        return new Ast.Method(name, Arrays.asList(), Arrays.asList(), Optional.of("Integer"), statements);
+    }
+
+}
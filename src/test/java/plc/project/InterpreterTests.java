@@ -1,6 +1,7 @@
 package plc.project;
 
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
@@ -8,8 +9,10 @@ import org.junit.jupiter.params.provider.MethodSource;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
@@ -43,7 +46,171 @@ final class InterpreterTests {
                                         new Ast.Expr.Access(Optional.empty(), "x"),
                                         new Ast.Expr.Access(Optional.empty(), "y")                                ))
                         )))
-                ), Environment.NIL.getValue())
+                ), Environment.NIL.getValue()),
+                // DEF first() DO LET i = 0; WHILE TRUE DO IF i == 3 DO RETURN i; END i = i + 1; END END
+                // DEF main() DO RETURN first() * 10 + first(); END
+                Arguments.of("Nested Return", new Ast.Source(
+                        Arrays.asList(),
+                        Arrays.asList(
+                                new Ast.Method("first", Arrays.asList(), Arrays.asList(
+                                        new Ast.Stmt.Declaration("i", Optional.of(new Ast.Expr.Literal(BigInteger.ZERO))),
+                                        new Ast.Stmt.While(new Ast.Expr.Literal(true), Arrays.asList(
+                                                new Ast.Stmt.If(
+                                                        new Ast.Expr.Binary("==", new Ast.Expr.Access(Optional.empty(), "i"), new Ast.Expr.Literal(BigInteger.valueOf(3))),
+                                                        Arrays.asList(new Ast.Stmt.Return(new Ast.Expr.Access(Optional.empty(), "i"))),
+                                                        Arrays.asList()
+                                                ),
+                                                new Ast.Stmt.Assignment(
+                                                        new Ast.Expr.Access(Optional.empty(), "i"),
+                                                        new Ast.Expr.Binary("+", new Ast.Expr.Access(Optional.empty(), "i"), new Ast.Expr.Literal(BigInteger.ONE))
+                                                )
+                                        ))
+                                )),
+                                new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                                        new Ast.Stmt.Return(new Ast.Expr.Binary("+",
+                                                new Ast.Expr.Binary("*",
+                                                        new Ast.Expr.Function(Optional.empty(), "first", Arrays.asList()),
+                                                        new Ast.Expr.Literal(BigInteger.TEN)),
+                                                new Ast.Expr.Function(Optional.empty(), "first", Arrays.asList())
+                                        ))
+                                ))
+                        )
+                ), BigInteger.valueOf(33))
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testBudget(String test, Ast.Source ast, Budget budget, BudgetExceededException.Limit expected) {
+        Interpreter interpreter = new Interpreter(new Scope(null));
+        interpreter.setBudget(budget);
+        if (expected == null) {
+            Assertions.assertEquals(BigInteger.ZERO, interpreter.visit(ast).getValue());
+        } else {
+            BudgetExceededException exception = Assertions.assertThrows(BudgetExceededException.class, () -> interpreter.visit(ast));
+            Assertions.assertEquals(expected, exception.getLimit());
+        }
+    }
+
+    private static Stream<Arguments> testBudget() {
+        // DEF main() DO WHILE TRUE DO END RETURN 0; END
+        Ast.Source loop = new Ast.Source(Arrays.asList(), Arrays.asList(
+                new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                        new Ast.Stmt.While(new Ast.Expr.Literal(true), Arrays.asList()),
+                        new Ast.Stmt.Return(new Ast.Expr.Literal(BigInteger.ZERO))
+                ))
+        ));
+        // DEF down(n) DO IF n == 0 DO RETURN 0; END RETURN down(n - 1) * n; END
+        // DEF main() DO RETURN down(100); END
+        Ast.Source recursion = new Ast.Source(Arrays.asList(), Arrays.asList(
+                new Ast.Method("down", Arrays.asList("n"), Arrays.asList(
+                        new Ast.Stmt.If(
+                                new Ast.Expr.Binary("==", new Ast.Expr.Access(Optional.empty(), "n"), new Ast.Expr.Literal(BigInteger.ZERO)),
+                                Arrays.asList(new Ast.Stmt.Return(new Ast.Expr.Literal(BigInteger.ZERO))),
+                                Arrays.asList()
+                        ),
+                        new Ast.Stmt.Return(new Ast.Expr.Binary("*",
+                                new Ast.Expr.Function(Optional.empty(), "down", Arrays.asList(
+                                        new Ast.Expr.Binary("-", new Ast.Expr.Access(Optional.empty(), "n"), new Ast.Expr.Literal(BigInteger.ONE))
+                                )),
+                                new Ast.Expr.Access(Optional.empty(), "n")
+                        ))
+                )),
+                new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                        new Ast.Stmt.Return(new Ast.Expr.Function(Optional.empty(), "down", Arrays.asList(new Ast.Expr.Literal(BigInteger.valueOf(100)))))
+                ))
+        ));
+        // DEF down(n) DO IF n == 0 DO RETURN 0; END RETURN down(n - 1); END
+        // DEF main() DO RETURN down(100000); END
+        Ast.Source tail = new Ast.Source(Arrays.asList(), Arrays.asList(
+                new Ast.Method("down", Arrays.asList("n"), Arrays.asList(
+                        new Ast.Stmt.If(
+                                new Ast.Expr.Binary("==", new Ast.Expr.Access(Optional.empty(), "n"), new Ast.Expr.Literal(BigInteger.ZERO)),
+                                Arrays.asList(new Ast.Stmt.Return(new Ast.Expr.Literal(BigInteger.ZERO))),
+                                Arrays.asList()
+                        ),
+                        new Ast.Stmt.Return(new Ast.Expr.Function(Optional.empty(), "down", Arrays.asList(
+                                new Ast.Expr.Binary("-", new Ast.Expr.Access(Optional.empty(), "n"), new Ast.Expr.Literal(BigInteger.ONE))
+                        )))
+                )),
+                new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                        new Ast.Stmt.Return(new Ast.Expr.Function(Optional.empty(), "down", Arrays.asList(new Ast.Expr.Literal(BigInteger.valueOf(100000)))))
+                ))
+        ));
+        return Stream.of(
+                Arguments.of("Unlimited", recursion, Budget.UNLIMITED, null),
+                Arguments.of("Within Budget", recursion, new Budget(1000, Duration.ofMinutes(1), 102), null),
+                Arguments.of("Steps", loop, Budget.UNLIMITED.withMaxSteps(10000), BudgetExceededException.Limit.STEPS),
+                Arguments.of("Timeout", loop, Budget.UNLIMITED.withTimeout(Duration.ofMillis(50)), BudgetExceededException.Limit.TIMEOUT),
+                Arguments.of("Recursion Steps", recursion, Budget.UNLIMITED.withMaxSteps(100), BudgetExceededException.Limit.STEPS),
+                Arguments.of("Depth", recursion, Budget.UNLIMITED.withMaxDepth(100), BudgetExceededException.Limit.DEPTH),
+                Arguments.of("Tail Calls", tail, Budget.UNLIMITED.withMaxDepth(1), null)
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testTailCalls(String test, Ast.Source ast, Object expected) {
+        test(ast, expected, new Scope(null));
+    }
+
+    private static Stream<Arguments> testTailCalls() {
+        return Stream.of(
+                // DEF sum(n, total) DO IF n == 0 DO RETURN total; END RETURN sum(n - 1, total + n); END
+                // DEF main() DO RETURN sum(100000, 0); END
+                Arguments.of("Accumulator", new Ast.Source(
+                        Arrays.asList(),
+                        Arrays.asList(
+                                new Ast.Method("sum", Arrays.asList("n", "total"), Arrays.asList(
+                                        new Ast.Stmt.If(
+                                                new Ast.Expr.Binary("==", new Ast.Expr.Access(Optional.empty(), "n"), new Ast.Expr.Literal(BigInteger.ZERO)),
+                                                Arrays.asList(new Ast.Stmt.Return(new Ast.Expr.Access(Optional.empty(), "total"))),
+                                                Arrays.asList()
+                                        ),
+                                        new Ast.Stmt.Return(new Ast.Expr.Function(Optional.empty(), "sum", Arrays.asList(
+                                                new Ast.Expr.Binary("-", new Ast.Expr.Access(Optional.empty(), "n"), new Ast.Expr.Literal(BigInteger.ONE)),
+                                                new Ast.Expr.Binary("+", new Ast.Expr.Access(Optional.empty(), "total"), new Ast.Expr.Access(Optional.empty(), "n"))
+                                        )))
+                                )),
+                                new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                                        new Ast.Stmt.Return(new Ast.Expr.Function(Optional.empty(), "sum", Arrays.asList(
+                                                new Ast.Expr.Literal(BigInteger.valueOf(100000)),
+                                                new Ast.Expr.Literal(BigInteger.ZERO)
+                                        )))
+                                ))
+                        )
+                ), BigInteger.valueOf(5000050000L)),
+                // DEF even(n) DO IF n == 0 DO RETURN TRUE; END RETURN odd(n - 1); END
+                // DEF odd(n) DO IF n == 0 DO RETURN FALSE; END RETURN even(n - 1); END
+                // DEF main() DO RETURN even(100001); END
+                Arguments.of("Mutual Recursion", new Ast.Source(
+                        Arrays.asList(),
+                        Arrays.asList(
+                                new Ast.Method("even", Arrays.asList("n"), Arrays.asList(
+                                        new Ast.Stmt.If(
+                                                new Ast.Expr.Binary("==", new Ast.Expr.Access(Optional.empty(), "n"), new Ast.Expr.Literal(BigInteger.ZERO)),
+                                                Arrays.asList(new Ast.Stmt.Return(new Ast.Expr.Literal(true))),
+                                                Arrays.asList()
+                                        ),
+                                        new Ast.Stmt.Return(new Ast.Expr.Function(Optional.empty(), "odd", Arrays.asList(
+                                                new Ast.Expr.Binary("-", new Ast.Expr.Access(Optional.empty(), "n"), new Ast.Expr.Literal(BigInteger.ONE))
+                                        )))
+                                )),
+                                new Ast.Method("odd", Arrays.asList("n"), Arrays.asList(
+                                        new Ast.Stmt.If(
+                                                new Ast.Expr.Binary("==", new Ast.Expr.Access(Optional.empty(), "n"), new Ast.Expr.Literal(BigInteger.ZERO)),
+                                                Arrays.asList(new Ast.Stmt.Return(new Ast.Expr.Literal(false))),
+                                                Arrays.asList()
+                                        ),
+                                        new Ast.Stmt.Return(new Ast.Expr.Function(Optional.empty(), "even", Arrays.asList(
+                                                new Ast.Expr.Binary("-", new Ast.Expr.Access(Optional.empty(), "n"), new Ast.Expr.Literal(BigInteger.ONE))
+                                        )))
+                                )),
+                                new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                                        new Ast.Stmt.Return(new Ast.Expr.Function(Optional.empty(), "even", Arrays.asList(new Ast.Expr.Literal(BigInteger.valueOf(100001)))))
+                                ))
+                        )
+                ), false)
         );
     }
 
@@ -199,6 +366,83 @@ final class InterpreterTests {
         Assertions.assertEquals(BigInteger.TEN, scope.lookupVariable("sum").getValue().getValue());
     }
 
+    @ParameterizedTest
+    @MethodSource
+    void testRangeStatement(String test, List<Ast.Expr> arguments, Object expected) {
+        Scope scope = new Scope(null);
+        scope.defineVariable("sum", Environment.create(BigInteger.ZERO));
+        test(new Ast.Stmt.For("num",
+                new Ast.Expr.Function(Optional.empty(), "range", arguments),
+                Arrays.asList(new Ast.Stmt.Assignment(
+                        new Ast.Expr.Access(Optional.empty(),"sum"),
+                        new Ast.Expr.Binary("+",
+                                new Ast.Expr.Access(Optional.empty(),"sum"),
+                                new Ast.Expr.Access(Optional.empty(),"num")
+                        )
+                ))
+        ), expected == null ? null : Environment.NIL.getValue(), scope);
+        if (expected != null) {
+            Assertions.assertEquals(expected, scope.lookupVariable("sum").getValue().getValue());
+        }
+    }
+
+    private static Stream<Arguments> testRangeStatement() {
+        return Stream.of(
+                Arguments.of("Ascending", Arrays.asList(new Ast.Expr.Literal(BigInteger.ZERO), new Ast.Expr.Literal(BigInteger.valueOf(5))), BigInteger.TEN),
+                Arguments.of("Step", Arrays.asList(new Ast.Expr.Literal(BigInteger.ZERO), new Ast.Expr.Literal(BigInteger.TEN), new Ast.Expr.Literal(BigInteger.valueOf(3))), BigInteger.valueOf(18)),
+                Arguments.of("Descending", Arrays.asList(new Ast.Expr.Literal(BigInteger.valueOf(5)), new Ast.Expr.Literal(BigInteger.ZERO), new Ast.Expr.Literal(BigInteger.valueOf(-2))), BigInteger.valueOf(9)),
+                Arguments.of("Empty", Arrays.asList(new Ast.Expr.Literal(BigInteger.valueOf(3)), new Ast.Expr.Literal(BigInteger.valueOf(3))), BigInteger.ZERO),
+                Arguments.of("Zero Step", Arrays.asList(new Ast.Expr.Literal(BigInteger.ZERO), new Ast.Expr.Literal(BigInteger.TEN), new Ast.Expr.Literal(BigInteger.ZERO)), null)
+        );
+    }
+
+    @Test
+    void testRangeDeclaration() {
+        // FOR num IN range(0, 5) DO LET square = num * num; sum = sum + square; END
+        Scope scope = new Scope(null);
+        scope.defineVariable("sum", Environment.create(BigInteger.ZERO));
+        test(new Ast.Stmt.For("num",
+                new Ast.Expr.Function(Optional.empty(), "range", Arrays.asList(new Ast.Expr.Literal(BigInteger.ZERO), new Ast.Expr.Literal(BigInteger.valueOf(5)))),
+                Arrays.asList(
+                        new Ast.Stmt.Declaration("square", Optional.of(new Ast.Expr.Binary("*",
+                                new Ast.Expr.Access(Optional.empty(), "num"),
+                                new Ast.Expr.Access(Optional.empty(), "num")
+                        ))),
+                        new Ast.Stmt.Assignment(
+                                new Ast.Expr.Access(Optional.empty(), "sum"),
+                                new Ast.Expr.Binary("+",
+                                        new Ast.Expr.Access(Optional.empty(), "sum"),
+                                        new Ast.Expr.Access(Optional.empty(), "square")
+                                )
+                        )
+                )
+        ), Environment.NIL.getValue(), scope);
+        Assertions.assertEquals(BigInteger.valueOf(30), scope.lookupVariable("sum").getValue().getValue());
+    }
+
+    @Test
+    void testRangeAllocation() {
+        // FOR num IN range(0, 1000000) DO END
+        Ast.Stmt.For ast = new Ast.Stmt.For("num",
+                new Ast.Expr.Function(Optional.empty(), "range", Arrays.asList(new Ast.Expr.Literal(BigInteger.ZERO), new Ast.Expr.Literal(BigInteger.valueOf(1000000)))),
+                Arrays.asList()
+        );
+        Assumptions.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(allocations.isThreadAllocatedMemorySupported());
+        long thread = Thread.currentThread().getId();
+        long allocated = 0;
+        for (int run = 0; run < 2; run++) {
+            Interpreter interpreter = new Interpreter(new Scope(null));
+            long before = allocations.getThreadAllocatedBytes(thread);
+            interpreter.visit(ast);
+            allocated = allocations.getThreadAllocatedBytes(thread) - before;
+        }
+        // Each element is still a BigInteger wrapped in a PlcObject, but the
+        // iteration itself allocates no scope or variable.
+        Assertions.assertTrue(allocated / 1000000 < 128, allocated / 1000000 + " bytes per element");
+    }
+
     @Test
     void testWhileStatement() {
         Scope scope = new Scope(null);
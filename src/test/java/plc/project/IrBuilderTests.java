@@ -0,0 +1,130 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static plc.project.Asts.source;
+import static plc.project.Asts.method;
+import static plc.project.Asts.call;
+import static plc.project.Asts.binary;
+import static plc.project.Asts.access;
+import static plc.project.Asts.integer;
+
+public final class IrBuilderTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    public void testSource(String test, Ast.Source ast, Object expected, int phis) {
+        new Analyzer(new Scope(null)).visit(ast);
+        Ir.Program program = new IrBuilder().build(ast);
+        Ir.Function main = program.getFunctions().get(program.getFunctions().size() - 1);
+        Assertions.assertEquals(phis, main.getBlocks().stream().mapToInt(block -> block.getPhis().size()).sum(), program.toString());
+        Assertions.assertEquals(expected, new IrInterpreter(new Scope(null)).execute(program).getValue());
+        Assertions.assertEquals(expected, new Interpreter(new Scope(null)).visit(ast).getValue());
+    }
+
+    private static Stream<Arguments> testSource() {
+        return Stream.of(
+                Arguments.of("Straight Line",
+                        // DEF main(): Integer DO LET x = 1; x = x + 2; RETURN x * 3; END
+                        source(Arrays.asList(), Arrays.asList(method("main", Arrays.asList(), "Integer", Arrays.asList(
+                                new Ast.Stmt.Declaration("x", Optional.of(integer(1))),
+                                new Ast.Stmt.Assignment(access("x"), binary("+", access("x"), integer(2))),
+                                new Ast.Stmt.Return(binary("*", access("x"), integer(3)))
+                        )))),
+                        BigInteger.valueOf(9), 0
+                ),
+                Arguments.of("Loop",
+                        // DEF main(): Integer DO LET i = 0; LET sum = 0; WHILE i < 5 DO sum = sum + i; i = i + 1; END RETURN sum; END
+                        source(Arrays.asList(), Arrays.asList(method("main", Arrays.asList(), "Integer", Arrays.asList(
+                                new Ast.Stmt.Declaration("i", Optional.of(integer(0))),
+                                new Ast.Stmt.Declaration("sum", Optional.of(integer(0))),
+                                new Ast.Stmt.While(binary("<", access("i"), integer(5)), Arrays.asList(
+                                        new Ast.Stmt.Assignment(access("sum"), binary("+", access("sum"), access("i"))),
+                                        new Ast.Stmt.Assignment(access("i"), binary("+", access("i"), integer(1)))
+                                )),
+                                new Ast.Stmt.Return(access("sum"))
+                        )))),
+                        BigInteger.valueOf(10), 2
+                ),
+                Arguments.of("Branch",
+                        // DEF main(): Integer DO LET x = 3; IF x > 2 AND x < 5 DO x = x * 2; ELSE x = 0; END RETURN x; END
+                        source(Arrays.asList(), Arrays.asList(method("main", Arrays.asList(), "Integer", Arrays.asList(
+                                new Ast.Stmt.Declaration("x", Optional.of(integer(3))),
+                                new Ast.Stmt.If(binary("AND", binary(">", access("x"), integer(2)), binary("<", access("x"), integer(5))),
+                                        Arrays.asList(new Ast.Stmt.Assignment(access("x"), binary("*", access("x"), integer(2)))),
+                                        Arrays.asList(new Ast.Stmt.Assignment(access("x"), integer(0)))
+                                ),
+                                new Ast.Stmt.Return(access("x"))
+                        )))),
+                        BigInteger.valueOf(6), 2
+                ),
+                Arguments.of("Globals",
+                        // VAR total: Integer = 1;
+                        // DEF add(n: Integer): Integer DO total = total + n; RETURN total; END
+                        // DEF main(): Integer DO add(2); RETURN add(3); END
+                        source(
+                                Arrays.asList(new Ast.Field("total", "Integer", Optional.of(integer(1)))),
+                                Arrays.asList(
+                                        method("add", Arrays.asList("n"), "Integer", Arrays.asList(
+                                                new Ast.Stmt.Assignment(access("total"), binary("+", access("total"), access("n"))),
+                                                new Ast.Stmt.Return(access("total"))
+                                        )),
+                                        method("main", Arrays.asList(), "Integer", Arrays.asList(
+                                                new Ast.Stmt.Expression(call("add", integer(2))),
+                                                new Ast.Stmt.Return(call("add", integer(3)))
+                                        ))
+                                )
+                        ),
+                        BigInteger.valueOf(6), 0
+                ),
+                Arguments.of("Early Return",
+                        // DEF sign(x: Integer): Integer DO IF x > 0 DO RETURN 1; END RETURN 0; END
+                        // DEF main(): Integer DO RETURN sign(5) - sign(0); END
+                        source(Arrays.asList(), Arrays.asList(
+                                method("sign", Arrays.asList("x"), "Integer", Arrays.asList(
+                                        new Ast.Stmt.If(binary(">", access("x"), integer(0)), Arrays.asList(new Ast.Stmt.Return(integer(1))), Arrays.asList()),
+                                        new Ast.Stmt.Return(integer(0))
+                                )),
+                                method("main", Arrays.asList(), "Integer", Arrays.asList(
+                                        new Ast.Stmt.Return(binary("-", call("sign", integer(5)), call("sign", integer(0))))
+                                ))
+                        )),
+                        BigInteger.valueOf(1), 0
+                ),
+                Arguments.of("Range",
+                        // DEF main(): Integer DO LET sum = 0; FOR i IN range(0, 5) DO sum = sum + i; END RETURN sum; END
+                        source(Arrays.asList(), Arrays.asList(method("main", Arrays.asList(), "Integer", Arrays.asList(
+                                new Ast.Stmt.Declaration("sum", Optional.of(integer(0))),
+                                new Ast.Stmt.For("i", call("range", integer(0), integer(5)), Arrays.asList(
+                                        new Ast.Stmt.Assignment(access("sum"), binary("+", access("sum"), access("i")))
+                                )),
+                                new Ast.Stmt.Return(access("sum"))
+                        )))),
+                        BigInteger.valueOf(10), 1
+                )
+        );
+    }
+
+    @Test
+    public void testDivisionByZero() {
+        // DEF main(): Integer DO LET zero = 0; RETURN 1 / zero; END
+        Ast.Source ast = source(Arrays.asList(), Arrays.asList(method("main", Arrays.asList(), "Integer", Arrays.asList(
+                new Ast.Stmt.Declaration("zero", Optional.of(integer(0))),
+                new Ast.Stmt.Return(binary("/", integer(1), access("zero")))
+        ))));
+        new Analyzer(new Scope(null)).visit(ast);
+        Ir.Program program = new IrBuilder().build(ast);
+        Assertions.assertThrows(ArithmeticException.class, () -> new IrInterpreter(new Scope(null)).execute(program));
+        Assertions.assertThrows(ArithmeticException.class, () -> new Interpreter(new Scope(null)).visit(ast));
+    }
+
+}
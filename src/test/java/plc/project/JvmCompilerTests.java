@@ -0,0 +1,209 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static plc.project.Asts.source;
+import static plc.project.Asts.method;
+import static plc.project.Asts.call;
+import static plc.project.Asts.binary;
+import static plc.project.Asts.access;
+import static plc.project.Asts.integer;
+
+public final class JvmCompilerTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    public void testSource(String test, Ast.Source ast, BigInteger expected) {
+        new Analyzer(new Scope(null)).visit(ast);
+        Assertions.assertEquals(expected, JvmCompiler.execute(ast).getValue());
+        Assertions.assertEquals(expected, new Interpreter(new Scope(null)).visit(ast).getValue());
+    }
+
+    private static Stream<Arguments> testSource() {
+        return Stream.of(
+                Arguments.of("Straight Line",
+                        // DEF main(): Integer DO LET x = 1; x = x + 2; RETURN x * 3 - 10 / 5; END
+                        source(Arrays.asList(), Arrays.asList(method("main", Arrays.asList(), "Integer", Arrays.asList(
+                                new Ast.Stmt.Declaration("x", Optional.of(integer(1))),
+                                new Ast.Stmt.Assignment(access("x"), binary("+", access("x"), integer(2))),
+                                new Ast.Stmt.Return(binary("-", binary("*", access("x"), integer(3)), binary("/", integer(10), integer(5))))
+                        )))),
+                        BigInteger.valueOf(7)
+                ),
+                Arguments.of("Loop",
+                        // DEF main(): Integer DO LET i = 0; LET sum = 0; WHILE i < 10000 DO sum = sum + i; i = i + 1; END RETURN sum / 1000; END
+                        source(Arrays.asList(), Arrays.asList(method("main", Arrays.asList(), "Integer", Arrays.asList(
+                                new Ast.Stmt.Declaration("i", Optional.of(integer(0))),
+                                new Ast.Stmt.Declaration("sum", Optional.of(integer(0))),
+                                new Ast.Stmt.While(binary("<", access("i"), integer(10000)), Arrays.asList(
+                                        new Ast.Stmt.Assignment(access("sum"), binary("+", access("sum"), access("i"))),
+                                        new Ast.Stmt.Assignment(access("i"), binary("+", access("i"), integer(1)))
+                                )),
+                                new Ast.Stmt.Return(binary("/", access("sum"), integer(1000)))
+                        )))),
+                        BigInteger.valueOf(49995)
+                ),
+                Arguments.of("Conditions",
+                        // DEF main(): Integer DO LET x = 3; LET d = 1.5; LET s = "a";
+                        //     IF x > 2 AND x <= 5 AND d >= 1.5 AND (s == "a" OR x != 3) DO RETURN 1; ELSE RETURN 0; END END
+                        source(Arrays.asList(), Arrays.asList(method("main", Arrays.asList(), "Integer", Arrays.asList(
+                                new Ast.Stmt.Declaration("x", Optional.of(integer(3))),
+                                new Ast.Stmt.Declaration("d", Optional.of(new Ast.Expr.Literal(new BigDecimal("1.5")))),
+                                new Ast.Stmt.Declaration("s", Optional.of(new Ast.Expr.Literal("a"))),
+                                new Ast.Stmt.If(binary("AND", binary("AND", binary("AND",
+                                                binary(">", access("x"), integer(2)),
+                                                binary("<=", access("x"), integer(5))),
+                                                binary(">=", access("d"), new Ast.Expr.Literal(new BigDecimal("1.5")))),
+                                                new Ast.Expr.Group(binary("OR",
+                                                        binary("==", access("s"), new Ast.Expr.Literal("a")),
+                                                        binary("!=", access("x"), integer(3))))),
+                                        Arrays.asList(new Ast.Stmt.Return(integer(1))),
+                                        Arrays.asList(new Ast.Stmt.Return(integer(0)))
+                                )
+                        )))),
+                        BigInteger.ONE
+                ),
+                Arguments.of("Globals",
+                        // VAR total: Integer = 1;
+                        // DEF add(n: Integer): Integer DO total = total + n; RETURN total; END
+                        // DEF main(): Integer DO add(2); RETURN add(3); END
+                        source(
+                                Arrays.asList(new Ast.Field("total", "Integer", Optional.of(integer(1)))),
+                                Arrays.asList(
+                                        method("add", Arrays.asList("n"), "Integer", Arrays.asList(
+                                                new Ast.Stmt.Assignment(access("total"), binary("+", access("total"), access("n"))),
+                                                new Ast.Stmt.Return(access("total"))
+                                        )),
+                                        method("main", Arrays.asList(), "Integer", Arrays.asList(
+                                                new Ast.Stmt.Expression(call("add", integer(2))),
+                                                new Ast.Stmt.Return(call("add", integer(3)))
+                                        ))
+                                )
+                        ),
+                        BigInteger.valueOf(6)
+                ),
+                Arguments.of("Recursion",
+                        // DEF fib(n: Integer): Integer DO IF n < 2 DO RETURN n; END RETURN fib(n - 1) + fib(n - 2); END
+                        // DEF main(): Integer DO RETURN fib(20); END
+                        source(Arrays.asList(), Arrays.asList(
+                                method("fib", Arrays.asList("n"), "Integer", Arrays.asList(
+                                        new Ast.Stmt.If(binary("<", access("n"), integer(2)), Arrays.asList(new Ast.Stmt.Return(access("n"))), Arrays.asList()),
+                                        new Ast.Stmt.Return(binary("+",
+                                                call("fib", binary("-", access("n"), integer(1))),
+                                                call("fib", binary("-", access("n"), integer(2)))
+                                        ))
+                                )),
+                                method("main", Arrays.asList(), "Integer", Arrays.asList(
+                                        new Ast.Stmt.Return(call("fib", integer(20)))
+                                ))
+                        )),
+                        BigInteger.valueOf(6765)
+                )
+        );
+    }
+
+    @Test
+    public void testPrint() {
+        // VAR greeting: String = "Hello";
+        // DEF greet(name: Any) DO print(greeting + ", " + name + '!'); END
+        // DEF main(): Integer DO greet("World"); print(1.5); print(TRUE); RETURN 0; END
+        Ast.Source ast = source(Arrays.asList(new Ast.Field("greeting", "String", Optional.of(new Ast.Expr.Literal("Hello")))), Arrays.asList(
+                new Ast.Method("greet", Arrays.asList("name"), Arrays.asList("Any"), Optional.empty(), Arrays.asList(
+                        new Ast.Stmt.Expression(call("print", binary("+", binary("+", binary("+",
+                                access("greeting"), new Ast.Expr.Literal(", ")), access("name")), new Ast.Expr.Literal('!'))))
+                )),
+                method("main", Arrays.asList(), "Integer", Arrays.asList(
+                        new Ast.Stmt.Expression(call("greet", new Ast.Expr.Literal("World"))),
+                        new Ast.Stmt.Expression(call("print", new Ast.Expr.Literal(new BigDecimal("1.5")))),
+                        new Ast.Stmt.Expression(call("print", new Ast.Expr.Literal(true))),
+                        new Ast.Stmt.Return(integer(0))
+                ))
+        ));
+        new Analyzer(new Scope(null)).visit(ast);
+        PrintStream sysout = System.out;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(out));
+        try {
+            Assertions.assertEquals(BigInteger.ZERO, JvmCompiler.execute(ast).getValue());
+        } finally {
+            System.setOut(sysout);
+        }
+        Assertions.assertEquals(String.join(System.lineSeparator(), "Hello, World!", "1.5", "true", ""), out.toString());
+    }
+
+    @Test
+    public void testUnsupported() {
+        // DEF main(): Integer DO RETURN "text".length(); END
+        Ast.Source ast = source(Arrays.asList(), Arrays.asList(method("main", Arrays.asList(), "Integer", Arrays.asList(
+                new Ast.Stmt.Return(new Ast.Expr.Function(Optional.of(new Ast.Expr.Literal("text")), "length", Arrays.asList()))
+        ))));
+        ast.getMethods().get(0).setFunction(new Environment.Function("main", "main", Arrays.asList(), Environment.Type.INTEGER, args -> Environment.NIL));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> new JvmCompiler().compile(ast));
+
+        // DEF main(): Integer DO LET sum = 0; FOR i IN range(0, 3) DO sum = sum + i; END RETURN sum; END
+        Ast.Source range = source(Arrays.asList(), Arrays.asList(method("main", Arrays.asList(), "Integer", Arrays.asList(
+                new Ast.Stmt.Declaration("sum", Optional.of(integer(0))),
+                new Ast.Stmt.For("i", call("range", integer(0), integer(3)), Arrays.asList(
+                        new Ast.Stmt.Assignment(access("sum"), binary("+", access("sum"), access("i")))
+                )),
+                new Ast.Stmt.Return(access("sum"))
+        ))));
+        new Analyzer(new Scope(null)).visit(range);
+        UnsupportedOperationException exception = Assertions.assertThrows(UnsupportedOperationException.class, () -> new JvmCompiler().compile(range));
+        Assertions.assertEquals("The JVM backend does not support the function range/2.", exception.getMessage());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    public void testOverflow(String test, Ast.Expr value, BigInteger expected) {
+        // DEF main(): Integer DO RETURN value; END
+        Ast.Source ast = source(Arrays.asList(), Arrays.asList(method("main", Arrays.asList(), "Integer", Arrays.asList(
+                new Ast.Stmt.Return(value)
+        ))));
+        new Analyzer(new Scope(null)).visit(ast);
+        Assertions.assertThrows(ArithmeticException.class, () -> JvmCompiler.execute(ast));
+        Assertions.assertEquals(expected, new Interpreter(new Scope(null)).visit(ast).getValue());
+    }
+
+    private static Stream<Arguments> testOverflow() {
+        BigInteger max = BigInteger.valueOf(Integer.MAX_VALUE);
+        return Stream.of(
+                Arguments.of("Addition", binary("+", integer(Integer.MAX_VALUE), integer(1)), max.add(BigInteger.ONE)),
+                Arguments.of("Subtraction", binary("-", binary("-", integer(0), integer(Integer.MAX_VALUE)), integer(2)), max.negate().subtract(BigInteger.valueOf(2))),
+                Arguments.of("Multiplication", binary("*", integer(Integer.MAX_VALUE), integer(2)), max.shiftLeft(1)),
+                Arguments.of("Division",
+                        binary("/", binary("-", binary("-", integer(0), integer(Integer.MAX_VALUE)), integer(1)), binary("-", integer(0), integer(1))),
+                        max.add(BigInteger.ONE)
+                )
+        );
+    }
+
+    @Test
+    public void testDecimalRounding() {
+        // DEF main(): Integer DO IF 0.1 + 0.2 == 0.3 DO RETURN 1; END RETURN 0; END
+        Ast.Source ast = source(Arrays.asList(), Arrays.asList(method("main", Arrays.asList(), "Integer", Arrays.asList(
+                new Ast.Stmt.If(binary("==",
+                        binary("+", new Ast.Expr.Literal(new BigDecimal("0.1")), new Ast.Expr.Literal(new BigDecimal("0.2"))),
+                        new Ast.Expr.Literal(new BigDecimal("0.3"))
+                ), Arrays.asList(new Ast.Stmt.Return(integer(1))), Arrays.asList()),
+                new Ast.Stmt.Return(integer(0))
+        ))));
+        new Analyzer(new Scope(null)).visit(ast);
+        // Decimals are doubles once compiled, which round where BigDecimals do not.
+        Assertions.assertEquals(BigInteger.ZERO, JvmCompiler.execute(ast).getValue());
+        Assertions.assertEquals(BigInteger.ONE, new Interpreter(new Scope(null)).visit(ast).getValue());
+    }
+
+}
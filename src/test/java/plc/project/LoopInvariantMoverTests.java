@@ -0,0 +1,173 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static plc.project.Asts.source;
+import static plc.project.Asts.method;
+import static plc.project.Asts.print;
+import static plc.project.Asts.call;
+import static plc.project.Asts.binary;
+import static plc.project.Asts.access;
+import static plc.project.Asts.integer;
+
+public final class LoopInvariantMoverTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    public void testStatements(String test, List<Ast.Stmt> statements, List<Ast.Stmt> expected) {
+        Ast.Method ast = analyze(new Ast.Method("name", Arrays.asList("a", "b"), Arrays.asList("Integer", "Integer"), Optional.empty(), statements));
+        Ast.Method moved = (Ast.Method) new LoopInvariantMover().visit(ast);
+        Assertions.assertEquals(analyze(new Ast.Method("name", Arrays.asList("a", "b"), Arrays.asList("Integer", "Integer"), Optional.empty(), expected)).getStatements(), moved.getStatements());
+    }
+
+    private static Ast.Method analyze(Ast.Method ast) {
+        Scope scope = new Scope(null);
+        scope.defineVariable("field", "field", Environment.Type.INTEGER, Environment.NIL);
+        scope.defineVariable("list", "list", Environment.Type.INTEGER_ITERABLE, Environment.NIL);
+        new Analyzer(scope).visit(ast);
+        return ast;
+    }
+
+    private static Stream<Arguments> testStatements() {
+        return Stream.of(
+                Arguments.of("While",
+                        // LET i = 0; WHILE i < a * b DO i = i + a * b; END
+                        Arrays.asList(
+                                new Ast.Stmt.Declaration("i", Optional.of(integer(0))),
+                                new Ast.Stmt.While(binary("<", access("i"), binary("*", access("a"), access("b"))), Arrays.asList(
+                                        new Ast.Stmt.Assignment(access("i"), binary("+", access("i"), binary("*", access("a"), access("b"))))
+                                ))
+                        ),
+                        // LET i = 0; LET $invariant0 = a * b; WHILE i < $invariant0 DO i = i + $invariant0; END
+                        Arrays.asList(
+                                new Ast.Stmt.Declaration("i", Optional.of(integer(0))),
+                                new Ast.Stmt.Declaration("$invariant0", Optional.of(binary("*", access("a"), access("b")))),
+                                new Ast.Stmt.While(binary("<", access("i"), access("$invariant0")), Arrays.asList(
+                                        new Ast.Stmt.Assignment(access("i"), binary("+", access("i"), access("$invariant0")))
+                                ))
+                        )
+                ),
+                Arguments.of("For",
+                        // FOR x IN list DO print(x + a * b); END
+                        Arrays.asList(
+                                new Ast.Stmt.For("x", access("list"), Arrays.asList(
+                                        print(binary("+", access("x"), binary("*", access("a"), access("b"))))
+                                ))
+                        ),
+                        // LET $invariant0 = a * b; FOR x IN list DO print(x + $invariant0); END
+                        Arrays.asList(
+                                new Ast.Stmt.Declaration("$invariant0", Optional.of(binary("*", access("a"), access("b")))),
+                                new Ast.Stmt.For("x", access("list"), Arrays.asList(
+                                        print(binary("+", access("x"), access("$invariant0")))
+                                ))
+                        )
+                ),
+                Arguments.of("Assigned",
+                        // WHILE a < 10 DO a = a + b; END
+                        Arrays.asList(
+                                new Ast.Stmt.While(binary("<", access("a"), integer(10)), Arrays.asList(
+                                        new Ast.Stmt.Assignment(access("a"), binary("+", access("a"), access("b")))
+                                ))
+                        ),
+                        Arrays.asList(
+                                new Ast.Stmt.While(binary("<", access("a"), integer(10)), Arrays.asList(
+                                        new Ast.Stmt.Assignment(access("a"), binary("+", access("a"), access("b")))
+                                ))
+                        )
+                ),
+                Arguments.of("Division",
+                        // WHILE a < 10 DO a = a + b / 2; END
+                        Arrays.asList(
+                                new Ast.Stmt.While(binary("<", access("a"), integer(10)), Arrays.asList(
+                                        new Ast.Stmt.Assignment(access("a"), binary("+", access("a"), binary("/", access("b"), integer(2))))
+                                ))
+                        ),
+                        Arrays.asList(
+                                new Ast.Stmt.While(binary("<", access("a"), integer(10)), Arrays.asList(
+                                        new Ast.Stmt.Assignment(access("a"), binary("+", access("a"), binary("/", access("b"), integer(2))))
+                                ))
+                        )
+                ),
+                Arguments.of("Field With Call",
+                        // WHILE a < field * 2 DO print(a); a = a + 1; END
+                        Arrays.asList(
+                                new Ast.Stmt.While(binary("<", access("a"), binary("*", access("field"), integer(2))), Arrays.asList(
+                                        print(access("a")),
+                                        new Ast.Stmt.Assignment(access("a"), binary("+", access("a"), integer(1)))
+                                ))
+                        ),
+                        Arrays.asList(
+                                new Ast.Stmt.While(binary("<", access("a"), binary("*", access("field"), integer(2))), Arrays.asList(
+                                        print(access("a")),
+                                        new Ast.Stmt.Assignment(access("a"), binary("+", access("a"), integer(1)))
+                                ))
+                        )
+                )
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    public void testSource(String test, Ast.Source ast, Object expected) {
+        new Analyzer(new Scope(null)).visit(ast);
+        Ast.Source moved = (Ast.Source) new LoopInvariantMover().visit(ast);
+        Assertions.assertEquals(expected, new Interpreter(new Scope(null)).visit(moved).getValue());
+    }
+
+    private static Stream<Arguments> testSource() {
+        return Stream.of(
+                Arguments.of("Call In Condition",
+                        // VAR x: Integer = 0;
+                        // DEF next(): Boolean DO x = x + 1; RETURN x < 3; END
+                        // DEF main(): Integer DO LET y = 0; WHILE next() DO y = y + (x * 10); END RETURN y; END
+                        source(Arrays.asList(new Ast.Field("x", "Integer", Optional.of(integer(0)))), Arrays.asList(
+                                method("next", Arrays.asList(), "Boolean", Arrays.asList(
+                                        new Ast.Stmt.Assignment(access("x"), binary("+", access("x"), integer(1))),
+                                        new Ast.Stmt.Return(binary("<", access("x"), integer(3)))
+                                )),
+                                method("main", Arrays.asList(), "Integer", Arrays.asList(
+                                        new Ast.Stmt.Declaration("y", Optional.of(integer(0))),
+                                        new Ast.Stmt.While(call("next"), Arrays.asList(
+                                                new Ast.Stmt.Assignment(access("y"), binary("+", access("y"), new Ast.Expr.Group(binary("*", access("x"), integer(10)))))
+                                        )),
+                                        new Ast.Stmt.Return(access("y"))
+                                ))
+                        )),
+                        BigInteger.valueOf(30)
+                ),
+                Arguments.of("Field Before Local",
+                        // VAR x: Integer = 0;
+                        // DEF bump(): Integer DO x = x + 1; RETURN x; END
+                        // DEF main(): Integer DO LET y = 0; LET i = 0; WHILE i < 3 DO bump(); y = y + x * 10; i = i + 1; END LET x = 5; RETURN y; END
+                        source(Arrays.asList(new Ast.Field("x", "Integer", Optional.of(integer(0)))), Arrays.asList(
+                                method("bump", Arrays.asList(), "Integer", Arrays.asList(
+                                        new Ast.Stmt.Assignment(access("x"), binary("+", access("x"), integer(1))),
+                                        new Ast.Stmt.Return(access("x"))
+                                )),
+                                method("main", Arrays.asList(), "Integer", Arrays.asList(
+                                        new Ast.Stmt.Declaration("y", Optional.of(integer(0))),
+                                        new Ast.Stmt.Declaration("i", Optional.of(integer(0))),
+                                        new Ast.Stmt.While(binary("<", access("i"), integer(3)), Arrays.asList(
+                                                new Ast.Stmt.Expression(call("bump")),
+                                                new Ast.Stmt.Assignment(access("y"), binary("+", access("y"), binary("*", access("x"), integer(10)))),
+                                                new Ast.Stmt.Assignment(access("i"), binary("+", access("i"), integer(1)))
+                                        )),
+                                        new Ast.Stmt.Declaration("x", Optional.of(integer(5))),
+                                        new Ast.Stmt.Return(access("y"))
+                                ))
+                        )),
+                        BigInteger.valueOf(60)
+                )
+        );
+    }
+
+}
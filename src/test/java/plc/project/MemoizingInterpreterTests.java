@@ -0,0 +1,74 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static plc.project.Asts.method;
+import static plc.project.Asts.call;
+import static plc.project.Asts.binary;
+import static plc.project.Asts.access;
+import static plc.project.Asts.integer;
+
+public final class MemoizingInterpreterTests {
+
+    @Test
+    public void testRecursion() {
+        MemoizingInterpreter interpreter = new MemoizingInterpreter(new Scope(null));
+        Assertions.assertEquals(BigInteger.valueOf(832040), interpreter.visit(fibonacci(30)).getValue());
+        MemoizingInterpreter.Cache cache = interpreter.getCache("fib", 1);
+        Assertions.assertEquals(31, cache.getMisses());
+        Assertions.assertEquals(28, cache.getHits());
+        Assertions.assertEquals(31, cache.getSize());
+    }
+
+    @Test
+    public void testCapacity() {
+        MemoizingInterpreter interpreter = new MemoizingInterpreter(new Scope(null), 4);
+        Assertions.assertEquals(BigInteger.valueOf(610), interpreter.visit(fibonacci(15)).getValue());
+        Assertions.assertEquals(4, interpreter.getCache("fib", 1).getSize());
+    }
+
+    @Test
+    public void testImpure() {
+        // VAR count = 0;
+        // DEF next() DO count = count + 1; RETURN count; END
+        // DEF main() DO next(); RETURN next(); END
+        Ast.Source ast = new Ast.Source(Arrays.asList(new Ast.Field("count", Optional.of(integer(0)))), Arrays.asList(
+                method("next", Arrays.asList(), Arrays.asList(
+                        new Ast.Stmt.Assignment(access("count"), binary("+", access("count"), integer(1))),
+                        new Ast.Stmt.Return(access("count"))
+                )),
+                method("main", Arrays.asList(), Arrays.asList(
+                        new Ast.Stmt.Expression(call("next")),
+                        new Ast.Stmt.Return(call("next"))
+                ))
+        ));
+        MemoizingInterpreter interpreter = new MemoizingInterpreter(new Scope(null));
+        Assertions.assertEquals(BigInteger.valueOf(2), interpreter.visit(ast).getValue());
+        Assertions.assertThrows(RuntimeException.class, () -> interpreter.getCache("next", 0));
+    }
+
+    /**
+     * DEF fib(n) DO IF n < 2 DO RETURN n; END RETURN fib(n - 1) + fib(n - 2); END
+     * DEF main() DO RETURN fib(n); END
+     */
+    private static Ast.Source fibonacci(int n) {
+        return new Ast.Source(Arrays.asList(), Arrays.asList(
+                method("fib", Arrays.asList("n"), Arrays.asList(
+                        new Ast.Stmt.If(binary("<", access("n"), integer(2)), Arrays.asList(new Ast.Stmt.Return(access("n"))), Arrays.asList()),
+                        new Ast.Stmt.Return(binary("+",
+                                call("fib", binary("-", access("n"), integer(1))),
+                                call("fib", binary("-", access("n"), integer(2)))
+                        ))
+                )),
+                method("main", Arrays.asList(), Arrays.asList(
+                        new Ast.Stmt.Return(call("fib", integer(n)))
+                ))
+        ));
+    }
+
+}
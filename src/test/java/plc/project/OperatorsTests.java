@@ -0,0 +1,70 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public final class OperatorsTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    public void testLookup(String test, String operator, Class<?> left, Class<?> right, boolean registered) {
+        Assertions.assertEquals(registered, Operators.lookup(operator, left, right) != null);
+    }
+
+    private static Stream<Arguments> testLookup() {
+        return Stream.of(
+                Arguments.of("Integer Addition", "+", BigInteger.class, BigInteger.class, true),
+                Arguments.of("Decimal Division", "/", BigDecimal.class, BigDecimal.class, true),
+                Arguments.of("Concatenation", "+", Character.class, String.class, true),
+                Arguments.of("String Comparison", "<", String.class, String.class, true),
+                Arguments.of("Mixed Arithmetic", "+", BigInteger.class, BigDecimal.class, false),
+                Arguments.of("String Subtraction", "-", String.class, String.class, false),
+                Arguments.of("Logical", "AND", Boolean.class, Boolean.class, false)
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    public void testApply(String test, String operator, Object left, Object right, Object expected) {
+        Environment.PlcObject result = Operators.lookup(operator, left.getClass(), right.getClass())
+                .apply(Environment.create(left), Environment.create(right));
+        Assertions.assertEquals(expected, result.getValue());
+    }
+
+    private static Stream<Arguments> testApply() {
+        return Stream.of(
+                Arguments.of("Integer Division", "/", BigInteger.valueOf(7), BigInteger.valueOf(2), BigInteger.valueOf(3)),
+                Arguments.of("Decimal Division", "/", new BigDecimal("1.2"), new BigDecimal("3.4"), new BigDecimal("0.4")),
+                Arguments.of("Concatenation", "+", BigInteger.ONE, "a", "1a"),
+                Arguments.of("Character Comparison", "<=", 'a', 'b', true),
+                Arguments.of("Boolean Equality", "!=", true, false, true)
+        );
+    }
+
+    @Test
+    public void testRegister() {
+        if (Operators.lookup("+", Duration.class, Duration.class) == null) {
+            Operators.register("+", Duration.class, Duration.class, Duration::plus);
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Operators.register("+", Duration.class, Duration.class, Duration::minus));
+
+        Scope scope = new Scope(null);
+        scope.defineVariable("x", Environment.create(Duration.ofSeconds(1)));
+        scope.defineVariable("y", Environment.create(Duration.ofSeconds(2)));
+        Ast.Expr.Binary ast = new Ast.Expr.Binary("+",
+                new Ast.Expr.Access(Optional.empty(), "x"),
+                new Ast.Expr.Access(Optional.empty(), "y")
+        );
+        Assertions.assertEquals(Duration.ofSeconds(3), new Interpreter(scope).visit(ast).getValue());
+    }
+
+}
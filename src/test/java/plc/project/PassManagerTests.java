@@ -0,0 +1,90 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static plc.project.Asts.integer;
+
+public final class PassManagerTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    public void testLevel(String test, int level, List<String> expected) {
+        PassManager manager = PassManager.standard(level);
+        Ast.Source optimized = manager.run(source());
+        Assertions.assertEquals(expected, manager.getRecords().stream().map(PassManager.Record::getName).collect(Collectors.toList()));
+        Assertions.assertEquals(BigInteger.valueOf(30), new Interpreter(new Scope(null)).visit(optimized).getValue());
+        Assertions.assertTrue(manager.getValid().contains(PassManager.ANALYZED));
+    }
+
+    private static Stream<Arguments> testLevel() {
+        return Stream.of(
+                Arguments.of("-O0", PassManager.parseLevel("-O0"), Arrays.asList("analyze")),
+                Arguments.of("-O1", PassManager.parseLevel("-O1"), Arrays.asList("analyze", "fold-constants", "eliminate-dead-code", "shake-tree")),
+                Arguments.of("-O2", PassManager.parseLevel("-O2"), Arrays.asList("analyze", "inline", "fold-constants", "eliminate-dead-code",
+                        "shake-tree", "move-loop-invariants", "eliminate-common-subexpressions", "analyze-ranges"))
+        );
+    }
+
+    @Test
+    public void testInvalidation() {
+        PassManager manager = new PassManager(1);
+        manager.register(0, PassManager.Pass.of("analyze", Collections.emptySet(), Collections.singleton(PassManager.ANALYZED), Collections.emptySet(), ast -> {
+            new Analyzer(new Scope(null)).visit(ast);
+            return ast;
+        }));
+        manager.register(1, PassManager.Pass.of("first", Collections.singleton(PassManager.ANALYZED), Collections.emptySet(), Collections.singleton(PassManager.ANALYZED), ast -> ast));
+        manager.register(1, PassManager.Pass.of("second", Collections.singleton(PassManager.ANALYZED), Collections.emptySet(), Collections.emptySet(), ast -> ast));
+        manager.register(2, PassManager.Pass.of("skipped", Collections.emptySet(), Collections.emptySet(), Collections.emptySet(), ast -> ast));
+        manager.run(source());
+        Assertions.assertEquals(Arrays.asList("analyze", "first", "analyze", "second"),
+                manager.getRecords().stream().map(PassManager.Record::getName).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testNodeCounts() {
+        PassManager manager = PassManager.standard(1);
+        manager.run(source());
+        PassManager.Record folding = manager.getRecords().get(1);
+        Assertions.assertTrue(folding.getNodesAfter() < folding.getNodesBefore(), manager.report());
+        Assertions.assertTrue(folding.getNanos() >= 0);
+    }
+
+    @Test
+    public void testInvalidLevel() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> PassManager.parseLevel("-O3"));
+    }
+
+    /**
+     * DEF unused(): Integer DO RETURN 0; END
+     * DEF triple(x: Integer): Integer DO RETURN x * 3; END
+     * DEF main(): Integer DO LET x = 2 * 5; IF FALSE DO RETURN 0; END RETURN triple(x); END
+     */
+    private static Ast.Source source() {
+        return new Ast.Source(Arrays.asList(), Arrays.asList(
+                new Ast.Method("unused", Arrays.asList(), Arrays.asList(), Optional.of("Integer"), Arrays.asList(
+                        new Ast.Stmt.Return(integer(0))
+                )),
+                new Ast.Method("triple", Arrays.asList("x"), Arrays.asList("Integer"), Optional.of("Integer"), Arrays.asList(
+                        new Ast.Stmt.Return(new Ast.Expr.Binary("*", new Ast.Expr.Access(Optional.empty(), "x"), integer(3)))
+                )),
+                new Ast.Method("main", Arrays.asList(), Arrays.asList(), Optional.of("Integer"), Arrays.asList(
+                        new Ast.Stmt.Declaration("x", Optional.of(new Ast.Expr.Binary("*", integer(2), integer(5)))),
+                        new Ast.Stmt.If(new Ast.Expr.Literal(false), Arrays.asList(new Ast.Stmt.Return(integer(0))), Arrays.asList()),
+                        new Ast.Stmt.Return(new Ast.Expr.Function(Optional.empty(), "triple", Arrays.asList(new Ast.Expr.Access(Optional.empty(), "x"))))
+                ))
+        ));
+    }
+
+}
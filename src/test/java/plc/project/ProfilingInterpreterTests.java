@@ -0,0 +1,89 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Map;
+
+import static plc.project.Asts.method;
+import static plc.project.Asts.call;
+import static plc.project.Asts.binary;
+import static plc.project.Asts.access;
+import static plc.project.Asts.integer;
+
+public final class ProfilingInterpreterTests {
+
+    @Test
+    public void testCollapsed() {
+        // DEF work(n) DO WHILE n > 0 DO IF n == 1 DO sample(); END n = n - 1; END RETURN n; END
+        // DEF main() DO work(2); sample(); RETURN work(1); END
+        Ast.Source ast = new Ast.Source(Arrays.asList(), Arrays.asList(
+                method("work", Arrays.asList("n"), Arrays.asList(
+                        new Ast.Stmt.While(binary(">", access("n"), integer(0)), Arrays.asList(
+                                new Ast.Stmt.If(binary("==", access("n"), integer(1)), Arrays.asList(
+                                        new Ast.Stmt.Expression(call("sample"))
+                                ), Arrays.asList()),
+                                new Ast.Stmt.Assignment(access("n"), binary("-", access("n"), integer(1)))
+                        )),
+                        new Ast.Stmt.Return(access("n"))
+                )),
+                method("main", Arrays.asList(), Arrays.asList(
+                        new Ast.Stmt.Expression(call("work", integer(2))),
+                        new Ast.Stmt.Expression(call("sample")),
+                        new Ast.Stmt.Return(call("work", integer(1)))
+                ))
+        ));
+        Scope scope = new Scope(null);
+        ProfilingInterpreter[] interpreter = new ProfilingInterpreter[1];
+        scope.defineFunction("sample", 0, args -> {
+            interpreter[0].sample();
+            return Environment.NIL;
+        });
+        interpreter[0] = new ProfilingInterpreter(scope);
+        Assertions.assertEquals(BigInteger.ZERO, interpreter[0].visit(ast).getValue());
+        Assertions.assertEquals(String.join(System.lineSeparator(),
+                "main/0;Expression#1;work/1;While#1;If#2;Expression#3 1",
+                "main/0;Expression#2 1",
+                "main/0;Return#3;work/1;While#1;If#2;Expression#3 1",
+                ""
+        ), interpreter[0].toCollapsed());
+    }
+
+    @Test
+    public void testTimer() {
+        // DEF fib(n) DO IF n < 2 DO RETURN n; END RETURN fib(n - 1) + fib(n - 2); END
+        // DEF main() DO RETURN fib(22); END
+        Ast.Source ast = new Ast.Source(Arrays.asList(), Arrays.asList(
+                method("fib", Arrays.asList("n"), Arrays.asList(
+                        new Ast.Stmt.If(binary("<", access("n"), integer(2)), Arrays.asList(new Ast.Stmt.Return(access("n"))), Arrays.asList()),
+                        new Ast.Stmt.Return(binary("+",
+                                call("fib", binary("-", access("n"), integer(1))),
+                                call("fib", binary("-", access("n"), integer(2)))
+                        ))
+                )),
+                method("main", Arrays.asList(), Arrays.asList(
+                        new Ast.Stmt.Return(call("fib", integer(22)))
+                ))
+        ));
+        ProfilingInterpreter interpreter = new ProfilingInterpreter(new Scope(null));
+        interpreter.start(1);
+        try {
+            Assertions.assertEquals(BigInteger.valueOf(17711), interpreter.visit(ast).getValue());
+        } finally {
+            interpreter.stop();
+        }
+        Map<String, Integer> samples = interpreter.getSamples();
+        Assertions.assertFalse(samples.isEmpty());
+        for (String stack : samples.keySet()) {
+            Assertions.assertTrue(stack.startsWith("main/0;Return#1"), stack);
+        }
+        Assertions.assertThrows(RuntimeException.class, () -> {
+            interpreter.start(1);
+            interpreter.start(1);
+        });
+        interpreter.stop();
+    }
+
+}
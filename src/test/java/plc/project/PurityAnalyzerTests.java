@@ -0,0 +1,127 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static plc.project.Asts.source;
+import static plc.project.Asts.method;
+import static plc.project.Asts.call;
+import static plc.project.Asts.binary;
+import static plc.project.Asts.access;
+import static plc.project.Asts.integer;
+
+public final class PurityAnalyzerTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    public void testAnalyze(String test, Ast.Source ast, Set<String> expected) {
+        Assertions.assertEquals(expected, new PurityAnalyzer().analyze(ast));
+    }
+
+    private static Stream<Arguments> testAnalyze() {
+        return Stream.of(
+                Arguments.of("Recursion",
+                        // DEF fib(n) DO IF n < 2 DO RETURN n; END RETURN fib(n - 1) + fib(n - 2); END
+                        source(Arrays.asList(), Arrays.asList(
+                                method("fib", Arrays.asList("n"), Arrays.asList(
+                                        new Ast.Stmt.If(binary("<", access("n"), integer(2)), Arrays.asList(new Ast.Stmt.Return(access("n"))), Arrays.asList()),
+                                        new Ast.Stmt.Return(binary("+",
+                                                call("fib", binary("-", access("n"), integer(1))),
+                                                call("fib", binary("-", access("n"), integer(2)))
+                                        ))
+                                ))
+                        )),
+                        set("fib/1")
+                ),
+                Arguments.of("Locals",
+                        // DEF sum(n) DO LET total = 0; WHILE n > 0 DO total = total + n; n = n - 1; END RETURN total; END
+                        source(Arrays.asList(), Arrays.asList(
+                                method("sum", Arrays.asList("n"), Arrays.asList(
+                                        new Ast.Stmt.Declaration("total", Optional.of(integer(0))),
+                                        new Ast.Stmt.While(binary(">", access("n"), integer(0)), Arrays.asList(
+                                                new Ast.Stmt.Assignment(access("total"), binary("+", access("total"), access("n"))),
+                                                new Ast.Stmt.Assignment(access("n"), binary("-", access("n"), integer(1)))
+                                        )),
+                                        new Ast.Stmt.Return(access("total"))
+                                ))
+                        )),
+                        set("sum/1")
+                ),
+                Arguments.of("Print",
+                        // DEF log(n) DO print(n); RETURN n; END
+                        // DEF twice(n) DO RETURN log(n) * 2; END
+                        source(Arrays.asList(), Arrays.asList(
+                                method("log", Arrays.asList("n"), Arrays.asList(
+                                        new Ast.Stmt.Expression(call("print", access("n"))),
+                                        new Ast.Stmt.Return(access("n"))
+                                )),
+                                method("twice", Arrays.asList("n"), Arrays.asList(
+                                        new Ast.Stmt.Return(binary("*", call("log", access("n")), integer(2)))
+                                ))
+                        )),
+                        set()
+                ),
+                Arguments.of("Fields",
+                        // VAR scale = 10; VAR count = 0;
+                        // DEF scaled(n) DO RETURN n * scale; END
+                        // DEF counted(n) DO RETURN n + count; END
+                        // DEF increment() DO count = count + 1; RETURN count; END
+                        source(Arrays.asList(
+                                new Ast.Field("scale", Optional.of(integer(10))),
+                                new Ast.Field("count", Optional.of(integer(0)))
+                        ), Arrays.asList(
+                                method("scaled", Arrays.asList("n"), Arrays.asList(
+                                        new Ast.Stmt.Return(binary("*", access("n"), access("scale")))
+                                )),
+                                method("counted", Arrays.asList("n"), Arrays.asList(
+                                        new Ast.Stmt.Return(binary("+", access("n"), access("count")))
+                                )),
+                                method("increment", Arrays.asList(), Arrays.asList(
+                                        new Ast.Stmt.Assignment(access("count"), binary("+", access("count"), integer(1))),
+                                        new Ast.Stmt.Return(access("count"))
+                                ))
+                        )),
+                        set("scaled/1")
+                ),
+                Arguments.of("Receiver",
+                        // DEF length(s) DO RETURN s.length; END
+                        source(Arrays.asList(), Arrays.asList(
+                                method("length", Arrays.asList("s"), Arrays.asList(
+                                        new Ast.Stmt.Return(new Ast.Expr.Access(Optional.of(access("s")), "length"))
+                                ))
+                        )),
+                        set()
+                )
+        );
+    }
+
+    @Test
+    public void testReuse() {
+        PurityAnalyzer analyzer = new PurityAnalyzer();
+        // DEF bump() DO x = x + 1; RETURN x; END
+        analyzer.analyze(source(Arrays.asList(), Arrays.asList(
+                method("bump", Arrays.asList(), Arrays.asList(
+                        new Ast.Stmt.Assignment(access("x"), binary("+", access("x"), integer(1))),
+                        new Ast.Stmt.Return(access("x"))
+                ))
+        )));
+        // DEF read() DO RETURN x; END
+        Assertions.assertEquals(set("read/0"), analyzer.analyze(source(Arrays.asList(), Arrays.asList(
+                method("read", Arrays.asList(), Arrays.asList(new Ast.Stmt.Return(access("x"))))
+        ))));
+    }
+
+    private static Set<String> set(String... methods) {
+        return new HashSet<>(Arrays.asList(methods));
+    }
+
+}
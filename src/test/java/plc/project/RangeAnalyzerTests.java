@@ -0,0 +1,121 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static plc.project.Asts.access;
+import static plc.project.Asts.call;
+
+public final class RangeAnalyzerTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    public void testBinaryExpression(String test, Ast.Expr.Binary ast, boolean primitive, Object expected) {
+        Scope scope = new Scope(null);
+        scope.defineVariable("x", "x", Environment.Type.INTEGER, Environment.NIL);
+        scope.defineVariable("s", "s", Environment.Type.STRING, Environment.NIL);
+        new Analyzer(scope).visit(ast);
+        new RangeAnalyzer().visit(ast);
+        Assertions.assertEquals(primitive, ast.isPrimitive());
+
+        Scope values = new Scope(null);
+        values.defineVariable("x", Environment.create(BigInteger.valueOf(Integer.MAX_VALUE)));
+        values.defineVariable("s", Environment.create("s"));
+        Assertions.assertEquals(expected, new Interpreter(values).visit(ast).getValue());
+    }
+
+    private static Stream<Arguments> testBinaryExpression() {
+        return Stream.of(
+                Arguments.of("Integer Addition",
+                        // x + 1
+                        new Ast.Expr.Binary("+", access("x"), new Ast.Expr.Literal(BigInteger.ONE)),
+                        true,
+                        BigInteger.valueOf(Integer.MAX_VALUE).add(BigInteger.ONE)
+                ),
+                Arguments.of("Nested Multiplication",
+                        // x * x * x
+                        new Ast.Expr.Binary("*", access("x"), new Ast.Expr.Binary("*", access("x"), access("x"))),
+                        false,
+                        BigInteger.valueOf(Integer.MAX_VALUE).pow(3)
+                ),
+                Arguments.of("Comparison",
+                        // x * x > x
+                        new Ast.Expr.Binary(">", new Ast.Expr.Binary("*", access("x"), access("x")), access("x")),
+                        true,
+                        true
+                ),
+                Arguments.of("Concatenation",
+                        // s + x
+                        new Ast.Expr.Binary("+", access("s"), access("x")),
+                        false,
+                        "s" + Integer.MAX_VALUE
+                )
+        );
+    }
+
+    @Test
+    void testRange() {
+        // (x - 1) / 2
+        Ast.Expr.Binary ast = new Ast.Expr.Binary("/",
+                new Ast.Expr.Group(new Ast.Expr.Binary("-", access("x"), new Ast.Expr.Literal(BigInteger.ONE))),
+                new Ast.Expr.Literal(BigInteger.valueOf(2))
+        );
+        Scope scope = new Scope(null);
+        scope.defineVariable("x", "x", Environment.Type.INTEGER, Environment.NIL);
+        new Analyzer(scope).visit(ast);
+        RangeAnalyzer.Range range = new RangeAnalyzer().visit(ast);
+        Assertions.assertEquals(BigInteger.valueOf(Integer.MIN_VALUE).subtract(BigInteger.ONE), range.getMaximum().negate());
+        Assertions.assertTrue(range.isPrimitive());
+    }
+
+    @Test
+    void testOperandOutOfRange() {
+        // x + x, where x holds a value wider than an int at runtime
+        Ast.Expr.Binary ast = new Ast.Expr.Binary("+", access("x"), access("x"));
+        Scope scope = new Scope(null);
+        scope.defineVariable("x", "x", Environment.Type.INTEGER, Environment.NIL);
+        new Analyzer(scope).visit(ast);
+        new RangeAnalyzer().visit(ast);
+        Assertions.assertTrue(ast.isPrimitive());
+
+        Scope values = new Scope(null);
+        values.defineVariable("x", Environment.create(BigInteger.valueOf(Long.MAX_VALUE)));
+        Assertions.assertEquals(BigInteger.valueOf(Long.MAX_VALUE).shiftLeft(1), new Interpreter(values).visit(ast).getValue());
+    }
+
+    @Test
+    void testReceiverCall() {
+        // make().value + 1, where the field holds a value wider than an int at runtime
+        Ast.Expr.Binary ast = new Ast.Expr.Binary("+",
+                new Ast.Expr.Access(Optional.of(call("make")), "value"),
+                new Ast.Expr.Literal(BigInteger.ONE)
+        );
+        Scope fields = new Scope(null);
+        fields.defineVariable("value", "value", Environment.Type.INTEGER, Environment.NIL);
+        Scope scope = new Scope(null);
+        scope.defineFunction("make", "make", Arrays.asList(), new Environment.Type("Counter", "Counter", fields), args -> Environment.NIL);
+        new Analyzer(scope).visit(ast);
+        new RangeAnalyzer().visit(ast);
+        Assertions.assertFalse(ast.isPrimitive());
+
+        int[] calls = {0};
+        Scope values = new Scope(null);
+        values.defineFunction("make", 0, args -> {
+            calls[0]++;
+            Scope object = new Scope(null);
+            object.defineVariable("value", Environment.create(BigInteger.valueOf(Long.MAX_VALUE)));
+            return new Environment.PlcObject(object, null);
+        });
+        Assertions.assertEquals(BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.ONE), new Interpreter(values).visit(ast).getValue());
+        Assertions.assertEquals(1, calls[0]);
+    }
+
+}
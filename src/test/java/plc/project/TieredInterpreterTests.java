@@ -0,0 +1,221 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static plc.project.Asts.source;
+import static plc.project.Asts.method;
+import static plc.project.Asts.call;
+import static plc.project.Asts.binary;
+import static plc.project.Asts.access;
+import static plc.project.Asts.integer;
+
+public final class TieredInterpreterTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    public void testSource(String test, Ast.Source ast, String method, TieredInterpreter.State state, BigInteger expected) {
+        new Analyzer(new Scope(null)).visit(ast);
+        TieredInterpreter interpreter = new TieredInterpreter(new Scope(null), 10, Runnable::run);
+        Assertions.assertEquals(expected, interpreter.visit(ast).getValue());
+        Assertions.assertEquals(state, interpreter.getProfile(method, 1).getState());
+        Assertions.assertEquals(expected, new Interpreter(new Scope(null)).visit(ast).getValue());
+    }
+
+    private static Stream<Arguments> testSource() {
+        return Stream.of(
+                Arguments.of("Recursion",
+                        // DEF fib(n: Integer): Integer DO IF n < 2 DO RETURN n; END RETURN fib(n - 1) + fib(n - 2); END
+                        // DEF main(): Integer DO RETURN fib(15); END
+                        source(Arrays.asList(), Arrays.asList(
+                                method("fib", Arrays.asList("n"), "Integer", Arrays.asList(
+                                        new Ast.Stmt.If(binary("<", access("n"), integer(2)), Arrays.asList(new Ast.Stmt.Return(access("n"))), Arrays.asList()),
+                                        new Ast.Stmt.Return(binary("+",
+                                                call("fib", binary("-", access("n"), integer(1))),
+                                                call("fib", binary("-", access("n"), integer(2)))
+                                        ))
+                                )),
+                                method("main", Arrays.asList(), "Integer", Arrays.asList(
+                                        new Ast.Stmt.Return(call("fib", integer(15)))
+                                ))
+                        )),
+                        "fib", TieredInterpreter.State.COMPILED, BigInteger.valueOf(610)
+                ),
+                Arguments.of("Back Edges",
+                        // DEF sum(n: Integer): Integer DO LET i = 0; LET total = 0; WHILE i < n DO total = total + i; i = i + 1; END RETURN total; END
+                        // DEF main(): Integer DO RETURN sum(100) + sum(100); END
+                        source(Arrays.asList(), Arrays.asList(
+                                method("sum", Arrays.asList("n"), "Integer", Arrays.asList(
+                                        new Ast.Stmt.Declaration("i", Optional.of(integer(0))),
+                                        new Ast.Stmt.Declaration("total", Optional.of(integer(0))),
+                                        new Ast.Stmt.While(binary("<", access("i"), access("n")), Arrays.asList(
+                                                new Ast.Stmt.Assignment(access("total"), binary("+", access("total"), access("i"))),
+                                                new Ast.Stmt.Assignment(access("i"), binary("+", access("i"), integer(1)))
+                                        )),
+                                        new Ast.Stmt.Return(access("total"))
+                                )),
+                                method("main", Arrays.asList(), "Integer", Arrays.asList(
+                                        new Ast.Stmt.Return(binary("+", call("sum", integer(100)), call("sum", integer(100))))
+                                ))
+                        )),
+                        "sum", TieredInterpreter.State.COMPILED, BigInteger.valueOf(9900)
+                ),
+                Arguments.of("Field Access",
+                        // VAR total: Integer = 0;
+                        // DEF add(n: Integer): Integer DO total = total + n; RETURN total; END
+                        // DEF main(): Integer DO LET i = 0; WHILE i < 20 DO add(i); i = i + 1; END RETURN total; END
+                        source(Arrays.asList(new Ast.Field("total", "Integer", Optional.of(integer(0)))), Arrays.asList(
+                                method("add", Arrays.asList("n"), "Integer", Arrays.asList(
+                                        new Ast.Stmt.Assignment(access("total"), binary("+", access("total"), access("n"))),
+                                        new Ast.Stmt.Return(access("total"))
+                                )),
+                                method("main", Arrays.asList(), "Integer", Arrays.asList(
+                                        new Ast.Stmt.Declaration("i", Optional.of(integer(0))),
+                                        new Ast.Stmt.While(binary("<", access("i"), integer(20)), Arrays.asList(
+                                                new Ast.Stmt.Expression(call("add", access("i"))),
+                                                new Ast.Stmt.Assignment(access("i"), binary("+", access("i"), integer(1)))
+                                        )),
+                                        new Ast.Stmt.Return(access("total"))
+                                ))
+                        )),
+                        "add", TieredInterpreter.State.INELIGIBLE, BigInteger.valueOf(190)
+                ),
+                Arguments.of("Native Call",
+                        // DEF log(n: Integer): Integer DO print(n); RETURN n; END
+                        // DEF main(): Integer DO LET i = 0; WHILE i < 20 DO log(i); i = i + 1; END RETURN i; END
+                        source(Arrays.asList(), Arrays.asList(
+                                method("log", Arrays.asList("n"), "Integer", Arrays.asList(
+                                        new Ast.Stmt.Expression(call("print", access("n"))),
+                                        new Ast.Stmt.Return(access("n"))
+                                )),
+                                method("main", Arrays.asList(), "Integer", Arrays.asList(
+                                        new Ast.Stmt.Declaration("i", Optional.of(integer(0))),
+                                        new Ast.Stmt.While(binary("<", access("i"), integer(20)), Arrays.asList(
+                                                new Ast.Stmt.Expression(call("log", access("i"))),
+                                                new Ast.Stmt.Assignment(access("i"), binary("+", access("i"), integer(1)))
+                                        )),
+                                        new Ast.Stmt.Return(access("i"))
+                                ))
+                        )),
+                        "log", TieredInterpreter.State.INELIGIBLE, BigInteger.valueOf(20)
+                ),
+                Arguments.of("Tail Recursion",
+                        // DEF down(n: Integer): Integer DO IF n == 0 DO RETURN 0; END RETURN down(n - 1); END
+                        // DEF main(): Integer DO RETURN down(10) + down(1000000); END
+                        source(Arrays.asList(), Arrays.asList(
+                                method("down", Arrays.asList("n"), "Integer", Arrays.asList(
+                                        new Ast.Stmt.If(binary("==", access("n"), integer(0)), Arrays.asList(new Ast.Stmt.Return(integer(0))), Arrays.asList()),
+                                        new Ast.Stmt.Return(call("down", binary("-", access("n"), integer(1))))
+                                )),
+                                method("main", Arrays.asList(), "Integer", Arrays.asList(
+                                        new Ast.Stmt.Return(binary("+", call("down", integer(10)), call("down", integer(1000000))))
+                                ))
+                        )),
+                        "down", TieredInterpreter.State.COMPILED, BigInteger.ZERO
+                ),
+                Arguments.of("Overflow",
+                        // DEF sq(n: Integer): Integer DO RETURN n * n; END
+                        // DEF main(): Integer DO LET i = 0; LET total = 0; WHILE i < 12 DO total = total + sq(i); i = i + 1; END RETURN total + sq(100000); END
+                        source(Arrays.asList(), Arrays.asList(
+                                method("sq", Arrays.asList("n"), "Integer", Arrays.asList(
+                                        new Ast.Stmt.Return(binary("*", access("n"), access("n")))
+                                )),
+                                method("main", Arrays.asList(), "Integer", Arrays.asList(
+                                        new Ast.Stmt.Declaration("i", Optional.of(integer(0))),
+                                        new Ast.Stmt.Declaration("total", Optional.of(integer(0))),
+                                        new Ast.Stmt.While(binary("<", access("i"), integer(12)), Arrays.asList(
+                                                new Ast.Stmt.Assignment(access("total"), binary("+", access("total"), call("sq", access("i")))),
+                                                new Ast.Stmt.Assignment(access("i"), binary("+", access("i"), integer(1)))
+                                        )),
+                                        new Ast.Stmt.Return(binary("+", access("total"), call("sq", integer(100000))))
+                                ))
+                        )),
+                        "sq", TieredInterpreter.State.COMPILED, BigInteger.valueOf(10000000506L)
+                ),
+                Arguments.of("String Equality",
+                        // DEF eq(a: String): Boolean DO RETURN a == "ab"; END
+                        // DEF main(): Integer DO LET i = 0; LET count = 0; WHILE i < 30 DO IF eq("a" + "b") DO count = count + 1; END i = i + 1; END RETURN count; END
+                        source(Arrays.asList(), Arrays.asList(
+                                new Ast.Method("eq", Arrays.asList("a"), Arrays.asList("String"), Optional.of("Boolean"), Arrays.asList(
+                                        new Ast.Stmt.Return(binary("==", access("a"), new Ast.Expr.Literal("ab")))
+                                )),
+                                method("main", Arrays.asList(), "Integer", Arrays.asList(
+                                        new Ast.Stmt.Declaration("i", Optional.of(integer(0))),
+                                        new Ast.Stmt.Declaration("count", Optional.of(integer(0))),
+                                        new Ast.Stmt.While(binary("<", access("i"), integer(30)), Arrays.asList(
+                                                new Ast.Stmt.If(call("eq", binary("+", new Ast.Expr.Literal("a"), new Ast.Expr.Literal("b"))), Arrays.asList(
+                                                        new Ast.Stmt.Assignment(access("count"), binary("+", access("count"), integer(1)))
+                                                ), Arrays.asList()),
+                                                new Ast.Stmt.Assignment(access("i"), binary("+", access("i"), integer(1)))
+                                        )),
+                                        new Ast.Stmt.Return(access("count"))
+                                ))
+                        )),
+                        "eq", TieredInterpreter.State.COMPILED, BigInteger.valueOf(30)
+                ),
+                Arguments.of("Decimal Local",
+                        // DEF dec(n: Integer): Integer DO LET d = 0.1 + 0.2; IF d == 0.3 DO RETURN 1; END RETURN 0; END
+                        // DEF main(): Integer DO LET i = 0; LET count = 0; WHILE i < 30 DO count = count + dec(i); i = i + 1; END RETURN count; END
+                        source(Arrays.asList(), Arrays.asList(
+                                method("dec", Arrays.asList("n"), "Integer", Arrays.asList(
+                                        new Ast.Stmt.Declaration("d", Optional.of(binary("+", decimal("0.1"), decimal("0.2")))),
+                                        new Ast.Stmt.If(binary("==", access("d"), decimal("0.3")), Arrays.asList(new Ast.Stmt.Return(integer(1))), Arrays.asList()),
+                                        new Ast.Stmt.Return(integer(0))
+                                )),
+                                method("main", Arrays.asList(), "Integer", Arrays.asList(
+                                        new Ast.Stmt.Declaration("i", Optional.of(integer(0))),
+                                        new Ast.Stmt.Declaration("count", Optional.of(integer(0))),
+                                        new Ast.Stmt.While(binary("<", access("i"), integer(30)), Arrays.asList(
+                                                new Ast.Stmt.Assignment(access("count"), binary("+", access("count"), call("dec", access("i")))),
+                                                new Ast.Stmt.Assignment(access("i"), binary("+", access("i"), integer(1)))
+                                        )),
+                                        new Ast.Stmt.Return(access("count"))
+                                ))
+                        )),
+                        "dec", TieredInterpreter.State.INELIGIBLE, BigInteger.valueOf(30)
+                )
+        );
+    }
+
+    private static Ast.Expr.Literal decimal(String value) {
+        return new Ast.Expr.Literal(new BigDecimal(value));
+    }
+
+    @Test
+    public void testCounters() {
+        // DEF fib(n: Integer): Integer DO IF n < 2 DO RETURN n; END RETURN fib(n - 1) + fib(n - 2); END
+        // DEF main(): Integer DO RETURN fib(15); END
+        Ast.Source ast = source(Arrays.asList(), Arrays.asList(
+                method("fib", Arrays.asList("n"), "Integer", Arrays.asList(
+                        new Ast.Stmt.If(binary("<", access("n"), integer(2)), Arrays.asList(new Ast.Stmt.Return(access("n"))), Arrays.asList()),
+                        new Ast.Stmt.Return(binary("+",
+                                call("fib", binary("-", access("n"), integer(1))),
+                                call("fib", binary("-", access("n"), integer(2)))
+                        ))
+                )),
+                method("main", Arrays.asList(), "Integer", Arrays.asList(
+                        new Ast.Stmt.Return(call("fib", integer(15)))
+                ))
+        ));
+        new Analyzer(new Scope(null)).visit(ast);
+        TieredInterpreter interpreter = new TieredInterpreter(new Scope(null), 10, Runnable::run);
+        interpreter.visit(ast);
+        Assertions.assertEquals(10, interpreter.getProfile("fib", 1).getInvocations());
+        Assertions.assertEquals(1, interpreter.getProfile("main", 0).getInvocations());
+
+        TieredInterpreter cold = new TieredInterpreter(new Scope(null), Integer.MAX_VALUE, Runnable::run);
+        cold.visit(ast);
+        Assertions.assertEquals(1973, cold.getProfile("fib", 1).getInvocations());
+        Assertions.assertEquals(TieredInterpreter.State.INTERPRETED, cold.getProfile("fib", 1).getState());
+    }
+
+}
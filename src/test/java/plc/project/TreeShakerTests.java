@@ -0,0 +1,65 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+public final class TreeShakerTests {
+
+    /**
+     * LET used: Integer = 1;
+     * LET unused: Integer = 2;
+     * LET logged: Integer = log();
+     * DEF main(): Integer DO RETURN helper(); END
+     * DEF helper(): Integer DO RETURN used; END
+     * DEF unreachable(): Integer DO RETURN unused; END
+     * DEF log(): Integer DO print("logged"); RETURN 0; END
+     */
+    private static final Ast.Source SOURCE = new Ast.Source(
+            Arrays.asList(
+                    new Ast.Field("used", "Integer", Optional.of(new Ast.Expr.Literal(BigInteger.ONE))),
+                    new Ast.Field("unused", "Integer", Optional.of(new Ast.Expr.Literal(BigInteger.valueOf(2)))),
+                    new Ast.Field("logged", "Integer", Optional.of(new Ast.Expr.Function(Optional.empty(), "log", Arrays.asList())))
+            ),
+            Arrays.asList(
+                    method("main", new Ast.Stmt.Return(new Ast.Expr.Function(Optional.empty(), "helper", Arrays.asList()))),
+                    method("helper", new Ast.Stmt.Return(new Ast.Expr.Access(Optional.empty(), "used"))),
+                    method("unreachable", new Ast.Stmt.Return(new Ast.Expr.Access(Optional.empty(), "unused"))),
+                    method("log",
+                            new Ast.Stmt.Expression(new Ast.Expr.Function(Optional.empty(), "print", Arrays.asList(new Ast.Expr.Literal("logged")))),
+                            new Ast.Stmt.Return(new Ast.Expr.Literal(BigInteger.ZERO))
+                    )
+            )
+    );
+
+    @Test
+    void testShake() {
+        Ast.Source shaken = new TreeShaker().shake(SOURCE);
+        Assertions.assertEquals(Arrays.asList("used", "logged"), shaken.getFields().stream().map(Ast.Field::getName).collect(Collectors.toList()));
+        Assertions.assertEquals(Arrays.asList("main", "helper", "log"), shaken.getMethods().stream().map(Ast.Method::getName).collect(Collectors.toList()));
+    }
+
+    @Test
+    void testNoMain() {
+        Ast.Source source = new Ast.Source(Arrays.asList(), Arrays.asList(method("library", new Ast.Stmt.Return(new Ast.Expr.Literal(BigInteger.ONE)))));
+        Assertions.assertSame(source, new TreeShaker().shake(source));
+    }
+
+    @Test
+    void testReuse() {
+        TreeShaker shaker = new TreeShaker();
+        shaker.shake(SOURCE);
+        Ast.Source source = new Ast.Source(Arrays.asList(), Arrays.asList(method("library", new Ast.Stmt.Return(new Ast.Expr.Literal(BigInteger.ONE)))));
+        Assertions.assertSame(source, shaker.shake(source));
+        Assertions.assertEquals(3, shaker.shake(SOURCE).getMethods().size());
+    }
+
+    private static Ast.Method method(String name, Ast.Stmt... statements) {
+        return new Ast.Method(name, Arrays.asList(), Arrays.asList(), Optional.of("Integer"), Arrays.asList(statements));
+    }
+
+}